@@ -5,6 +5,8 @@
  */
 package BankIO;
 
+import java.io.InputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -145,11 +147,23 @@ public class CommandLineIO implements BankIO {
 	
 	// instance variables (fields)
 	private Scanner scan;
+	private PrintStream out;
 	
 	// constructor
 	public CommandLineIO() {
 
-		scan = new Scanner(System.in);
+		this(System.in, System.out);
+	}
+	
+	/**
+	 * For talking to someone other than the console, like a client connected to the server.
+	 * @param in : where the user's input comes from
+	 * @param out : where everything is displayed
+	 */
+	public CommandLineIO(InputStream in, PrintStream out) {
+		
+		scan = new Scanner(in);
+		this.out = out;
 	}
 	
 	// helper methods --------------------
@@ -157,10 +171,11 @@ public class CommandLineIO implements BankIO {
 	/**
 	 * Converts an integer amount of money to a user-friendly string representation.
 	 * Eg, 12345 -> "$123.45"
+	 * Public so that the benchmarks can get at it.
 	 * @param funds
 	 * @return
 	 */
-	private String intToMoneyString(int funds) {
+	public static String intToMoneyString(int funds) {
 		
 		String temp = "" + funds;
 		
@@ -183,7 +198,7 @@ public class CommandLineIO implements BankIO {
 	 * @param funds
 	 * @return
 	 */
-	private int moneyStringToInt(String funds) throws BadMoneyFormatException{
+	public static int moneyStringToInt(String funds) throws BadMoneyFormatException{
 		
 		int startingIndex = 0;
 		if (funds.charAt(0) == '$') {
@@ -246,7 +261,7 @@ public class CommandLineIO implements BankIO {
 	@Override
 	public void displayText(String text) {
 		
-		System.out.println(text);
+		out.println(text);
 	}
 
 	/**
@@ -257,9 +272,9 @@ public class CommandLineIO implements BankIO {
 	public void displayText(String text, boolean frame) {
 		
 		if (frame) {
-			System.out.println("\n" + FRAME_LINE);
+			out.println("\n" + FRAME_LINE);
 			displayText(text);
-			System.out.println(FRAME_LINE + "\n");
+			out.println(FRAME_LINE + "\n");
 		}
 		else {
 			displayText(text);
@@ -287,7 +302,7 @@ public class CommandLineIO implements BankIO {
 				} // end inner for loop
 			}
 			
-			System.out.println(line);
+			out.println(line);
 		} // end outer for loop
 	}
 
@@ -311,7 +326,7 @@ public class CommandLineIO implements BankIO {
 				line = line + " " + ownerID;
 			} // end inner for loop
 			
-			System.out.println(line);
+			out.println(line);
 		} // end outer for loop
 	}
 
@@ -355,7 +370,7 @@ public class CommandLineIO implements BankIO {
 				line = line + intToMoneyString(tr.getMoneyAmount());
 			}
 			
-			System.out.println(line);
+			out.println(line);
 		} // end outer for loop
 	}
 	
@@ -463,7 +478,7 @@ public class CommandLineIO implements BankIO {
 		params.add(parseString(USERNAME_PROMPT));
 		params.add(parseString(PASSWORD_PROMPT));
 		
-		System.out.println(FRAME_LINE);
+		out.println(FRAME_LINE);
 		return new Request(
 				RequestType.CREATE_ADMIN,
 				params);
@@ -485,7 +500,7 @@ public class CommandLineIO implements BankIO {
 		params.add(parseString(USERNAME_PROMPT));
 		params.add(parseString(PASSWORD_PROMPT));
 		
-		System.out.println(FRAME_LINE);
+		out.println(FRAME_LINE);
 		return new Request(
 				RequestType.CREATE_EMPLOYEE,
 				params);
@@ -500,7 +515,7 @@ public class CommandLineIO implements BankIO {
 		
 		//displayText(VIEW_TRANSACTION_HEADER, true);
 		
-		System.out.println(VIEW_TRANSACTIONS_MENU);
+		out.println(VIEW_TRANSACTIONS_MENU);
 		int choice = parseInt(CHOICES_PROMPT, 1, 4); // max NOT inclusive
 		
 		if (choice == 1) { 
@@ -592,7 +607,7 @@ public class CommandLineIO implements BankIO {
 		
 		//displayText(VIEW_ACCOUNTS_HEADER, true);
 		
-		System.out.println(VIEW_ACCOUNTS_MENU);
+		out.println(VIEW_ACCOUNTS_MENU);
 		int choice = parseInt(CHOICES_PROMPT, 1, 3); // max NOT inclusive
 		
 		if (choice == 1) { 
@@ -714,7 +729,7 @@ public class CommandLineIO implements BankIO {
 		params.add("" + parseInt(ACCOUNT_ID_PROMPT, 0, Integer.MAX_VALUE));
 		params.add("" + parseInt(USER_ID_PROMPT, 0, Integer.MAX_VALUE));
 	
-		System.out.println(FRAME_LINE);
+		out.println(FRAME_LINE);
 		return new Request(
 				RequestType.REMOVE_ACCOUNT_OWNER,
 				params);
@@ -736,7 +751,7 @@ public class CommandLineIO implements BankIO {
 		params.add("" + parseInt(ACCOUNT_ID_PROMPT, 0, Integer.MAX_VALUE));
 		params.add("" + parseInt(USER_ID_PROMPT, 0, Integer.MAX_VALUE));
 	
-		System.out.println(FRAME_LINE);
+		out.println(FRAME_LINE);
 		return new Request(
 				RequestType.ADD_ACCOUNT_OWNER,
 				params);
@@ -757,7 +772,7 @@ public class CommandLineIO implements BankIO {
 		List<String> params = new ArrayList<>();
 		params.add("" + parseInt(ACCOUNT_ID_PROMPT, 0, Integer.MAX_VALUE));
 		
-		System.out.println(FRAME_LINE);
+		out.println(FRAME_LINE);
 		return new Request(
 				RequestType.CLOSE_ACCOUNT,
 				params);
@@ -778,7 +793,7 @@ public class CommandLineIO implements BankIO {
 		List<String> params = new ArrayList<>();
 		params.add("" + parseInt(ACCOUNT_ID_PROMPT, 0, Integer.MAX_VALUE));
 		
-		System.out.println(FRAME_LINE);
+		out.println(FRAME_LINE);
 		return new Request(
 				RequestType.DENY_OPEN_ACCOUNT,
 				params);
@@ -799,7 +814,7 @@ public class CommandLineIO implements BankIO {
 		List<String> params = new ArrayList<>();
 		params.add("" + parseInt(ACCOUNT_ID_PROMPT, 0, Integer.MAX_VALUE));
 		
-		System.out.println(FRAME_LINE);
+		out.println(FRAME_LINE);
 		return new Request(
 				RequestType.APPROVE_OPEN_ACCOUNT,
 				params);
@@ -817,7 +832,7 @@ public class CommandLineIO implements BankIO {
 		System.out.println(FRAME_LINE);
 		*/
 		
-		System.out.println(FRAME_LINE);
+		out.println(FRAME_LINE);
 		return new Request(RequestType.APPLY_OPEN_ACCOUNT);
 	}
 
@@ -833,7 +848,7 @@ public class CommandLineIO implements BankIO {
 		System.out.println(FRAME_LINE);
 		*/
 		
-		System.out.println(FRAME_LINE);
+		out.println(FRAME_LINE);
 		return new Request(RequestType.QUIT);
 	}
 
@@ -849,7 +864,7 @@ public class CommandLineIO implements BankIO {
 		System.out.println(FRAME_LINE);
 		*/
 		
-		System.out.println(FRAME_LINE);
+		out.println(FRAME_LINE);
 		return new Request(RequestType.LOG_OUT);
 	}
 
@@ -869,7 +884,7 @@ public class CommandLineIO implements BankIO {
 		params.add(parseString(USERNAME_PROMPT));
 		params.add(parseString(PASSWORD_PROMPT));
 		
-		System.out.println(FRAME_LINE);
+		out.println(FRAME_LINE);
 		return new Request(
 				RequestType.LOG_IN,
 				params);
@@ -891,7 +906,7 @@ public class CommandLineIO implements BankIO {
 		params.add(parseString(USERNAME_PROMPT));
 		params.add(parseString(PASSWORD_PROMPT));
 		
-		System.out.println(FRAME_LINE);
+		out.println(FRAME_LINE);
 		return new Request(
 				RequestType.REGISTER_USER,
 				params);
@@ -913,10 +928,10 @@ public class CommandLineIO implements BankIO {
 		for (int i = 0; i < permittedRequestTypes.length; i++) {
 			// print (i + 1) to avoid starting on 0
 			String line = "(" + (i + 1) + ") " + cleanUpRequestType(permittedRequestTypes[i]);
-			System.out.println(line);
+			out.println(line);
 		}
 		
-		System.out.println(FRAME_LINE);
+		out.println(FRAME_LINE);
 		// add 1 to length and subtract 1 to correct for (i + 1)
 		return (parseInt(CHOICES_PROMPT, 1, (permittedRequestTypes.length + 1))) - 1; 
 	}
@@ -1009,7 +1024,8 @@ public class CommandLineIO implements BankIO {
 		int choice = 0;
 		boolean isValid = false;
 		do {
-			System.out.print(promptText);
+			out.print(promptText);
+			out.flush(); // prompts have no newline, so make sure they're sent
 			String input = "";
 			while (input.equals("")) {
 				input = scan.nextLine();
@@ -1018,17 +1034,17 @@ public class CommandLineIO implements BankIO {
 				choice = Integer.parseInt(input);
 				// it's an int, is it a valid int?
 				if (min > choice) {
-					System.out.println(PARSE_INT_BELOW_MIN_PREFIX + min);
+					out.println(PARSE_INT_BELOW_MIN_PREFIX + min);
 				}
 				else if (choice >= max) {
-					System.out.println(PARSE_INT_BELOW_MAX_PREFIX + max);
+					out.println(PARSE_INT_BELOW_MAX_PREFIX + max);
 				}
 				else {
 					isValid = true;					
 				}
 			}
 			catch (NumberFormatException e) {
-				System.out.println(PARSE_INT_INVALID_INPUT_MESSAGE);
+				out.println(PARSE_INT_INVALID_INPUT_MESSAGE);
 			}
 		} while(!isValid);
 		
@@ -1056,7 +1072,8 @@ public class CommandLineIO implements BankIO {
 		boolean isValid = false;
 		String input = ""; // will be filled in
 		do {
-			System.out.print(promptText);
+			out.print(promptText);
+			out.flush(); // prompts have no newline, so make sure they're sent
 			input = scan.nextLine();
 			
 			while (input.equals("")) {
@@ -1066,7 +1083,7 @@ public class CommandLineIO implements BankIO {
 			for (char c : input.toCharArray()) {
 				if (Character.isWhitespace(c)){
 					foundWhite = true;
-					System.out.println(PARSE_STRING_WHITESPACE_INVALID);
+					out.println(PARSE_STRING_WHITESPACE_INVALID);
 					break;
 				}
 			}
@@ -1090,14 +1107,15 @@ public class CommandLineIO implements BankIO {
 		
 		do {
 			try {
-				System.out.print(promptText);
+				out.print(promptText);
+				out.flush(); // prompts have no newline, so make sure they're sent
 				String moneyText = scan.next();
 				input = moneyStringToInt(moneyText);
 				// if we get here, it's valid
 				isValid = true;
 			}
 			catch (BadMoneyFormatException e){
-				System.out.println(PARSE_MONEY_BAD_FORMAT_PREFIX + e.getMessage());
+				out.println(PARSE_MONEY_BAD_FORMAT_PREFIX + e.getMessage());
 			}
 		} while(!isValid);
 		
@@ -1115,7 +1133,8 @@ public class CommandLineIO implements BankIO {
 		List<String> params;
 		boolean isValid = false;
 		do {
-			System.out.print(promptText);
+			out.print(promptText);
+			out.flush(); // prompts have no newline, so make sure they're sent
 			String idLine = scan.nextLine();
 			while (idLine.equals("")) { // not sure why this is necessary
 				idLine = scan.nextLine();
@@ -1132,7 +1151,7 @@ public class CommandLineIO implements BankIO {
 				isValid = true;
 			}
 			catch(NumberFormatException e){ // if one of the tokens was bad
-				System.out.println(ID_LIST_BAD_TOKEN_MESSAGE);
+				out.println(ID_LIST_BAD_TOKEN_MESSAGE);
 			} 
 		} while(!isValid);
 		
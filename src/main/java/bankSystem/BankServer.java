@@ -0,0 +1,250 @@
+/**
+ * Lets many people use the bank at once over local socket connections.
+ *
+ * Each connection gets its own session: a BankSystem with its own logged in user, talking
+ * through a CommandLineIO hooked up to the socket, so a client sees exactly what the console
+ * version shows (eg, connect with telnet or nc). All sessions share one DAO, one TransferEngine
+ * and one IdAllocator, so the DAO must be safe to call from several threads at once. They also
+ * share one TransactionRecordWriter, so transaction records from every session are written
+ * together in batches; by default a session doesn't wait for its records to be written, only
+ * for them to be queued, and each session's records are flushed when it quits.
+ *
+ * Sessions run on a fixed size pool of threads, one session per thread. When the server already
+ * has as many sessions as it has threads, new connections are told so and disconnected rather
+ * than left waiting.
+ *
+ * @author Andrew Curry
+ */
+package bankSystem;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import BankIO.CommandLineIO;
+import dao.BankDAO;
+import dao.IdAllocator;
+import dao.TransactionRecordWriter;
+
+public class BankServer {
+
+	// constants
+	public static final int DEFAULT_PORT = 4096;
+	public static final int DEFAULT_MAX_SESSIONS = 32;
+	public static final String SERVER_BUSY_MESSAGE
+			= "The bank is busy right now. Please try again later.";
+	private static final long SHUTDOWN_WAIT_SECONDS = 5;
+
+	// class / static variables
+	private static Logger log = Logger.getLogger(BankServer.class);
+
+	// instance variables
+	private final BankDAO dao;
+	private final TransferEngine transferEngine;
+	private final IdAllocator idAllocator;
+	private final TransactionRecordWriter recordWriter;
+
+	private final ServerSocket serverSocket;
+	private final int maxSessions;
+	private final Semaphore sessionPermits; // one per session that can run at once
+	private final ExecutorService sessionPool;
+	private final Set<Socket> openSockets; // so close() can hang up on everyone
+	private volatile boolean running;
+
+	// constructor(s)
+
+	/**
+	 * Binds to the given port on the loopback address. Nothing is accepted until serve is called.
+	 * @param dao : shared by every session, must be thread-safe
+	 * @param port : 0 picks any free port
+	 * @param maxSessions : how many sessions can run at once
+	 * @throws IOException if the port can't be bound
+	 */
+	public BankServer(BankDAO dao, int port, int maxSessions) throws IOException {
+
+		this(dao, port, maxSessions, false);
+	}
+
+	/**
+	 * @param dao : shared by every session, must be thread-safe
+	 * @param port : 0 picks any free port
+	 * @param maxSessions : how many sessions can run at once
+	 * @param durableRecords : true if a deposit, withdrawal etc shouldn't be reported done
+	 *     until its transaction record has been written
+	 * @throws IOException if the port can't be bound
+	 */
+	public BankServer(BankDAO dao, int port, int maxSessions, boolean durableRecords) throws IOException {
+
+		this.dao = dao;
+		transferEngine = new TransferEngine(dao);
+		idAllocator = new IdAllocator(dao);
+		recordWriter = new TransactionRecordWriter(dao, TransactionRecordWriter.DEFAULT_CAPACITY,
+				TransactionRecordWriter.DEFAULT_BATCH_SIZE, TransactionRecordWriter.DEFAULT_MAX_DELAY_MILLIS,
+				durableRecords);
+
+		serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		openSockets = ConcurrentHashMap.newKeySet();
+
+		// a session either gets a permit right away or is turned away, so the pool's queue
+		// only ever holds a session whose thread is just finishing up the previous one
+		this.maxSessions = maxSessions;
+		sessionPermits = new Semaphore(maxSessions);
+		final AtomicInteger threadCount = new AtomicInteger();
+		sessionPool = Executors.newFixedThreadPool(maxSessions, r -> {
+			Thread t = new Thread(r, "bank-session-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		running = true;
+	}
+
+	// operation methods
+
+	/**
+	 * Accepts connections until close is called. Blocks the calling thread.
+	 */
+	public void serve() {
+
+		log.log(Level.INFO, "Bank server listening on port " + getPort());
+		while (running) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			}
+			catch (IOException e) {
+				if (running) {
+					log.log(Level.ERROR, "Error accepting connection: " + e.getMessage());
+				}
+				continue; // if closed, the loop ends here
+			}
+
+			if (!sessionPermits.tryAcquire()) {
+				log.log(Level.WARN, "Turned away connection from " + socket.getRemoteSocketAddress());
+				rejectSession(socket);
+				continue;
+			}
+
+			openSockets.add(socket);
+			try {
+				sessionPool.execute(() -> runSession(socket));
+			}
+			catch (RejectedExecutionException e) { // closing down
+				openSockets.remove(socket);
+				sessionPermits.release();
+				closeQuietly(socket);
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting connections, disconnects every session, waits a little for
+	 * their threads to finish, and then writes any transaction records still queued.
+	 */
+	public void close() {
+
+		running = false;
+		try {
+			serverSocket.close();
+		}
+		catch (IOException e) {
+			log.log(Level.WARN, "Error closing server socket: " + e.getMessage());
+		}
+
+		for (Socket socket : openSockets) {
+			closeQuietly(socket);
+		}
+
+		sessionPool.shutdown();
+		try {
+			sessionPool.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		recordWriter.close();
+		log.log(Level.INFO, "Bank server stopped");
+	}
+
+	/**
+	 * @return the port actually being listened on
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * @return how many sessions are currently connected
+	 */
+	public int getActiveSessionCount() {
+		return maxSessions - sessionPermits.availablePermits();
+	}
+
+	// helper methods
+
+	/**
+	 * Runs one client's session from start to finish, on a pool thread.
+	 * @param socket
+	 */
+	private void runSession(Socket socket) {
+
+		log.log(Level.INFO, "Session started for " + socket.getRemoteSocketAddress());
+		try {
+			CommandLineIO io = new CommandLineIO(socket.getInputStream(),
+					new PrintStream(socket.getOutputStream(), true));
+			BankSystem bank = new BankSystem(io, dao, transferEngine, idAllocator, recordWriter);
+			bank.start();
+		}
+		catch (NoSuchElementException e) {
+			// the client hung up without quitting; nothing left to read
+		}
+		catch (IOException e) {
+			log.log(Level.ERROR, "Error in session for " + socket.getRemoteSocketAddress()
+					+ ": " + e.getMessage());
+		}
+		catch (RuntimeException e) {
+			log.log(Level.ERROR, "Session for " + socket.getRemoteSocketAddress() + " crashed: " + e);
+		}
+		finally {
+			openSockets.remove(socket);
+			closeQuietly(socket);
+			sessionPermits.release();
+			log.log(Level.INFO, "Session ended for " + socket.getRemoteSocketAddress());
+		}
+	}
+
+	private void rejectSession(Socket socket) {
+
+		try {
+			PrintStream out = new PrintStream(socket.getOutputStream(), true);
+			out.println(SERVER_BUSY_MESSAGE);
+		}
+		catch (IOException e) {
+			// they're getting hung up on either way
+		}
+		closeQuietly(socket);
+	}
+
+	private static void closeQuietly(Socket socket) {
+
+		try {
+			socket.close();
+		}
+		catch (IOException e) {
+			// already closed or broken, nothing else to do
+		}
+	}
+}
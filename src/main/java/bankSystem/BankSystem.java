@@ -10,6 +10,7 @@
 package bankSystem;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.log4j.Level;
@@ -28,6 +29,11 @@ import BankIO.BankIO;
 import bankSystem.Request.RequestType;
 import dao.BankDAO;
 import dao.BankDAOException;
+import dao.IdAllocator;
+import dao.TransactionRecordPager;
+import dao.TransactionRecordWriter;
+import dao.TransactionalBankDAO.TransferResult;
+import dao.UsernameTakenException;
 
 
 public class BankSystem {
@@ -207,6 +213,10 @@ public class BankSystem {
 	// instance variables (fields)
 	private BankIO io;
 	private BankDAO dao;
+	private TransferEngine transferEngine; // all balance and other account changes go through this
+	private IdAllocator idAllocator; // where new ID numbers come from
+	private TransactionRecordWriter recordWriter; // transaction records are saved through this
+	private boolean ownsRecordWriter; // if so, it's closed on quit
 	
 	private UserProfile currentUser; // who is logged in?
 	private boolean running; // controls interaction loop
@@ -220,8 +230,41 @@ public class BankSystem {
 	 */
 	public BankSystem(BankIO io, BankDAO dao) {
 		
+		this(io, dao, new TransferEngine(dao), new IdAllocator(dao));
+	}
+	
+	/**
+	 * Use this when several BankSystems share one DAO, so that they also share 
+	 * the locks that keep balance changes consistent, and the blocks of reserved IDs.
+	 * @param io
+	 * @param dao
+	 * @param transferEngine : should be using the same DAO
+	 * @param idAllocator : should be using the same DAO
+	 */
+	public BankSystem(BankIO io, BankDAO dao, TransferEngine transferEngine, IdAllocator idAllocator) {
+		
+		this(io, dao, transferEngine, idAllocator, new TransactionRecordWriter(dao));
+		ownsRecordWriter = true;
+	}
+	
+	/**
+	 * Same as above, but also sharing one writer for transaction records, so they're
+	 * written in batches across every session. The writer is flushed, not closed, on quit.
+	 * @param io
+	 * @param dao
+	 * @param transferEngine : should be using the same DAO
+	 * @param idAllocator : should be using the same DAO
+	 * @param recordWriter : should be using the same DAO
+	 */
+	public BankSystem(BankIO io, BankDAO dao, TransferEngine transferEngine, IdAllocator idAllocator,
+			TransactionRecordWriter recordWriter) {
+		
 		this.io = io;
 		this.dao = dao;
+		this.transferEngine = transferEngine;
+		this.idAllocator = idAllocator;
+		this.recordWriter = recordWriter;
+		ownsRecordWriter = false;
 		
 		currentUser = getEmptyUser();
 		running = false;
@@ -400,7 +443,7 @@ public class BankSystem {
 		
 		try {
 			if (dao.isUsernameFree(username)) {
-				UserProfile user = new UserProfile(dao.getHighestUserProfileID() + 1);
+				UserProfile user = new UserProfile(idAllocator.nextUserProfileID());
 				user.setUsername(username);
 				user.setPassword(password);
 				user.setType(UserProfileType.CUSTOMER);
@@ -418,6 +461,9 @@ public class BankSystem {
 				throw new ImpossibleActionException(USERNAME_IN_USE_MESSAGE);
 			}		
 		}
+		catch (UsernameTakenException e) { // taken since it was checked, eg by another process
+			throw new ImpossibleActionException(USERNAME_IN_USE_MESSAGE);
+		}
 		catch (BankDAOException e) {
 			throw new ImpossibleActionException(GENERIC_DAO_ERROR_MESSAGE);
 		}
@@ -478,6 +524,19 @@ public class BankSystem {
 	 */
 	private void handleQuit(Request currentRequest) throws ImpossibleActionException {
 		
+		// make sure this session's transaction records are written before saying goodbye
+		if (ownsRecordWriter) {
+			recordWriter.close();
+		}
+		else {
+			try {
+				recordWriter.flush();
+			}
+			catch (BankDAOException e) {
+				log.log(Level.WARN, "Could not flush transaction records on quit: " + e.getMessage());
+			}
+		}
+		
 		io.displayText(QUIT_MESSAGE);
 		stopRunning();
 		// no transaction
@@ -498,7 +557,7 @@ public class BankSystem {
 		*/
 		
 		try {
-			BankAccount ba = new BankAccount(dao.getHighestBankAccountID() + 1);
+			BankAccount ba = new BankAccount(idAllocator.nextBankAccountID());
 			ba.setStatus(BankAccountStatus.PENDING);
 			ba.setType(BankAccountType.SINGLE);
 			ba.setFunds(0);
@@ -538,17 +597,17 @@ public class BankSystem {
 			List<String> params = currentRequest.getParams();
 			int id = Integer.parseInt(params.get(0));
 			
-			BankAccount ba = dao.readBankAccount(id);
-			
-			if (ba.getType() == BankAccountType.NONE) {
-				throw new ImpossibleActionException(BANK_ACCOUNT_DOES_NOT_EXIST_PREFIX + id);
-			}
-			if (ba.getStatus() != BankAccountStatus.PENDING) {
-				throw new ImpossibleActionException(BANK_ACCOUNT_NOT_PENDING_MESSAGE);
-			}
-			
-			ba.setStatus(BankAccountStatus.OPEN);
-			dao.write(ba);
+			BankAccount ba = transferEngine.updateAccount(id, account -> {
+				if (account.getType() == BankAccountType.NONE) {
+					throw new ImpossibleActionException(BANK_ACCOUNT_DOES_NOT_EXIST_PREFIX + id);
+				}
+				if (account.getStatus() != BankAccountStatus.PENDING) {
+					throw new ImpossibleActionException(BANK_ACCOUNT_NOT_PENDING_MESSAGE);
+				}
+				
+				account.setStatus(BankAccountStatus.OPEN);
+				return Collections.emptyList();
+			});
 			io.displayText(ACCOUNT_APPROVED_MESSAGE);
 			
 			TransactionRecord tr = new TransactionRecord();
@@ -579,17 +638,17 @@ public class BankSystem {
 			List<String> params = currentRequest.getParams();
 			int id = Integer.parseInt(params.get(0));
 			
-			BankAccount ba = dao.readBankAccount(id);
-			
-			if (ba.getType() == BankAccountType.NONE) {
-				throw new ImpossibleActionException(BANK_ACCOUNT_DOES_NOT_EXIST_PREFIX + id);
-			}
-			if (ba.getStatus() != BankAccountStatus.PENDING) {
-				throw new ImpossibleActionException(BANK_ACCOUNT_NOT_PENDING_MESSAGE);
-			}
-			
-			ba.setStatus(BankAccountStatus.CLOSED);
-			dao.write(ba);
+			BankAccount ba = transferEngine.updateAccount(id, account -> {
+				if (account.getType() == BankAccountType.NONE) {
+					throw new ImpossibleActionException(BANK_ACCOUNT_DOES_NOT_EXIST_PREFIX + id);
+				}
+				if (account.getStatus() != BankAccountStatus.PENDING) {
+					throw new ImpossibleActionException(BANK_ACCOUNT_NOT_PENDING_MESSAGE);
+				}
+				
+				account.setStatus(BankAccountStatus.CLOSED);
+				return Collections.emptyList();
+			});
 			io.displayText(ACCOUNT_DENIED_MESSAGE);
 			
 			TransactionRecord tr = new TransactionRecord();
@@ -618,27 +677,27 @@ public class BankSystem {
 		try {
 			List<String> params = currentRequest.getParams();
 			int id = Integer.parseInt(params.get(0));
+			TransactionRecord tr = new TransactionRecord();
 			
-			BankAccount ba = dao.readBankAccount(id);
-			
-			if (ba.getType() == BankAccountType.NONE) {
-				throw new ImpossibleActionException(BANK_ACCOUNT_DOES_NOT_EXIST_PREFIX + id);
-			}
-			if (ba.getStatus() != BankAccountStatus.OPEN) {
-				throw new ImpossibleActionException(CLOSE_ACCOUNT_NOT_OPEN_MESSAGE);
-			}
-			
-			int funds = ba.getFunds();
-			ba.setFunds(0);
-			ba.setStatus(BankAccountStatus.CLOSED);
-			dao.write(ba);
+			// the balance is read and zeroed under the same lock deposits take, so none is lost
+			BankAccount ba = transferEngine.updateAccount(id, account -> {
+				if (account.getType() == BankAccountType.NONE) {
+					throw new ImpossibleActionException(BANK_ACCOUNT_DOES_NOT_EXIST_PREFIX + id);
+				}
+				if (account.getStatus() != BankAccountStatus.OPEN) {
+					throw new ImpossibleActionException(CLOSE_ACCOUNT_NOT_OPEN_MESSAGE);
+				}
+				
+				tr.setMoneyAmount(account.getFunds());
+				account.setFunds(0);
+				account.setStatus(BankAccountStatus.CLOSED);
+				return Collections.emptyList();
+			});
 			io.displayText(CLOSE_ACCOUNT_MESSAGE);
 			
-			TransactionRecord tr = new TransactionRecord();
 			tr.setType(TransactionType.ACCOUNT_CLOSED);
 			//tr.setActingUser(currentUser.getId());
 			tr.setDestinationAccount(ba.getId());
-			tr.setMoneyAmount(funds);
 			saveTransactionRecord(tr);
 		}
 		catch(BankDAOException e) {
@@ -659,44 +718,40 @@ public class BankSystem {
 		int accID = Integer.parseInt(params.get(0));
 		int userToAddID = Integer.parseInt(params.get(1));
 		
-		if (currentUser.getType() == UserProfileType.CUSTOMER && !currentUser.getOwnedAccounts().contains(accID)) {
+		if (currentUser.getType() == UserProfileType.CUSTOMER && !currentUser.ownsAccount(accID)) {
 			throw new ImpossibleActionException(ADD_OWNER_CUSTOMER_NOT_OWN_ACCOUNT_MESSAGE);
 		}
 		// assume its not a NONE account
 		
 		try {
-			BankAccount ba = dao.readBankAccount(accID);
-			
-			if (ba.getType() == BankAccountType.NONE) {
-				throw new ImpossibleActionException(ACCOUNT_DOES_NOT_EXIST_PREFIX + accID);
-			}
-			if (ba.getStatus() != BankAccountStatus.OPEN) {
-				throw new ImpossibleActionException(ADD_OWNER_ACCOUNT_NOT_OPEN_MESSAGE);
-			}
-			
-			UserProfile up = dao.readUserProfile(userToAddID);
-			
-			if (up.getType() == UserProfileType.NONE) {
-				throw new ImpossibleActionException(USER_ID_NOT_FOUND_PREFIX + accID);
-			}
-			
-			if (up.getType() != UserProfileType.CUSTOMER) {
-				throw new ImpossibleActionException(ADD_OWNER_NEW_USER_NOT_CUSTOMER_MESSAGE);
-			}
-			
-			if (up.getOwnedAccounts().contains(accID)) {
-				throw new ImpossibleActionException(ADD_OWNER_ALREADY_OWNED_MESSAGE);
-			}
-			
-			// should finally be valid
-			ba.setType(BankAccountType.JOINT);
-			ba.addOwner(userToAddID);
-			up.addAccount(accID);
-			
-			List<BankData> toWrite = new ArrayList<>();
-			toWrite.add(up);
-			toWrite.add(ba);
-			dao.write(toWrite);
+			transferEngine.updateAccount(accID, ba -> {
+				if (ba.getType() == BankAccountType.NONE) {
+					throw new ImpossibleActionException(ACCOUNT_DOES_NOT_EXIST_PREFIX + accID);
+				}
+				if (ba.getStatus() != BankAccountStatus.OPEN) {
+					throw new ImpossibleActionException(ADD_OWNER_ACCOUNT_NOT_OPEN_MESSAGE);
+				}
+				
+				UserProfile up = dao.readUserProfile(userToAddID);
+				
+				if (up.getType() == UserProfileType.NONE) {
+					throw new ImpossibleActionException(USER_ID_NOT_FOUND_PREFIX + accID);
+				}
+				
+				if (up.getType() != UserProfileType.CUSTOMER) {
+					throw new ImpossibleActionException(ADD_OWNER_NEW_USER_NOT_CUSTOMER_MESSAGE);
+				}
+				
+				if (up.ownsAccount(accID)) {
+					throw new ImpossibleActionException(ADD_OWNER_ALREADY_OWNED_MESSAGE);
+				}
+				
+				// should finally be valid
+				ba.setType(BankAccountType.JOINT);
+				ba.addOwner(userToAddID);
+				up.addAccount(accID);
+				return Collections.<BankData>singletonList(up);
+			});
 			
 			io.displayText(ADD_OWNER_TO_ACCOUNT_MESSAGE);
 			
@@ -727,46 +782,46 @@ public class BankSystem {
 		int accID = Integer.parseInt(params.get(0));
 		int userToRemoveID = Integer.parseInt(params.get(1));
 		
-		if (currentUser.getType() == UserProfileType.CUSTOMER && !currentUser.getOwnedAccounts().contains(accID)) {
+		if (currentUser.getType() == UserProfileType.CUSTOMER && !currentUser.ownsAccount(accID)) {
 			throw new ImpossibleActionException(REMOVE_OWNER_CUSTOMER_NOT_OWN_ACCOUNT_MESSAGE);
 		}
 		// assume its not a NONE account
 		try {
-			UserProfile userToRemove = dao.readUserProfile(userToRemoveID);
-			BankAccount ba = dao.readBankAccount(accID);
-			
-			if (userToRemove.getType() == UserProfileType.NONE) {
-				throw new ImpossibleActionException(USER_ID_NOT_FOUND_PREFIX + userToRemoveID);
-			}
-			
-			if (ba.getType() == BankAccountType.NONE) {
-				throw new ImpossibleActionException(BANK_ACCOUNT_DOES_NOT_EXIST_PREFIX + accID);
-			}
-			if (ba.getStatus() != BankAccountStatus.OPEN) {
-				throw new ImpossibleActionException(REMOVE_OWNER_ACCOUNT_NOT_OPEN_MESSAGE);
-			}
-			
-			if (!userToRemove.getOwnedAccounts().contains(accID)) {
-				throw new ImpossibleActionException(REMOVE_OWNER_TARGET_NOT_OWNER);
-			}
-			
-			
-			if (ba.getOwners().size() == 1 && ba.getStatus() == BankAccountStatus.OPEN) {
-				throw new ImpossibleActionException(REMOVE_OWNER_OPEN_ONLY_ONE_OWNER);
-			}
-			if (currentUser.getType() == UserProfileType.CUSTOMER 
-					&& currentUser.getId() != userToRemoveID) {
-				throw new ImpossibleActionException(REMOVE_OWNER_CUSTOMER_CAN_ONLY_REMOVE_THEMSELF_MESSAGE);
-			}
-			
-			// now we can actually do it
-			userToRemove.removeAccount(accID);
-			dao.write(userToRemove);
-			ba.removeOwner(userToRemoveID);
-			if (ba.getOwners().size() == 1) {
-				ba.setType(BankAccountType.SINGLE);
-			}
-			dao.write(ba);
+			transferEngine.updateAccount(accID, ba -> {
+				UserProfile userToRemove = dao.readUserProfile(userToRemoveID);
+				
+				if (userToRemove.getType() == UserProfileType.NONE) {
+					throw new ImpossibleActionException(USER_ID_NOT_FOUND_PREFIX + userToRemoveID);
+				}
+				
+				if (ba.getType() == BankAccountType.NONE) {
+					throw new ImpossibleActionException(BANK_ACCOUNT_DOES_NOT_EXIST_PREFIX + accID);
+				}
+				if (ba.getStatus() != BankAccountStatus.OPEN) {
+					throw new ImpossibleActionException(REMOVE_OWNER_ACCOUNT_NOT_OPEN_MESSAGE);
+				}
+				
+				if (!userToRemove.ownsAccount(accID)) {
+					throw new ImpossibleActionException(REMOVE_OWNER_TARGET_NOT_OWNER);
+				}
+				
+				
+				if (ba.getOwners().size() == 1 && ba.getStatus() == BankAccountStatus.OPEN) {
+					throw new ImpossibleActionException(REMOVE_OWNER_OPEN_ONLY_ONE_OWNER);
+				}
+				if (currentUser.getType() == UserProfileType.CUSTOMER 
+						&& currentUser.getId() != userToRemoveID) {
+					throw new ImpossibleActionException(REMOVE_OWNER_CUSTOMER_CAN_ONLY_REMOVE_THEMSELF_MESSAGE);
+				}
+				
+				// now we can actually do it
+				userToRemove.removeAccount(accID);
+				ba.removeOwner(userToRemoveID);
+				if (ba.getOwners().size() == 1) {
+					ba.setType(BankAccountType.SINGLE);
+				}
+				return Collections.<BankData>singletonList(userToRemove);
+			});
 			
 			io.displayText(REMOVE_OWNER_SUCCESSFUL_MESSAGE);
 			
@@ -805,18 +860,16 @@ public class BankSystem {
 			}
 
 			if (currentUser.getType() == UserProfileType.CUSTOMER 
-					&& !currentUser.getOwnedAccounts().contains(accID)) {
+					&& !currentUser.ownsAccount(accID)) {
 				throw new ImpossibleActionException(DEPOSIT_ACCOUNT_NOT_OWNED_MESSAGE);
 			}
 			
-			if (ba.getStatus() != BankAccountStatus.OPEN) {
-				throw new ImpossibleActionException(DEPOSIT_ACCOUNT_NOT_OPEN_MESSAGE);
+			// the open check happens in the engine, while the account is locked
+			TransferResult result = transferEngine.deposit(accID, moneyAmount);
+			if (result != TransferResult.SUCCESS) {
+				throw new ImpossibleActionException(transferFailureMessage(result, accID, -1));
 			}
 			
-			// can go ahead now
-			ba.setFunds(ba.getFunds() + moneyAmount);
-			dao.write(ba);
-			
 			io.displayText(DEPOSIT_SUCCESSFUL_MESSAGE);
 			
 			TransactionRecord tr = new TransactionRecord();
@@ -853,22 +906,16 @@ public class BankSystem {
 			}
 
 			if (currentUser.getType() == UserProfileType.CUSTOMER 
-					&& !currentUser.getOwnedAccounts().contains(accID)) {
+					&& !currentUser.ownsAccount(accID)) {
 				throw new ImpossibleActionException(DEPOSIT_ACCOUNT_NOT_OWNED_MESSAGE);
 			}
 			
-			if (ba.getStatus() != BankAccountStatus.OPEN) {
-				throw new ImpossibleActionException(DEPOSIT_ACCOUNT_NOT_OPEN_MESSAGE);
-			}
-			
-			if (ba.getFunds() < moneyAmount) {
-				throw new ImpossibleActionException(WITHDRAW_OVERDRAFT_BLOCK_MESSAGE);
+			// the open and funds checks happen in the engine, while the account is locked
+			TransferResult result = transferEngine.withdraw(accID, moneyAmount);
+			if (result != TransferResult.SUCCESS) {
+				throw new ImpossibleActionException(transferFailureMessage(result, accID, -1));
 			}
 			
-			// can go ahead now
-			ba.setFunds(ba.getFunds() - moneyAmount);
-			dao.write(ba);
-			
 			io.displayText(WITHDRAW_SUCCESSFUL_MESSAGE);
 			
 			TransactionRecord tr = new TransactionRecord();
@@ -898,59 +945,43 @@ public class BankSystem {
 		int moneyAmount = Integer.parseInt(params.get(2)); // how much?
 		
 		try {
-			BankAccount source = dao.readBankAccount(sourceAccID);
-			BankAccount dest = dao.readBankAccount(destAccID);
-			
-			// check the permissions
-			
-			if (source.getType() == BankAccountType.NONE) {
-				throw new ImpossibleActionException(
-						ACCOUNT_DOES_NOT_EXIST_PREFIX + sourceAccID);
-			}
-			if (dest.getType() == BankAccountType.NONE) {
-				throw new ImpossibleActionException(
-						ACCOUNT_DOES_NOT_EXIST_PREFIX + destAccID);
-			}
-			
 			// assume no NONE user
 			if (currentUser.getType() == UserProfileType.CUSTOMER 
-					&& !currentUser.getOwnedAccounts().contains(sourceAccID)) {
+					&& !currentUser.ownsAccount(sourceAccID)) {
+				// only read the accounts to say which problem comes first; otherwise
+				// the engine checks they exist while it has them locked
+				if (dao.readBankAccount(sourceAccID).getType() == BankAccountType.NONE) {
+					throw new ImpossibleActionException(
+							ACCOUNT_DOES_NOT_EXIST_PREFIX + sourceAccID);
+				}
+				if (dao.readBankAccount(destAccID).getType() == BankAccountType.NONE) {
+					throw new ImpossibleActionException(
+							ACCOUNT_DOES_NOT_EXIST_PREFIX + destAccID);
+				}
 				throw new ImpossibleActionException(
 						TRANSFER_SOURCE_ACCOUNT_NOT_OWNED_MESSAGE);
 			}
 			
+			TransactionRecord tr = new TransactionRecord();
+			tr.setType(TransactionType.FUNDS_TRANSFERRED);
+			tr.setSourceAccount(sourceAccID);
+			tr.setDestinationAccount(destAccID);
+			tr.setMoneyAmount(moneyAmount);
+			stampTransactionRecord(tr);
 			
-			if (source.getStatus() != BankAccountStatus.OPEN) {
+			// the existence, open and funds checks happen in the engine, while both accounts are
+			// locked; a database DAO saves the record in the same transaction
+			TransferResult result = transferEngine.transfer(tr);
+			if (result != TransferResult.SUCCESS) {
 				throw new ImpossibleActionException(
-						ACCOUNT_NOT_OPEN_PREFIX + sourceAccID);
+						transferFailureMessage(result, sourceAccID, destAccID));
 			}
-			if (dest.getStatus() != BankAccountStatus.OPEN) {
-				throw new ImpossibleActionException(
-						ACCOUNT_NOT_OPEN_PREFIX + destAccID);
-			}
-			
-			// check the funds
-			if (source.getFunds() < moneyAmount) {
-				throw new ImpossibleActionException(TRANSFER_OVERDRAFT_BLOCK_MESSAGE);
-			}
-			
-			// should finally be good
-			source.setFunds(source.getFunds() - moneyAmount);
-			dest.setFunds(dest.getFunds() + moneyAmount);
-			
-			List<BankData> toWrite = new ArrayList<>();
-			toWrite.add(source);
-			toWrite.add(dest);
-			dao.write(toWrite);
 			
 			io.displayText(TRANSFER_SUCCESSFUL_MESSAGE);
 			
-			TransactionRecord tr = new TransactionRecord();
-			tr.setType(TransactionType.FUNDS_TRANSFERRED);
-			tr.setSourceAccount(sourceAccID);
-			tr.setDestinationAccount(destAccID);
-			tr.setMoneyAmount(moneyAmount);
-			saveTransactionRecord(tr);
+			if (!transferEngine.savesRecordsWithTransfers()) {
+				submitTransactionRecord(tr);
+			}
 		}
 		catch(BankDAOException e) {
 			throw new ImpossibleActionException(GENERIC_DAO_ERROR_MESSAGE);
@@ -1003,7 +1034,7 @@ public class BankSystem {
 			
 			for (int accID : lookupIDs) {
 				if (currentUser.getType() == UserProfileType.CUSTOMER
-						&& !currentUser.getOwnedAccounts().contains(accID)) {
+						&& !currentUser.ownsAccount(accID)) {
 					unpermittedAccounts = unpermittedAccounts + " " + accID;
 					continue;
 				}
@@ -1099,10 +1130,13 @@ public class BankSystem {
 		
 		//System.out.println("DEBUG: handleViewTransactions called");
 		try {
+			recordWriter.flush(); // so the user's latest transactions are there to see
+			
 			// figure out how the TRRs are grouped
 			List<String> params = currentRequest.getParams();
 			String tag = params.get(0);
-			List<TransactionRecord> transactions = new ArrayList<>(); // may be replaced
+			List<TransactionRecord> transactions = new ArrayList<>(); // looked up by ID
+			TransactionRecordPager pager = null; // or read a page at a time
 			String nonpermittedIDs = "";
 			String invalidIDs = "";
 			//List<TransactionRecord> toDisplay = new ArrayList<>();
@@ -1131,19 +1165,19 @@ public class BankSystem {
 							VIEW_TRANSACTIONS_CUSTOMER_CAN_ONLY_VIEW_SELF_MESSAGE);
 				}
 				
-				transactions = dao.readTransactionRecordByActingUserId(userID);
+				pager = TransactionRecordPager.byActingUser(dao, userID);
 			}
 			else if (tag.equals(ACCOUNT_TAG)) {
 				//System.out.println("DEBUG: View TRR reached ACCOUNT_TAG block");
 				int accID = Integer.parseInt(params.get(1));
 				if (currentUser.getType() == UserProfileType.CUSTOMER 
-						&& !currentUser.getOwnedAccounts().contains(accID)) {
+						&& !currentUser.ownsAccount(accID)) {
 					//System.out.println("DEBUG: View TRR reached ACCOUNT_TAG block and threw");
 					throw new ImpossibleActionException(
 							VIEW_TRANSACTIONS_CUSTOMER_CAN_ONLY_VIEW_SELF_MESSAGE);
 				}
 
-				transactions = dao.readTransactionRecordByAccountId(accID);
+				pager = TransactionRecordPager.byAccount(dao, accID);
 				//System.out.println("DEBUG: transactions list is " + transactions);
 			}
 			
@@ -1151,6 +1185,12 @@ public class BankSystem {
 			if (!transactions.isEmpty()) {
 				io.displayTransactionRecords(transactions);
 			}
+			while (pager != null && pager.hasNextPage()) { // a long history is shown page by page
+				List<TransactionRecord> page = pager.nextPage();
+				if (!page.isEmpty()) {
+					io.displayTransactionRecords(page);
+				}
+			}
 			if (!invalidIDs.equals("")) {
 				io.displayText(VIEW_TRANSACTIONS_INVALID_IDS_PREFIX + invalidIDs);
 			}
@@ -1181,7 +1221,7 @@ public class BankSystem {
 			}
 			
 			String password = params.get(1); 
-			int empID = dao.getHighestUserProfileID() + 1;
+			int empID = idAllocator.nextUserProfileID();
 			UserProfile employee = new UserProfile(empID);
 			employee.setUsername(username);
 			employee.setPassword(password);
@@ -1194,6 +1234,9 @@ public class BankSystem {
 			tr.setDestinationAccount(empID);
 			saveTransactionRecord(tr);
 		}
+		catch (UsernameTakenException e) {
+			throw new ImpossibleActionException(USERNAME_IN_USE_MESSAGE);
+		}
 		catch (BankDAOException e) {
 			throw new ImpossibleActionException(GENERIC_DAO_ERROR_MESSAGE);
 		}
@@ -1216,7 +1259,7 @@ public class BankSystem {
 			}
 			
 			String password = params.get(1); 
-			int adminID = dao.getHighestUserProfileID() + 1;
+			int adminID = idAllocator.nextUserProfileID();
 			UserProfile adm = new UserProfile(adminID);
 			adm.setUsername(username);
 			adm.setPassword(password);
@@ -1229,6 +1272,9 @@ public class BankSystem {
 			tr.setDestinationAccount(adminID);
 			saveTransactionRecord(tr);
 		}
+		catch (UsernameTakenException e) {
+			throw new ImpossibleActionException(USERNAME_IN_USE_MESSAGE);
+		}
 		catch (BankDAOException e) {
 			throw new ImpossibleActionException(GENERIC_DAO_ERROR_MESSAGE);
 		}
@@ -1236,6 +1282,34 @@ public class BankSystem {
 
 	// util methods
 
+	/**
+	 * Picks the message to show when the TransferEngine refuses a change.
+	 * For deposits and withdrawals, the account ID is passed as the source.
+	 * @param result
+	 * @param sourceAccID
+	 * @param destAccID : -1 for deposits and withdrawals
+	 * @return
+	 */
+	private static String transferFailureMessage(TransferResult result, int sourceAccID, int destAccID) {
+		
+		boolean isTransfer = destAccID != -1;
+		
+		switch (result) {
+			case SOURCE_NOT_FOUND:
+				return ACCOUNT_DOES_NOT_EXIST_PREFIX + sourceAccID;
+			case DESTINATION_NOT_FOUND:
+				return ACCOUNT_DOES_NOT_EXIST_PREFIX + (isTransfer ? destAccID : sourceAccID);
+			case SOURCE_NOT_OPEN:
+				return isTransfer ? ACCOUNT_NOT_OPEN_PREFIX + sourceAccID : DEPOSIT_ACCOUNT_NOT_OPEN_MESSAGE;
+			case DESTINATION_NOT_OPEN:
+				return isTransfer ? ACCOUNT_NOT_OPEN_PREFIX + destAccID : DEPOSIT_ACCOUNT_NOT_OPEN_MESSAGE;
+			case INSUFFICIENT_FUNDS:
+				return isTransfer ? TRANSFER_OVERDRAFT_BLOCK_MESSAGE : WITHDRAW_OVERDRAFT_BLOCK_MESSAGE;
+			default: // shouldn't happen, SUCCESS isn't a failure
+				return GENERIC_DAO_ERROR_MESSAGE;
+		}
+	}
+
 	/**
 	 * Creates an 'empty' UserProfile object, representing that no one is logged in.
 	 * @return
@@ -1265,7 +1339,7 @@ public class BankSystem {
 	}
 	
 	/**
-	 * Writes the given TR to the database.
+	 * Hands the given TR to the record writer, which writes it to the database.
 	 * This method will take care of finding the ID, setting the acting user,
 	 *  and creating the timestamp (eventually)
 	 * @param tr
@@ -1273,15 +1347,39 @@ public class BankSystem {
 	private void saveTransactionRecord(TransactionRecord tr){
 		
 		try {
-			tr.setId(dao.getHighestTransactionRecordID() + 1);
-			tr.setActingUser(currentUser.getId());
-			tr.setTime(java.time.LocalDateTime.now().toString());
-			
+			stampTransactionRecord(tr);
+		}
+		catch(BankDAOException e) {
+			io.displayText(TRANSACTION_RECORD_NOT_SAVED_MESSAGE);
+			return;
+		}
+		submitTransactionRecord(tr);
+	}
+	
+	/**
+	 * Gives the TR its ID, acting user and timestamp.
+	 * @param tr
+	 * @throws BankDAOException if no ID could be had
+	 */
+	private void stampTransactionRecord(TransactionRecord tr) throws BankDAOException {
+		
+		tr.setId(idAllocator.nextTransactionRecordID());
+		tr.setActingUser(currentUser.getId());
+		tr.setTime(java.time.LocalDateTime.now().toString());
+	}
+	
+	/**
+	 * Hands an already stamped TR to the record writer.
+	 * @param tr
+	 */
+	private void submitTransactionRecord(TransactionRecord tr) {
+		
+		try {
 			log.log(
 					Level.INFO, 
 					"About to save transaction: " + transactionRecordToString(tr));
 			
-			dao.write(tr);			
+			recordWriter.submit(tr); // waits for the write only if the writer is durable
 		}
 		catch(BankDAOException e) {
 			io.displayText(TRANSACTION_RECORD_NOT_SAVED_MESSAGE);
@@ -0,0 +1,262 @@
+/**
+ * Carries out changes to account balances (transfers, deposits and withdrawals) so that
+ * concurrent requests touching the same account can't lose money or overdraw it.
+ *
+ * If the DAO can do the transfer atomically itself (TransactionalBankDAO), that is used, and it
+ * can also save the transfer's transaction record in the same transaction.
+ * Otherwise each account is guarded by one of a fixed set of locks (lock striping), and the
+ * read-check-write of the balances happens while holding the locks for every account involved.
+ * Locks are always taken in stripe order, so two transfers going opposite directions between
+ * the same accounts can't deadlock.
+ *
+ * Other changes to an account (approving, closing, adding or removing owners) go through
+ * updateAccount, which does the read-change-write under the same lock a transfer uses (the
+ * DAO's row lock for a TransactionalBankDAO, otherwise the account's stripe lock), so they
+ * can't write back a balance that a transfer has changed in the meantime.
+ *
+ * One engine should be shared by everything using the same DAO, otherwise the locks don't help.
+ * The DAO must be safe to call from several threads at once.
+ *
+ * @author Andrew Curry
+ */
+package bankSystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.TransactionRecord;
+
+import dao.BankDAO;
+import dao.BankDAOException;
+import dao.TransactionalBankDAO;
+import dao.TransactionalBankDAO.TransferResult;
+
+public class TransferEngine {
+
+	// constants
+	public static final int DEFAULT_STRIPES = 64;
+
+	// inner interfaces
+
+	/**
+	 * A change to make to an account while it's locked; see updateAccount.
+	 */
+	public interface AccountUpdate extends TransactionalBankDAO.AccountChange<ImpossibleActionException> {
+
+		/**
+		 * @param ba : the account as it is now, to be changed in place
+		 * @return anything else to write along with the account (may be empty)
+		 * @throws ImpossibleActionException to leave the account as it was
+		 * @throws BankDAOException
+		 */
+		@Override
+		public List<BankData> apply(BankAccount ba) throws ImpossibleActionException, BankDAOException;
+	}
+
+	// instance variables
+	private final BankDAO dao;
+	private final ReentrantLock[] stripes;
+
+	// constructor(s)
+
+	public TransferEngine(BankDAO dao) {
+		this(dao, DEFAULT_STRIPES);
+	}
+
+	/**
+	 * @param dao
+	 * @param stripeCount : how many locks to spread the accounts over
+	 */
+	public TransferEngine(BankDAO dao, int stripeCount) {
+
+		this.dao = dao;
+		stripes = new ReentrantLock[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+	}
+
+	// operation methods
+
+	/**
+	 * Moves money from one account to another. Either both balances change or neither does.
+	 * @param sourceAccID
+	 * @param destAccID
+	 * @param moneyAmount : should be positive
+	 * @return SUCCESS, or the reason nothing was changed
+	 * @throws BankDAOException
+	 */
+	public TransferResult transfer(int sourceAccID, int destAccID, int moneyAmount)
+			throws BankDAOException {
+
+		if (dao instanceof TransactionalBankDAO) {
+			return ((TransactionalBankDAO)dao).transferFunds(sourceAccID, destAccID, moneyAmount);
+		}
+
+		int first = stripeOf(sourceAccID);
+		int second = stripeOf(destAccID);
+		if (first > second) {
+			int temp = first;
+			first = second;
+			second = temp;
+		}
+
+		stripes[first].lock();
+		try {
+			if (second != first) {
+				stripes[second].lock();
+			}
+			try {
+				return transferLocked(sourceAccID, destAccID, moneyAmount);
+			}
+			finally {
+				if (second != first) {
+					stripes[second].unlock();
+				}
+			}
+		}
+		finally {
+			stripes[first].unlock();
+		}
+	}
+
+	/**
+	 * Moves the money the record describes. If savesRecordsWithTransfers is true, the record is
+	 * saved along with the balances (only if the transfer happens); otherwise the caller still
+	 * has to save it.
+	 * @param record : with its ID, time and acting user already set
+	 * @return SUCCESS, or the reason nothing was changed
+	 * @throws BankDAOException
+	 */
+	public TransferResult transfer(TransactionRecord record) throws BankDAOException {
+
+		if (dao instanceof TransactionalBankDAO) {
+			return ((TransactionalBankDAO)dao).transferFunds(record);
+		}
+		return transfer(record.getSourceAccount(), record.getDestinationAccount(), record.getMoneyAmount());
+	}
+
+	/**
+	 * @return true if transfer(TransactionRecord) saves the record itself
+	 */
+	public boolean savesRecordsWithTransfers() {
+		return dao instanceof TransactionalBankDAO;
+	}
+
+	/**
+	 * Adds money to an account, which must be open.
+	 * @param accID
+	 * @param moneyAmount
+	 * @return SUCCESS, DESTINATION_NOT_FOUND or DESTINATION_NOT_OPEN
+	 * @throws BankDAOException
+	 */
+	public TransferResult deposit(int accID, int moneyAmount) throws BankDAOException {
+		return transfer(TransactionalBankDAO.NO_ACCOUNT, accID, moneyAmount);
+	}
+
+	/**
+	 * Takes money out of an account, which must be open and have enough in it.
+	 * @param accID
+	 * @param moneyAmount
+	 * @return SUCCESS, SOURCE_NOT_FOUND, SOURCE_NOT_OPEN or INSUFFICIENT_FUNDS
+	 * @throws BankDAOException
+	 */
+	public TransferResult withdraw(int accID, int moneyAmount) throws BankDAOException {
+		return transfer(accID, TransactionalBankDAO.NO_ACCOUNT, moneyAmount);
+	}
+
+	/**
+	 * Reads the account, lets the update change it, and writes it back (with anything else the
+	 * update returns, written first), all while holding the account's lock, so no transfer can
+	 * change the balance in between. A TransactionalBankDAO does this in one of its own
+	 * transactions.
+	 * @param accID
+	 * @param update
+	 * @return the account as it was written
+	 * @throws ImpossibleActionException from the update, in which case nothing is written
+	 * @throws BankDAOException
+	 */
+	public BankAccount updateAccount(int accID, AccountUpdate update)
+			throws ImpossibleActionException, BankDAOException {
+
+		if (dao instanceof TransactionalBankDAO) {
+			return ((TransactionalBankDAO)dao).updateAccount(accID, update);
+		}
+
+		ReentrantLock lock = stripes[stripeOf(accID)];
+		lock.lock();
+		try {
+			BankAccount ba = dao.readBankAccount(accID);
+			List<BankData> toWrite = new ArrayList<>(update.apply(ba));
+			toWrite.add(ba);
+			dao.write(toWrite);
+			return ba;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	// helper methods
+
+	/**
+	 * Does the actual read-check-write. Caller must hold the locks for both accounts.
+	 */
+	private TransferResult transferLocked(int sourceAccID, int destAccID, int moneyAmount)
+			throws BankDAOException {
+
+		boolean hasSource = sourceAccID != TransactionalBankDAO.NO_ACCOUNT;
+		boolean hasDest = destAccID != TransactionalBankDAO.NO_ACCOUNT;
+
+		BankAccount source = hasSource ? dao.readBankAccount(sourceAccID) : null;
+		BankAccount dest = hasDest ? dao.readBankAccount(destAccID) : null;
+
+		if (hasSource && source.getType() == BankAccountType.NONE) {
+			return TransferResult.SOURCE_NOT_FOUND;
+		}
+		if (hasDest && dest.getType() == BankAccountType.NONE) {
+			return TransferResult.DESTINATION_NOT_FOUND;
+		}
+		if (hasSource && source.getStatus() != BankAccountStatus.OPEN) {
+			return TransferResult.SOURCE_NOT_OPEN;
+		}
+		if (hasDest && dest.getStatus() != BankAccountStatus.OPEN) {
+			return TransferResult.DESTINATION_NOT_OPEN;
+		}
+		if (hasSource && source.getFunds() < moneyAmount) {
+			return TransferResult.INSUFFICIENT_FUNDS;
+		}
+
+		List<BankData> toWrite = new ArrayList<>();
+		if (hasSource && hasDest && sourceAccID == destAccID) {
+			return TransferResult.SUCCESS; // moving money to the same account changes nothing
+		}
+		if (hasSource) {
+			source.setFunds(source.getFunds() - moneyAmount);
+			toWrite.add(source);
+		}
+		if (hasDest) {
+			dest.setFunds(dest.getFunds() + moneyAmount);
+			toWrite.add(dest);
+		}
+		dao.write(toWrite);
+
+		return TransferResult.SUCCESS;
+	}
+
+	/**
+	 * Spreads the account IDs over the stripes. Mixes the bits a little first so
+	 * that sequential IDs don't all line up on neighbouring stripes.
+	 */
+	private int stripeOf(int accID) {
+
+		int h = accID * 0x9E3779B9;
+		h ^= (h >>> 16);
+		return (h & 0x7FFFFFFF) % stripes.length;
+	}
+}
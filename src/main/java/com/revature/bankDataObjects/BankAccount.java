@@ -6,7 +6,6 @@
  */
 package com.revature.bankDataObjects;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class BankAccount extends BankData {
@@ -22,16 +21,23 @@ public class BankAccount extends BankData {
 	
 	// instance variables
 	// id in super
-	List<Integer> owners; // could be a single or joint account
+	IntSet owners; // could be a single or joint account
 	private BankAccountStatus status;
 	private BankAccountType type;
 	private int funds; // could be a special Money class or something
 	
+	// what the data store held when this was last read or written, so a DAO can write only
+	// what changed; cleanOwners is null until markClean is called
+	private IntSet cleanOwners;
+	private BankAccountStatus cleanStatus;
+	private BankAccountType cleanType;
+	private int cleanFunds;
+	
 	
 	// constructor(s)
 	public BankAccount() {
 		super();
-		owners = new ArrayList<Integer>();
+		owners = new IntSet();
 		funds = 0;
 		type = BankAccountType.NONE;
 	}
@@ -39,11 +45,28 @@ public class BankAccount extends BankData {
 	public BankAccount(int id) {
 		super();
 		super.setId(id);
-		owners = new ArrayList<Integer>();
+		owners = new IntSet();
 		funds = 0;
 		type = BankAccountType.NONE;
 	}
 	
+	/**
+	 * Copies everything, including what markClean last recorded.
+	 * @param from
+	 */
+	public BankAccount(BankAccount from) {
+		super();
+		super.setId(from.getId());
+		owners = new IntSet(from.owners);
+		status = from.status;
+		type = from.type;
+		funds = from.funds;
+		cleanOwners = from.cleanOwners; // never changed, so it can be shared
+		cleanStatus = from.cleanStatus;
+		cleanType = from.cleanType;
+		cleanFunds = from.cleanFunds;
+	}
+	
 	// util methods
 
 	@Override
@@ -51,18 +74,83 @@ public class BankAccount extends BankData {
 		return "ACCOUNT " + super.getId(); 
 	}
 	
+	// change tracking
+	
+	/**
+	 * Records the account as it is now as what the data store holds.
+	 * DAOs call this after reading or writing it.
+	 */
+	public void markClean() {
+		cleanOwners = new IntSet(owners);
+		cleanStatus = status;
+		cleanType = type;
+		cleanFunds = funds;
+	}
+	
+	/**
+	 * @return true if markClean has been called; otherwise every field counts as changed
+	 */
+	public boolean isTracked() {
+		return cleanOwners != null;
+	}
+	
+	public boolean isStatusDirty() {
+		return !isTracked() || status != cleanStatus;
+	}
+	
+	public boolean isTypeDirty() {
+		return !isTracked() || type != cleanType;
+	}
+	
+	public boolean isFundsDirty() {
+		return !isTracked() || funds != cleanFunds;
+	}
+	
+	/**
+	 * @return the owners added since markClean (all of them if it hasn't been called)
+	 */
+	public IntSet getAddedOwners() {
+		return isTracked() ? owners.without(cleanOwners) : new IntSet(owners);
+	}
+	
+	/**
+	 * @return the owners removed since markClean (none if it hasn't been called)
+	 */
+	public IntSet getRemovedOwners() {
+		return isTracked() ? cleanOwners.without(owners) : new IntSet();
+	}
+	
 	// getters and setters
 	
 	
 	// technically I'm not sure if the List should have getters/setters or just
 	// add/remove methods, for now I'll keep both in.
+	// The List is a view of the IntSet, kept for older code; changes to it go through.
 	public List<Integer> getOwners() {
-		return owners;
+		return owners.asList();
 	}
 
 	
+	/**
+	 * Copies the given IDs; later changes to the list don't affect the account.
+	 * @param owners
+	 */
 	public void setOwners(List<Integer> owners) {
-		this.owners = owners;
+		this.owners = new IntSet(owners);
+	}
+	
+	
+	public IntSet getOwnerSet() {
+		return owners;
+	}
+	
+	
+	/**
+	 * @param ownerID
+	 * @return true if the user is one of the owners; no boxing, constant time
+	 */
+	public boolean hasOwner(int ownerID) {
+		return owners.contains(ownerID);
 	}
 	
 	
@@ -71,14 +159,12 @@ public class BankAccount extends BankData {
 	 * @param ownerID
 	 */
 	public void addOwner(int ownerID) {
-		if (!owners.contains(ownerID)) {
-			owners.add(ownerID);
-		}
+		owners.add(ownerID);
 	}
 	
 	
 	public void removeOwner(int ownerID) {
-		owners.remove(owners.indexOf(ownerID));
+		owners.remove(ownerID); // does nothing if it isn't there
 	}
 
 	
@@ -0,0 +1,334 @@
+/**
+ * A set of ints that remembers the order they were added in, used for the ID lists in
+ * BankAccount (owners) and UserProfile (owned accounts).
+ *
+ * The values are kept unboxed in an array. Small sets (almost all of them, an account
+ * rarely has more than a couple of owners) are searched directly; once a set gets bigger
+ * than SCAN_LIMIT a hash table of positions is built alongside the array, so contains
+ * stays constant time for customers with lots of accounts.
+ *
+ * asList gives a List<Integer> view for code that still wants one; changes through the
+ * view go to the set, and adding a value that's already there does nothing.
+ *
+ * Andrew Curry
+ */
+package com.revature.bankDataObjects;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+public class IntSet {
+
+	// constants
+	private static final int SCAN_LIMIT = 8; // at or below this many, no hash table
+	private static final int[] EMPTY = new int[0];
+
+	// instance variables
+	private int[] values; // in the order they were added
+	private int size;
+	private int[] table; // position + 1 of each value, 0 = empty slot; null while small
+	private List<Integer> view; // made on first use
+
+	// constructor(s)
+	public IntSet() {
+		values = EMPTY;
+	}
+
+	/**
+	 * Copies the given values, dropping repeats.
+	 * @param from
+	 */
+	public IntSet(Collection<Integer> from) {
+		values = new int[from.size()];
+		for (int v : from) {
+			add(v);
+		}
+	}
+
+	public IntSet(IntSet from) {
+		values = Arrays.copyOf(from.values, from.size);
+		size = from.size;
+		table = (from.table == null) ? null : from.table.clone();
+	}
+
+	// operation methods
+
+	public boolean contains(int value) {
+		return indexOf(value) >= 0;
+	}
+
+	/**
+	 * @param value
+	 * @return the position of the value in adding order, or -1 if it isn't there
+	 */
+	public int indexOf(int value) {
+
+		if (table == null) {
+			for (int i = 0; i < size; i++) {
+				if (values[i] == value) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		int mask = table.length - 1;
+		for (int slot = hash(value) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			if (values[table[slot] - 1] == value) {
+				return table[slot] - 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds the value at the end, unless it's already there.
+	 * @param value
+	 * @return true if it was added
+	 */
+	public boolean add(int value) {
+		return insert(size, value);
+	}
+
+	/**
+	 * @param value
+	 * @return true if it was there
+	 */
+	public boolean remove(int value) {
+
+		int pos = indexOf(value);
+		if (pos < 0) {
+			return false;
+		}
+		removeAt(pos);
+		return true;
+	}
+
+	public int get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return values[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+		table = null;
+	}
+
+	/**
+	 * @param other
+	 * @return a new set of the values in this one that aren't in the other, in adding order
+	 */
+	public IntSet without(IntSet other) {
+
+		IntSet result = new IntSet();
+		for (int i = 0; i < size; i++) {
+			if (!other.contains(values[i])) {
+				result.add(values[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return a copy of the values, in adding order
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * @return a live List view of the set
+	 */
+	public List<Integer> asList() {
+		if (view == null) {
+			view = new ListView();
+		}
+		return view;
+	}
+
+	// util methods
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof IntSet)) {
+			return false;
+		}
+		IntSet other = (IntSet)o;
+		if (other.size != size) {
+			return false;
+		}
+		for (int i = 0; i < size; i++) {
+			if (values[i] != other.values[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return asList().hashCode(); // same as an equal List<Integer>
+	}
+
+	@Override
+	public String toString() {
+		return asList().toString();
+	}
+
+	// helper methods
+
+	/**
+	 * Puts the value at the given position, moving later ones along, unless it's already there.
+	 */
+	private boolean insert(int index, int value) {
+
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		if (contains(value)) {
+			return false;
+		}
+
+		if (size == values.length) {
+			values = Arrays.copyOf(values, Math.max(4, size * 2));
+		}
+		System.arraycopy(values, index, values, index + 1, size - index);
+		values[index] = value;
+		size++;
+
+		if (index != size - 1) {
+			rebuildTable(); // positions after it moved
+		}
+		else if (table != null && size * 2 <= table.length) {
+			tableInsert(value, index);
+		}
+		else if (size > SCAN_LIMIT) {
+			rebuildTable();
+		}
+		return true;
+	}
+
+	private int removeAt(int index) {
+
+		int removed = get(index);
+		System.arraycopy(values, index + 1, values, index, size - index - 1);
+		size--;
+		rebuildTable(); // rare enough that a rebuild is fine
+		return removed;
+	}
+
+	private int replaceAt(int index, int value) {
+
+		int old = get(index);
+		if (old == value) {
+			return old;
+		}
+		if (contains(value)) {
+			throw new IllegalArgumentException(value + " is already in the set");
+		}
+		values[index] = value;
+		rebuildTable();
+		return old;
+	}
+
+	private void rebuildTable() {
+
+		if (size <= SCAN_LIMIT) {
+			table = null;
+			return;
+		}
+		int capacity = Integer.highestOneBit(size * 4 - 1); // between 2x and 4x size
+		table = new int[capacity];
+		for (int i = 0; i < size; i++) {
+			tableInsert(values[i], i);
+		}
+	}
+
+	private void tableInsert(int value, int pos) {
+		int mask = table.length - 1;
+		int slot = hash(value) & mask;
+		while (table[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = pos + 1;
+	}
+
+	private static int hash(int value) {
+		int h = value * 0x9E3779B9; // IDs are often consecutive, so spread them out
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * The List<Integer> view returned by asList.
+	 */
+	private class ListView extends AbstractList<Integer> implements RandomAccess {
+
+		@Override
+		public Integer get(int index) {
+			return IntSet.this.get(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return (o instanceof Integer) && IntSet.this.contains((Integer)o);
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			return (o instanceof Integer) ? IntSet.this.indexOf((Integer)o) : -1;
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			return indexOf(o); // no repeats
+		}
+
+		@Override
+		public boolean add(Integer value) {
+			return IntSet.this.add(value);
+		}
+
+		@Override
+		public void add(int index, Integer value) {
+			insert(index, value);
+		}
+
+		@Override
+		public Integer set(int index, Integer value) {
+			return replaceAt(index, value);
+		}
+
+		@Override
+		public Integer remove(int index) {
+			return removeAt(index);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			return (o instanceof Integer) && IntSet.this.remove((Integer)o);
+		}
+
+		@Override
+		public void clear() {
+			IntSet.this.clear();
+		}
+	}
+}
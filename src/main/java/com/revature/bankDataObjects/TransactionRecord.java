@@ -50,6 +50,18 @@ public class TransactionRecord extends BankData {
 	}
 	
 	
+	public TransactionRecord(TransactionRecord from) {
+		super();
+		super.setId(from.getId());
+		time = from.time;
+		type = from.type;
+		actingUser = from.actingUser;
+		sourceAccount = from.sourceAccount;
+		destinationAccount = from.destinationAccount;
+		moneyAmount = from.moneyAmount;
+	}
+	
+	
 	// util methods
 	
 	
@@ -6,7 +6,6 @@
  */
 package com.revature.bankDataObjects;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class UserProfile extends BankData {
@@ -22,22 +21,41 @@ public class UserProfile extends BankData {
 	private String username;
 	private String password; // not encrypted
 	private UserProfileType type;
-	private List<Integer> ownedAccounts; // referenced by ID number (should this be a set?)
+	private IntSet ownedAccounts; // referenced by ID number
+	
+	// the owned accounts the data store held when this was last read or written, so a DAO can
+	// write only what changed; null until markClean is called. The rest of a profile doesn't
+	// change once it's written.
+	private IntSet cleanAccounts;
 	
 	// constructor(s)
 	public UserProfile() {
 		super(); // will this when extending an abstract class?
-		ownedAccounts = new ArrayList<Integer>();
+		ownedAccounts = new IntSet();
 		type = UserProfileType.NONE;
 	}
 	
 	public UserProfile(int id) {
 		super(); // will this when extending an abstract class?
 		super.setId(id);
-		ownedAccounts = new ArrayList<Integer>();
+		ownedAccounts = new IntSet();
 		type = UserProfileType.NONE;
 	}
 	
+	/**
+	 * Copies everything, including what markClean last recorded.
+	 * @param from
+	 */
+	public UserProfile(UserProfile from) {
+		super();
+		super.setId(from.getId());
+		username = from.username;
+		password = from.password;
+		type = from.type;
+		ownedAccounts = new IntSet(from.ownedAccounts);
+		cleanAccounts = from.cleanAccounts; // never changed, so it can be shared
+	}
+	
 	
 	// util methods
 	
@@ -48,6 +66,42 @@ public class UserProfile extends BankData {
 	}
 	
 	
+	// change tracking
+	
+	
+	/**
+	 * Records the profile as it is now as what the data store holds.
+	 * DAOs call this after reading or writing it.
+	 */
+	public void markClean() {
+		cleanAccounts = new IntSet(ownedAccounts);
+	}
+	
+	
+	/**
+	 * @return true if markClean has been called; otherwise the whole profile counts as changed
+	 */
+	public boolean isTracked() {
+		return cleanAccounts != null;
+	}
+	
+	
+	/**
+	 * @return the accounts added since markClean (all of them if it hasn't been called)
+	 */
+	public IntSet getAddedAccounts() {
+		return isTracked() ? ownedAccounts.without(cleanAccounts) : new IntSet(ownedAccounts);
+	}
+	
+	
+	/**
+	 * @return the accounts removed since markClean (none if it hasn't been called)
+	 */
+	public IntSet getRemovedAccounts() {
+		return isTracked() ? cleanAccounts.without(ownedAccounts) : new IntSet();
+	}
+	
+	
 	// getters and setters
 	
 	
@@ -83,13 +137,32 @@ public class UserProfile extends BankData {
 	
 	// technically I'm not sure if the List should have getters/setters or just
 	// add/remove methods, for now I'll keep both in.
+	// The List is a view of the IntSet, kept for older code; changes to it go through.
 	public List<Integer> getOwnedAccounts() {
-		return ownedAccounts;
+		return ownedAccounts.asList();
 	}
 	
 	
+	/**
+	 * Copies the given IDs; later changes to the list don't affect the profile.
+	 * @param ownedAccounts
+	 */
 	public void setOwnedAccounts(List<Integer> ownedAccounts) {
-		this.ownedAccounts = ownedAccounts;
+		this.ownedAccounts = new IntSet(ownedAccounts);
+	}
+	
+	
+	public IntSet getOwnedAccountSet() {
+		return ownedAccounts;
+	}
+	
+	
+	/**
+	 * @param accID
+	 * @return true if the user owns the account; no boxing, constant time
+	 */
+	public boolean ownsAccount(int accID) {
+		return ownedAccounts.contains(accID);
 	}
 	
 	
@@ -98,14 +171,12 @@ public class UserProfile extends BankData {
 	 * @param accID
 	 */
 	public void addAccount(int accID) {
-		if (!ownedAccounts.contains(accID)) {
-			ownedAccounts.add(accID);
-		}
+		ownedAccounts.add(accID);
 	}
 	
 	
 	public void removeAccount(int accID) {
-		ownedAccounts.remove(ownedAccounts.indexOf(accID));
+		ownedAccounts.remove(accID); // does nothing if it isn't there
 	}
 	
 	
@@ -15,6 +15,42 @@ import com.revature.bankDataObjects.UserProfile;
 
 public interface BankDAO {
 	
+	/**
+	 * The kinds of data that get ID numbers, used when reserving IDs.
+	 */
+	public enum IDType {
+		USER_PROFILE, BANK_ACCOUNT, TRANSACTION_RECORD
+	}
+	
+	/**
+	 * Which transaction records to page through, used with readTransactionRecordPage.
+	 */
+	public enum TransactionFilter {
+		ALL, ACTING_USER, ACCOUNT;
+		
+		/**
+		 * @param tr
+		 * @param filterID : the acting user or account ID; ignored for ALL
+		 * @return true if the record belongs in pages with this filter
+		 */
+		public boolean matches(TransactionRecord tr, int filterID) {
+			
+			switch (this) {
+				case ACTING_USER:
+					return tr.getActingUser() == filterID;
+				case ACCOUNT:
+					return tr.getSourceAccount() == filterID || tr.getDestinationAccount() == filterID;
+				default:
+					return true;
+			}
+		}
+	}
+	
+	/**
+	 * Pass as the afterID to readTransactionRecordPage to get the first page.
+	 */
+	public static final int FIRST_PAGE = Integer.MIN_VALUE;
+	
 	
 	/**
 	 * Name should be set in constructor, and not be changed
@@ -92,6 +128,21 @@ public interface BankDAO {
 	 */
 	public List<TransactionRecord> readTransactionRecordByAccountId(int accID) throws BankDAOException;
 	
+	/**
+	 * Fetches one page of TransactionRecords, in increasing ID order.
+	 * To get the next page, pass the ID of the last record on this one as afterID, so reading 
+	 * deep into a long history costs no more than reading the start of it.
+	 * Use a TransactionRecordPager rather than calling this directly.
+	 * @param filter : which records to include
+	 * @param filterID : the acting user or account ID for the filter; ignored for ALL
+	 * @param afterID : only records with a higher ID are returned; FIRST_PAGE to start
+	 * @param pageSize : most records to return
+	 * @return up to pageSize records; an empty list once there are no more
+	 * @throws BankDAOException
+	 */
+	public List<TransactionRecord> readTransactionRecordPage(TransactionFilter filter, int filterID, 
+			int afterID, int pageSize) throws BankDAOException;
+	
 	/**
 	 * Writes the given BankData object to the data storage. WILL overwrite if matching
 	 * data is already present.
@@ -128,4 +179,14 @@ public interface BankDAO {
 	 */
 	public boolean isUsernameFree(String username) throws BankDAOException;
 	
+	/**
+	 * Reserves the given number of unused ID numbers for new data of the given type.
+	 * Once reserved, an ID will not be handed out again, even if it is never used,
+	 * so IDs may have gaps. Used by the IdAllocator; the BankSystem shouldn't need this directly.
+	 * @param type
+	 * @param count
+	 * @return the reserved IDs, in increasing order
+	 */
+	public int[] reserveIDs(IDType type, int count) throws BankDAOException;
+	
 }
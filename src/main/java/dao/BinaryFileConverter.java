@@ -0,0 +1,225 @@
+/**
+ * Converts a text .bdf file into a binary .bdb file (see BinaryRecordCodec), or back again.
+ * Records keep their order, and high-water mark lines are carried across (into the binary
+ * file's header, and back out as lines after the records), so a file that goes there and
+ * back reads the same through either DAO.
+ *
+ * From the command line:
+ *   java dao.BinaryFileConverter -to-binary testfile.bdf testfile.bdb
+ *   java dao.BinaryFileConverter -to-text testfile.bdb testfile.bdf
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class BinaryFileConverter {
+
+	// constants
+	private static final String TO_BINARY_ARG = "-to-binary";
+	private static final String TO_TEXT_ARG = "-to-text";
+
+	// the text format's high-water mark lines, eg "HWM PRF 120"; see TextFileDAO
+	private static final String HIGH_WATER_MARK_PREFIX = "HWM";
+	private static final String[] TEXT_PREFIXES = {
+			null, TextRecordCodec.USER_PROFILE_PREFIX, TextRecordCodec.BANK_ACCOUNT_PREFIX,
+			TextRecordCodec.TRANSACTION_RECORD_PREFIX
+	}; // indexed by binary record kind
+
+	// class / static variables
+	private static Logger log = Logger.getLogger(BinaryFileConverter.class);
+
+	// no instances
+	private BinaryFileConverter() {
+
+	}
+
+	public static void main(String[] args) {
+
+		if (args.length != 3 || !(args[0].equals(TO_BINARY_ARG) || args[0].equals(TO_TEXT_ARG))) {
+			System.out.println("Usage: BinaryFileConverter (" + TO_BINARY_ARG + " | " + TO_TEXT_ARG
+					+ ") <from> <to>");
+			return;
+		}
+
+		try {
+			int records = args[0].equals(TO_BINARY_ARG) ? textToBinary(args[1], args[2])
+					: binaryToText(args[1], args[2]);
+			System.out.println("Converted " + records + " lines from " + args[1] + " to " + args[2]);
+		}
+		catch (BankDAOException e) {
+			System.out.println("ERROR: " + e.getMessage());
+		}
+	}
+
+	// operation methods
+
+	/**
+	 * @param textFilename : the .bdf file to read
+	 * @param binaryFilename : the .bdb file to write; replaced if it exists
+	 * @return how many lines were converted, records and high-water marks
+	 * @throws BankDAOException if either file can't be used, or a line can't be parsed
+	 */
+	public static int textToBinary(String textFilename, String binaryFilename) throws BankDAOException {
+
+		List<ByteBuffer> records = new ArrayList<>();
+		int[] marks = BinaryRecordCodec.noMarks();
+		int markLines = 0;
+		int size = BinaryRecordCodec.FILE_HEADER_SIZE;
+
+		try (BufferedReader reader = new BufferedReader(new FileReader(textFilename))){
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				ByteBuffer record;
+				try {
+					if (line.startsWith(HIGH_WATER_MARK_PREFIX + " ")) {
+						if (readMark(line, marks)) {
+							markLines++;
+							continue;
+						}
+						record = null;
+					}
+					else {
+						record = lineToRecord(line);
+					}
+				}
+				catch (RuntimeException e) { // bad number, missing tokens
+					throw new BankDAOException("Could not parse line " + lineNumber + " of " + textFilename);
+				}
+				if (record == null) {
+					log.log(Level.WARN, "Skipping unrecognized line " + lineNumber + " of " + textFilename);
+					continue;
+				}
+				records.add(record);
+				size += record.remaining();
+			}
+		}
+		catch (IOException e) {
+			throw new BankDAOException("Problem reading file: " + textFilename);
+		}
+
+		ByteBuffer out = ByteBuffer.allocate(size);
+		BinaryRecordCodec.writeFileHeader(out, marks);
+		for (ByteBuffer record : records) {
+			out.put(record);
+		}
+		out.flip();
+
+		try (FileChannel channel = FileChannel.open(Paths.get(binaryFilename), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+		}
+		catch (IOException e) {
+			throw new BankDAOException("Could not write file: " + binaryFilename);
+		}
+		return records.size() + markLines;
+	}
+
+	/**
+	 * @param binaryFilename : the .bdb file to read
+	 * @param textFilename : the .bdf file to write; replaced if it exists
+	 * @return how many lines were written, records and high-water marks
+	 * @throws BankDAOException if either file can't be used, or a record is damaged
+	 */
+	public static int binaryToText(String binaryFilename, String textFilename) throws BankDAOException {
+
+		ByteBuffer file;
+		try (FileChannel channel = FileChannel.open(Paths.get(binaryFilename), StandardOpenOption.READ)){
+			file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		catch (IOException e) {
+			throw new BankDAOException("Problem reading file: " + binaryFilename);
+		}
+
+		int records = 0;
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(textFilename))){
+			int[] marks = null; // an empty file has no header yet
+			if (file.hasRemaining()) {
+				marks = BinaryRecordCodec.readFileHeader(file);
+			}
+			while (file.hasRemaining()) {
+				byte kind = BinaryRecordCodec.kindOf(file);
+				if (kind == BinaryRecordCodec.KIND_HIGH_WATER_MARK) { // version 1
+					writer.write(markLine(BinaryRecordCodec.idOf(file), BinaryRecordCodec.decodeHighWaterMark(file)));
+				}
+				else {
+					writer.write(TextRecordCodec.save(BinaryRecordCodec.decode(file)));
+				}
+				writer.write("\n");
+				records++;
+			}
+			for (int kind = BinaryRecordCodec.KIND_USER_PROFILE; marks != null && kind < marks.length; kind++) {
+				if (marks[kind] != BinaryRecordCodec.NO_MARK) {
+					writer.write(markLine(kind, marks[kind]) + "\n");
+					records++;
+				}
+			}
+		}
+		catch (IOException | ArrayIndexOutOfBoundsException e) {
+			throw new BankDAOException("Could not write file: " + textFilename);
+		}
+		return records;
+	}
+
+	// helper methods
+
+	/**
+	 * @return the binary record for one line of a .bdf file, or null if it isn't a kind of
+	 *     line the text DAO knows
+	 */
+	private static ByteBuffer lineToRecord(String line) throws BankDAOException {
+
+		String prefix = line.substring(0, Math.min(3, line.length()));
+		switch (prefix) {
+			case TextRecordCodec.USER_PROFILE_PREFIX:
+				return BinaryRecordCodec.encode(TextRecordCodec.buildUserProfileFromEntry(line));
+			case TextRecordCodec.BANK_ACCOUNT_PREFIX:
+				return BinaryRecordCodec.encode(TextRecordCodec.buildAccountFromEntry(line));
+			case TextRecordCodec.TRANSACTION_RECORD_PREFIX:
+				return BinaryRecordCodec.encode(TextRecordCodec.buildTransactionRecordFromEntry(line));
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Raises the mark a "HWM PRF 120" line is for, if it's higher.
+	 * @return false if the line isn't for a kind of ID the text DAO knows
+	 */
+	private static boolean readMark(String line, int[] marks) {
+
+		String[] tokens = line.split(" ");
+		for (byte kind = 1; kind < TEXT_PREFIXES.length; kind++) {
+			if (TEXT_PREFIXES[kind].equals(tokens[1])) {
+				marks[kind] = Math.max(marks[kind], Integer.parseInt(tokens[2]));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String markLine(int kind, int mark) {
+		return HIGH_WATER_MARK_PREFIX + " " + TEXT_PREFIXES[kind] + " " + mark;
+	}
+}
@@ -0,0 +1,497 @@
+/**
+ * A file-based DAO like TextFileDAO, but storing its records in the binary format from
+ * BinaryRecordCodec (a .bdb file) instead of as lines of text.
+ *
+ * It works the same way the text one does: every read goes through the file, and every
+ * write rewrites it, with the new records first. The difference is in the cost per record:
+ * each record starts with its kind, ID and length, so looking for one is a hop from header
+ * to header with nothing parsed, and filters on a transaction's acting user or accounts
+ * read the fixed-position ints directly. Only the records actually returned are decoded.
+ *
+ * The file is read through a memory map and written through a ByteBuffer; a rewrite goes
+ * to a temporary file that is forced to disk and then moved over the old one. The ID
+ * high-water marks live in the file header, so reserving IDs only overwrites a mark in place.
+ * A version 1 file, with its marks as records amongst the data, gets a proper header the next
+ * time it's rewritten.
+ *
+ * BinaryFileConverter turns .bdf files into .bdb files and back.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.UserProfile;
+
+public class BinaryFileDAO implements BankDAO {
+
+	// constants
+	private static final String TEMP_SUFFIX = ".writing";
+
+	// instance variables
+	private final String filename;
+
+	// constructor(s)
+
+	/**
+	 * @param filename : an existing .bdb file; an empty file is fine too, and gets a header
+	 *     on the first write
+	 * @throws BankDAOException if the file doesn't exist or isn't a binary bank file
+	 */
+	public BinaryFileDAO(String filename) throws BankDAOException {
+		this.filename = filename;
+
+		if (!new File(filename).isFile()) {
+			throw new BankDAOException("File not found: " + filename);
+		}
+		mapFile(); // checks the header
+	}
+
+	// methods from BankDAO interface
+
+	@Override
+	public String getResourceName() {
+		return filename;
+	}
+
+	@Override
+	public synchronized BankAccount readBankAccount(int accID) throws BankDAOException {
+
+		ByteBuffer record = find(BinaryRecordCodec.KIND_BANK_ACCOUNT, accID);
+		if (record == null) {
+			BankAccount ba = TextRecordCodec.buildAccountFromEntry(""); // same "not found" as the text DAO
+			ba.setId(accID);
+			return ba;
+		}
+		return (BankAccount)BinaryRecordCodec.decode(record);
+	}
+
+	@Override
+	public synchronized List<BankAccount> readAllBankAccounts() throws BankDAOException {
+
+		List<BankAccount> accounts = new ArrayList<>();
+		for (ByteBuffer record : findAll(BinaryRecordCodec.KIND_BANK_ACCOUNT)) {
+			accounts.add((BankAccount)BinaryRecordCodec.decode(record));
+		}
+		return accounts;
+	}
+
+	@Override
+	public synchronized UserProfile readUserProfile(int userID) throws BankDAOException {
+
+		ByteBuffer record = find(BinaryRecordCodec.KIND_USER_PROFILE, userID);
+		if (record == null) {
+			UserProfile up = TextRecordCodec.buildUserProfileFromEntry("");
+			up.setId(userID);
+			return up;
+		}
+		return (UserProfile)BinaryRecordCodec.decode(record);
+	}
+
+	@Override
+	public synchronized UserProfile readUserProfile(String username) throws BankDAOException {
+
+		for (ByteBuffer record : findAll(BinaryRecordCodec.KIND_USER_PROFILE)) {
+			UserProfile up = (UserProfile)BinaryRecordCodec.decode(record);
+			if (username.equals(up.getUsername())) {
+				return up;
+			}
+		}
+		return TextRecordCodec.buildUserProfileFromEntry(""); // didn't find it
+	}
+
+	@Override
+	public synchronized List<UserProfile> readAllUserProfiles() throws BankDAOException {
+
+		List<UserProfile> profiles = new ArrayList<>();
+		for (ByteBuffer record : findAll(BinaryRecordCodec.KIND_USER_PROFILE)) {
+			profiles.add((UserProfile)BinaryRecordCodec.decode(record));
+		}
+		return profiles;
+	}
+
+	@Override
+	public synchronized TransactionRecord readTransactionRecord(int recID) throws BankDAOException {
+
+		ByteBuffer record = find(BinaryRecordCodec.KIND_TRANSACTION_RECORD, recID);
+		if (record == null) {
+			TransactionRecord tr = TextRecordCodec.buildTransactionRecordFromEntry("");
+			tr.setId(recID);
+			return tr;
+		}
+		return (TransactionRecord)BinaryRecordCodec.decode(record);
+	}
+
+	@Override
+	public synchronized List<TransactionRecord> readAllTransactionRecords() throws BankDAOException {
+		return readTransactionRecordsWhere(TransactionFilter.ALL, 0);
+	}
+
+	@Override
+	public synchronized List<TransactionRecord> readTransactionRecordByActingUserId(int actingUserID)
+			throws BankDAOException {
+		return readTransactionRecordsWhere(TransactionFilter.ACTING_USER, actingUserID);
+	}
+
+	@Override
+	public synchronized List<TransactionRecord> readTransactionRecordByAccountId(int accID)
+			throws BankDAOException {
+		return readTransactionRecordsWhere(TransactionFilter.ACCOUNT, accID);
+	}
+
+	/**
+	 * Same approach as TextFileDAO: one pass, keeping the pageSize lowest matching IDs.
+	 * IDs and filter fields are read straight from the records, so only the page gets decoded.
+	 */
+	@Override
+	public synchronized List<TransactionRecord> readTransactionRecordPage(TransactionFilter filter,
+			int filterID, int afterID, int pageSize) throws BankDAOException {
+
+		// highest ID on top, so it's the one dropped when something lower turns up
+		PriorityQueue<ByteBuffer> lowest = new PriorityQueue<>(pageSize,
+				(a, b) -> Integer.compare(BinaryRecordCodec.idOf(b), BinaryRecordCodec.idOf(a)));
+
+		for (ByteBuffer record : findAll(BinaryRecordCodec.KIND_TRANSACTION_RECORD)) {
+			int id = BinaryRecordCodec.idOf(record);
+			if (id <= afterID || !matches(record, filter, filterID)
+					|| (lowest.size() == pageSize && id > BinaryRecordCodec.idOf(lowest.peek()))) {
+				continue;
+			}
+			lowest.add(record);
+			if (lowest.size() > pageSize) {
+				lowest.poll();
+			}
+		}
+
+		List<TransactionRecord> page = new ArrayList<>(lowest.size());
+		for (ByteBuffer record : lowest) {
+			page.add((TransactionRecord)BinaryRecordCodec.decode(record));
+		}
+		page.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+		return page;
+	}
+
+	@Override
+	public synchronized void write(BankData bd) throws BankDAOException {
+		List<BankData> toWrite = new ArrayList<BankData>();
+		toWrite.add(bd);
+		write(toWrite); // just use the list method
+	}
+
+	/**
+	 * Rewrites the file with the given records first, followed by every old record that
+	 * wasn't replaced. If the same record is in the list twice, the first one wins, same
+	 * as TextFileDAO. The high-water marks are carried over into the new header.
+	 */
+	@Override
+	public synchronized void write(List<BankData> toWrite) throws BankDAOException {
+
+		List<ByteBuffer> output = new ArrayList<>();
+		Set<Long> written = new HashSet<>();
+
+		for (BankData bd : toWrite) {
+			ByteBuffer record = BinaryRecordCodec.encode(bd);
+			if (written.add(recordKey(record))) {
+				output.add(record);
+			}
+		}
+		for (ByteBuffer record : findAll((byte)0)) {
+			if (!written.contains(recordKey(record))) {
+				output.add(record);
+			}
+		}
+
+		writeRecords(output, readMarks());
+	}
+
+	@Override
+	public synchronized int getHighestUserProfileID() throws BankDAOException {
+		return highestID(BinaryRecordCodec.KIND_USER_PROFILE);
+	}
+
+	@Override
+	public synchronized int getHighestBankAccountID() throws BankDAOException {
+		return highestID(BinaryRecordCodec.KIND_BANK_ACCOUNT);
+	}
+
+	@Override
+	public synchronized int getHighestTransactionRecordID() throws BankDAOException {
+		return highestID(BinaryRecordCodec.KIND_TRANSACTION_RECORD);
+	}
+
+	@Override
+	public synchronized boolean isUsernameFree(String username) throws BankDAOException {
+		return readUserProfile(username).getUsername() == null;
+	}
+
+	/**
+	 * Reserves IDs above both the highest ID in the file and the high-water mark for that
+	 * type, then saves the new mark, same as TextFileDAO. The mark is overwritten in the
+	 * header and forced to disk; the records aren't touched unless the file has no header yet.
+	 */
+	@Override
+	public synchronized int[] reserveIDs(IDType type, int count) throws BankDAOException {
+
+		byte kind;
+		switch (type) {
+			case USER_PROFILE:
+				kind = BinaryRecordCodec.KIND_USER_PROFILE;
+				break;
+			case BANK_ACCOUNT:
+				kind = BinaryRecordCodec.KIND_BANK_ACCOUNT;
+				break;
+			default:
+				kind = BinaryRecordCodec.KIND_TRANSACTION_RECORD;
+		}
+
+		boolean hasHeader = headerMarks() != null;
+		int[] marks = readMarks();
+		int first = Math.max(marks[kind], highestID(kind)) + 1;
+		marks[kind] = first + count - 1;
+
+		if (hasHeader) {
+			writeMark(kind, marks[kind]);
+		}
+		else {
+			writeRecords(findAll((byte)0), marks); // empty or version 1
+		}
+
+		return IdAllocator.consecutiveIDs(first, count);
+	}
+
+	// helper methods
+
+	/**
+	 * Maps the whole file, positioned at the first record.
+	 * @return the mapping, or null if the file is empty
+	 * @throws BankDAOException
+	 */
+	private ByteBuffer mapFile() throws BankDAOException {
+
+		ByteBuffer mapped = mapWholeFile();
+		if (mapped != null) {
+			BinaryRecordCodec.readFileHeader(mapped);
+		}
+		return mapped;
+	}
+
+	/**
+	 * @return the mapping, positioned at the start of the header, or null if the file is empty
+	 */
+	private ByteBuffer mapWholeFile() throws BankDAOException {
+
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)){
+			if (channel.size() == 0) {
+				return null;
+			}
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new BankDAOException("File too large to map: " + filename);
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		catch (IOException e) {
+			throw new BankDAOException("Problem reading file: " + filename);
+		}
+	}
+
+	/**
+	 * @return the marks from the header, or null if the file is empty or version 1
+	 */
+	private int[] headerMarks() throws BankDAOException {
+
+		ByteBuffer mapped = mapWholeFile();
+		return mapped == null ? null : BinaryRecordCodec.readFileHeader(mapped);
+	}
+
+	/**
+	 * @return the high-water marks, indexed by record kind, wherever the file keeps them
+	 */
+	private int[] readMarks() throws BankDAOException {
+
+		int[] marks = headerMarks();
+		if (marks != null) {
+			return marks;
+		}
+
+		marks = BinaryRecordCodec.noMarks();
+		for (ByteBuffer record : findAll(BinaryRecordCodec.KIND_HIGH_WATER_MARK)) {
+			int kind = BinaryRecordCodec.idOf(record);
+			if (kind >= BinaryRecordCodec.KIND_USER_PROFILE && kind <= BinaryRecordCodec.KIND_TRANSACTION_RECORD) {
+				marks[kind] = Math.max(marks[kind], BinaryRecordCodec.decodeHighWaterMark(record.duplicate()));
+			}
+		}
+		return marks;
+	}
+
+	/**
+	 * Overwrites one mark in the header and forces it to disk, so reserved IDs stay reserved.
+	 */
+	private void writeMark(byte kind, int mark) throws BankDAOException {
+
+		ByteBuffer out = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(mark);
+		out.flip();
+
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE)){
+			long position = BinaryRecordCodec.markOffset(kind);
+			while (out.hasRemaining()) {
+				position += channel.write(out, position);
+			}
+			channel.force(false);
+		}
+		catch (IOException e) {
+			throw new BankDAOException("ALERT: could not save reserved IDs to file: " + filename);
+		}
+	}
+
+	/**
+	 * @param kind : 0 for every data record (a version 1 file's HWM records are left out)
+	 * @return a buffer for each record of that kind, in file order, positioned at its start
+	 *     and limited to its end
+	 */
+	private List<ByteBuffer> findAll(byte kind) throws BankDAOException {
+
+		List<ByteBuffer> records = new ArrayList<>();
+		ByteBuffer file = mapFile();
+		if (file == null) {
+			return records;
+		}
+
+		while (file.hasRemaining()) {
+			int length = BinaryRecordCodec.recordLength(file);
+			byte found = BinaryRecordCodec.kindOf(file);
+			if (found == kind || (kind == 0 && found != BinaryRecordCodec.KIND_HIGH_WATER_MARK)) {
+				ByteBuffer record = file.slice().order(ByteOrder.LITTLE_ENDIAN);
+				record.limit(length);
+				records.add(record);
+			}
+			file.position(file.position() + length);
+		}
+		return records;
+	}
+
+	/**
+	 * @return the first record with that kind and ID, or null
+	 */
+	private ByteBuffer find(byte kind, int id) throws BankDAOException {
+
+		ByteBuffer file = mapFile();
+		if (file == null) {
+			return null;
+		}
+
+		while (file.hasRemaining()) {
+			int length = BinaryRecordCodec.recordLength(file);
+			if (BinaryRecordCodec.kindOf(file) == kind && BinaryRecordCodec.idOf(file) == id) {
+				ByteBuffer record = file.slice().order(ByteOrder.LITTLE_ENDIAN);
+				record.limit(length);
+				return record;
+			}
+			file.position(file.position() + length);
+		}
+		return null;
+	}
+
+	private List<TransactionRecord> readTransactionRecordsWhere(TransactionFilter filter, int filterID)
+			throws BankDAOException {
+
+		List<TransactionRecord> transactions = new ArrayList<>();
+		for (ByteBuffer record : findAll(BinaryRecordCodec.KIND_TRANSACTION_RECORD)) {
+			if (matches(record, filter, filterID)) {
+				transactions.add((TransactionRecord)BinaryRecordCodec.decode(record));
+			}
+		}
+		return transactions;
+	}
+
+	/**
+	 * TransactionFilter.matches, without decoding the record first.
+	 */
+	private static boolean matches(ByteBuffer record, TransactionFilter filter, int filterID) {
+
+		switch (filter) {
+			case ACTING_USER:
+				return BinaryRecordCodec.transactionActingUser(record) == filterID;
+			case ACCOUNT:
+				return BinaryRecordCodec.transactionSourceAccount(record) == filterID
+						|| BinaryRecordCodec.transactionDestinationAccount(record) == filterID;
+			default:
+				return true;
+		}
+	}
+
+	private int highestID(byte kind) throws BankDAOException {
+
+		int highest = -1;
+		for (ByteBuffer record : findAll(kind)) {
+			highest = Math.max(highest, BinaryRecordCodec.idOf(record));
+		}
+		return highest;
+	}
+
+	/**
+	 * @return (kind << 32) | id, to tell which records replace which
+	 */
+	private static long recordKey(ByteBuffer record) {
+		return ((long)BinaryRecordCodec.kindOf(record) << 32) | (BinaryRecordCodec.idOf(record) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Replaces the contents of the file with a header and the given records.
+	 * The records may be slices of the current mapping, so they all go to a temporary file
+	 * first, which is forced to disk and then moved over the old one.
+	 * @param records
+	 * @param marks : the high-water marks for the header, indexed by record kind
+	 */
+	private void writeRecords(List<ByteBuffer> records, int[] marks) throws BankDAOException {
+
+		int size = BinaryRecordCodec.FILE_HEADER_SIZE;
+		for (ByteBuffer record : records) {
+			size += record.remaining();
+		}
+		ByteBuffer out = ByteBuffer.allocate(size);
+		BinaryRecordCodec.writeFileHeader(out, marks);
+		for (ByteBuffer record : records) {
+			out.put(record.duplicate());
+		}
+		out.flip();
+
+		Path path = Paths.get(filename);
+		Path temp = Paths.get(filename + TEMP_SUFFIX);
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+			channel.force(true); // or a crash after the move could leave a file with nothing in it
+		}
+		catch (IOException e) {
+			throw new BankDAOException("ALERT: write failed to write to file: " + filename);
+		}
+
+		try {
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			throw new BankDAOException("ALERT: could not replace file: " + filename);
+		}
+	}
+}
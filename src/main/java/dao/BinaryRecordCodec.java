@@ -0,0 +1,450 @@
+/**
+ * Converts BankData objects to and from a compact binary format, the counterpart of
+ * TextRecordCodec for .bdb ('bank data binary') files. Everything is little-endian.
+ *
+ * A file starts with a header: int MAGIC, short FORMAT_VERSION, short (unused, 0), then the
+ * ID high-water marks as three ints (user profile, bank account, transaction record; -1 for
+ * none). Each mark is the highest ID of its kind handed out by reserveIDs; keeping them in
+ * the header means reserving IDs only rewrites those 4 bytes, not the file.
+ * Then each record is
+ *   byte kind, int id, int body length, body
+ * so a reader can find a record by kind and ID, or skip it, without decoding the body.
+ * The bodies are fixed width, apart from strings (short byte count, then UTF-8; -1 for
+ * null) and ID lists (int count, then the ints):
+ *   PRF: byte type, string username, string password, int count, int accountIDs...
+ *   ACC: byte status, byte type, int funds, int count, int ownerIDs...
+ *   TRR: byte type, int acting user, int source, int destination, int amount, string time
+ *   HWM: int mark; the record's id is the kind of ID the mark is for. Only version 1 files,
+ *        which had no marks in the header, have these; they're read, but never written.
+ *
+ * Enums are stored as the byte codes in the tables below rather than their ordinals,
+ * so reordering an enum doesn't change what old files mean. Anything that changes the
+ * layout should bump FORMAT_VERSION.
+ *
+ * Public so that BinaryFileConverter and the benchmarks can use it directly.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.IntSet;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.TransactionRecord.TransactionType;
+import com.revature.bankDataObjects.UserProfile;
+import com.revature.bankDataObjects.UserProfile.UserProfileType;
+
+public class BinaryRecordCodec {
+
+	// constants
+	public static final int MAGIC = 0x42444642; // "BFDB" read as little-endian bytes
+	public static final short FORMAT_VERSION = 2;
+	public static final int FILE_HEADER_SIZE = 20;
+	public static final int NO_MARK = -1;
+	private static final short OLD_FORMAT_VERSION = 1; // no marks in the header
+	private static final int OLD_FILE_HEADER_SIZE = 8;
+	public static final int RECORD_HEADER_SIZE = 9; // kind, id, body length
+
+	// record kinds
+	public static final byte KIND_USER_PROFILE = 1;
+	public static final byte KIND_BANK_ACCOUNT = 2;
+	public static final byte KIND_TRANSACTION_RECORD = 3;
+	public static final byte KIND_HIGH_WATER_MARK = 4;
+
+	// the byte code of each enum value is its position in these
+	private static final UserProfileType[] PROFILE_TYPES = {
+			UserProfileType.NONE, UserProfileType.CUSTOMER, UserProfileType.EMPLOYEE, UserProfileType.ADMIN
+	};
+	private static final BankAccountStatus[] ACCOUNT_STATUSES = {
+			BankAccountStatus.NONE, BankAccountStatus.OPEN, BankAccountStatus.CLOSED, BankAccountStatus.PENDING
+	};
+	private static final BankAccountType[] ACCOUNT_TYPES = {
+			BankAccountType.NONE, BankAccountType.SINGLE, BankAccountType.JOINT
+	};
+	private static final TransactionType[] TRANSACTION_TYPES = {
+			TransactionType.NONE, TransactionType.ACCOUNT_REGISTERED, TransactionType.ACCOUNT_APPROVED,
+			TransactionType.ACCOUNT_CLOSED, TransactionType.FUNDS_TRANSFERRED, TransactionType.FUNDS_DEPOSITED,
+			TransactionType.FUNDS_WITHDRAWN, TransactionType.USER_REGISTERED,
+			TransactionType.ACCOUNT_OWNER_ADDED, TransactionType.ACCOUNT_OWNER_REMOVED
+	};
+
+	// where the fixed-width TRR fields are, from the start of the record
+	private static final int TRR_ACTING_USER_OFFSET = RECORD_HEADER_SIZE + 1;
+	private static final int TRR_SOURCE_OFFSET = TRR_ACTING_USER_OFFSET + 4;
+	private static final int TRR_DESTINATION_OFFSET = TRR_SOURCE_OFFSET + 4;
+
+	private static final short NULL_STRING = -1;
+
+	// not meant to be instantiated
+	private BinaryRecordCodec() {
+
+	}
+
+	// file header
+
+	/**
+	 * @return marks for every kind of ID, all NO_MARK, indexed by record kind (see markOffset)
+	 */
+	public static int[] noMarks() {
+		int[] marks = new int[KIND_TRANSACTION_RECORD + 1];
+		Arrays.fill(marks, NO_MARK);
+		return marks;
+	}
+
+	/**
+	 * @param buf
+	 * @param marks : the high-water mark for each kind of record, indexed by kind
+	 */
+	public static void writeFileHeader(ByteBuffer buf, int[] marks) {
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(MAGIC);
+		buf.putShort(FORMAT_VERSION);
+		buf.putShort((short)0);
+		for (byte kind = KIND_USER_PROFILE; kind <= KIND_TRANSACTION_RECORD; kind++) {
+			buf.putInt(marks[kind]);
+		}
+	}
+
+	/**
+	 * Reads the file header, leaving the buffer at the first record.
+	 * @param buf
+	 * @return the high-water mark for each kind of record, indexed by kind; or null for a
+	 *     version 1 file, whose marks are HWM records amongst the others
+	 * @throws BankDAOException if it isn't a binary bank file, or is a newer version
+	 */
+	public static int[] readFileHeader(ByteBuffer buf) throws BankDAOException {
+
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		if (buf.remaining() < OLD_FILE_HEADER_SIZE || buf.getInt() != MAGIC) {
+			throw new BankDAOException("Not a binary bank data file");
+		}
+		short version = buf.getShort();
+		buf.getShort();
+		if (version == OLD_FORMAT_VERSION) {
+			return null;
+		}
+		if (version != FORMAT_VERSION || buf.remaining() < FILE_HEADER_SIZE - OLD_FILE_HEADER_SIZE) {
+			throw new BankDAOException("Unsupported binary bank data file version: " + version);
+		}
+
+		int[] marks = noMarks();
+		for (byte kind = KIND_USER_PROFILE; kind <= KIND_TRANSACTION_RECORD; kind++) {
+			marks[kind] = buf.getInt();
+		}
+		return marks;
+	}
+
+	/**
+	 * @param kind : eg KIND_USER_PROFILE
+	 * @return where in the file that kind's high-water mark is kept, so it can be changed in place
+	 */
+	public static int markOffset(byte kind) {
+		return OLD_FILE_HEADER_SIZE + 4 * (kind - KIND_USER_PROFILE);
+	}
+
+	// encoding
+
+	/**
+	 * @param bd
+	 * @return how many bytes encode will write for it, record header included
+	 * @throws BankDAOException if the BankData subclass isn't supported
+	 */
+	public static int encodedSize(BankData bd) throws BankDAOException {
+
+		if (bd.getClass() == UserProfile.class) {
+			UserProfile up = (UserProfile)bd;
+			return RECORD_HEADER_SIZE + 1 + stringSize(up.getUsername()) + stringSize(up.getPassword())
+					+ 4 + 4 * up.getOwnedAccountSet().size();
+		}
+		else if (bd.getClass() == BankAccount.class) {
+			return RECORD_HEADER_SIZE + 1 + 1 + 4 + 4 + 4 * ((BankAccount)bd).getOwnerSet().size();
+		}
+		else if (bd.getClass() == TransactionRecord.class) {
+			return RECORD_HEADER_SIZE + 1 + 4 * 4 + stringSize(((TransactionRecord)bd).getTime());
+		}
+		throw new BankDAOException("BankData subclass not supported in write: " + bd.getClass());
+	}
+
+	/**
+	 * Writes the record for any kind of BankData at the buffer's position.
+	 * @param bd
+	 * @param buf : must have encodedSize(bd) bytes left
+	 * @throws BankDAOException if the BankData subclass isn't supported
+	 */
+	public static void encode(BankData bd, ByteBuffer buf) throws BankDAOException {
+
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		int bodyLength = encodedSize(bd) - RECORD_HEADER_SIZE;
+
+		if (bd.getClass() == UserProfile.class) {
+			UserProfile up = (UserProfile)bd;
+			putRecordHeader(buf, KIND_USER_PROFILE, up.getId(), bodyLength);
+			buf.put(codeOf(PROFILE_TYPES, up.getType()));
+			putString(buf, up.getUsername());
+			putString(buf, up.getPassword());
+			putIDs(buf, up.getOwnedAccountSet());
+		}
+		else if (bd.getClass() == BankAccount.class) {
+			BankAccount ba = (BankAccount)bd;
+			putRecordHeader(buf, KIND_BANK_ACCOUNT, ba.getId(), bodyLength);
+			buf.put(codeOf(ACCOUNT_STATUSES, ba.getStatus()));
+			buf.put(codeOf(ACCOUNT_TYPES, ba.getType()));
+			buf.putInt(ba.getFunds());
+			putIDs(buf, ba.getOwnerSet());
+		}
+		else { // encodedSize already turned away anything else
+			TransactionRecord tr = (TransactionRecord)bd;
+			putRecordHeader(buf, KIND_TRANSACTION_RECORD, tr.getId(), bodyLength);
+			buf.put(codeOf(TRANSACTION_TYPES, tr.getType()));
+			buf.putInt(tr.getActingUser());
+			buf.putInt(tr.getSourceAccount());
+			buf.putInt(tr.getDestinationAccount());
+			buf.putInt(tr.getMoneyAmount());
+			putString(buf, tr.getTime());
+		}
+	}
+
+	/**
+	 * @param bd
+	 * @return a new buffer holding just the record for bd, ready to be read
+	 * @throws BankDAOException
+	 */
+	public static ByteBuffer encode(BankData bd) throws BankDAOException {
+		ByteBuffer buf = ByteBuffer.allocate(encodedSize(bd));
+		encode(bd, buf);
+		buf.flip();
+		return buf;
+	}
+
+	// decoding
+
+	/**
+	 * @param buf : positioned at the start of a record; left there
+	 * @return the record's kind
+	 */
+	public static byte kindOf(ByteBuffer buf) {
+		return buf.get(buf.position());
+	}
+
+	/**
+	 * @param buf : positioned at the start of a record; left there
+	 * @return the record's ID
+	 */
+	public static int idOf(ByteBuffer buf) {
+		return buf.order(ByteOrder.LITTLE_ENDIAN).getInt(buf.position() + 1);
+	}
+
+	/**
+	 * @param buf : positioned at the start of a record; left there
+	 * @return the whole length of the record, header included
+	 * @throws BankDAOException if the record runs off the end of the buffer
+	 */
+	public static int recordLength(ByteBuffer buf) throws BankDAOException {
+
+		if (buf.remaining() < RECORD_HEADER_SIZE) {
+			throw new BankDAOException("Truncated record at byte " + buf.position());
+		}
+		int length = RECORD_HEADER_SIZE + buf.order(ByteOrder.LITTLE_ENDIAN).getInt(buf.position() + 5);
+		if (length < RECORD_HEADER_SIZE || length > buf.remaining()) {
+			throw new BankDAOException("Truncated record at byte " + buf.position());
+		}
+		return length;
+	}
+
+	/**
+	 * Reads the acting user, source or destination of a TRR record without decoding the rest.
+	 * @param buf : positioned at the start of a TRR record; left there
+	 */
+	public static int transactionActingUser(ByteBuffer buf) {
+		return buf.order(ByteOrder.LITTLE_ENDIAN).getInt(buf.position() + TRR_ACTING_USER_OFFSET);
+	}
+
+	public static int transactionSourceAccount(ByteBuffer buf) {
+		return buf.order(ByteOrder.LITTLE_ENDIAN).getInt(buf.position() + TRR_SOURCE_OFFSET);
+	}
+
+	public static int transactionDestinationAccount(ByteBuffer buf) {
+		return buf.order(ByteOrder.LITTLE_ENDIAN).getInt(buf.position() + TRR_DESTINATION_OFFSET);
+	}
+
+	/**
+	 * Reads the record at the buffer's position, and moves past it.
+	 * @param buf
+	 * @return a UserProfile, BankAccount or TransactionRecord
+	 * @throws BankDAOException if the record is damaged, or is a high-water mark
+	 */
+	public static BankData decode(ByteBuffer buf) throws BankDAOException {
+
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		int end = buf.position() + recordLength(buf);
+		byte kind = buf.get();
+		int id = buf.getInt();
+		buf.getInt(); // body length, already used for end
+
+		BankData bd;
+		try {
+			switch (kind) {
+				case KIND_USER_PROFILE:
+					UserProfile up = new UserProfile(id);
+					up.setType(fromCode(PROFILE_TYPES, buf.get()));
+					up.setUsername(getString(buf));
+					up.setPassword(getString(buf));
+					for (int i = buf.getInt(); i > 0; i--) {
+						up.addAccount(buf.getInt());
+					}
+					bd = up;
+					break;
+				case KIND_BANK_ACCOUNT:
+					BankAccount ba = new BankAccount(id);
+					ba.setStatus(fromCode(ACCOUNT_STATUSES, buf.get()));
+					ba.setType(fromCode(ACCOUNT_TYPES, buf.get()));
+					ba.setFunds(buf.getInt());
+					for (int i = buf.getInt(); i > 0; i--) {
+						ba.addOwner(buf.getInt());
+					}
+					bd = ba;
+					break;
+				case KIND_TRANSACTION_RECORD:
+					TransactionRecord tr = new TransactionRecord(id);
+					tr.setType(fromCode(TRANSACTION_TYPES, buf.get()));
+					tr.setActingUser(buf.getInt());
+					tr.setSourceAccount(buf.getInt());
+					tr.setDestinationAccount(buf.getInt());
+					tr.setMoneyAmount(buf.getInt());
+					tr.setTime(getString(buf));
+					bd = tr;
+					break;
+				default:
+					throw new BankDAOException("Not a data record (kind " + kind + ") at byte " + (end - 1));
+			}
+		}
+		catch (RuntimeException e) { // ran off the end, bad enum code, etc
+			throw new BankDAOException("Damaged record for ID " + id + ": " + e);
+		}
+
+		if (buf.position() != end) {
+			throw new BankDAOException("Damaged record for ID " + id + ": length doesn't match contents");
+		}
+		return bd;
+	}
+
+	/**
+	 * For version 1 files.
+	 * @param buf : positioned at the start of a HWM record; moved past it
+	 * @return the mark
+	 */
+	public static int decodeHighWaterMark(ByteBuffer buf) {
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		int mark = buf.getInt(buf.position() + RECORD_HEADER_SIZE);
+		buf.position(buf.position() + RECORD_HEADER_SIZE + 4);
+		return mark;
+	}
+
+	// helper methods
+
+	private static void putRecordHeader(ByteBuffer buf, byte kind, int id, int bodyLength) {
+		buf.put(kind);
+		buf.putInt(id);
+		buf.putInt(bodyLength);
+	}
+
+	private static int stringSize(String s) {
+		return 2 + ((s == null) ? 0 : utf8Length(s));
+	}
+
+	private static void putString(ByteBuffer buf, String s) {
+
+		if (s == null) {
+			buf.putShort(NULL_STRING);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("String too long for a binary record");
+		}
+		buf.putShort((short)bytes.length);
+		buf.put(bytes);
+	}
+
+	private static String getString(ByteBuffer buf) {
+
+		short length = buf.getShort();
+		if (length == NULL_STRING) {
+			return null;
+		}
+		String s;
+		if (buf.hasArray()) {
+			s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+		}
+		else {
+			byte[] bytes = new byte[length];
+			buf.duplicate().get(bytes);
+			s = new String(bytes, StandardCharsets.UTF_8);
+		}
+		buf.position(buf.position() + length);
+		return s;
+	}
+
+	private static void putIDs(ByteBuffer buf, IntSet ids) {
+		buf.putInt(ids.size());
+		for (int i = 0; i < ids.size(); i++) {
+			buf.putInt(ids.get(i));
+		}
+	}
+
+	/**
+	 * UTF-8 byte count without encoding, so sizing a record doesn't allocate.
+	 */
+	private static int utf8Length(String s) {
+
+		int length = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				length += 1;
+			}
+			else if (c < 0x800) {
+				length += 2;
+			}
+			else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+					length += 4;
+					i++;
+				}
+				else {
+					length += 1; // getBytes writes '?' for half a pair
+				}
+			}
+			else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	private static <E> byte codeOf(E[] table, E value) {
+
+		for (int i = 0; i < table.length; i++) {
+			if (table[i] == value) {
+				return (byte)i;
+			}
+		}
+		return 0; // null is stored as NONE, same as the text format would read it back
+	}
+
+	private static <E> E fromCode(E[] table, byte code) {
+
+		if (code < 0 || code >= table.length) {
+			throw new IllegalArgumentException("unknown enum code " + code);
+		}
+		return table[code];
+	}
+}
@@ -0,0 +1,480 @@
+/**
+ * A DAO that wraps another DAO and keeps recently used profiles, accounts and transaction
+ * records in memory, so that repeated reads of the same data (like the BankSystem re-reading
+ * the current user after every request) don't go back to the file or database every time.
+ *
+ * Each cache is bounded and evicts the least recently used entry when full.
+ * Writes go straight through to the wrapped DAO. Written profiles and accounts are dropped
+ * from the cache along with anything they own or are owned by, since some DAOs (the Postgres
+ * one) derive ownership from a shared table and the other side can change too.
+ *
+ * Objects are copied going into and coming out of the cache, so callers can modify what
+ * they get back without affecting later reads.
+ *
+ * The lock is only held for the cache's own maps, never across a call to the wrapped DAO, so
+ * sessions only wait on each other where the wrapped DAO makes them (eg, Postgres row locks).
+ * Every write bumps a version number once it's done; a read that missed only caches what it
+ * got if the version hasn't moved since it started, so a slow read can't put back something
+ * older than a write that finished in the meantime.
+ *
+ * A TransactionalBankDAO has to be wrapped with wrap(), which gives back a
+ * TransactionalCachingBankDAO, so that the TransferEngine still sees it's transactional and
+ * keeps using its transfers instead of falling back to in-process locks.
+ *
+ * The cache only hears about changes made through it, so it mustn't be used where another
+ * process writes to the same data store: cached accounts would never see that process's
+ * transfers.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.UserProfile;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.TransactionRecord.TransactionType;
+import com.revature.bankDataObjects.UserProfile.UserProfileType;
+
+public class CachingBankDAO implements BankDAO {
+
+	// constants
+	public static final int DEFAULT_MAX_PROFILES = 1000;
+	public static final int DEFAULT_MAX_ACCOUNTS = 2000;
+	public static final int DEFAULT_MAX_TRANSACTIONS = 5000;
+
+	// instance variables
+	private final BankDAO dao;
+	private final LruCache<Integer, UserProfile> profiles;
+	private final LruCache<Integer, BankAccount> accounts;
+	private final LruCache<Integer, TransactionRecord> transactions;
+	private final LruCache<String, Integer> usernames;
+
+	private final Object lock = new Object(); // guards the caches, the version and the counters
+	private long version; // bumped by every write, once it's done
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	// constructor(s)
+
+	public CachingBankDAO(BankDAO dao) {
+		this(dao, DEFAULT_MAX_PROFILES, DEFAULT_MAX_ACCOUNTS, DEFAULT_MAX_TRANSACTIONS);
+	}
+
+	/**
+	 * @param dao : the DAO that actually stores the data; not a TransactionalBankDAO (see wrap)
+	 * @param maxProfiles : most user profiles (and usernames) to keep in memory
+	 * @param maxAccounts : most bank accounts to keep in memory
+	 * @param maxTransactions : most transaction records to keep in memory
+	 * @throws IllegalArgumentException if dao is transactional, since this would hide it
+	 */
+	public CachingBankDAO(BankDAO dao, int maxProfiles, int maxAccounts, int maxTransactions) {
+
+		if (dao instanceof TransactionalBankDAO && !(this instanceof TransactionalBankDAO)) {
+			throw new IllegalArgumentException("Use CachingBankDAO.wrap for a transactional DAO: "
+					+ dao.getResourceName());
+		}
+		this.dao = dao;
+		profiles = new LruCache<>(maxProfiles);
+		accounts = new LruCache<>(maxAccounts);
+		transactions = new LruCache<>(maxTransactions);
+		usernames = new LruCache<>(maxProfiles);
+	}
+
+	// static methods
+
+	/**
+	 * Wraps the DAO in a cache with the default sizes, keeping it transactional if it was.
+	 * @param dao
+	 * @return a TransactionalCachingBankDAO if dao is a TransactionalBankDAO
+	 */
+	public static CachingBankDAO wrap(BankDAO dao) {
+		return wrap(dao, DEFAULT_MAX_PROFILES, DEFAULT_MAX_ACCOUNTS, DEFAULT_MAX_TRANSACTIONS);
+	}
+
+	public static CachingBankDAO wrap(BankDAO dao, int maxProfiles, int maxAccounts, int maxTransactions) {
+
+		if (dao instanceof TransactionalBankDAO) {
+			return new TransactionalCachingBankDAO((TransactionalBankDAO)dao, maxProfiles, maxAccounts,
+					maxTransactions);
+		}
+		return new CachingBankDAO(dao, maxProfiles, maxAccounts, maxTransactions);
+	}
+
+	// methods from BankDAO interface
+
+	@Override
+	public String getResourceName() {
+		return dao.getResourceName();
+	}
+
+	@Override
+	public BankAccount readBankAccount(int accID) throws BankDAOException {
+
+		long seen;
+		synchronized (lock) {
+			BankAccount ba = accounts.get(accID);
+			if (ba != null) {
+				hits++;
+				return copyOf(ba);
+			}
+			misses++;
+			seen = version;
+		}
+
+		BankAccount ba = dao.readBankAccount(accID);
+		if (ba.getType() != BankAccountType.NONE) { // don't remember things that don't exist
+			synchronized (lock) {
+				if (version == seen) {
+					accounts.put(accID, copyOf(ba));
+				}
+			}
+		}
+		return ba;
+	}
+
+	@Override
+	public List<BankAccount> readAllBankAccounts() throws BankDAOException {
+		return dao.readAllBankAccounts();
+	}
+
+	@Override
+	public UserProfile readUserProfile(int userID) throws BankDAOException {
+
+		long seen;
+		synchronized (lock) {
+			UserProfile up = profiles.get(userID);
+			if (up != null) {
+				hits++;
+				return copyOf(up);
+			}
+			misses++;
+			seen = version;
+		}
+
+		UserProfile up = dao.readUserProfile(userID);
+		cacheProfile(up, seen);
+		return up;
+	}
+
+	@Override
+	public UserProfile readUserProfile(String username) throws BankDAOException {
+
+		Integer userID;
+		synchronized (lock) {
+			userID = usernames.get(username);
+		}
+		if (userID != null) {
+			UserProfile up = readUserProfile(userID); // counts its own hit or miss
+			if (username.equals(up.getUsername())) {
+				return up;
+			}
+			synchronized (lock) {
+				usernames.remove(username, userID); // stale
+			}
+		}
+
+		long seen;
+		synchronized (lock) {
+			misses++;
+			seen = version;
+		}
+		UserProfile up = dao.readUserProfile(username);
+		cacheProfile(up, seen);
+		return up;
+	}
+
+	@Override
+	public List<UserProfile> readAllUserProfiles() throws BankDAOException {
+		return dao.readAllUserProfiles();
+	}
+
+	@Override
+	public TransactionRecord readTransactionRecord(int recID) throws BankDAOException {
+
+		long seen;
+		synchronized (lock) {
+			TransactionRecord tr = transactions.get(recID);
+			if (tr != null) {
+				hits++;
+				return copyOf(tr);
+			}
+			misses++;
+			seen = version;
+		}
+
+		TransactionRecord tr = dao.readTransactionRecord(recID);
+		if (tr.getType() != TransactionType.NONE) {
+			synchronized (lock) {
+				if (version == seen) {
+					transactions.put(recID, copyOf(tr));
+				}
+			}
+		}
+		return tr;
+	}
+
+	@Override
+	public List<TransactionRecord> readAllTransactionRecords() throws BankDAOException {
+		return dao.readAllTransactionRecords();
+	}
+
+	@Override
+	public List<TransactionRecord> readTransactionRecordByActingUserId(int actingUserID)
+			throws BankDAOException {
+		return dao.readTransactionRecordByActingUserId(actingUserID);
+	}
+
+	@Override
+	public List<TransactionRecord> readTransactionRecordByAccountId(int accID) throws BankDAOException {
+		return dao.readTransactionRecordByAccountId(accID);
+	}
+
+	@Override
+	public List<TransactionRecord> readTransactionRecordPage(TransactionFilter filter, int filterID,
+			int afterID, int pageSize) throws BankDAOException {
+		return dao.readTransactionRecordPage(filter, filterID, afterID, pageSize);
+	}
+
+	@Override
+	public void write(BankData bd) throws BankDAOException {
+
+		List<BankData> toWrite = new ArrayList<BankData>();
+		toWrite.add(bd);
+		write(toWrite); // just use the list method
+	}
+
+	@Override
+	public void write(List<BankData> toWrite) throws BankDAOException {
+
+		try {
+			dao.write(toWrite);
+		}
+		finally {
+			// even if the write failed part way, some of it may have landed
+			invalidateAfterChange(toWrite);
+		}
+	}
+
+	@Override
+	public int getHighestUserProfileID() throws BankDAOException {
+		return dao.getHighestUserProfileID();
+	}
+
+	@Override
+	public int getHighestBankAccountID() throws BankDAOException {
+		return dao.getHighestBankAccountID();
+	}
+
+	@Override
+	public int getHighestTransactionRecordID() throws BankDAOException {
+		return dao.getHighestTransactionRecordID();
+	}
+
+	@Override
+	public boolean isUsernameFree(String username) throws BankDAOException {
+
+		synchronized (lock) {
+			if (usernames.containsKey(username)) {
+				hits++;
+				return false;
+			}
+			misses++;
+		}
+		return dao.isUsernameFree(username);
+	}
+
+	@Override
+	public int[] reserveIDs(IDType type, int count) throws BankDAOException {
+		return dao.reserveIDs(type, count);
+	}
+
+	// other public methods
+
+	/**
+	 * Empties every cache. Counters are kept.
+	 */
+	public void clear() {
+		synchronized (lock) {
+			version++; // reads already under way don't put anything back either
+			profiles.clear();
+			accounts.clear();
+			transactions.clear();
+			usernames.clear();
+		}
+	}
+
+	public long getHitCount() {
+		synchronized (lock) {
+			return hits;
+		}
+	}
+
+	public long getMissCount() {
+		synchronized (lock) {
+			return misses;
+		}
+	}
+
+	public long getEvictionCount() {
+		synchronized (lock) {
+			return evictions;
+		}
+	}
+
+	/**
+	 * @return the wrapped DAO
+	 */
+	public BankDAO getBackingDAO() {
+		return dao;
+	}
+
+	@Override
+	public String toString() {
+		synchronized (lock) {
+			return "CachingBankDAO[" + dao.getResourceName() + ", hits=" + hits + ", misses=" + misses
+					+ ", evictions=" + evictions + ", profiles=" + profiles.size()
+					+ ", accounts=" + accounts.size() + ", transactions=" + transactions.size() + "]";
+		}
+	}
+
+	// helper methods
+
+	/**
+	 * Caches a profile read from the wrapped DAO, unless a write has finished since the read began.
+	 * @param up
+	 * @param seen : the version when the read began
+	 */
+	private void cacheProfile(UserProfile up, long seen) {
+
+		if (up.getType() == UserProfileType.NONE) {
+			return;
+		}
+		synchronized (lock) {
+			if (version == seen) {
+				profiles.put(up.getId(), copyOf(up));
+				usernames.put(up.getUsername(), up.getId());
+			}
+		}
+	}
+
+	/**
+	 * Called once a change to the wrapped DAO is done (or has failed): bumps the version, and
+	 * drops the given data and accounts, with whatever is linked to them.
+	 * @param written
+	 * @param accIDs : accounts changed other than by writing them, eg by a transfer
+	 */
+	void invalidateAfterChange(List<BankData> written, int... accIDs) {
+
+		synchronized (lock) {
+			version++;
+			for (BankData bd : written) {
+				invalidate(bd);
+			}
+			for (int accID : accIDs) {
+				invalidateAccount(accID);
+			}
+		}
+	}
+
+	/**
+	 * Drops the given object from the cache, plus whatever is linked to it by ownership.
+	 * Callers hold the lock.
+	 * @param bd
+	 */
+	private void invalidate(BankData bd) {
+
+		if (bd instanceof UserProfile) {
+			UserProfile written = (UserProfile)bd;
+			invalidateProfile(written.getId());
+			for (int accID : written.getOwnedAccounts()) {
+				accounts.remove(accID);
+			}
+		}
+		else if (bd instanceof BankAccount) {
+			BankAccount written = (BankAccount)bd;
+			invalidateAccount(written.getId());
+			for (int userID : written.getOwners()) {
+				invalidateProfile(userID);
+			}
+		}
+		else if (bd instanceof TransactionRecord) {
+			transactions.remove(bd.getId());
+		}
+	}
+
+	private void invalidateProfile(int userID) {
+
+		UserProfile old = profiles.remove(userID);
+		if (old != null) {
+			usernames.remove(old.getUsername());
+			for (int accID : old.getOwnedAccounts()) {
+				accounts.remove(accID); // may have just lost this owner
+			}
+		}
+	}
+
+	/**
+	 * Drops the account and its owners' profiles. Callers hold the lock.
+	 * @param accID
+	 */
+	private void invalidateAccount(int accID) {
+
+		BankAccount old = accounts.remove(accID);
+		if (old != null) {
+			for (int userID : old.getOwners()) {
+				invalidateProfile(userID); // may have just lost this account
+			}
+		}
+	}
+
+	private static UserProfile copyOf(UserProfile up) {
+
+		return new UserProfile(up); // keeps its change tracking, so writes stay small
+	}
+
+	private static BankAccount copyOf(BankAccount ba) {
+
+		return new BankAccount(ba);
+	}
+
+	private static TransactionRecord copyOf(TransactionRecord tr) {
+
+		return new TransactionRecord(tr);
+	}
+
+	// inner classes
+
+	/**
+	 * A map in least-recently-used order that drops its eldest entry when over capacity.
+	 * Only used while holding the lock.
+	 */
+	private class LruCache<K, V> extends LinkedHashMap<K, V> {
+
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+
+		LruCache(int capacity) {
+			super(16, 0.75f, true); // access order
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+
+			if (size() > capacity) {
+				evictions++;
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,659 @@
+/**
+ * A small, bounded pool of database connections used by the DatabaseUtil class.
+ *
+ * Connections handed out by the pool are wrappers around a real (physical) connection.
+ * Calling close() on one of them returns the physical connection to the pool instead of
+ * closing it, so the existing try-with-resources blocks in PostgresDAO work unchanged.
+ *
+ * Statements created through a borrowed connection are closed when it is returned.
+ *
+ * The pool keeps at least minSize connections open, never opens more than maxSize,
+ * closes connections that have sat idle for too long, re-validates connections that
+ * have been idle for a while before handing them out, and logs a warning when a
+ * connection has been borrowed for longer than the leak detection threshold.
+ *
+ * @author Andrew Curry
+ */
+package dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class ConnectionPool {
+
+	// constants
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+	// connections used more recently than this are trusted without a validation round trip
+	private static final long VALIDATION_BYPASS_MILLIS = 500;
+	private static final long HOUSEKEEPING_INTERVAL_MILLIS = 5000;
+	// a handle drops statements the caller already closed once it's holding this many
+	private static final int STATEMENT_PRUNE_THRESHOLD = 32;
+
+	private static final String POOL_CLOSED_MESSAGE = "Connection pool has been shut down.";
+	private static final String ACQUIRE_TIMEOUT_PREFIX = "Timed out waiting for a pooled connection after ms: ";
+	private static final String CONNECTION_RETURNED_MESSAGE = "Connection has already been returned to the pool.";
+
+	// class / static variables
+	private static Logger log = Logger.getLogger(ConnectionPool.class);
+
+	// instance variables
+	private final String address;
+	private final Properties connectionProperties;
+
+	private final int minSize;
+	private final int maxSize;
+	private final long idleTimeoutMillis;
+	private final long leakThresholdMillis; // 0 disables leak detection
+	private final long acquireTimeoutMillis;
+
+	private final Object lock = new Object();
+	private final Deque<PooledConnection> idle = new ArrayDeque<>(); // most recently used at the head
+	private final Set<PooledConnection> borrowed = new HashSet<>();
+	private int totalConnections; // idle + borrowed + currently being opened
+	private int generation; // bumped by drain(), older connections are retired when returned
+	private boolean closed;
+
+	private final ScheduledExecutorService housekeeper;
+
+	// metrics, guarded by lock
+	private long acquireCount;
+	private long acquireTimeoutCount;
+	private long totalAcquireWaitNanos;
+	private long maxAcquireWaitNanos;
+	private long createdCount;
+	private long evictedCount;
+	private long leakCount;
+
+	// constructor
+
+	/**
+	 * @param address : JDBC url of the database
+	 * @param connectionProperties : user, password and any driver settings
+	 * @param minSize : connections kept open even when idle
+	 * @param maxSize : hard upper limit on open connections
+	 * @param idleTimeoutMillis : idle connections above minSize are closed after this long
+	 * @param leakThresholdMillis : warn about connections borrowed for longer than this (0 to disable)
+	 * @param acquireTimeoutMillis : how long getConnection waits for a free connection
+	 */
+	public ConnectionPool(String address, Properties connectionProperties, int minSize, int maxSize,
+			long idleTimeoutMillis, long leakThresholdMillis, long acquireTimeoutMillis) {
+
+		if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+			throw new IllegalArgumentException("Invalid pool size, min: " + minSize + " max: " + maxSize);
+		}
+
+		this.address = address;
+		this.connectionProperties = connectionProperties;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.leakThresholdMillis = leakThresholdMillis;
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+
+		housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "connection-pool-housekeeper");
+			t.setDaemon(true); // don't keep the application alive
+			return t;
+		});
+		housekeeper.scheduleWithFixedDelay(this::houseKeep,
+				0, HOUSEKEEPING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	// operation methods ---------------------------------------------------------
+
+	/**
+	 * Borrows a connection from the pool, opening a new one if the pool is not yet full.
+	 * Waits up to the acquire timeout if every connection is in use.
+	 * The returned connection must be closed to give it back to the pool.
+	 * @return
+	 * @throws SQLException if no connection could be obtained in time
+	 */
+	public Connection getConnection() throws SQLException {
+
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+
+		while (true) {
+			PooledConnection candidate = null;
+			boolean shouldOpen = false;
+
+			synchronized (lock) {
+				while (candidate == null && !shouldOpen) {
+					if (closed) {
+						throw new SQLException(POOL_CLOSED_MESSAGE);
+					}
+
+					if (!idle.isEmpty()) {
+						candidate = idle.pollFirst();
+					}
+					else if (totalConnections < maxSize) {
+						totalConnections++; // reserve the slot before opening outside the lock
+						shouldOpen = true;
+					}
+					else {
+						long remaining = deadline - System.nanoTime();
+						if (remaining <= 0) {
+							acquireTimeoutCount++;
+							throw new SQLException(ACQUIRE_TIMEOUT_PREFIX + acquireTimeoutMillis);
+						}
+						try {
+							TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new SQLException("Interrupted while waiting for a pooled connection.");
+						}
+					}
+				}
+			}
+
+			if (shouldOpen) {
+				try {
+					candidate = openConnection();
+				}
+				catch (SQLException e) {
+					releaseSlot();
+					throw e;
+				}
+			}
+			else if (!isUsable(candidate)) {
+				discard(candidate);
+				continue; // try again with the next one
+			}
+
+			synchronized (lock) {
+				candidate.borrowedAt = System.currentTimeMillis();
+				candidate.leakReported = false;
+				candidate.borrowTrace = (leakThresholdMillis > 0) ? new Exception("Connection borrowed here") : null;
+				borrowed.add(candidate);
+				recordAcquire(System.nanoTime() - start);
+			}
+
+			return candidate.newHandle();
+		}
+	}
+
+	/**
+	 * Closes every idle connection. Connections that are currently borrowed are closed
+	 * when they are returned instead of going back into the pool.
+	 * Used after the schema has been reset, so that no pooled session keeps stale state.
+	 */
+	public void drain() {
+
+		List<PooledConnection> toClose;
+
+		synchronized (lock) {
+			generation++;
+			toClose = new ArrayList<>(idle);
+			idle.clear();
+			totalConnections -= toClose.size();
+			lock.notifyAll();
+		}
+
+		for (PooledConnection pc : toClose) {
+			closeQuietly(pc);
+		}
+		log.log(Level.INFO, "Connection pool drained, closed idle connections: " + toClose.size());
+	}
+
+	/**
+	 * Drains the pool and stops the housekeeping thread. The pool can not be used afterwards.
+	 */
+	public void shutdown() {
+
+		synchronized (lock) {
+			closed = true;
+		}
+		housekeeper.shutdownNow();
+		drain();
+	}
+
+	// metrics -------------------------------------------------------------------
+
+	public int getIdleCount() {
+		synchronized (lock) {
+			return idle.size();
+		}
+	}
+
+	public int getActiveCount() {
+		synchronized (lock) {
+			return borrowed.size();
+		}
+	}
+
+	public int getTotalCount() {
+		synchronized (lock) {
+			return totalConnections;
+		}
+	}
+
+	public long getAcquireCount() {
+		synchronized (lock) {
+			return acquireCount;
+		}
+	}
+
+	/**
+	 * @return how many times a caller gave up waiting for a connection
+	 */
+	public long getAcquireTimeoutCount() {
+		synchronized (lock) {
+			return acquireTimeoutCount;
+		}
+	}
+
+	public double getAverageAcquireWaitMillis() {
+		synchronized (lock) {
+			if (acquireCount == 0) {
+				return 0;
+			}
+			return (totalAcquireWaitNanos / (double)acquireCount) / 1_000_000.0;
+		}
+	}
+
+	public double getMaxAcquireWaitMillis() {
+		synchronized (lock) {
+			return maxAcquireWaitNanos / 1_000_000.0;
+		}
+	}
+
+	/**
+	 * @return how many physical connections the pool has opened over its lifetime
+	 */
+	public long getCreatedCount() {
+		synchronized (lock) {
+			return createdCount;
+		}
+	}
+
+	/**
+	 * @return how many connections were closed for being idle too long or failing validation
+	 */
+	public long getEvictedCount() {
+		synchronized (lock) {
+			return evictedCount;
+		}
+	}
+
+	/**
+	 * @return how many borrowed connections have exceeded the leak detection threshold
+	 */
+	public long getLeakCount() {
+		synchronized (lock) {
+			return leakCount;
+		}
+	}
+
+	@Override
+	public String toString() {
+		synchronized (lock) {
+			return "ConnectionPool [total=" + totalConnections + " idle=" + idle.size()
+					+ " active=" + borrowed.size() + " acquired=" + acquireCount
+					+ " timeouts=" + acquireTimeoutCount + " created=" + createdCount
+					+ " evicted=" + evictedCount + " leaks=" + leakCount + "]";
+		}
+	}
+
+	// helper methods ------------------------------------------------------------
+
+	/**
+	 * Opens a new physical connection. The caller must already hold a slot.
+	 * @return
+	 * @throws SQLException
+	 */
+	private PooledConnection openConnection() throws SQLException {
+
+		Connection physical = DriverManager.getConnection(address, connectionProperties);
+
+		synchronized (lock) {
+			createdCount++;
+			return new PooledConnection(physical, generation);
+		}
+	}
+
+	/**
+	 * Checks whether an idle connection can still be handed out.
+	 * Connections used very recently skip the validation round trip.
+	 * @param pc
+	 * @return
+	 */
+	private boolean isUsable(PooledConnection pc) {
+
+		synchronized (lock) {
+			if (pc.generation != generation) {
+				return false;
+			}
+		}
+
+		if (System.currentTimeMillis() - pc.lastUsed < VALIDATION_BYPASS_MILLIS) {
+			return true;
+		}
+
+		try {
+			return pc.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+		}
+		catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Called by a connection handle when it is closed.
+	 * @param pc
+	 */
+	private void release(PooledConnection pc) {
+
+		boolean keep = resetState(pc);
+
+		synchronized (lock) {
+			borrowed.remove(pc);
+			pc.borrowTrace = null;
+
+			if (keep && !closed && pc.generation == generation) {
+				pc.lastUsed = System.currentTimeMillis();
+				idle.addFirst(pc);
+				lock.notifyAll();
+				return;
+			}
+		}
+
+		discard(pc); // broken, retired by drain(), or pool shut down
+	}
+
+	/**
+	 * Puts a returned connection back into a clean state for the next borrower.
+	 * @param pc
+	 * @return false if the connection is no longer usable
+	 */
+	private boolean resetState(PooledConnection pc) {
+
+		try {
+			if (pc.physical.isClosed()) {
+				return false;
+			}
+			if (!pc.physical.getAutoCommit()) {
+				pc.physical.rollback(); // don't let an unfinished transaction leak to the next user
+				pc.physical.setAutoCommit(true);
+			}
+			pc.physical.clearWarnings();
+			return true;
+		}
+		catch (SQLException e) {
+			log.log(Level.WARN, "Discarding pooled connection that could not be reset: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Closes the physical connection and gives its slot back.
+	 * @param pc
+	 */
+	private void discard(PooledConnection pc) {
+
+		closeQuietly(pc);
+
+		synchronized (lock) {
+			evictedCount++;
+		}
+		releaseSlot();
+	}
+
+	private void releaseSlot() {
+
+		synchronized (lock) {
+			totalConnections--;
+			lock.notifyAll();
+		}
+	}
+
+	private void recordAcquire(long waitNanos) {
+
+		acquireCount++;
+		totalAcquireWaitNanos += waitNanos;
+		if (waitNanos > maxAcquireWaitNanos) {
+			maxAcquireWaitNanos = waitNanos;
+		}
+	}
+
+	/**
+	 * @param handle : a connection borrowed from a pool
+	 * @return how many statements it's holding on to; package-private for the tests
+	 */
+	static int getStatementCount(Connection handle) {
+		return ((Handle)Proxy.getInvocationHandler(handle)).openStatements.size();
+	}
+
+	private static void closeQuietly(PooledConnection pc) {
+
+		try {
+			pc.physical.close();
+		}
+		catch (SQLException e) {
+			log.log(Level.DEBUG, "Problem closing pooled connection: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Runs periodically on the housekeeping thread: evicts idle connections,
+	 * reports leaks, and tops the pool back up to its minimum size.
+	 * Package-private so the tests don't have to wait for the thread.
+	 */
+	void houseKeep() {
+
+		try {
+			evictIdleConnections();
+			detectLeaks();
+			fillToMinimum();
+		}
+		catch (RuntimeException e) { // never let the scheduled task die
+			log.log(Level.WARN, "Problem during connection pool housekeeping: " + e.getMessage());
+		}
+	}
+
+	private void evictIdleConnections() {
+
+		List<PooledConnection> toClose = new ArrayList<>();
+		long now = System.currentTimeMillis();
+
+		synchronized (lock) {
+			// least recently used connections are at the tail
+			Iterator<PooledConnection> it = idle.descendingIterator();
+			while (it.hasNext() && totalConnections - toClose.size() > minSize) {
+				PooledConnection pc = it.next();
+				if (now - pc.lastUsed > idleTimeoutMillis) {
+					it.remove();
+					toClose.add(pc);
+				}
+			}
+		}
+
+		for (PooledConnection pc : toClose) {
+			discard(pc);
+		}
+	}
+
+	private void detectLeaks() {
+
+		if (leakThresholdMillis <= 0) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		synchronized (lock) {
+			for (PooledConnection pc : borrowed) {
+				if (!pc.leakReported && now - pc.borrowedAt > leakThresholdMillis) {
+					pc.leakReported = true;
+					leakCount++;
+					log.log(Level.WARN, "Possible connection leak, connection held for ms: "
+							+ (now - pc.borrowedAt), pc.borrowTrace);
+				}
+			}
+		}
+	}
+
+	private void fillToMinimum() {
+
+		while (true) {
+			synchronized (lock) {
+				if (closed || totalConnections >= minSize) {
+					return;
+				}
+				totalConnections++;
+			}
+
+			try {
+				PooledConnection pc = openConnection();
+				synchronized (lock) {
+					pc.lastUsed = System.currentTimeMillis();
+					idle.addLast(pc);
+					lock.notifyAll();
+				}
+			}
+			catch (SQLException e) {
+				releaseSlot();
+				log.log(Level.DEBUG, "Unable to pre-open pooled connection: " + e.getMessage());
+				return; // try again next time
+			}
+		}
+	}
+
+	// inner classes -------------------------------------------------------------
+
+	/**
+	 * Pool bookkeeping for a single physical connection.
+	 */
+	private class PooledConnection {
+
+		final Connection physical;
+		final int generation;
+		long lastUsed;
+		long borrowedAt;
+		boolean leakReported;
+		Exception borrowTrace; // where it was borrowed, for leak reports
+
+		PooledConnection(Connection physical, int generation) {
+			this.physical = physical;
+			this.generation = generation;
+			this.lastUsed = System.currentTimeMillis();
+		}
+
+		/**
+		 * Creates the Connection object that is actually given to the caller.
+		 * A fresh handle is used for every borrow so that a stale reference can't
+		 * touch the connection after it has been given to somebody else.
+		 * @return
+		 */
+		Connection newHandle() {
+			return (Connection)Proxy.newProxyInstance(
+					Connection.class.getClassLoader(),
+					new Class<?>[] {Connection.class},
+					new Handle(this));
+		}
+	}
+
+	/**
+	 * Forwards calls to the physical connection, except close(), which returns it to the pool.
+	 * Statements opened through the handle are closed along with it, the same as closing
+	 * a real connection would do. Ones the caller closes first are dropped every so often,
+	 * so a connection kept for a long time doesn't hang on to every statement it ever made.
+	 */
+	private class Handle implements InvocationHandler {
+
+		private PooledConnection pc; // null once returned
+		private final List<Statement> openStatements = new ArrayList<>();
+		private int pruneAt = STATEMENT_PRUNE_THRESHOLD;
+
+		Handle(PooledConnection pc) {
+			this.pc = pc;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			switch (method.getName()) {
+				case "close":
+					if (pc != null) {
+						PooledConnection toRelease = pc;
+						pc = null;
+						closeStatements();
+						release(toRelease);
+					}
+					return null;
+				case "isClosed":
+					return pc == null || pc.physical.isClosed();
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "PooledConnection[" + (pc == null ? "returned" : pc.physical) + "]";
+				default:
+					break;
+			}
+
+			if (pc == null) {
+				throw new SQLException(CONNECTION_RETURNED_MESSAGE);
+			}
+
+			try {
+				Object result = method.invoke(pc.physical, args);
+				if (result instanceof Statement) {
+					addStatement((Statement)result);
+				}
+				return result;
+			}
+			catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+		private void addStatement(Statement stm) throws SQLException {
+
+			if (openStatements.size() >= pruneAt) {
+				Iterator<Statement> it = openStatements.iterator();
+				while (it.hasNext()) {
+					if (it.next().isClosed()) {
+						it.remove();
+					}
+				}
+				// if most are still open, wait longer before looking again
+				pruneAt = Math.max(STATEMENT_PRUNE_THRESHOLD, openStatements.size() * 2);
+			}
+			openStatements.add(stm);
+		}
+
+		private void closeStatements() {
+
+			for (Statement stm : openStatements) {
+				try {
+					stm.close();
+				}
+				catch (SQLException e) {
+					log.log(Level.DEBUG, "Problem closing statement on pooled connection: " + e.getMessage());
+				}
+			}
+			openStatements.clear();
+		}
+	}
+}
@@ -2,6 +2,9 @@
  * A utility class for managing Connection objects as well as resetting the database to a starting
  * state in case I break it.
  * 
+ * Connections are borrowed from a ConnectionPool rather than opened fresh for every query,
+ * so closing a connection from getConnection() just hands it back to the pool.
+ * 
  * @author Andrew Curry
  */
 package dao;
@@ -15,15 +18,32 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Properties;
+
+import dao.BankDAO.IDType;
 
 public class DatabaseUtil {
 
 	// constants
 	private final static String CONFIG_FILE_ADDRESS = "config\\DatabaseConfig.txt";
 	
+	// default pool settings, can be changed with configurePool
+	private final static int DEFAULT_POOL_MIN_SIZE = 1;
+	private final static int DEFAULT_POOL_MAX_SIZE = 10;
+	private final static long DEFAULT_POOL_IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+	private final static long DEFAULT_POOL_LEAK_THRESHOLD_MILLIS = 30 * 1000;
+	private final static long DEFAULT_POOL_ACQUIRE_TIMEOUT_MILLIS = 10 * 1000;
+	
+	private final static String POSTGRES_URL_PREFIX = "jdbc:postgresql:";
+	
+	// sequences that PostgresDAO reserves new IDs from
+	public final static String USER_PROFILE_ID_SEQUENCE = "user_profile_id_seq";
+	public final static String BANK_ACCOUNT_ID_SEQUENCE = "bank_account_id_seq";
+	public final static String TRANSACTION_RECORD_ID_SEQUENCE = "transaction_record_id_seq";
+	
 	// class / static variables
 	private static Logger log = Logger.getLogger(DatabaseUtil.class);
 	
@@ -31,6 +51,17 @@ public class DatabaseUtil {
 	private static String databaseUsername;
 	private static String databasePassword;
 	
+	private static int poolMinSize = DEFAULT_POOL_MIN_SIZE;
+	private static int poolMaxSize = DEFAULT_POOL_MAX_SIZE;
+	private static long poolIdleTimeoutMillis = DEFAULT_POOL_IDLE_TIMEOUT_MILLIS;
+	private static long poolLeakThresholdMillis = DEFAULT_POOL_LEAK_THRESHOLD_MILLIS;
+	private static long poolAcquireTimeoutMillis = DEFAULT_POOL_ACQUIRE_TIMEOUT_MILLIS;
+	
+	private static ConnectionPool pool; // created on first use
+	
+	// bumped every time the database is reset, so anything remembered about it can be dropped
+	private static volatile int resetCount;
+	
 	
 	/**
 	 * Retrieves the necessary information about the database.
@@ -47,9 +78,81 @@ public class DatabaseUtil {
 		}
 		reader.close();
 		
-		databaseAddress = lines[0];
-		databaseUsername = lines[1];
-		databasePassword = lines[2];
+		setConfiguration(lines[0], lines[1], lines[2]);
+	}
+	
+	/**
+	 * Sets the database information directly, instead of reading it from the config file.
+	 * @param address
+	 * @param username
+	 * @param password
+	 */
+	public static synchronized void setConfiguration(String address, String username, String password) {
+		
+		databaseAddress = address;
+		databaseUsername = username;
+		databasePassword = password;
+		
+		closePool(); // any existing connections point at the old settings
+	}
+	
+	/**
+	 * Changes the connection pool settings. Takes effect the next time a connection is requested;
+	 * connections from the old pool are closed.
+	 * @param minSize : connections kept open even when idle
+	 * @param maxSize : maximum number of simultaneous connections
+	 * @param idleTimeoutMillis : idle connections above minSize are closed after this long
+	 * @param leakThresholdMillis : warn about connections borrowed longer than this, 0 to disable
+	 * @param acquireTimeoutMillis : how long to wait for a free connection before giving up
+	 */
+	public static synchronized void configurePool(int minSize, int maxSize, long idleTimeoutMillis,
+			long leakThresholdMillis, long acquireTimeoutMillis) {
+		
+		poolMinSize = minSize;
+		poolMaxSize = maxSize;
+		poolIdleTimeoutMillis = idleTimeoutMillis;
+		poolLeakThresholdMillis = leakThresholdMillis;
+		poolAcquireTimeoutMillis = acquireTimeoutMillis;
+		
+		closePool();
+	}
+	
+	/**
+	 * Returns the connection pool, creating it if needed. Mostly useful for checking its metrics.
+	 * @return
+	 */
+	public static synchronized ConnectionPool getPool() {
+		
+		if (pool == null) {
+			Properties props = new Properties();
+			if (databaseUsername != null) {
+				props.setProperty("user", databaseUsername);
+			}
+			if (databasePassword != null) {
+				props.setProperty("password", databasePassword);
+			}
+			if (databaseAddress != null && databaseAddress.startsWith(POSTGRES_URL_PREFIX)) {
+				// lets the driver turn a batch of inserts into one multi-row insert
+				props.setProperty("reWriteBatchedInserts", "true");
+			}
+			
+			pool = new ConnectionPool(databaseAddress, props, poolMinSize, poolMaxSize,
+					poolIdleTimeoutMillis, poolLeakThresholdMillis, poolAcquireTimeoutMillis);
+		}
+		
+		return pool;
+	}
+	
+	/**
+	 * Closes every pooled connection. A new pool is created if getConnection is called again.
+	 */
+	public static synchronized void closePool() {
+		
+		if (pool != null) {
+			log.log(Level.INFO, "Closing connection pool: " + pool);
+			pool.shutdown();
+			pool = null;
+		}
 	}
 	
 	/**
@@ -64,6 +167,7 @@ public class DatabaseUtil {
 	/**
 	 * Based on the ConnectionUtil method from the demo
 	 * Should probably be private but public makes it easier to test
+	 * Borrows a connection from the pool; closing it returns it to the pool.
 	 * @return
 	 */
 	public static Connection getConnection() {
@@ -71,11 +175,7 @@ public class DatabaseUtil {
 		Connection conn = null;
 		
 		try {
-			conn = DriverManager.getConnection(
-					databaseAddress,
-					databaseUsername,
-					databasePassword
-					);
+			conn = getPool().getConnection();
 		} catch (SQLException e) {
 			log.log(Level.WARN, "Unable to obtain connection to database: " + e.getMessage());
 		}
@@ -85,6 +185,7 @@ public class DatabaseUtil {
 	
 	/**
 	 * (Should) set the database into a fresh state.
+	 * Everything is dropped, then the tables are rebuilt by running every migration.
 	 */
 	public static void resetDatabase() {
 		
@@ -95,92 +196,133 @@ public class DatabaseUtil {
 			dropTableIfExists(conn, "bank_account");
 			dropTableIfExists(conn, "transaction_record");
 			dropTableIfExists(conn, "account_ownership");
+			for (IDType type : IDType.values()) {
+				conn.createStatement().execute("DROP SEQUENCE IF EXISTS " + getIDSequenceName(type));
+			}
 			
-			// create tables ------------------------------------------------------------
-			Statement stm;
-			
-			// a little clumsy but it works (I hope)
-			String createUserProfileTable = "CREATE TABLE \"user_profile\"\n"
-					+ "(\n"
-					+ "\"user_id\" INT NOT NULL,\n"
-					+ "\"username\" VARCHAR(120) NOT NULL,\n"
-					+ "\"password\" VARCHAR(120) NOT NULL,\n"
-					+ "\"type\" VARCHAR(120) NOT NULL,\n"
-					+ "CONSTRAINT \"PK_user_profile\" PRIMARY KEY (\"user_id\")\n"
-					+ ");";
-			stm = conn.createStatement();
-			stm.execute(createUserProfileTable);
-			
-			String createBankAccountTable = "CREATE TABLE \"bank_account\"\n"
-					+ "(\n"
-					+ "\"account_id\" INT NOT NULL,\n"
-					+ "\"status\" VARCHAR(120) NOT NULL,\n"
-					+ "\"type\" VARCHAR(120) NOT NULL,\n"
-					+ "\"funds\" INT NOT NULL,\n"
-					+ "CONSTRAINT \"PK_bank_account\" PRIMARY KEY (\"account_id\")\n"
-					+ ");";
-			stm = conn.createStatement();
-			stm.execute(createBankAccountTable);
-			
-			String createTransactionTable = "CREATE TABLE \"transaction_record\"\n"
-					+ "(\n"
-					+ "\"transaction_id\" INT NOT NULL,\n"
-					+ "\"time\" VARCHAR(120) NOT NULL,\n"
-					+ "\"type\" VARCHAR(120) NOT NULL,\n"
-					+ "\"acting_user\" INT NOT NULL,\n"
-					+ "\"source_account\" INT,\n"
-					+ "\"destination_account\" INT,\n"
-					+ "\"money_amount\" INT,\n"
-					+ "CONSTRAINT \"PK_transaction_record\" PRIMARY KEY (\"transaction_id\")\n"
-					+ ");";
-			stm = conn.createStatement();
-			stm.execute(createTransactionTable);
-			
-			// user ID is foreign keys
-			String addTrasactionActingUserIDForeignKey = "ALTER TABLE \"transaction_record\" ADD CONSTRAINT \"FK_acting_user\"\n"
-					+ "		FOREIGN KEY (\"acting_user\") REFERENCES \"user_profile\" (\"user_id\")";
-			stm = conn.createStatement();
-			stm.execute(addTrasactionActingUserIDForeignKey);
-			// accounts are not foreign keys because they may be null
-			/*
-			String addTrasactionActingAccountIDForeignKey = "ALTER TABLE \"transaction_record\" ADD CONSTRAINT \"FK_source_account\"\n"
-					+ "		FOREIGN KEY (\"source_account\") REFERENCES \"bank_account\" (\"account_id\")";
-			stm = conn.createStatement();
-			stm.execute(addTrasactionActingAccountIDForeignKey);
-			*/
+			dropTableIfExists(conn, SchemaMigrator.SCHEMA_VERSION_TABLE);
 			
-			String createAccountOwnershipTable = "CREATE TABLE \"account_ownership\"\n"
-					+ "(\n"
-					+ "\"user_id\" INT NOT NULL,\n"
-					+ "\"account_id\" INT NOT NULL,\n"
-					+ "PRIMARY KEY (\"user_id\", \"account_id\")\n"
-					//+ "CONSTRAINT \"FK_user\" FOREIGN KEY (\"user_id\") REFERENCES user_profile (\"user_id\")"
-					//+ "CONSTRAINT \"FK_account\" FOREIGN KEY (\"account_id\") REFERENCES bank_account (\"account_id\")"
-					+ ");";
-			stm = conn.createStatement();
-			stm.execute(createAccountOwnershipTable);
-			// add the foreign keys
-			String addUserIDForeignKey = "ALTER TABLE \"account_ownership\" ADD CONSTRAINT \"FK_user\"\n"
-					+ "		FOREIGN KEY (\"user_id\") REFERENCES \"user_profile\" (\"user_id\")";
-			stm = conn.createStatement();
-			stm.execute(addUserIDForeignKey);
-			String addAccountIDForeignKey = "ALTER TABLE \"account_ownership\" ADD CONSTRAINT \"FK_account\"\n"
-					+ "		FOREIGN KEY (\"account_id\") REFERENCES \"bank_account\" (\"account_id\")";
-			stm = conn.createStatement();
-			stm.execute(addAccountIDForeignKey);
+			// create tables ------------------------------------------------------------
+			SchemaMigrator.migrate(conn);
 			
 			// populate with starting data -----------------
 			populateUserProfiles(conn);
 			populateBankAccounts(conn);
 			populateTransactionRecords(conn);
 			populateAccountOwnership(conn);
+			
+			// id sequences start after the starting data
+			for (IDType type : IDType.values()) {
+				createIDSequence(conn, type);
+			}
 		}
 		catch(SQLException e) {
 			log.log(Level.WARN, "Problem resetting database: " + e.getMessage());
 			
 		}
+		
+		// pooled sessions may still have cached plans for the old tables
+		getPool().drain();
+		resetCount++;
+	}
+	
+	/**
+	 * @return how many times resetDatabase has run; PostgresDAO uses it to tell when its
+	 *     username filter no longer describes the database
+	 */
+	public static int getResetCount() {
+		return resetCount;
 	}
 
+	/**
+	 * Applies any schema migrations the database hasn't had yet (see SchemaMigrator).
+	 * Safe to call every time the program starts.
+	 * @return the schema version the database is at afterwards
+	 * @throws BankDAOException if the database can't be reached or a migration fails
+	 */
+	public static int migrateDatabase() throws BankDAOException {
+		
+		try (Connection conn = getConnection()){
+			if (conn == null) {
+				throw new BankDAOException("Could not connect to database to migrate it");
+			}
+			return SchemaMigrator.migrate(conn);
+		}
+		catch (SQLException e) {
+			log.log(Level.ERROR, "Problem migrating database: " + e.getMessage());
+			throw new BankDAOException("Could not bring the database schema up to date");
+		}
+	}
+	
+	/**
+	 * @param type
+	 * @return the name of the sequence that IDs of the given type come from
+	 */
+	public static String getIDSequenceName(IDType type) {
+		
+		switch (type) {
+			case USER_PROFILE:
+				return USER_PROFILE_ID_SEQUENCE;
+			case BANK_ACCOUNT:
+				return BANK_ACCOUNT_ID_SEQUENCE;
+			default:
+				return TRANSACTION_RECORD_ID_SEQUENCE;
+		}
+	}
+	
+	/**
+	 * Creates any missing ID sequences, starting them after the highest ID already in use.
+	 * For databases that were set up before the sequences existed.
+	 * @param conn
+	 * @throws SQLException
+	 */
+	public static void ensureIDSequences(Connection conn) throws SQLException {
+		
+		for (IDType type : IDType.values()) {
+			PreparedStatement pstm = conn.prepareStatement(
+					"SELECT COUNT(*) AS found FROM information_schema.sequences WHERE sequence_name = ?;");
+			pstm.setString(1, getIDSequenceName(type));
+			ResultSet rs = pstm.executeQuery();
+			
+			if (rs.next() && rs.getInt("found") == 0) {
+				log.log(Level.INFO, "Creating missing sequence " + getIDSequenceName(type));
+				createIDSequence(conn, type);
+			}
+		}
+	}
+	
+	/**
+	 * Creates the sequence for the given type, starting after the highest ID in its table.
+	 * @param conn
+	 * @param type
+	 * @throws SQLException
+	 */
+	private static void createIDSequence(Connection conn, IDType type) throws SQLException {
+		
+		String table;
+		String column;
+		switch (type) {
+			case USER_PROFILE:
+				table = "user_profile";
+				column = "user_id";
+				break;
+			case BANK_ACCOUNT:
+				table = "bank_account";
+				column = "account_id";
+				break;
+			default:
+				table = "transaction_record";
+				column = "transaction_id";
+		}
+		
+		Statement stm = conn.createStatement();
+		stm.execute("CREATE SEQUENCE IF NOT EXISTS " + getIDSequenceName(type));
+		
+		ResultSet rs = stm.executeQuery("SELECT MAX(" + column + ") AS max_id FROM " + table + ";");
+		int max = rs.next() ? rs.getInt("max_id") : 0; // null (empty table) comes back as 0
+		stm.execute("ALTER SEQUENCE " + getIDSequenceName(type) + " RESTART WITH " + (max + 1));
+	}
+	
 	/**
 	 * Helper method that does what it says
 	 * @param conn
@@ -0,0 +1,140 @@
+/**
+ * Hands out ID numbers for new profiles, accounts and transaction records.
+ * 
+ * Rather than asking the DAO for the highest ID and adding one (a full table scan or file read 
+ * each time, and two threads can easily end up with the same number), IDs are reserved from 
+ * the DAO in blocks. Within a block, IDs are handed out with a single atomic increment, so
+ * threads never wait on each other except when a block runs out.
+ * 
+ * One allocator should be shared by everything using the same DAO.
+ * 
+ * Andrew Curry
+ */
+package dao;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import dao.BankDAO.IDType;
+
+public class IdAllocator {
+	
+	// constants
+	public static final int DEFAULT_BLOCK_SIZE = 20;
+	
+	// class / static variables
+	private static Logger log = Logger.getLogger(IdAllocator.class);
+	
+	// instance variables
+	private final BankDAO dao;
+	private final int blockSize;
+	private final Map<IDType, AtomicReference<Block>> blocks = new EnumMap<>(IDType.class);
+	
+	// constructor(s)
+	
+	public IdAllocator(BankDAO dao) {
+		this(dao, DEFAULT_BLOCK_SIZE);
+	}
+	
+	/**
+	 * @param dao
+	 * @param blockSize : how many IDs to reserve from the DAO at a time
+	 */
+	public IdAllocator(BankDAO dao, int blockSize) {
+		
+		this.dao = dao;
+		this.blockSize = blockSize;
+		
+		for (IDType type : IDType.values()) {
+			blocks.put(type, new AtomicReference<>(Block.EMPTY));
+		}
+	}
+	
+	// methods
+	
+	/**
+	 * Returns an ID that hasn't been used before for the given type of data.
+	 * @param type
+	 * @return
+	 * @throws BankDAOException
+	 */
+	public int nextID(IDType type) throws BankDAOException {
+		
+		AtomicReference<Block> current = blocks.get(type);
+		
+		while (true) {
+			Block block = current.get();
+			int index = block.next.getAndIncrement();
+			if (index < block.ids.length) {
+				return block.ids[index];
+			}
+			refill(type, current, block);
+		}
+	}
+	
+	public int nextUserProfileID() throws BankDAOException {
+		return nextID(IDType.USER_PROFILE);
+	}
+	
+	public int nextBankAccountID() throws BankDAOException {
+		return nextID(IDType.BANK_ACCOUNT);
+	}
+	
+	public int nextTransactionRecordID() throws BankDAOException {
+		return nextID(IDType.TRANSACTION_RECORD);
+	}
+	
+	/**
+	 * For DAOs that reserve IDs by counting up from a high-water mark.
+	 * @param first
+	 * @param count
+	 * @return first, first + 1, ... first + count - 1
+	 */
+	static int[] consecutiveIDs(int first, int count) {
+		
+		int[] ids = new int[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = first + i;
+		}
+		return ids;
+	}
+	
+	// helper methods
+	
+	/**
+	 * Replaces the used up block with a fresh one from the DAO. If several threads run out
+	 * at once, only the first one goes to the DAO; the rest just pick up the new block.
+	 */
+	private void refill(IDType type, AtomicReference<Block> current, Block usedUp) 
+			throws BankDAOException {
+		
+		synchronized (current) {
+			if (current.get() != usedUp) {
+				return; // someone else already did it
+			}
+			
+			int[] ids = dao.reserveIDs(type, blockSize);
+			log.log(Level.DEBUG, "Reserved " + ids.length + " IDs for " + type);
+			current.set(new Block(ids));
+		}
+	}
+	
+	// inner classes
+	
+	private static class Block {
+		
+		static final Block EMPTY = new Block(new int[0]);
+		
+		final int[] ids;
+		final AtomicInteger next = new AtomicInteger();
+		
+		Block(int[] ids) {
+			this.ids = ids;
+		}
+	}
+}
@@ -0,0 +1,599 @@
+/**
+ * A DAO that keeps everything in memory, for tests and demos where the whole bank fits in RAM
+ * and paying for a file or a database on every call is a waste.
+ *
+ * Profiles, accounts and transaction records live in maps keyed by ID, alongside secondary
+ * indexes from username to profile, from owner to accounts, and from acting user and account
+ * to transaction records. Profiles, accounts and the indexes keyed by user or account ID are
+ * IntObjectMaps, so those keys stay unboxed. Anything that has to be walked in ID order (all
+ * transaction records, and each index's set of IDs) is a concurrent skip list instead, since
+ * there's no sorted primitive equivalent; that way history lookups and pages come straight
+ * off an index instead of a scan. Stored objects are copies, and reads
+ * hand out copies, so nothing a caller does to an object changes the store until it's written.
+ *
+ * Writes are synchronized (one writer keeps the indexes in step with the maps); reads don't
+ * take the lock. A read that overlaps a list write can see some of the list's objects
+ * written and not others, but never half of one object.
+ *
+ * Given a snapshot file, the DAO loads it on start and saves everything back to it
+ * periodically, and again on close. Snapshots are in the .bdf line format (see
+ * TextRecordCodec), including TextFileDAO's ID high-water mark lines, so a snapshot can be
+ * opened by a TextFileDAO and any .bdf file can be loaded as a snapshot. Anything written
+ * since the last snapshot is lost if the process dies.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.UserProfile;
+
+public class InMemoryBankDAO implements BankDAO {
+
+	// constants
+	public static final long DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 30;
+	private static final String MEMORY_ONLY_NAME = "memory";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final Charset CHARSET = Charset.defaultCharset(); // same one TextFileDAO uses
+
+	private static final String USER_PROFILE_PREFIX = TextRecordCodec.USER_PROFILE_PREFIX;
+	private static final String BANK_ACCOUNT_PREFIX = TextRecordCodec.BANK_ACCOUNT_PREFIX;
+	private static final String TRANSACTION_RECORD_PREFIX = TextRecordCodec.TRANSACTION_RECORD_PREFIX;
+	private static final String HIGH_WATER_MARK_PREFIX = "HWM"; // "HWM PRF 120", same as TextFileDAO
+
+	// class / static variables
+	private static Logger log = Logger.getLogger(InMemoryBankDAO.class);
+
+	// instance variables
+	private final String snapshotFilename; // null if nothing is saved
+
+	private final IntObjectMap<UserProfile> profiles = new IntObjectMap<>();
+	private final IntObjectMap<BankAccount> accounts = new IntObjectMap<>();
+	private final ConcurrentSkipListMap<Integer, TransactionRecord> transactions = new ConcurrentSkipListMap<>();
+
+	// secondary indexes, only changed by writers
+	private final Map<String, Integer> usernameIndex = new ConcurrentHashMap<>();
+	private final IntObjectMap<NavigableSet<Integer>> ownerIndex = new IntObjectMap<>(); // owner -> accounts
+	private final IntObjectMap<NavigableSet<Integer>> actingUserIndex = new IntObjectMap<>(); // user -> records
+	private final IntObjectMap<NavigableSet<Integer>> accountIndex = new IntObjectMap<>(); // account -> records
+
+	private volatile int highestProfileID = -1;
+	private volatile int highestAccountID = -1;
+	private volatile int highestTransactionID = -1;
+	private final Map<IDType, Integer> reservedIDs = new EnumMap<>(IDType.class); // guarded by this
+
+	private volatile long version; // bumped by every change, so unchanged data isn't saved again
+	private long snapshotVersion; // the version the snapshot file has, guarded by snapshotLock
+	private final Object snapshotLock = new Object(); // one snapshot at a time
+	private final ScheduledExecutorService snapshotter; // null if there are no periodic snapshots
+
+	// constructor(s)
+
+	/**
+	 * An empty DAO that is never saved anywhere.
+	 */
+	public InMemoryBankDAO() {
+		this.snapshotFilename = null;
+		this.snapshotter = null;
+	}
+
+	/**
+	 * Loads the snapshot file (if there is one) and saves back to it every so often.
+	 * @param snapshotFilename
+	 * @throws BankDAOException if the file is there but can't be read
+	 */
+	public InMemoryBankDAO(String snapshotFilename) throws BankDAOException {
+		this(snapshotFilename, DEFAULT_SNAPSHOT_INTERVAL_SECONDS);
+	}
+
+	/**
+	 * @param snapshotFilename : loaded now if it exists, and saved to by snapshot() and close()
+	 * @param snapshotIntervalSeconds : how often to save in the background; 0 for never
+	 * @throws BankDAOException if the file is there but can't be read
+	 */
+	public InMemoryBankDAO(String snapshotFilename, long snapshotIntervalSeconds) throws BankDAOException {
+
+		this.snapshotFilename = snapshotFilename;
+		load();
+
+		if (snapshotIntervalSeconds > 0) {
+			snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "memory-snapshot-" + new File(snapshotFilename).getName());
+				t.setDaemon(true);
+				return t;
+			});
+			snapshotter.scheduleWithFixedDelay(this::backgroundSnapshot,
+					snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+		}
+		else {
+			snapshotter = null;
+		}
+	}
+
+	// methods from BankDAO interface
+
+	@Override
+	public String getResourceName() {
+		return (snapshotFilename == null) ? MEMORY_ONLY_NAME : snapshotFilename;
+	}
+
+	@Override
+	public BankAccount readBankAccount(int accID) throws BankDAOException {
+
+		BankAccount ba = accounts.get(accID);
+		if (ba == null) {
+			ba = TextRecordCodec.buildAccountFromEntry(""); // didn't find it
+			ba.setId(accID);
+			return ba;
+		}
+		return new BankAccount(ba);
+	}
+
+	@Override
+	public List<BankAccount> readAllBankAccounts() throws BankDAOException {
+
+		List<BankAccount> all = new ArrayList<>();
+		for (BankAccount ba : accounts.valuesInKeyOrder()) {
+			all.add(new BankAccount(ba));
+		}
+		return all;
+	}
+
+	@Override
+	public UserProfile readUserProfile(int userID) throws BankDAOException {
+
+		UserProfile up = profiles.get(userID);
+		if (up == null) {
+			up = TextRecordCodec.buildUserProfileFromEntry(""); // didn't find it
+			up.setId(userID);
+			return up;
+		}
+		return new UserProfile(up);
+	}
+
+	@Override
+	public UserProfile readUserProfile(String username) throws BankDAOException {
+
+		Integer userID = usernameIndex.get(username);
+		if (userID != null) {
+			UserProfile up = profiles.get(userID);
+			if (up != null && username.equals(up.getUsername())) {
+				return new UserProfile(up);
+			}
+		}
+		return TextRecordCodec.buildUserProfileFromEntry(""); // didn't find it
+	}
+
+	@Override
+	public List<UserProfile> readAllUserProfiles() throws BankDAOException {
+
+		List<UserProfile> all = new ArrayList<>();
+		for (UserProfile up : profiles.valuesInKeyOrder()) {
+			all.add(new UserProfile(up));
+		}
+		return all;
+	}
+
+	@Override
+	public TransactionRecord readTransactionRecord(int recID) throws BankDAOException {
+
+		TransactionRecord tr = transactions.get(recID);
+		if (tr == null) {
+			tr = TextRecordCodec.buildTransactionRecordFromEntry(""); // didn't find it
+			tr.setId(recID);
+			return tr;
+		}
+		return new TransactionRecord(tr);
+	}
+
+	@Override
+	public List<TransactionRecord> readAllTransactionRecords() throws BankDAOException {
+
+		List<TransactionRecord> all = new ArrayList<>();
+		for (TransactionRecord tr : transactions.values()) {
+			all.add(new TransactionRecord(tr));
+		}
+		return all;
+	}
+
+	@Override
+	public List<TransactionRecord> readTransactionRecordByActingUserId(int actingUserID)
+			throws BankDAOException {
+		return readTransactionRecordPage(TransactionFilter.ACTING_USER, actingUserID, FIRST_PAGE, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<TransactionRecord> readTransactionRecordByAccountId(int accID) throws BankDAOException {
+		return readTransactionRecordPage(TransactionFilter.ACCOUNT, accID, FIRST_PAGE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Pages come off the sorted maps: all records for ALL, or the acting user or account
+	 * index for the others.
+	 */
+	@Override
+	public List<TransactionRecord> readTransactionRecordPage(TransactionFilter filter, int filterID,
+			int afterID, int pageSize) throws BankDAOException {
+
+		List<TransactionRecord> page = new ArrayList<>();
+		if (filter == TransactionFilter.ALL) {
+			for (TransactionRecord tr : transactions.tailMap(afterID, false).values()) {
+				if (page.size() >= pageSize) {
+					break;
+				}
+				page.add(new TransactionRecord(tr));
+			}
+			return page;
+		}
+
+		NavigableSet<Integer> recIDs = ((filter == TransactionFilter.ACTING_USER) ? actingUserIndex : accountIndex)
+				.get(filterID);
+		if (recIDs == null) {
+			return page;
+		}
+		for (int recID : recIDs.tailSet(afterID, false)) {
+			if (page.size() >= pageSize) {
+				break;
+			}
+			TransactionRecord tr = transactions.get(recID);
+			if (tr != null && filter.matches(tr, filterID)) { // the index can be a step behind a rewrite
+				page.add(new TransactionRecord(tr));
+			}
+		}
+		return page;
+	}
+
+	@Override
+	public void write(BankData bd) throws BankDAOException {
+
+		List<BankData> toWrite = new ArrayList<BankData>();
+		toWrite.add(bd);
+		write(toWrite); // just use the list method
+	}
+
+	@Override
+	public synchronized void write(List<BankData> toWrite) throws BankDAOException {
+
+		for (BankData bd : toWrite) {
+			if (bd instanceof UserProfile) {
+				putUserProfile(new UserProfile((UserProfile)bd));
+			}
+			else if (bd instanceof BankAccount) {
+				putBankAccount(new BankAccount((BankAccount)bd));
+			}
+			else if (bd instanceof TransactionRecord) {
+				putTransactionRecord(new TransactionRecord((TransactionRecord)bd));
+			}
+			else {
+				throw new BankDAOException("Can't write unknown data type: " + bd);
+			}
+		}
+		version++;
+	}
+
+	@Override
+	public int getHighestUserProfileID() throws BankDAOException {
+		return highestProfileID;
+	}
+
+	@Override
+	public int getHighestBankAccountID() throws BankDAOException {
+		return highestAccountID;
+	}
+
+	@Override
+	public int getHighestTransactionRecordID() throws BankDAOException {
+		return highestTransactionID;
+	}
+
+	@Override
+	public boolean isUsernameFree(String username) throws BankDAOException {
+		return !usernameIndex.containsKey(username);
+	}
+
+	/**
+	 * Reserved IDs are saved with the next snapshot, as high-water marks.
+	 */
+	@Override
+	public synchronized int[] reserveIDs(IDType type, int count) throws BankDAOException {
+
+		int first = Math.max(highestID(type), reservedIDs.getOrDefault(type, -1)) + 1;
+		reservedIDs.put(type, first + count - 1);
+		version++;
+		return IdAllocator.consecutiveIDs(first, count);
+	}
+
+	// other public methods
+
+	/**
+	 * Uses the owner index, so doesn't need to look through every account.
+	 * @param userID
+	 * @return the accounts the given user is an owner of, in ID order
+	 */
+	public List<BankAccount> readBankAccountsByOwner(int userID) {
+
+		List<BankAccount> owned = new ArrayList<>();
+		NavigableSet<Integer> accIDs = ownerIndex.get(userID);
+		if (accIDs == null) {
+			return owned;
+		}
+		for (int accID : accIDs) {
+			BankAccount ba = accounts.get(accID);
+			if (ba != null && ba.hasOwner(userID)) { // the index can be a step behind a rewrite
+				owned.add(new BankAccount(ba));
+			}
+		}
+		return owned;
+	}
+
+	/**
+	 * Saves everything to the snapshot file, unless nothing has changed since the last time.
+	 * The new snapshot goes to a temp file that is then moved over the old one, so a crash
+	 * part way through leaves the previous snapshot. Writes can carry on while the file is
+	 * being written. Does nothing if there's no snapshot file.
+	 * @throws BankDAOException if the snapshot couldn't be saved
+	 */
+	public void snapshot() throws BankDAOException {
+
+		if (snapshotFilename == null) {
+			return;
+		}
+
+		synchronized (snapshotLock) {
+			long snapshotOf;
+			List<BankData> data = new ArrayList<>();
+			Map<IDType, Integer> marks;
+
+			synchronized (this) { // stored objects are never changed, so the references are enough
+				snapshotOf = version;
+				if (snapshotOf == snapshotVersion) {
+					return;
+				}
+				data.addAll(profiles.valuesInKeyOrder());
+				data.addAll(accounts.valuesInKeyOrder());
+				data.addAll(transactions.values());
+				marks = new EnumMap<>(reservedIDs);
+			}
+
+			String tempFilename = snapshotFilename + TEMP_SUFFIX;
+			try (FileOutputStream fileOut = new FileOutputStream(tempFilename);
+					BufferedWriter out = new BufferedWriter(new OutputStreamWriter(fileOut, CHARSET))) {
+
+				StringBuilder sb = new StringBuilder(64);
+				for (BankData bd : data) {
+					sb.setLength(0);
+					TextRecordCodec.append(bd, sb);
+					out.append(sb).append('\n');
+				}
+				for (Map.Entry<IDType, Integer> mark : marks.entrySet()) {
+					out.append(HIGH_WATER_MARK_PREFIX).append(' ').append(prefixOf(mark.getKey()))
+							.append(' ').append(Integer.toString(mark.getValue())).append('\n');
+				}
+				out.flush();
+				fileOut.getFD().sync();
+			}
+			catch (IOException e) {
+				new File(tempFilename).delete();
+				log.log(Level.ERROR, "Problem writing snapshot " + tempFilename + ": " + e.getMessage());
+				throw new BankDAOException("ALERT: could not save snapshot: " + snapshotFilename);
+			}
+
+			try {
+				Files.move(Paths.get(tempFilename), Paths.get(snapshotFilename),
+						StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (IOException e) {
+				log.log(Level.ERROR, "Problem replacing snapshot " + snapshotFilename + ": " + e.getMessage());
+				throw new BankDAOException("ALERT: could not save snapshot: " + snapshotFilename);
+			}
+			snapshotVersion = snapshotOf;
+			log.log(Level.DEBUG, "Saved snapshot " + snapshotFilename + " with " + data.size() + " entries");
+		}
+	}
+
+	/**
+	 * Stops the background snapshots and saves one last time.
+	 */
+	public void close() {
+
+		if (snapshotter != null) {
+			snapshotter.shutdownNow();
+		}
+		try {
+			snapshot();
+		}
+		catch (BankDAOException e) {
+			log.log(Level.ERROR, "Final snapshot failed, changes since the last one are lost: " + e.getMessage());
+		}
+	}
+
+	// helper methods
+
+	/**
+	 * Fills the maps from the snapshot file, if it exists. Lines that aren't records or
+	 * high-water marks are skipped, same as the other .bdf readers.
+	 * @throws BankDAOException
+	 */
+	private synchronized void load() throws BankDAOException {
+
+		if (!new File(snapshotFilename).exists()) {
+			log.log(Level.INFO, "No snapshot at " + snapshotFilename + ", starting empty");
+			return;
+		}
+
+		String markTag = HIGH_WATER_MARK_PREFIX + " ";
+		int lines = 0;
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(snapshotFilename), CHARSET))) {
+
+			String line;
+			while ((line = in.readLine()) != null) {
+				lines++;
+				if (line.startsWith(USER_PROFILE_PREFIX + " ")) {
+					putUserProfile(TextRecordCodec.buildUserProfileFromEntry(line));
+				}
+				else if (line.startsWith(BANK_ACCOUNT_PREFIX + " ")) {
+					putBankAccount(TextRecordCodec.buildAccountFromEntry(line));
+				}
+				else if (line.startsWith(TRANSACTION_RECORD_PREFIX + " ")) {
+					putTransactionRecord(TextRecordCodec.buildTransactionRecordFromEntry(line));
+				}
+				else if (line.startsWith(markTag)) {
+					loadMark(line.substring(markTag.length()));
+				}
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			log.log(Level.ERROR, "Problem loading snapshot " + snapshotFilename + ": " + e.getMessage());
+			throw new BankDAOException("Could not load snapshot: " + snapshotFilename);
+		}
+
+		snapshotVersion = version; // what's in memory is what's in the file
+		log.log(Level.INFO, "Loaded " + lines + " lines from snapshot " + snapshotFilename);
+	}
+
+	/**
+	 * @param mark : eg "PRF 120"
+	 */
+	private void loadMark(String mark) {
+
+		for (IDType type : IDType.values()) {
+			String tag = prefixOf(type) + " ";
+			if (mark.startsWith(tag)) {
+				int reserved = Integer.parseInt(mark.substring(tag.length()).trim());
+				reservedIDs.merge(type, reserved, Math::max);
+				return;
+			}
+		}
+	}
+
+	private void backgroundSnapshot() {
+
+		try {
+			snapshot();
+		}
+		catch (BankDAOException e) {
+			// already logged, try again next time
+		}
+	}
+
+	/**
+	 * Stores the profile and moves its username in the index. Callers hold the lock.
+	 */
+	private void putUserProfile(UserProfile up) {
+
+		UserProfile old = profiles.put(up.getId(), up);
+		if (old != null && old.getUsername() != null && !old.getUsername().equals(up.getUsername())) {
+			usernameIndex.remove(old.getUsername(), old.getId());
+		}
+		if (up.getUsername() != null) {
+			usernameIndex.put(up.getUsername(), up.getId());
+		}
+		highestProfileID = Math.max(highestProfileID, up.getId());
+	}
+
+	/**
+	 * Stores the account and brings the owner index up to date. Callers hold the lock.
+	 */
+	private void putBankAccount(BankAccount ba) {
+
+		BankAccount old = accounts.put(ba.getId(), ba);
+		for (int ownerID : ba.getOwnerSet().toArray()) {
+			indexUnder(ownerIndex, ownerID, ba.getId());
+		}
+		if (old != null) {
+			for (int ownerID : old.getOwnerSet().without(ba.getOwnerSet()).toArray()) {
+				unindexFrom(ownerIndex, ownerID, ba.getId());
+			}
+		}
+		highestAccountID = Math.max(highestAccountID, ba.getId());
+	}
+
+	/**
+	 * Stores the record and brings the history indexes up to date. Callers hold the lock.
+	 */
+	private void putTransactionRecord(TransactionRecord tr) {
+
+		TransactionRecord old = transactions.put(tr.getId(), tr);
+		indexUnder(actingUserIndex, tr.getActingUser(), tr.getId());
+		indexUnder(accountIndex, tr.getSourceAccount(), tr.getId());
+		indexUnder(accountIndex, tr.getDestinationAccount(), tr.getId());
+		if (old != null) { // records aren't normally rewritten, but the other DAOs allow it
+			if (old.getActingUser() != tr.getActingUser()) {
+				unindexFrom(actingUserIndex, old.getActingUser(), tr.getId());
+			}
+			for (int accID : new int[] {old.getSourceAccount(), old.getDestinationAccount()}) {
+				if (accID != tr.getSourceAccount() && accID != tr.getDestinationAccount()) {
+					unindexFrom(accountIndex, accID, tr.getId());
+				}
+			}
+		}
+		highestTransactionID = Math.max(highestTransactionID, tr.getId());
+	}
+
+	private static void indexUnder(IntObjectMap<NavigableSet<Integer>> index, int key, int id) {
+		index.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>()).add(id);
+	}
+
+	private static void unindexFrom(IntObjectMap<NavigableSet<Integer>> index, int key, int id) {
+
+		Set<Integer> ids = index.get(key);
+		if (ids != null) {
+			ids.remove(id);
+		}
+	}
+
+	private int highestID(IDType type) {
+
+		switch (type) {
+			case USER_PROFILE:
+				return highestProfileID;
+			case BANK_ACCOUNT:
+				return highestAccountID;
+			default:
+				return highestTransactionID;
+		}
+	}
+
+	private static String prefixOf(IDType type) {
+
+		switch (type) {
+			case USER_PROFILE:
+				return USER_PROFILE_PREFIX;
+			case BANK_ACCOUNT:
+				return BANK_ACCOUNT_PREFIX;
+			default:
+				return TRANSACTION_RECORD_PREFIX;
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/**
+ * A map from int keys to objects, used by InMemoryBankDAO for its ID-keyed maps so the keys
+ * aren't boxed into an Integer (and an entry object) apiece.
+ *
+ * Keys are kept unboxed in an open-addressing hash table. There is one writer at a time (the
+ * caller's lock sees to that) and any number of readers, which take no lock: each value is
+ * set through an AtomicReferenceArray after its key, so a reader that sees the value sees the
+ * key too, and a table that has been grown is only published once it's full. Entries are
+ * never removed, so a slot's key never changes once it's been set.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+public class IntObjectMap<V> {
+
+	// constants
+	private static final int MIN_CAPACITY = 16; // always a power of 2
+
+	// instance variables
+	private volatile Table table;
+	private int size; // only touched by the writer
+
+	// constructor(s)
+	public IntObjectMap() {
+		table = new Table(MIN_CAPACITY);
+	}
+
+	// operation methods (safe without the lock)
+
+	/**
+	 * @param key
+	 * @return the value, or null if there isn't one
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+
+		Table t = table;
+		int mask = t.keys.length - 1;
+		for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+			Object value = t.values.get(slot);
+			if (value == null) {
+				return null;
+			}
+			if (t.keys[slot] == key) {
+				return (V)value;
+			}
+		}
+	}
+
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * @return the keys, in increasing order
+	 */
+	public int[] sortedKeys() {
+
+		Table t = table;
+		int[] found = new int[t.keys.length];
+		int count = 0;
+		for (int slot = 0; slot < t.keys.length; slot++) {
+			if (t.values.get(slot) != null) {
+				found[count++] = t.keys[slot];
+			}
+		}
+		int[] sorted = Arrays.copyOf(found, count);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * @return the values, in increasing key order
+	 */
+	public List<V> valuesInKeyOrder() {
+
+		int[] keys = sortedKeys();
+		List<V> values = new ArrayList<>(keys.length);
+		for (int key : keys) {
+			values.add(get(key));
+		}
+		return values;
+	}
+
+	// operation methods (writer only)
+
+	/**
+	 * Callers must hold the writer's lock.
+	 * @param key
+	 * @param value : not null
+	 * @return the value it replaced, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+
+		if (value == null) {
+			throw new NullPointerException("IntObjectMap can't hold null values");
+		}
+
+		Table t = table;
+		int mask = t.keys.length - 1;
+		int slot = hash(key) & mask;
+		for (Object old = t.values.get(slot); old != null; old = t.values.get(slot)) {
+			if (t.keys[slot] == key) {
+				t.values.set(slot, value);
+				return (V)old;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		t.keys[slot] = key; // before the value, which is what publishes it
+		t.values.set(slot, value);
+		size++;
+		if (size * 2 > t.keys.length) {
+			grow(t);
+		}
+		return null;
+	}
+
+	/**
+	 * Callers must hold the writer's lock.
+	 * @param key
+	 * @param make : makes the value if there isn't one yet
+	 * @return the value, old or new
+	 */
+	public V computeIfAbsent(int key, IntFunction<V> make) {
+
+		V value = get(key);
+		if (value == null) {
+			value = make.apply(key);
+			put(key, value);
+		}
+		return value;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// helper methods
+
+	/**
+	 * Copies everything into a table twice the size, then swaps it in.
+	 */
+	private void grow(Table old) {
+
+		Table bigger = new Table(old.keys.length * 2);
+		int mask = bigger.keys.length - 1;
+		for (int i = 0; i < old.keys.length; i++) {
+			Object value = old.values.get(i);
+			if (value != null) {
+				int slot = hash(old.keys[i]) & mask;
+				while (bigger.values.get(slot) != null) {
+					slot = (slot + 1) & mask;
+				}
+				bigger.keys[slot] = old.keys[i];
+				bigger.values.set(slot, value);
+			}
+		}
+		table = bigger;
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9; // IDs are often consecutive, so spread them out
+		return h ^ (h >>> 16);
+	}
+
+	// inner classes
+
+	private static class Table {
+
+		final int[] keys;
+		final AtomicReferenceArray<Object> values; // null = empty slot
+
+		Table(int capacity) {
+			keys = new int[capacity];
+			values = new AtomicReferenceArray<>(capacity);
+		}
+	}
+}
@@ -0,0 +1,740 @@
+/**
+ * A file-based DAO that never rewrites existing data. Every write is appended to the end of a
+ * segment file (a log) in the same line format as the .bdf files, and an in-memory index keeps
+ * track of where the newest version of each profile, account and transaction lives.
+ *
+ * Reading a single record is one positioned read, and writing is one append, so neither cost
+ * grows with the amount of data stored. Old versions of records are left behind in the log;
+ * once a segment fills up a new one is started, and a background task compacts the full
+ * segments down to only the records that are still current.
+ *
+ * On startup the index is rebuilt by replaying every segment in order.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.UserProfile;
+
+public class LogStructuredDAO implements BankDAO {
+
+	// constants
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String COMPACTION_TEMP_SUFFIX = ".compacting";
+
+	private static final long DEFAULT_SEGMENT_SIZE_LIMIT = 1024 * 1024; // bytes
+	private static final long COMPACTION_INTERVAL_SECONDS = 30;
+	private static final int COMPACTION_MIN_SEGMENTS = 2; // full segments before the background task bothers
+
+	private static final Charset CHARSET = StandardCharsets.UTF_8;
+	private static final byte NEWLINE = '\n';
+
+	// class / static variables
+	private static Logger log = Logger.getLogger(LogStructuredDAO.class);
+
+	// instance variables
+	private final File directory;
+	private final long segmentSizeLimit;
+
+	// id -> location of the newest version of that record
+	private final Map<Integer, RecordLocation> profileIndex = new HashMap<>();
+	private final Map<Integer, RecordLocation> accountIndex = new HashMap<>();
+	private final TreeMap<Integer, RecordLocation> transactionIndex = new TreeMap<>(); // sorted for paging
+	private final Map<String, Integer> usernameIndex = new HashMap<>();
+	private final Map<Integer, String> profileUsernames = new HashMap<>(); // so a rename drops the old name
+
+	private final TreeMap<Integer, FileChannel> segments = new TreeMap<>(); // segment number -> open file
+	private int activeSegment; // the only segment that is appended to
+	private long activeSize;
+
+	private int highestProfileID = -1;
+	private int highestAccountID = -1;
+	private int highestTransactionID = -1;
+	private final Map<IDType, Integer> reservedIDs = new EnumMap<>(IDType.class); // not persisted
+
+	private final Object compactionLock = new Object(); // only one compaction at a time
+	private final ScheduledExecutorService compactor; // null if background compaction is off
+
+	// constructor(s)
+
+	/**
+	 * Opens (or creates) a log in the given directory, with background compaction.
+	 * @param directoryName
+	 * @throws BankDAOException
+	 */
+	public LogStructuredDAO(String directoryName) throws BankDAOException {
+		this(directoryName, DEFAULT_SEGMENT_SIZE_LIMIT, true);
+	}
+
+	/**
+	 * @param directoryName : where the segment files are kept
+	 * @param segmentSizeLimit : a new segment is started once the active one reaches this many bytes
+	 * @param backgroundCompaction : if false, segments are only compacted when compact() is called
+	 * @throws BankDAOException
+	 */
+	public LogStructuredDAO(String directoryName, long segmentSizeLimit, boolean backgroundCompaction)
+			throws BankDAOException {
+
+		this.directory = new File(directoryName);
+		this.segmentSizeLimit = segmentSizeLimit;
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new BankDAOException("Could not create log directory: " + directoryName);
+		}
+
+		recover();
+
+		if (backgroundCompaction) {
+			compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "log-compactor-" + directory.getName());
+				t.setDaemon(true);
+				return t;
+			});
+			compactor.scheduleWithFixedDelay(this::backgroundCompact,
+					COMPACTION_INTERVAL_SECONDS, COMPACTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		}
+		else {
+			compactor = null;
+		}
+	}
+
+	// methods from BankDAO interface
+
+	@Override
+	public String getResourceName() {
+		return directory.getPath();
+	}
+
+	@Override
+	public synchronized BankAccount readBankAccount(int accID) throws BankDAOException {
+
+		BankAccount ba = TextRecordCodec.buildAccountFromEntry(readEntry(accountIndex.get(accID)));
+		ba.setId(accID); // in case it wasn't found
+		return ba;
+	}
+
+	@Override
+	public synchronized List<BankAccount> readAllBankAccounts() throws BankDAOException {
+
+		List<BankAccount> accounts = new ArrayList<>();
+		for (RecordLocation loc : sortedLocations(accountIndex)) {
+			accounts.add(TextRecordCodec.buildAccountFromEntry(readEntry(loc)));
+		}
+		return accounts;
+	}
+
+	@Override
+	public synchronized UserProfile readUserProfile(int userID) throws BankDAOException {
+
+		UserProfile up = TextRecordCodec.buildUserProfileFromEntry(readEntry(profileIndex.get(userID)));
+		up.setId(userID); // in case it wasn't found
+		return up;
+	}
+
+	@Override
+	public synchronized UserProfile readUserProfile(String username) throws BankDAOException {
+
+		Integer userID = usernameIndex.get(username);
+
+		if (userID != null) {
+			UserProfile up = readUserProfile(userID);
+			if (username.equals(up.getUsername())) {
+				return up;
+			}
+		}
+
+		return TextRecordCodec.buildUserProfileFromEntry(""); // didn't find it
+	}
+
+	@Override
+	public synchronized List<UserProfile> readAllUserProfiles() throws BankDAOException {
+
+		List<UserProfile> profiles = new ArrayList<>();
+		for (RecordLocation loc : sortedLocations(profileIndex)) {
+			profiles.add(TextRecordCodec.buildUserProfileFromEntry(readEntry(loc)));
+		}
+		return profiles;
+	}
+
+	@Override
+	public synchronized TransactionRecord readTransactionRecord(int recID) throws BankDAOException {
+
+		TransactionRecord tr = TextRecordCodec.buildTransactionRecordFromEntry(
+				readEntry(transactionIndex.get(recID)));
+		tr.setId(recID); // in case it wasn't found
+		return tr;
+	}
+
+	@Override
+	public synchronized List<TransactionRecord> readAllTransactionRecords() throws BankDAOException {
+
+		List<TransactionRecord> transactions = new ArrayList<>();
+		for (RecordLocation loc : sortedLocations(transactionIndex)) {
+			transactions.add(TextRecordCodec.buildTransactionRecordFromEntry(readEntry(loc)));
+		}
+		return transactions;
+	}
+
+	@Override
+	public synchronized List<TransactionRecord> readTransactionRecordByActingUserId(int actingUserID)
+			throws BankDAOException {
+
+		List<TransactionRecord> matchingRecords = new ArrayList<>();
+		for (TransactionRecord tr : readAllTransactionRecords()) {
+			if (tr.getActingUser() == actingUserID) {
+				matchingRecords.add(tr);
+			}
+		}
+		return matchingRecords;
+	}
+
+	@Override
+	public synchronized List<TransactionRecord> readTransactionRecordByAccountId(int accID)
+			throws BankDAOException {
+
+		List<TransactionRecord> matchingRecords = new ArrayList<>();
+		for (TransactionRecord tr : readAllTransactionRecords()) {
+			if (tr.getSourceAccount() == accID || tr.getDestinationAccount() == accID) {
+				matchingRecords.add(tr);
+			}
+		}
+		return matchingRecords;
+	}
+
+	@Override
+	public synchronized List<TransactionRecord> readTransactionRecordPage(TransactionFilter filter,
+			int filterID, int afterID, int pageSize) throws BankDAOException {
+
+		List<TransactionRecord> page = new ArrayList<>();
+		for (RecordLocation loc : transactionIndex.tailMap(afterID, false).values()) {
+			if (page.size() >= pageSize) {
+				break;
+			}
+			TransactionRecord tr = TextRecordCodec.buildTransactionRecordFromEntry(readEntry(loc));
+			if (filter.matches(tr, filterID)) {
+				page.add(tr);
+			}
+		}
+		return page;
+	}
+
+	@Override
+	public void write(BankData bd) throws BankDAOException {
+
+		List<BankData> toWrite = new ArrayList<BankData>();
+		toWrite.add(bd);
+		write(toWrite); // just use the list method
+	}
+
+	/**
+	 * Appends the given data to the end of the active segment as one write.
+	 * Older versions of the same records stay in the log until compaction.
+	 */
+	@Override
+	public synchronized void write(List<BankData> toWrite) throws BankDAOException {
+
+		List<String> entries = new ArrayList<>();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		List<Integer> lengths = new ArrayList<>();
+
+		for (BankData bd : toWrite) {
+			String entry = TextRecordCodec.save(bd);
+			byte[] encoded = entry.getBytes(CHARSET);
+			entries.add(entry);
+			lengths.add(encoded.length);
+			bytes.write(encoded, 0, encoded.length);
+			bytes.write(NEWLINE);
+		}
+
+		if (activeSize >= segmentSizeLimit) {
+			rollSegment();
+		}
+
+		try {
+			writeFully(segments.get(activeSegment), ByteBuffer.wrap(bytes.toByteArray()), activeSize);
+		}
+		catch (IOException e) {
+			log.log(Level.ERROR, "Problem appending to segment " + activeSegment + ": " + e.getMessage());
+			throw new BankDAOException("ALERT: write failed to append to log: " + directory);
+		}
+
+		// only update the index once the data is actually in the file
+		long offset = activeSize;
+		for (int i = 0; i < entries.size(); i++) {
+			applyToIndex(entries.get(i), new RecordLocation(activeSegment, offset, lengths.get(i)));
+			offset += lengths.get(i) + 1;
+		}
+		activeSize = offset;
+	}
+
+	@Override
+	public synchronized int getHighestUserProfileID() throws BankDAOException {
+		return highestProfileID;
+	}
+
+	@Override
+	public synchronized int getHighestBankAccountID() throws BankDAOException {
+		return highestAccountID;
+	}
+
+	@Override
+	public synchronized int getHighestTransactionRecordID() throws BankDAOException {
+		return highestTransactionID;
+	}
+
+	@Override
+	public synchronized boolean isUsernameFree(String username) throws BankDAOException {
+		return !usernameIndex.containsKey(username);
+	}
+
+	/**
+	 * Reserved IDs are only tracked in memory. Anything reserved but never written
+	 * can be handed out again after a restart, which is fine since nothing uses it.
+	 */
+	@Override
+	public synchronized int[] reserveIDs(IDType type, int count) throws BankDAOException {
+
+		int highest;
+		switch (type) {
+			case USER_PROFILE:
+				highest = highestProfileID;
+				break;
+			case BANK_ACCOUNT:
+				highest = highestAccountID;
+				break;
+			default:
+				highest = highestTransactionID;
+		}
+
+		int first = Math.max(highest, reservedIDs.getOrDefault(type, -1)) + 1;
+		reservedIDs.put(type, first + count - 1);
+		return IdAllocator.consecutiveIDs(first, count);
+	}
+
+	// other public methods
+
+	/**
+	 * Rewrites every full segment into a single segment holding only the current version
+	 * of each record, then deletes the old segments. Runs in the background automatically,
+	 * but can also be called directly. Reads and writes can continue while the copying happens.
+	 * @throws BankDAOException
+	 */
+	public void compact() throws BankDAOException {
+
+		synchronized (compactionLock) {
+			List<Integer> fullSegments;
+			Map<Integer, FileChannel> sources;
+			List<LiveRecord> live = new ArrayList<>();
+
+			synchronized (this) { // decide what to copy
+				fullSegments = new ArrayList<>(segments.headMap(activeSegment).keySet());
+				if (fullSegments.isEmpty()) {
+					return;
+				}
+				sources = new HashMap<>(segments.headMap(activeSegment));
+				collectLive(profileIndex, live);
+				collectLive(accountIndex, live);
+				collectLive(transactionIndex, live);
+			}
+
+			// copy without holding the lock, full segments are never appended to
+			int target = fullSegments.get(fullSegments.size() - 1);
+			Path temp = segmentPath(target).resolveSibling(SEGMENT_PREFIX + target + COMPACTION_TEMP_SUFFIX);
+
+			try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+				long position = 0;
+				for (LiveRecord lr : live) {
+					ByteBuffer buf = ByteBuffer.allocate(lr.oldLocation.length + 1);
+					readFully(sources.get(lr.oldLocation.segment), buf, lr.oldLocation.offset);
+					buf.put(lr.oldLocation.length, NEWLINE);
+					buf.rewind();
+					writeFully(out, buf, position);
+					lr.newLocation = new RecordLocation(target, position, lr.oldLocation.length);
+					position += lr.oldLocation.length + 1;
+				}
+				out.force(true);
+			}
+			catch (IOException e) {
+				log.log(Level.ERROR, "Compaction failed while copying: " + e.getMessage());
+				deleteQuietly(temp);
+				throw new BankDAOException("ALERT: could not compact log: " + directory);
+			}
+
+			synchronized (this) { // swap the compacted segment in
+				try {
+					for (int seg : fullSegments) {
+						segments.remove(seg).close(); // can't replace or delete open files on some systems
+					}
+					Files.move(temp, segmentPath(target),
+							StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+					segments.put(target, openSegment(target));
+				}
+				catch (IOException e) {
+					log.log(Level.ERROR, "Compaction failed while replacing segments: " + e.getMessage());
+					reopenSegments(fullSegments);
+					deleteQuietly(temp);
+					throw new BankDAOException("ALERT: could not compact log: " + directory);
+				}
+
+				for (LiveRecord lr : live) {
+					// anything written since the copy started already points at a newer location
+					if (lr.index.get(lr.id) == lr.oldLocation) {
+						lr.index.put(lr.id, lr.newLocation);
+					}
+				}
+
+				for (int seg : fullSegments) {
+					if (seg != target) {
+						deleteQuietly(segmentPath(seg));
+					}
+				}
+			}
+
+			log.log(Level.INFO, "Compacted " + fullSegments.size() + " segments into segment "
+					+ target + ", live records: " + live.size());
+		}
+	}
+
+	/**
+	 * Stops background compaction and closes the segment files.
+	 */
+	public void close() {
+
+		if (compactor != null) {
+			compactor.shutdownNow();
+		}
+
+		synchronized (compactionLock) {
+			synchronized (this) {
+				for (FileChannel ch : segments.values()) {
+					try {
+						ch.close();
+					}
+					catch (IOException e) {
+						log.log(Level.WARN, "Problem closing segment file: " + e.getMessage());
+					}
+				}
+				segments.clear();
+			}
+		}
+	}
+
+	/**
+	 * @return how many segment files currently make up the log
+	 */
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	// helper methods
+
+	/**
+	 * Rebuilds the index by replaying every segment from oldest to newest,
+	 * so later versions of a record replace earlier ones.
+	 * @throws BankDAOException
+	 */
+	private synchronized void recover() throws BankDAOException {
+
+		List<Integer> found = new ArrayList<>();
+		File[] files = directory.listFiles();
+
+		for (File f : (files == null) ? new File[0] : files) {
+			String name = f.getName();
+			if (name.endsWith(COMPACTION_TEMP_SUFFIX)) {
+				deleteQuietly(f.toPath()); // left behind by an interrupted compaction
+			}
+			else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+				try {
+					found.add(Integer.parseInt(
+							name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+				}
+				catch (NumberFormatException e) {
+					log.log(Level.WARN, "Ignoring unrecognized file in log directory: " + name);
+				}
+			}
+		}
+		Collections.sort(found);
+
+		try {
+			for (int seg : found) {
+				FileChannel ch = openSegment(seg);
+				segments.put(seg, ch);
+				replaySegment(seg, ch);
+			}
+
+			if (segments.isEmpty()) {
+				activeSegment = 1;
+				segments.put(activeSegment, openSegment(activeSegment));
+			}
+			else {
+				activeSegment = segments.lastKey();
+			}
+			activeSize = segments.get(activeSegment).size();
+		}
+		catch (IOException e) {
+			log.log(Level.ERROR, "Problem replaying log: " + e.getMessage());
+			throw new BankDAOException("ALERT: could not read log: " + directory);
+		}
+
+		log.log(Level.INFO, "Recovered log " + directory + " from " + segments.size() + " segments");
+	}
+
+	/**
+	 * Reads a segment line by line, adding each record to the index.
+	 * A partial line at the end (from a crash in the middle of an append) is cut off.
+	 * @param seg
+	 * @param ch
+	 * @throws IOException
+	 */
+	private void replaySegment(int seg, FileChannel ch) throws IOException {
+
+		ch.position(0);
+		InputStream in = new BufferedInputStream(Channels.newInputStream(ch));
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		long position = 0;
+		long lineStart = 0;
+		int b;
+
+		while ((b = in.read()) != -1) {
+			position++;
+			if (b == NEWLINE) {
+				String entry = new String(line.toByteArray(), CHARSET);
+				applyToIndex(entry, new RecordLocation(seg, lineStart, line.size()));
+				line.reset();
+				lineStart = position;
+			}
+			else {
+				line.write(b);
+			}
+		}
+
+		if (line.size() > 0) {
+			log.log(Level.WARN, "Discarding incomplete record at the end of segment " + seg);
+			ch.truncate(lineStart);
+		}
+	}
+
+	/**
+	 * Points the index entry for the given record at its new location.
+	 * @param entry
+	 * @param loc
+	 */
+	private void applyToIndex(String entry, RecordLocation loc) {
+
+		String[] tokens = entry.split(" ", 4);
+		int id = Integer.parseInt(tokens[1]);
+
+		switch (tokens[0]) {
+			case TextRecordCodec.USER_PROFILE_PREFIX:
+				profileIndex.put(id, loc);
+				String oldName = profileUsernames.put(id, tokens[2]);
+				if (oldName != null && !oldName.equals(tokens[2])) {
+					usernameIndex.remove(oldName, id);
+				}
+				usernameIndex.put(tokens[2], id);
+				highestProfileID = Math.max(highestProfileID, id);
+				break;
+			case TextRecordCodec.BANK_ACCOUNT_PREFIX:
+				accountIndex.put(id, loc);
+				highestAccountID = Math.max(highestAccountID, id);
+				break;
+			case TextRecordCodec.TRANSACTION_RECORD_PREFIX:
+				transactionIndex.put(id, loc);
+				highestTransactionID = Math.max(highestTransactionID, id);
+				break;
+			default:
+				log.log(Level.WARN, "Unrecognized record type in log: " + tokens[0]);
+		}
+	}
+
+	/**
+	 * Reads the entry at the given location. Returns the empty string for a null location,
+	 * which the codec treats as "not found".
+	 * @param loc
+	 * @return
+	 * @throws BankDAOException
+	 */
+	private String readEntry(RecordLocation loc) throws BankDAOException {
+
+		if (loc == null) {
+			return "";
+		}
+
+		ByteBuffer buf = ByteBuffer.allocate(loc.length);
+		try {
+			readFully(segments.get(loc.segment), buf, loc.offset);
+		}
+		catch (IOException e) {
+			log.log(Level.ERROR, "Problem reading segment " + loc.segment + ": " + e.getMessage());
+			throw new BankDAOException("Problem searching log: " + directory);
+		}
+		return new String(buf.array(), 0, loc.length, CHARSET);
+	}
+
+	/**
+	 * Starts a new active segment. The old one becomes eligible for compaction.
+	 * @throws BankDAOException
+	 */
+	private void rollSegment() throws BankDAOException {
+
+		try {
+			int next = activeSegment + 1;
+			segments.put(next, openSegment(next));
+			activeSegment = next;
+			activeSize = 0;
+		}
+		catch (IOException e) {
+			throw new BankDAOException("Could not start a new log segment in: " + directory);
+		}
+	}
+
+	private void backgroundCompact() {
+
+		try {
+			synchronized (this) {
+				if (segments.headMap(activeSegment).size() < COMPACTION_MIN_SEGMENTS) {
+					return;
+				}
+			}
+			compact();
+		}
+		catch (BankDAOException | RuntimeException e) {
+			log.log(Level.WARN, "Background compaction failed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Adds every index entry that lives in a full segment to the list.
+	 */
+	private void collectLive(Map<Integer, RecordLocation> index, List<LiveRecord> live) {
+
+		for (Map.Entry<Integer, RecordLocation> e : index.entrySet()) {
+			if (e.getValue().segment < activeSegment) {
+				live.add(new LiveRecord(index, e.getKey(), e.getValue()));
+			}
+		}
+	}
+
+	private void reopenSegments(List<Integer> segs) {
+
+		for (int seg : segs) {
+			try {
+				segments.put(seg, openSegment(seg));
+			}
+			catch (IOException e) {
+				log.log(Level.ERROR, "Could not reopen segment " + seg + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Returns the locations in the given index, in order of ID.
+	 */
+	private static List<RecordLocation> sortedLocations(Map<Integer, RecordLocation> index) {
+		return new ArrayList<>(new TreeMap<>(index).values());
+	}
+
+	private Path segmentPath(int seg) {
+		return new File(directory, SEGMENT_PREFIX + seg + SEGMENT_SUFFIX).toPath();
+	}
+
+	private FileChannel openSegment(int seg) throws IOException {
+		return FileChannel.open(segmentPath(seg), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+
+		while (buf.hasRemaining()) {
+			if (ch.read(buf, position + buf.position()) < 0) {
+				throw new IOException("Unexpected end of segment");
+			}
+		}
+	}
+
+	private static void writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+
+		while (buf.hasRemaining()) {
+			ch.write(buf, position + buf.position());
+		}
+	}
+
+	private static void deleteQuietly(Path path) {
+
+		try {
+			Files.deleteIfExists(path);
+		}
+		catch (IOException e) {
+			log.log(Level.WARN, "Could not delete file: " + path);
+		}
+	}
+
+	// inner classes
+
+	/**
+	 * Where one record lives: segment number, byte offset, and length (without the newline).
+	 */
+	private static class RecordLocation {
+
+		final int segment;
+		final long offset;
+		final int length;
+
+		RecordLocation(int segment, long offset, int length) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * A record being copied by compaction.
+	 */
+	private static class LiveRecord {
+
+		final Map<Integer, RecordLocation> index;
+		final int id;
+		final RecordLocation oldLocation;
+		RecordLocation newLocation;
+
+		LiveRecord(Map<Integer, RecordLocation> index, int id, RecordLocation oldLocation) {
+			this.index = index;
+			this.id = id;
+			this.oldLocation = oldLocation;
+		}
+	}
+}
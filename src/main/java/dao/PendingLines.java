@@ -0,0 +1,103 @@
+/**
+ * The lines a journaled TextFileDAO has written since its last checkpoint: they're in the
+ * journal, but not in the data file yet. Reads lay them over the file, and a pending line
+ * hides any line in the file with the same tag ("PRF 101 ", or "HWM PRF " for a mark).
+ *
+ * Never changed once made; each write makes a new one, so a reader holding the old one keeps
+ * seeing the same thing. There are never more than a checkpoint's worth of them.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class PendingLines {
+
+	// constants
+	static final PendingLines NONE = new PendingLines(Collections.<String>emptyList(),
+			Collections.<String, String>emptyMap());
+
+	// instance variables
+	private final List<String> lines; // newest first, one per tag
+	private final Map<String, String> byTag;
+
+	// constructor(s)
+	private PendingLines(List<String> lines, Map<String, String> byTag) {
+		this.lines = lines;
+		this.byTag = byTag;
+	}
+
+	// operation methods
+
+	/**
+	 * @param entries : one write's lines; if a tag is in there twice the first one wins, same
+	 *     as in the file
+	 * @return these lines with the entries laid over them
+	 */
+	PendingLines with(List<String> entries) {
+
+		Map<String, String> newByTag = new HashMap<>(byTag);
+		List<String> newLines = new ArrayList<>(entries.size() + lines.size());
+		Set<String> added = new HashSet<>();
+
+		for (String entry : entries) {
+			String tag = tagOf(entry);
+			if (added.add(tag)) {
+				newByTag.put(tag, entry);
+				newLines.add(entry);
+			}
+		}
+		for (String line : lines) {
+			if (!added.contains(tagOf(line))) {
+				newLines.add(line);
+			}
+		}
+		return new PendingLines(Collections.unmodifiableList(newLines), newByTag);
+	}
+
+	/**
+	 * @param tag : eg "PRF 101 ", with the trailing space
+	 * @return the pending line with that tag, or null
+	 */
+	String get(String tag) {
+		return byTag.get(tag);
+	}
+
+	/**
+	 * @param line : a line from the file
+	 * @return true if a pending line replaces it
+	 */
+	boolean hides(String line) {
+		return !byTag.isEmpty() && byTag.containsKey(tagOf(line));
+	}
+
+	/**
+	 * @return the pending lines, newest first
+	 */
+	List<String> lines() {
+		return lines;
+	}
+
+	boolean isEmpty() {
+		return lines.isEmpty();
+	}
+
+	/**
+	 * @param line
+	 * @return the type and ID at the start of the line, eg "ACC 5 ", with a trailing space
+	 * so ACC 5 doesn't match ACC 50
+	 */
+	static String tagOf(String line) {
+
+		int firstSpace = line.indexOf(' ');
+		int secondSpace = line.indexOf(' ', firstSpace + 1);
+		return (secondSpace < 0) ? line + " " : line.substring(0, secondSpace + 1);
+	}
+}
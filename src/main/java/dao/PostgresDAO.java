@@ -6,7 +6,15 @@
 package dao;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -27,7 +35,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
-public class PostgresDAO implements BankDAO {
+public class PostgresDAO implements TransactionalBankDAO {
 	
 	// constants
 	private static final String ACCOUNT_STATUS_OPEN = "OPEN";
@@ -59,16 +67,124 @@ public class PostgresDAO implements BankDAO {
 			= "ALERT: There was a problem communicating with the database.";
 	private static final String NULL_CONNECTION_MESSAGE
 			= "ALERT: Unable to make connection with database.";
-	private static final String RESULT_SET_ERROR_MESSAGE
-			= "ALERT: There was a problem processing results from the database.";
 	
 	private static final String WRITE_BANKDATA_NO_RECOGNIED_MESSAGE
 			= "ALERT: Attempting to write invalid data type.";
 	
+	// accounts and profiles are read together with their ownership rows in one query,
+	// rather than one extra query per account/profile
+	private static final String ACCOUNT_WITH_OWNERS_SELECT
+			= "SELECT a.account_id, a.status, a.type, a.funds, o.user_id "
+			+ "FROM bank_account a LEFT JOIN account_ownership o ON o.account_id = a.account_id ";
+	private static final String ACCOUNT_WITH_OWNERS_ORDER
+			= "ORDER BY a.account_id, o.user_id;";
+	private static final String PROFILE_WITH_ACCOUNTS_SELECT
+			= "SELECT u.user_id, u.username, u.password, u.type, o.account_id "
+			+ "FROM user_profile u LEFT JOIN account_ownership o ON o.user_id = u.user_id ";
+	private static final String PROFILE_WITH_ACCOUNTS_ORDER
+			= "ORDER BY u.user_id, o.account_id;";
+	
+	// write statements, each one prepared once per write and batched
+	private static final String INSERT_USER_PROFILE
+			= "INSERT INTO user_profile (user_id, username, password, type) "
+			+ "VALUES (?, ?, ?, ?) "
+			+ "ON CONFLICT (user_id) DO NOTHING;";
+	private static final String UPSERT_BANK_ACCOUNT
+			= "INSERT INTO bank_account (account_id, status, type, funds) "
+			+ "VALUES (?, ?, ?, ?) "
+			+ "ON CONFLICT (account_id) DO UPDATE "
+			+ "SET status = EXCLUDED.status, type = EXCLUDED.type, funds = EXCLUDED.funds;";
+	private static final String INSERT_TRANSACTION_RECORD
+			= "INSERT INTO transaction_record (transaction_id, time, type, acting_user, "
+			+ "source_account, destination_account, money_amount) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?) "
+			+ "ON CONFLICT (transaction_id) DO NOTHING;"; // should never be overwritten
+	private static final String DELETE_OWNERSHIP_BY_USER
+			= "DELETE FROM account_ownership WHERE user_id = ?;";
+	private static final String DELETE_OWNERSHIP_BY_ACCOUNT
+			= "DELETE FROM account_ownership WHERE account_id = ?;";
+	private static final String INSERT_OWNERSHIP
+			= "INSERT INTO account_ownership (user_id, account_id) VALUES (?, ?);";
+	
+	// delta writes, for profiles and accounts read from the database (see markClean): only the
+	// changed columns, and only the ownership rows that were added or removed
+	private static final String UPDATE_BANK_ACCOUNT_START = "UPDATE bank_account SET ";
+	private static final String UPDATE_BANK_ACCOUNT_END = " WHERE account_id = ?;";
+	private static final String INSERT_OWNERSHIP_IF_MISSING
+			= "INSERT INTO account_ownership (user_id, account_id) VALUES (?, ?) "
+			+ "ON CONFLICT DO NOTHING;";
+	private static final String DELETE_OWNERSHIP_PAIR
+			= "DELETE FROM account_ownership WHERE user_id = ? AND account_id = ?;";
+	
+	// keyset pagination over transaction records, see readTransactionRecordPage
+	private static final String SELECT_TRANSACTION_PAGE
+			= "SELECT * FROM transaction_record WHERE transaction_id > ? "
+			+ "ORDER BY transaction_id LIMIT ?;";
+	private static final String SELECT_TRANSACTION_PAGE_BY_ACTING_USER
+			= "SELECT * FROM transaction_record WHERE acting_user = ? AND transaction_id > ? "
+			+ "ORDER BY transaction_id LIMIT ?;";
+	private static final String SELECT_TRANSACTION_PAGE_BY_ACCOUNT
+			= "SELECT * FROM ("
+			+ "(SELECT * FROM transaction_record WHERE destination_account = ? AND transaction_id > ? "
+			+ "ORDER BY transaction_id LIMIT ?) "
+			+ "UNION ALL "
+			+ "(SELECT * FROM transaction_record WHERE source_account = ? "
+			+ "AND destination_account IS DISTINCT FROM ? AND transaction_id > ? "
+			+ "ORDER BY transaction_id LIMIT ?)"
+			+ ") AS page ORDER BY transaction_id LIMIT ?;";
+	
+	// an OR across the two account columns can't use either index, so each column is looked up
+	// on its own index and the results glued together; a record with the same account on both
+	// sides only comes from the first half
+	private static final String SELECT_TRANSACTIONS_BY_ACCOUNT
+			= "SELECT * FROM transaction_record WHERE destination_account = ? "
+			+ "UNION ALL "
+			+ "SELECT * FROM transaction_record WHERE source_account = ? "
+			+ "AND destination_account IS DISTINCT FROM ? "
+			+ "ORDER BY transaction_id;";
+	
+	// username checks; the filter is filled from the whole list once, then kept up by write
+	private static final String SELECT_USERNAME_TAKEN
+			= "SELECT EXISTS (SELECT 1 FROM user_profile WHERE username = ?) AS taken;";
+	private static final String SELECT_ALL_USERNAMES
+			= "SELECT username FROM user_profile;";
+	private static final int MIN_USERNAME_FILTER_SIZE = 1024;
+	private static final String UNIQUE_VIOLATION_STATE = "23505";
+	private static final String USERNAME_TAKEN_MESSAGE = "Username already taken";
+	private static final double USERNAME_FILTER_FALSE_POSITIVE_RATE = 0.01;
+	
+	// rows are locked in id order so two transfers between the same accounts can't deadlock
+	private static final String LOCK_ACCOUNTS_FOR_TRANSFER
+			= "SELECT account_id, status, funds FROM bank_account "
+			+ "WHERE account_id IN (?, ?) ORDER BY account_id FOR UPDATE;";
+	private static final String ADJUST_FUNDS
+			= "UPDATE bank_account SET funds = funds + ? WHERE account_id = ?;";
+	
+	// the whole transfer in one call, see V3__add_transfer_funds_function.sql
+	private static final String TRANSFER_FUNCTION_NAME = "transfer_funds";
+	private static final String CALL_TRANSFER_FUNDS
+			= "SELECT " + TRANSFER_FUNCTION_NAME + "(?, ?, ?, ?, ?, ?) AS result;";
+	private static final String SELECT_TRANSFER_FUNCTION_EXISTS
+			= "SELECT COUNT(*) AS found FROM information_schema.routines WHERE routine_name = ?;";
+	
 	// class / static variables
 	private static Logger log = Logger.getLogger(PostgresDAO.class);
 	
 	// instance variables
+	private volatile boolean sequencesChecked; // set once ensureIDSequences has run
+	
+	// usernames known to be in the database, so most free names are answered without a query;
+	// rebuilt when it fills up or the database is reset. Names registered by another process
+	// aren't in it, but the unique username index still stops those being taken twice, and
+	// write turns that into a UsernameTakenException.
+	private volatile UsernameBloomFilter usernameFilter; // null until first needed
+	private final AtomicInteger usernamesFiltered = new AtomicInteger();
+	private volatile int usernameFilterResetCount;
+	
+	// whether the database has the transfer_funds function (it might not be migrated yet),
+	// checked once per reset since a reset runs the migrations
+	private volatile boolean transferFunctionFound;
+	private volatile int transferFunctionResetCount = -1;
 	//private String databaseAddress;
 	//private String databaseUsername;
 	//private String databasePassword;
@@ -84,6 +200,17 @@ public class PostgresDAO implements BankDAO {
 		}
 	}
 	
+	/**
+	 * Connects to the given database instead of reading DatabaseConfig.txt
+	 * @param address
+	 * @param username
+	 * @param password
+	 */
+	public PostgresDAO(String address, String username, String password) {
+		
+		DatabaseUtil.setConfiguration(address, username, password);
+	}
+	
 	// methods from DAO interface ------------------------------------------------
 
 	/**
@@ -112,24 +239,7 @@ public class PostgresDAO implements BankDAO {
 				throw new BankDAOException(NULL_CONNECTION_MESSAGE);
 			}
 			
-			String sql = "SELECT * FROM bank_account WHERE account_id = ?;";
-			PreparedStatement pstm = conn.prepareStatement(sql);
-			pstm.setInt(1, accID);
-			ResultSet accSet = pstm.executeQuery();
-			
-			BankAccount ba = new BankAccount(accID);
-			
-			while (accSet.next()) { // should only be one result
-				//System.out.println("DEBUG: while loop starting");
-				//ba.setId(accSet.getInt("account_id"));
-				ba.setStatus(stringToBankAccountStatus(accSet.getString("status")));
-				ba.setType(stringToBankAccountType(accSet.getString("type")));
-				ba.setFunds(accSet.getInt("funds"));
-				ba.setOwners(getAccountOwnerList(conn, accID));
-			}
-			accSet.close();
-			
-			return ba;
+			return readBankAccount(conn, accID);
 			//return buildBankAccountFromResults(accSet, ownerSet);
 		}
 		catch(SQLException e) {
@@ -151,11 +261,11 @@ public class PostgresDAO implements BankDAO {
 				throw new BankDAOException(NULL_CONNECTION_MESSAGE);
 			}
 			
-			String sql = "SELECT * FROM bank_account";
+			String sql = ACCOUNT_WITH_OWNERS_SELECT + ACCOUNT_WITH_OWNERS_ORDER;
 			PreparedStatement pstm = conn.prepareStatement(sql);
 			ResultSet accSet = pstm.executeQuery();
 			
-			return getAccountListFromResults(conn, accSet);
+			return getAccountListFromResults(accSet);
 		}
 		catch(SQLException e) {
 			log.log(Level.ERROR, "SQL exception in readAllBankAccounts: " + e.getMessage());
@@ -178,21 +288,17 @@ public class PostgresDAO implements BankDAO {
 				throw new BankDAOException(NULL_CONNECTION_MESSAGE);
 			}
 			
-			String sql = "SELECT * FROM user_profile WHERE user_id = ?;";
+			String sql = PROFILE_WITH_ACCOUNTS_SELECT + "WHERE u.user_id = ? " + PROFILE_WITH_ACCOUNTS_ORDER;
 			PreparedStatement pstm = conn.prepareStatement(sql);
 			pstm.setInt(1, userID);
 			ResultSet userSet = pstm.executeQuery();
 			
-			UserProfile up = new UserProfile(userID);
-			while (userSet.next()) { // should only be one result
-				//up.setId(userSet.getInt("user_id"));
-				up.setUsername(userSet.getString("username"));
-				up.setPassword(userSet.getString("password"));
-				up.setType(stringToUserProfileType(userSet.getString("type")));
-				up.setOwnedAccounts(getUserOwnedAccountsList(conn, userID));
-			}
+			List<UserProfile> found = getUserProfileListFromResults(userSet); // should only be one result
 			
-			return up;
+			if (found.isEmpty()) {
+				return new UserProfile(userID);
+			}
+			return found.get(0);
 		}
 		catch(SQLException e) {
 			log.log(Level.ERROR, "SQL exception in readUserProfile by ID: " + e.getMessage());
@@ -215,23 +321,17 @@ public class PostgresDAO implements BankDAO {
 				throw new BankDAOException(NULL_CONNECTION_MESSAGE);
 			}
 			
-			String sql = "SELECT * FROM user_profile WHERE username = ?;";
+			String sql = PROFILE_WITH_ACCOUNTS_SELECT + "WHERE u.username = ? " + PROFILE_WITH_ACCOUNTS_ORDER;
 			PreparedStatement pstm = conn.prepareStatement(sql);
 			pstm.setString(1, username);
 			ResultSet userSet = pstm.executeQuery();
 			
-			UserProfile up = new UserProfile();
-			while (userSet.next()) { // should only be one result
-				int userID = userSet.getInt("user_id");
-				up.setId(userID);
-				up.setUsername(userSet.getString("username"));
-				up.setPassword(userSet.getString("password"));
-				up.setType(stringToUserProfileType(userSet.getString("type")));
-				up.setOwnedAccounts(getUserOwnedAccountsList(conn, userID));
-			}
+			List<UserProfile> found = getUserProfileListFromResults(userSet); // should only be one result
 			
-			//up.setOwnedAccounts(ownedAccounts);
-			return up;
+			if (found.isEmpty()) {
+				return new UserProfile();
+			}
+			return found.get(0);
 		}
 		catch(SQLException e) {
 			log.log(Level.ERROR, "SQL exception in readUserProfile by username: " + e.getMessage());
@@ -252,11 +352,11 @@ public class PostgresDAO implements BankDAO {
 				throw new BankDAOException(NULL_CONNECTION_MESSAGE);
 			}
 			
-			String sql = "SELECT * FROM user_profile;";
+			String sql = PROFILE_WITH_ACCOUNTS_SELECT + PROFILE_WITH_ACCOUNTS_ORDER;
 			PreparedStatement pstm = conn.prepareStatement(sql);
 			ResultSet userSet = pstm.executeQuery();
 			
-			return getUserProfileListFromResults(conn, userSet);
+			return getUserProfileListFromResults(userSet);
 		}
 		catch(SQLException e) {
 			log.log(Level.ERROR, "SQL exception in readAllUserProfiles: " + e.getMessage());
@@ -373,10 +473,10 @@ public class PostgresDAO implements BankDAO {
 				throw new BankDAOException(NULL_CONNECTION_MESSAGE);
 			}
 
-			String sql = "SELECT * FROM transaction_record WHERE destination_account = ? OR source_account = ?;";
-			PreparedStatement pstm = conn.prepareStatement(sql);
+			PreparedStatement pstm = conn.prepareStatement(SELECT_TRANSACTIONS_BY_ACCOUNT);
 			pstm.setInt(1, accID);
 			pstm.setInt(2, accID);
+			pstm.setInt(3, accID);
 			ResultSet trrSet = pstm.executeQuery();
 
 			return getTransactionListFromResults(conn, trrSet);
@@ -386,6 +486,54 @@ public class PostgresDAO implements BankDAO {
 		}
 	}
 
+	/**
+	 * Fetches one page of TransactionRecords with IDs after the given one, in ID order.
+	 * The LIMIT keeps the page to pageSize rows, so it's fine to read them all at once.
+	 */
+	@Override
+	public List<TransactionRecord> readTransactionRecordPage(TransactionFilter filter, int filterID,
+			int afterID, int pageSize) throws BankDAOException {
+		
+		try (Connection conn = DatabaseUtil.getConnection()) {
+
+			if (conn == null) {
+				throw new BankDAOException(NULL_CONNECTION_MESSAGE);
+			}
+
+			PreparedStatement pstm;
+			switch (filter) {
+				case ACTING_USER:
+					pstm = conn.prepareStatement(SELECT_TRANSACTION_PAGE_BY_ACTING_USER);
+					pstm.setInt(1, filterID);
+					pstm.setInt(2, afterID);
+					pstm.setInt(3, pageSize);
+					break;
+				case ACCOUNT:
+					// each half of the union is its own page, then the two are merged
+					pstm = conn.prepareStatement(SELECT_TRANSACTION_PAGE_BY_ACCOUNT);
+					pstm.setInt(1, filterID);
+					pstm.setInt(2, afterID);
+					pstm.setInt(3, pageSize);
+					pstm.setInt(4, filterID);
+					pstm.setInt(5, filterID);
+					pstm.setInt(6, afterID);
+					pstm.setInt(7, pageSize);
+					pstm.setInt(8, pageSize);
+					break;
+				default:
+					pstm = conn.prepareStatement(SELECT_TRANSACTION_PAGE);
+					pstm.setInt(1, afterID);
+					pstm.setInt(2, pageSize);
+			}
+			ResultSet trrSet = pstm.executeQuery();
+
+			return getTransactionListFromResults(conn, trrSet);
+		} catch (SQLException e) {
+			log.log(Level.ERROR, "SQL exception in readTransactionRecordPage: " + e.getMessage());
+			throw new BankDAOException(GENERIC_SQL_EXCEPTION_MESSAGE);
+		}
+	}
+
 	/**
 	 * Writes the given BankData object to the data storage.
 	 * User profiles cannot be changed after being initially written, other than owned accounts.
@@ -396,14 +544,9 @@ public class PostgresDAO implements BankDAO {
 	@Override
 	public void write(BankData bd) throws BankDAOException {
 		
-		try (Connection conn = DatabaseUtil.getConnection()){
-			writeHelp(conn, bd);
-		}
-		catch (SQLException e){
-			log.log(Level.ERROR, "SQL exception in write: " + e.getMessage());
-			throw new BankDAOException(GENERIC_SQL_EXCEPTION_MESSAGE);
-		}
-		
+		List<BankData> toWrite = new ArrayList<BankData>();
+		toWrite.add(bd);
+		write(toWrite); // just use the list method
 	}
 
 	/**
@@ -411,22 +554,121 @@ public class PostgresDAO implements BankDAO {
 	 * User profiles cannot be changed after being initially written, other than owned accounts.
 	 * BankAccounts can change status, type, funds, and owners
 	 * TransactionRecords cannot be changed.
+	 * Profiles and accounts that were read from (or already written to) this DAO only have
+	 * their changes written, eg a deposit is one UPDATE of funds; afterwards, every profile and
+	 * account in the list is marked clean.
+	 * If the same profile or account is in the list more than once, the copies' changes are
+	 * all written, with the later copy winning where they disagree.
 	 * @param bd
 	 */
 	@Override
 	public void write(List<BankData> toWrite) throws BankDAOException {
-
+		
 		try (Connection conn = DatabaseUtil.getConnection()){
 			
-			for (BankData bd : toWrite) {
-				writeHelp(conn, bd);				
+			if (conn == null) {
+				throw new BankDAOException(NULL_CONNECTION_MESSAGE);
+			}
+			
+			// all or nothing
+			conn.setAutoCommit(false);
+			try {
+				Collection<UserProfile> profiles = writeInTransaction(conn, toWrite);
+				conn.commit();
+				markWritten(toWrite, profiles);
+			}
+			catch (SQLException | BankDAOException e) {
+				conn.rollback();
+				throw e;
+			}
+			finally {
+				conn.setAutoCommit(true);
 			}
 		}
 		catch (SQLException e){
-			log.log(Level.ERROR, "SQL exception in write-list: " + e.getMessage());
+			// batch failures hide the actual cause one level down
+			String cause = (e.getNextException() != null) ? " / " + e.getNextException().getMessage() : "";
+			log.log(Level.ERROR, "SQL exception in write-list: " + e.getMessage() + cause);
 			throw new BankDAOException(GENERIC_SQL_EXCEPTION_MESSAGE);
 		}
+	}
+	
+	/**
+	 * @param conn
+	 * @param accID
+	 * @return the account, or one with type NONE if there's no such account
+	 */
+	private BankAccount readBankAccount(Connection conn, int accID) throws SQLException {
+		
+		String sql = ACCOUNT_WITH_OWNERS_SELECT + "WHERE a.account_id = ? " + ACCOUNT_WITH_OWNERS_ORDER;
+		PreparedStatement pstm = conn.prepareStatement(sql);
+		pstm.setInt(1, accID);
+		ResultSet accSet = pstm.executeQuery();
+		
+		List<BankAccount> found = getAccountListFromResults(accSet); // should only be one result
+		accSet.close();
+		
+		if (found.isEmpty()) {
+			return new BankAccount(accID);
+		}
+		return found.get(0);
+	}
+	
+	/**
+	 * Does the writing for write(List), on a connection that's already in a transaction.
+	 * @param conn
+	 * @param toWrite
+	 * @return the profiles written, one per ID, for markWritten once it's committed
+	 */
+	private Collection<UserProfile> writeInTransaction(Connection conn, List<BankData> toWrite) 
+			throws SQLException, BankDAOException {
+		
+		// sort the data by type; copies of the same profile or account are merged into one
+		Map<Integer, UserProfile> profiles = new LinkedHashMap<>();
+		Map<Integer, BankAccount> accounts = new LinkedHashMap<>();
+		Map<Integer, TransactionRecord> transactions = new LinkedHashMap<>();
+		
+		for (BankData bd : toWrite) {
+			if (bd instanceof UserProfile) {
+				profiles.put(bd.getId(), mergeCopies(profiles.get(bd.getId()), (UserProfile)bd));
+			}
+			else if (bd instanceof BankAccount) {
+				accounts.put(bd.getId(), mergeCopies(accounts.get(bd.getId()), (BankAccount)bd));
+			}
+			else if (bd instanceof TransactionRecord) {
+				transactions.put(bd.getId(), (TransactionRecord)bd);
+			}
+			else { // should never be reached
+				log.log(Level.ERROR, "Unrecognized child of BankData in write: " + bd.getClass());
+				throw new BankDAOException(WRITE_BANKDATA_NO_RECOGNIED_MESSAGE);
+			}
+		}
 
+		// profiles and accounts first, since ownership and transactions refer to them
+		Set<Integer> wholeProfiles = writeUserProfiles(conn, profiles.values());
+		Set<Integer> wholeAccounts = writeBankAccounts(conn, accounts.values());
+		writeOwnership(conn, profiles.values(), accounts.values(), wholeProfiles, wholeAccounts);
+		writeTransactionRecords(conn, transactions.values());
+		return profiles.values();
+	}
+	
+	/**
+	 * Bookkeeping once a write has committed: the usernames are known, and everything in the
+	 * list is clean.
+	 * @param toWrite
+	 * @param profiles : from writeInTransaction
+	 */
+	private void markWritten(List<BankData> toWrite, Collection<UserProfile> profiles) {
+		
+		addToUsernameFilter(profiles);
+		for (BankData bd : toWrite) { // the copies in the list, not the merged ones
+			if (bd instanceof UserProfile) {
+				((UserProfile)bd).markClean();
+			}
+			else if (bd instanceof BankAccount) {
+				((BankAccount)bd).markClean();
+			}
+		}
 	}
 
 	/** 
@@ -524,119 +766,179 @@ public class PostgresDAO implements BankDAO {
 	@Override
 	public boolean isUsernameFree(String username) throws BankDAOException {
 		
-		UserProfile up = readUserProfile(username); // hacky but it works for now
-		return up.getType() == UserProfileType.NONE;
+		if (!getUsernameFilter().mightContain(username)) {
+			return true; // never registered, no need to ask
+		}
+		
+		try (Connection conn = DatabaseUtil.getConnection()){
+			
+			if (conn == null) {
+				throw new BankDAOException(NULL_CONNECTION_MESSAGE);
+			}
+			
+			PreparedStatement pstm = conn.prepareStatement(SELECT_USERNAME_TAKEN);
+			pstm.setString(1, username);
+			ResultSet rs = pstm.executeQuery();
+			return !(rs.next() && rs.getBoolean("taken"));
+		}
+		catch(SQLException e) {
+			log.log(Level.ERROR, "SQL exception in isUsernameFree: " + e.getMessage());
+			throw new BankDAOException(GENERIC_SQL_EXCEPTION_MESSAGE);
+		}
 	}
 
 	// helper methods -------------------------------------------------------------
 	
 	/**
-	 * Gets the list of owning user IDs for the indicated account
-	 * @param conn : an already open connection
-	 * @param accID
-	 * @return
+	 * @return the username filter, loading it from the database first if it isn't there
+	 *     or is out of date
 	 * @throws BankDAOException
 	 */
-	private List<Integer> getAccountOwnerList(Connection conn, int accID) throws BankDAOException{
+	private UsernameBloomFilter getUsernameFilter() throws BankDAOException {
 		
-		try {
-			String sql = "SELECT user_id FROM account_ownership WHERE account_id = ?";
-			PreparedStatement pstm = conn.prepareStatement(sql);
-			pstm.setInt(1, accID);
-			ResultSet ownerSet = pstm.executeQuery();
+		UsernameBloomFilter filter = usernameFilter;
+		if (filter != null && usernameFilterResetCount == DatabaseUtil.getResetCount()) {
+			return filter;
+		}
+		
+		synchronized (this) {
+			if (usernameFilter != null && usernameFilterResetCount == DatabaseUtil.getResetCount()) {
+				return usernameFilter;
+			}
 			
-			List<Integer> owners = new ArrayList<>();
+			int resetCount = DatabaseUtil.getResetCount();
+			List<String> usernames = new ArrayList<>();
+			try (Connection conn = DatabaseUtil.getConnection()){
+				if (conn == null) {
+					throw new BankDAOException(NULL_CONNECTION_MESSAGE);
+				}
+				ResultSet rs = conn.createStatement().executeQuery(SELECT_ALL_USERNAMES);
+				while (rs.next()) {
+					usernames.add(rs.getString("username"));
+				}
+			}
+			catch(SQLException e) {
+				log.log(Level.ERROR, "SQL exception loading usernames: " + e.getMessage());
+				throw new BankDAOException(GENERIC_SQL_EXCEPTION_MESSAGE);
+			}
 			
-			while (ownerSet.next()) { // should be AT LEAST one
-				//System.out.println("DEBUG: in ownerSet loop");
-				int ownerID = ownerSet.getInt("user_id");
-				owners.add(ownerID);
+			// room to double before it needs rebuilding
+			filter = new UsernameBloomFilter(Math.max(MIN_USERNAME_FILTER_SIZE, usernames.size() * 2),
+					USERNAME_FILTER_FALSE_POSITIVE_RATE);
+			for (String name : usernames) {
+				filter.add(name);
 			}
-			return owners;
-		}
-		catch (SQLException e) {
-			log.log(Level.ERROR, "SQL exception in getAccountOwnerList: " + e.getMessage());
-			throw new BankDAOException(RESULT_SET_ERROR_MESSAGE);
+			usernamesFiltered.set(usernames.size());
+			usernameFilterResetCount = resetCount;
+			usernameFilter = filter;
+			return filter;
 		}
 	}
 	
 	/**
-	 * Converts the results of a query into a list of BankAccount objects.
-	 * @param conn
-	 * @param accSet
-	 * @return
-	 * @throws SQLException
-	 * @throws BankDAOException
+	 * @return true if the exception, or one chained to it (batches hide the real cause), is a
+	 *     unique constraint violation
 	 */
-	private List<BankAccount> getAccountListFromResults(Connection conn, ResultSet accSet) 
-			throws SQLException, BankDAOException{
-		
-		List<BankAccount> accounts = new ArrayList<>();
+	private static boolean isUniqueViolation(SQLException e) {
 		
-		while (accSet.next()) { // should only be one result
-			BankAccount ba = new BankAccount();
-			int accID = accSet.getInt("account_id");
-			ba.setId(accID);
-			ba.setStatus(stringToBankAccountStatus(accSet.getString("status")));
-			ba.setType(stringToBankAccountType(accSet.getString("type")));
-			ba.setFunds(accSet.getInt("funds"));
-			ba.setOwners(getAccountOwnerList(conn, accID));
-			accounts.add(ba);
+		for (Throwable t = e; t != null; ) {
+			if (t instanceof SQLException && UNIQUE_VIOLATION_STATE.equals(((SQLException)t).getSQLState())) {
+				return true;
+			}
+			Throwable next = (t instanceof SQLException) ? ((SQLException)t).getNextException() : null;
+			t = (next != null) ? next : t.getCause();
 		}
+		return false;
+	}
+	
+	/**
+	 * Adds newly written usernames to the filter, if there is one. Once it holds more names
+	 * than it was sized for it is dropped, to be reloaded at a better size.
+	 * @param profiles
+	 */
+	private void addToUsernameFilter(Collection<UserProfile> profiles) {
 		
-		return accounts;
+		UsernameBloomFilter filter = usernameFilter;
+		if (filter == null || profiles.isEmpty()) {
+			return;
+		}
+		for (UserProfile up : profiles) {
+			if (up.getUsername() != null) {
+				filter.add(up.getUsername());
+			}
+		}
+		if (usernamesFiltered.addAndGet(profiles.size()) > filter.getExpected()) {
+			usernameFilter = null;
+		}
 	}
 	
 	/**
-	 * Gets the list of accounts owned by the indicated user
-	 * @param conn
-	 * @param userID
+	 * Converts the results of an ACCOUNT_WITH_OWNERS_SELECT query into a list of BankAccount objects.
+	 * There is one row per (account, owner) pair, sorted by account, so the owner lists can be
+	 * assembled in a single pass. Accounts with no owners have one row with a null user_id.
+	 * @param accSet
 	 * @return
-	 * @throws BankDAOException
+	 * @throws SQLException
 	 */
-	private List<Integer> getUserOwnedAccountsList(Connection conn, int userID) throws BankDAOException{
+	private List<BankAccount> getAccountListFromResults(ResultSet accSet) throws SQLException {
 		
-		try {
-			String sql = "SELECT account_id FROM account_ownership WHERE user_id = ?";
-			PreparedStatement pstm = conn.prepareStatement(sql);
-			pstm.setInt(1, userID);
-			ResultSet accSet = pstm.executeQuery();
+		List<BankAccount> accounts = new ArrayList<>();
+		BankAccount ba = null;
+		
+		while (accSet.next()) {
+			int accID = accSet.getInt("account_id");
 			
-			List<Integer> accounts = new ArrayList<>();
+			if (ba == null || ba.getId() != accID) { // first row for this account
+				ba = new BankAccount(accID);
+				ba.setStatus(stringToBankAccountStatus(accSet.getString("status")));
+				ba.setType(stringToBankAccountType(accSet.getString("type")));
+				ba.setFunds(accSet.getInt("funds"));
+				accounts.add(ba);
+			}
 			
-			while (accSet.next()) { // should be AT LEAST one
-				//System.out.println("DEBUG: in ownerSet loop");
-				accounts.add(accSet.getInt("account_id"));
+			int ownerID = accSet.getInt("user_id");
+			if (!accSet.wasNull()) {
+				ba.addOwner(ownerID);
 			}
-			return accounts;
 		}
-		catch (SQLException e) {
-			log.log(Level.ERROR, "SQL exception in getUserOwnedAccountsList: " + e.getMessage());
-			throw new BankDAOException(RESULT_SET_ERROR_MESSAGE);
+		
+		for (BankAccount read : accounts) {
+			read.markClean();
 		}
+		return accounts;
 	}
 	
 	/**
-	 * Converts the results of a query into a list of UserProfile objects.
-	 * @param conn
+	 * Converts the results of a PROFILE_WITH_ACCOUNTS_SELECT query into a list of UserProfile objects.
+	 * Works the same way as getAccountListFromResults.
 	 * @param userSet
 	 * @return
 	 * @throws SQLException
-	 * @throws BankDAOException
 	 */
-	private List<UserProfile> getUserProfileListFromResults(Connection conn, ResultSet userSet)
-			throws SQLException, BankDAOException{
+	private List<UserProfile> getUserProfileListFromResults(ResultSet userSet) throws SQLException {
 		
 		List<UserProfile> users = new ArrayList<>();
-		while (userSet.next()) { // should only be one result
-			UserProfile up = new UserProfile();
+		UserProfile up = null;
+		
+		while (userSet.next()) {
 			int userID = userSet.getInt("user_id");
-			up.setId(userID);
-			up.setUsername(userSet.getString("username"));
-			up.setPassword(userSet.getString("password"));
-			up.setType(stringToUserProfileType(userSet.getString("type")));
-			up.setOwnedAccounts(getUserOwnedAccountsList(conn, userID));
-			users.add(up);
+			
+			if (up == null || up.getId() != userID) { // first row for this user
+				up = new UserProfile(userID);
+				up.setUsername(userSet.getString("username"));
+				up.setPassword(userSet.getString("password"));
+				up.setType(stringToUserProfileType(userSet.getString("type")));
+				users.add(up);
+			}
+			
+			int accID = userSet.getInt("account_id");
+			if (!userSet.wasNull()) {
+				up.addAccount(accID);
+			}
+		}
+		
+		for (UserProfile read : users) {
+			read.markClean();
 		}
 		return users;
 	}
@@ -669,131 +971,631 @@ public class PostgresDAO implements BankDAO {
 	}
 	
 	/**
-	 * Who doesn't love nested helper methods?
-	 * Figures out which helper method to send the given Bankdata to 
+	 * Helper method to write user profiles, as one batch.
+	 * The only thing about a profile that can change is the owned accounts,
+	 * so existing profiles are left alone here (see writeOwnership), and profiles read from
+	 * the database aren't sent at all unless their accounts changed. Those are sent too, in
+	 * case they aren't in this database after all; the insert skips them if they are.
 	 * @param conn
-	 * @param bd
+	 * @param profiles
+	 * @return the IDs of the new profiles, and of any "read" ones that had to be inserted,
+	 *     whose ownership needs writing whole
+	 * @throws UsernameTakenException if one of the new profiles' usernames is already in use
 	 */
-	private void writeHelp(Connection conn, BankData bd) throws BankDAOException, SQLException{
+	private Set<Integer> writeUserProfiles(Connection conn, Collection<UserProfile> profiles) 
+			throws SQLException, UsernameTakenException {
 		
-		if (bd instanceof UserProfile) {
-			writeUserProfile(conn, (UserProfile)bd);
+		List<UserProfile> sent = new ArrayList<>();
+		PreparedStatement pstm = null;
+		for (UserProfile up : profiles) {
+			if (up.isTracked() && up.getAddedAccounts().isEmpty() && up.getRemovedAccounts().isEmpty()) {
+				continue;
+			}
+			if (pstm == null) {
+				pstm = conn.prepareStatement(INSERT_USER_PROFILE);
+			}
+			pstm.setInt(1, up.getId());
+			pstm.setString(2, up.getUsername());
+			pstm.setString(3, up.getPassword());
+			pstm.setString(4, "" + up.getType()); // easy way of enum to string
+			pstm.addBatch();
+			sent.add(up);
 		}
-		else if (bd instanceof BankAccount) {
-			writeBankAccount(conn, (BankAccount)bd);
+		
+		Set<Integer> wholeIDs = new HashSet<>();
+		if (pstm == null) {
+			return wholeIDs;
 		}
-		else if (bd instanceof TransactionRecord) {
-			writeTransactionRecord(conn, (TransactionRecord)bd);
+		int[] counts;
+		try {
+			counts = pstm.executeBatch();
 		}
-		else { // should never be reached
-			log.log(Level.ERROR, "Unrecognized child of BankData in writeHelp: " + bd.getClass());
-			throw new BankDAOException(WRITE_BANKDATA_NO_RECOGNIED_MESSAGE);
+		catch (SQLException e) {
+			// the insert skips existing IDs, so the only thing left to clash is the username
+			if (!isUniqueViolation(e)) {
+				throw e;
+			}
+			log.log(Level.INFO, "Username taken on write, probably by another process: " + e.getMessage());
+			addToUsernameFilter(sent); // so isUsernameFree asks the database about them from now on
+			throw new UsernameTakenException(USERNAME_TAKEN_MESSAGE);
+		}
+		for (int i = 0; i < counts.length; i++) {
+			UserProfile up = sent.get(i);
+			// 0 is an existing row; a driver that doesn't report counts just gets the slow way
+			if (!up.isTracked() || counts[i] != 0) {
+				wholeIDs.add(up.getId());
+			}
 		}
+		return wholeIDs;
 	}
-
+	
 	/**
-	 * Helper method to write a single user profile
-	 * @param up
+	 * Helper method to write bank accounts.
+	 * Accounts read from the database get an UPDATE of just the columns that changed, batched
+	 * with others that changed the same columns; accounts with no column changes get nothing.
+	 * New accounts, and any "read" account that turns out not to be in this database, are
+	 * upserted whole, as one batch.
+	 * @param conn
+	 * @param accounts
+	 * @return the IDs of the accounts written whole, whose ownership needs writing whole too
 	 */
-	private void writeUserProfile(Connection conn, UserProfile up) throws SQLException{
+	private Set<Integer> writeBankAccounts(Connection conn, Collection<BankAccount> accounts) throws SQLException{
 		
-		// the only thing that changes is the owned accounts.
-		// try to insert the user, if there's a conflict, don't change anything.
-		// separately, update the owned accounts relationship
+		List<BankAccount> whole = new ArrayList<>();
+		Map<String, List<BankAccount>> updates = new LinkedHashMap<>(); // by statement
 		
-		String sql;
-		PreparedStatement pstm;
+		for (BankAccount ba : accounts) {
+			if (!ba.isTracked()) {
+				whole.add(ba);
+				continue;
+			}
+			String sql = accountUpdateStatement(ba);
+			if (sql != null) {
+				updates.computeIfAbsent(sql, k -> new ArrayList<>()).add(ba);
+			}
+		}
 		
-		sql = "INSERT INTO user_profile (user_id, username, password, type)" 
-				+ "VALUES (?, ?, ? ,?)"
-				+ "ON CONFLICT (user_id) DO NOTHING;";
-		pstm = conn.prepareStatement(sql);
-		pstm.setInt(1, up.getId());
-		pstm.setString(2, up.getUsername());
-		pstm.setString(3, up.getPassword());
-		pstm.setString(4, "" + up.getType()); // easy way of enum to string
-		pstm.execute();
+		for (Map.Entry<String, List<BankAccount>> entry : updates.entrySet()) {
+			PreparedStatement pstm = conn.prepareStatement(entry.getKey());
+			for (BankAccount ba : entry.getValue()) {
+				int param = 1;
+				if (ba.isStatusDirty()) {
+					pstm.setString(param++, "" + ba.getStatus());
+				}
+				if (ba.isTypeDirty()) {
+					pstm.setString(param++, "" + ba.getType());
+				}
+				if (ba.isFundsDirty()) {
+					pstm.setInt(param++, ba.getFunds());
+				}
+				pstm.setInt(param, ba.getId());
+				pstm.addBatch();
+			}
+			int[] counts = pstm.executeBatch();
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] == 0) { // not in this database after all
+					whole.add(entry.getValue().get(i));
+				}
+			}
+		}
 		
-		// now handle the owned accounts
-		// I think the easiest way to do this is to delete all of the ownership records for this user
-		// and then re-add only the ones that still exist
-		sql = "DELETE FROM account_ownership WHERE user_id = ?;";
-		pstm = conn.prepareStatement(sql);
-		pstm.setInt(1, up.getId());
-		pstm.execute();
+		Set<Integer> wholeIDs = new HashSet<>();
+		if (whole.isEmpty()) {
+			return wholeIDs;
+		}
 		
-		sql = "INSERT INTO account_ownership (user_id, account_id) VALUES (?, ?);";
-		for (int accID : up.getOwnedAccounts()) {
-			pstm = conn.prepareStatement(sql);
-			pstm.setInt(1, up.getId());
-			pstm.setInt(2, accID);
-			pstm.execute();
+		PreparedStatement pstm = conn.prepareStatement(UPSERT_BANK_ACCOUNT);
+		for (BankAccount ba : whole) {
+			pstm.setInt(1, ba.getId());
+			pstm.setString(2, "" + ba.getStatus());
+			pstm.setString(3, "" + ba.getType());
+			pstm.setInt(4, ba.getFunds());
+			pstm.addBatch();
+			wholeIDs.add(ba.getId());
 		}
+		pstm.executeBatch();
+		return wholeIDs;
 	}
 	
 	/**
-	 * Helper method to write a single bank account
-	 * @param ba
+	 * @return an UPDATE of the columns that changed since the account was read, or null if none did
 	 */
-	private void writeBankAccount(Connection conn, BankAccount ba) throws SQLException{
+	private static String accountUpdateStatement(BankAccount ba) {
 		
-		String sql;
-		PreparedStatement pstm;
+		List<String> columns = new ArrayList<>(3);
+		if (ba.isStatusDirty()) {
+			columns.add("status = ?");
+		}
+		if (ba.isTypeDirty()) {
+			columns.add("type = ?");
+		}
+		if (ba.isFundsDirty()) {
+			columns.add("funds = ?");
+		}
+		if (columns.isEmpty()) {
+			return null;
+		}
+		return UPDATE_BANK_ACCOUNT_START + String.join(", ", columns) + UPDATE_BANK_ACCOUNT_END;
+	}
+	
+	/**
+	 * Helper method to update the ownership relation for the given profiles and accounts.
+	 * 
+	 * For new profiles and accounts (and ones written whole for any other reason), the
+	 * easiest way is to delete all of the ownership records for each one and then re-add only
+	 * the ones that still exist. Profiles and accounts read from the database just have their
+	 * added rows inserted and removed rows deleted, after that.
+	 * 
+	 * Either way, profiles are done before accounts, same as if they had been written one at a
+	 * time in that order: where the two disagree about a row, the account wins.
+	 * @param conn
+	 * @param profiles
+	 * @param accounts
+	 * @param wholeProfiles : IDs of the profiles written whole
+	 * @param wholeAccounts : IDs of the accounts written whole
+	 */
+	private void writeOwnership(Connection conn, Collection<UserProfile> profiles, 
+			Collection<BankAccount> accounts, Set<Integer> wholeProfiles, Set<Integer> wholeAccounts) 
+			throws SQLException{
 		
-		sql = "INSERT INTO bank_account (account_id, status, type, funds)" 
-				+ "VALUES (?, ?, ? ,?) "
-				+ "ON CONFLICT (account_id) DO UPDATE "
-				+ "SET status = ?,"
-				+ "type = ?,"
-				+ "funds = ?;";
-		pstm = conn.prepareStatement(sql);
-		pstm.setInt(1, ba.getId());
-		pstm.setString(2, "" + ba.getStatus());
-		pstm.setString(3, "" + ba.getType());
-		pstm.setInt(4, ba.getFunds());
-		pstm.setString(5, "" + ba.getStatus());
-		pstm.setString(6, "" + ba.getType());
-		pstm.setInt(7, ba.getFunds());
-		pstm.execute();
+		if (profiles.isEmpty() && accounts.isEmpty()) {
+			return;
+		}
 		
-		// now update the ownership relation
-		sql = "DELETE FROM account_ownership WHERE account_id = ?;";
-		pstm = conn.prepareStatement(sql);
-		pstm.setInt(1, ba.getId());
-		pstm.execute();
+		Set<Long> inserted = new HashSet<>(); // rows the whole rewrites put in
+		Map<Long, Boolean> changes = new LinkedHashMap<>(); // row -> added (true) or removed (false)
+		PreparedStatement insert = null;
 		
-		sql = "INSERT INTO account_ownership (user_id, account_id) VALUES (?, ?);";
-		for (int ownerID : ba.getOwners()) {
-			pstm = conn.prepareStatement(sql);
-			pstm.setInt(1, ownerID);
-			pstm.setInt(2, ba.getId());
-			pstm.execute();
+		int rows = 0;
+		PreparedStatement delete = null;
+		for (UserProfile up : profiles) {
+			if (!wholeProfiles.contains(up.getId())) {
+				for (int accID : up.getAddedAccounts().toArray()) {
+					if (!wholeAccounts.contains(accID)) { // the account's own rewrite decides
+						changes.put(ownershipKey(up.getId(), accID), Boolean.TRUE);
+					}
+				}
+				for (int accID : up.getRemovedAccounts().toArray()) {
+					if (!wholeAccounts.contains(accID)) {
+						changes.put(ownershipKey(up.getId(), accID), Boolean.FALSE);
+					}
+				}
+				continue;
+			}
+			if (delete == null) {
+				delete = conn.prepareStatement(DELETE_OWNERSHIP_BY_USER);
+				insert = conn.prepareStatement(INSERT_OWNERSHIP);
+			}
+			delete.setInt(1, up.getId());
+			delete.addBatch();
+			for (int accID : up.getOwnedAccounts()) {
+				insert.setInt(1, up.getId());
+				insert.setInt(2, accID);
+				insert.addBatch();
+				inserted.add(ownershipKey(up.getId(), accID));
+				rows++;
+			}
+		}
+		if (delete != null) {
+			delete.executeBatch();
+			if (rows > 0) {
+				insert.executeBatch();
+			}
+		}
+		
+		rows = 0;
+		delete = null;
+		for (BankAccount ba : accounts) {
+			if (!wholeAccounts.contains(ba.getId())) {
+				for (int ownerID : ba.getAddedOwners().toArray()) {
+					changes.put(ownershipKey(ownerID, ba.getId()), Boolean.TRUE);
+				}
+				for (int ownerID : ba.getRemovedOwners().toArray()) {
+					changes.put(ownershipKey(ownerID, ba.getId()), Boolean.FALSE);
+				}
+				continue;
+			}
+			if (delete == null) {
+				delete = conn.prepareStatement(DELETE_OWNERSHIP_BY_ACCOUNT);
+				insert = conn.prepareStatement(INSERT_OWNERSHIP);
+			}
+			delete.setInt(1, ba.getId());
+			delete.addBatch();
+			for (int ownerID : ba.getOwners()) {
+				insert.setInt(1, ownerID);
+				insert.setInt(2, ba.getId());
+				insert.addBatch();
+				inserted.add(ownershipKey(ownerID, ba.getId()));
+				rows++;
+			}
+		}
+		if (delete != null) {
+			delete.executeBatch();
+			if (rows > 0) {
+				insert.executeBatch();
+			}
+		}
+		
+		writeOwnershipChanges(conn, changes, inserted);
+	}
+	
+	/**
+	 * Applies single row ownership changes: one batch of inserts, one of deletes.
+	 * Inserts skip rows that are already there, in case someone else added them first.
+	 * @param conn
+	 * @param changes : row -> added (true) or removed (false)
+	 * @param inserted : rows already inserted by this write, which don't need inserting again
+	 */
+	private void writeOwnershipChanges(Connection conn, Map<Long, Boolean> changes, Set<Long> inserted) 
+			throws SQLException {
+		
+		PreparedStatement insert = null;
+		PreparedStatement delete = null;
+		for (Map.Entry<Long, Boolean> change : changes.entrySet()) {
+			long key = change.getKey();
+			PreparedStatement pstm;
+			if (change.getValue()) {
+				if (inserted.contains(key)) {
+					continue;
+				}
+				pstm = (insert != null) ? insert : (insert = conn.prepareStatement(INSERT_OWNERSHIP_IF_MISSING));
+			}
+			else {
+				pstm = (delete != null) ? delete : (delete = conn.prepareStatement(DELETE_OWNERSHIP_PAIR));
+			}
+			pstm.setInt(1, (int)(key >>> 32)); // user
+			pstm.setInt(2, (int)key); // account
+			pstm.addBatch();
+		}
+		if (insert != null) {
+			insert.executeBatch();
+		}
+		if (delete != null) {
+			delete.executeBatch();
+		}
+	}
+	
+	/**
+	 * Merges two copies of the same profile from one write(List), so neither one's account
+	 * changes get lost; the later one wins where they disagree.
+	 * @param earlier : null if this is the first copy
+	 * @param later
+	 * @return a new profile if they had to be merged, so the ones passed in aren't changed
+	 */
+	private static UserProfile mergeCopies(UserProfile earlier, UserProfile later) {
+		
+		if (earlier == null || !later.isTracked()) { // an untracked copy replaces everything
+			return later;
+		}
+		UserProfile merged = new UserProfile(earlier);
+		for (int accID : later.getAddedAccounts().toArray()) {
+			merged.addAccount(accID);
+		}
+		for (int accID : later.getRemovedAccounts().toArray()) {
+			merged.removeAccount(accID);
+		}
+		return merged;
+	}
+	
+	/**
+	 * Merges two copies of the same account from one write(List): the later one's changed
+	 * columns and owners go over the earlier one's.
+	 * @param earlier : null if this is the first copy
+	 * @param later
+	 * @return a new account if they had to be merged, so the ones passed in aren't changed
+	 */
+	private static BankAccount mergeCopies(BankAccount earlier, BankAccount later) {
+		
+		if (earlier == null || !later.isTracked()) {
+			return later;
+		}
+		BankAccount merged = new BankAccount(earlier);
+		if (later.isStatusDirty()) {
+			merged.setStatus(later.getStatus());
+		}
+		if (later.isTypeDirty()) {
+			merged.setType(later.getType());
+		}
+		if (later.isFundsDirty()) {
+			merged.setFunds(later.getFunds());
+		}
+		for (int ownerID : later.getAddedOwners().toArray()) {
+			merged.addOwner(ownerID);
+		}
+		for (int ownerID : later.getRemovedOwners().toArray()) {
+			merged.removeOwner(ownerID);
+		}
+		return merged;
+	}
+	
+	private static long ownershipKey(int userID, int accID) {
+		return ((long)userID << 32) | (accID & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Helper method to write TransactionRecords, as one batch.
+	 * @param conn
+	 * @param transactions
+	 */
+	private void writeTransactionRecords(Connection conn, Collection<TransactionRecord> transactions) 
+			throws SQLException {
+		
+		if (transactions.isEmpty()) {
+			return;
+		}
+		
+		PreparedStatement pstm = conn.prepareStatement(INSERT_TRANSACTION_RECORD);
+		for (TransactionRecord tr : transactions) {
+			pstm.setInt(1, tr.getId());
+			pstm.setString(2, tr.getTime());
+			pstm.setString(3, "" + tr.getType());
+			pstm.setInt(4, tr.getActingUser());
+			pstm.setInt(5, tr.getSourceAccount());
+			pstm.setInt(6, tr.getDestinationAccount());
+			pstm.setInt(7, tr.getMoneyAmount());
+			pstm.addBatch();
+		}
+		pstm.executeBatch();
+	}
+	
+	/**
+	 * Takes the next values from the sequence for the given type, all in one query.
+	 */
+	@Override
+	public int[] reserveIDs(IDType type, int count) throws BankDAOException {
+		
+		try (Connection conn = DatabaseUtil.getConnection()){
+			
+			if (conn == null) {
+				throw new BankDAOException(NULL_CONNECTION_MESSAGE);
+			}
+			
+			if (!sequencesChecked) {
+				DatabaseUtil.ensureIDSequences(conn);
+				sequencesChecked = true;
+			}
+			
+			String sql = "SELECT nextval('" + DatabaseUtil.getIDSequenceName(type) + "') AS id "
+					+ "FROM generate_series(1, ?);";
+			PreparedStatement pstm = conn.prepareStatement(sql);
+			pstm.setInt(1, count);
+			ResultSet idSet = pstm.executeQuery();
+			
+			int[] ids = new int[count];
+			int found = 0;
+			while (idSet.next() && found < count) {
+				ids[found++] = idSet.getInt("id");
+			}
+			
+			Arrays.sort(ids, 0, found);
+			return Arrays.copyOf(ids, found);
+		}
+		catch (SQLException e){
+			log.log(Level.ERROR, "SQL exception in reserveIDs: " + e.getMessage());
+			throw new BankDAOException(GENERIC_SQL_EXCEPTION_MESSAGE);
+		}
+	}
+	
+	// methods from TransactionalBankDAO ------------------------------------------
+	
+	/**
+	 * Locks both account rows with SELECT ... FOR UPDATE, checks them, and updates both
+	 * balances, all inside one transaction.
+	 * @param sourceAccID : NO_ACCOUNT for a deposit
+	 * @param destAccID : NO_ACCOUNT for a withdrawal
+	 * @param moneyAmount
+	 * @return SUCCESS, or the reason nothing was changed
+	 */
+	@Override
+	public TransferResult transferFunds(int sourceAccID, int destAccID, int moneyAmount) 
+			throws BankDAOException {
+		
+		try (Connection conn = DatabaseUtil.getConnection()){
+			
+			if (conn == null) {
+				throw new BankDAOException(NULL_CONNECTION_MESSAGE);
+			}
+			
+			return transferInTransaction(conn, sourceAccID, destAccID, moneyAmount, null);
+		}
+		catch (SQLException e){
+			log.log(Level.ERROR, "SQL exception in transferFunds: " + e.getMessage());
+			throw new BankDAOException(GENERIC_SQL_EXCEPTION_MESSAGE);
+		}
+	}
+	
+	/**
+	 * Calls the transfer_funds function, which checks the accounts, moves the money and saves
+	 * the record in a single round trip. If the database doesn't have the function (not
+	 * migrated to version 3, or not PostgreSQL), does the same in a transaction of its own.
+	 * The function works the record's type out from which accounts are given (deposit,
+	 * withdrawal or transfer), so the record should have the matching one.
+	 * @param record : with its ID, time and acting user already set
+	 * @return SUCCESS, or the reason nothing was changed (or saved)
+	 */
+	@Override
+	public TransferResult transferFunds(TransactionRecord record) throws BankDAOException {
+		
+		try (Connection conn = DatabaseUtil.getConnection()){
+			
+			if (conn == null) {
+				throw new BankDAOException(NULL_CONNECTION_MESSAGE);
+			}
+			
+			if (!hasTransferFunction(conn)) {
+				return transferInTransaction(conn, record.getSourceAccount(), 
+						record.getDestinationAccount(), record.getMoneyAmount(), record);
+			}
+			
+			PreparedStatement pstm = conn.prepareStatement(CALL_TRANSFER_FUNDS);
+			pstm.setInt(1, record.getSourceAccount());
+			pstm.setInt(2, record.getDestinationAccount());
+			pstm.setInt(3, record.getMoneyAmount());
+			pstm.setInt(4, record.getActingUser());
+			pstm.setInt(5, record.getId());
+			pstm.setString(6, record.getTime());
+			ResultSet rs = pstm.executeQuery();
+			
+			if (!rs.next()) {
+				throw new SQLException(TRANSFER_FUNCTION_NAME + " returned nothing");
+			}
+			return TransferResult.valueOf(rs.getString("result"));
+		}
+		catch (SQLException | IllegalArgumentException e){ // bad result name
+			log.log(Level.ERROR, "SQL exception in transferFunds: " + e.getMessage());
+			throw new BankDAOException(GENERIC_SQL_EXCEPTION_MESSAGE);
+		}
+	}
+	
+	/**
+	 * Locks the account's row with SELECT ... FOR UPDATE (the same as a transfer does), then
+	 * reads, changes and writes it in that transaction.
+	 * @param accID
+	 * @param change
+	 * @return the account as it was written
+	 */
+	@Override
+	public <E extends Exception> BankAccount updateAccount(int accID, AccountChange<E> change) 
+			throws E, BankDAOException {
+		
+		try (Connection conn = DatabaseUtil.getConnection()){
+			
+			if (conn == null) {
+				throw new BankDAOException(NULL_CONNECTION_MESSAGE);
+			}
+			
+			conn.setAutoCommit(false);
+			try {
+				PreparedStatement pstm = conn.prepareStatement(LOCK_ACCOUNTS_FOR_TRANSFER);
+				pstm.setInt(1, accID);
+				pstm.setInt(2, accID);
+				pstm.executeQuery().close();
+				
+				BankAccount ba = readBankAccount(conn, accID);
+				List<BankData> toWrite = new ArrayList<>(change.apply(ba));
+				toWrite.add(ba);
+				Collection<UserProfile> profiles = writeInTransaction(conn, toWrite);
+				conn.commit();
+				markWritten(toWrite, profiles);
+				return ba;
+			}
+			catch (Exception e) { // including the change's own
+				conn.rollback();
+				throw e;
+			}
+			finally {
+				conn.setAutoCommit(true);
+			}
+		}
+		catch (SQLException e){
+			log.log(Level.ERROR, "SQL exception in updateAccount: " + e.getMessage());
+			throw new BankDAOException(GENERIC_SQL_EXCEPTION_MESSAGE);
 		}
 	}
 	
+	// helper methods for transfers --------------------------------------------
+	
 	/**
-	 * Helper method to write a single TransactionRecord
+	 * Does the lock-check-update of a transfer in one transaction on the given connection,
+	 * and saves the record too if there is one and the transfer happens.
 	 * @param conn
-	 * @param tr
-	 */
-	private void writeTransactionRecord(Connection conn, TransactionRecord tr) throws SQLException {
-		
-		String sql;
-		PreparedStatement pstm;
-
-		sql = "INSERT INTO transaction_record (transaction_id, time, type, acting_user, "
-				+ "source_account, destination_account, money_amount) "
-				+ "VALUES (?, ? , ?, ?, ?, ?, ?) "
-				+ "ON CONFLICT (transaction_id) DO NOTHING;"; // should never be overwritten
-		pstm = conn.prepareStatement(sql);
-		pstm.setInt(1, tr.getId());
-		pstm.setString(2, tr.getTime());
-		pstm.setString(3, "" + tr.getType());
-		pstm.setInt(4, tr.getActingUser());
-		pstm.setInt(5, tr.getSourceAccount());
-		pstm.setInt(6, tr.getDestinationAccount());
-		pstm.setInt(7, tr.getMoneyAmount());
-		pstm.execute();
+	 * @param sourceAccID
+	 * @param destAccID
+	 * @param moneyAmount
+	 * @param record : null if there's nothing to save
+	 * @return SUCCESS, or the reason nothing was changed
+	 * @throws SQLException
+	 */
+	private TransferResult transferInTransaction(Connection conn, int sourceAccID, int destAccID, 
+			int moneyAmount, TransactionRecord record) throws SQLException {
+		
+		conn.setAutoCommit(false);
+		try {
+			PreparedStatement pstm = conn.prepareStatement(LOCK_ACCOUNTS_FOR_TRANSFER);
+			pstm.setInt(1, sourceAccID);
+			pstm.setInt(2, destAccID);
+			ResultSet accSet = pstm.executeQuery();
+			
+			String sourceStatus = null;
+			String destStatus = null;
+			int sourceFunds = 0;
+			
+			while (accSet.next()) {
+				int accID = accSet.getInt("account_id");
+				if (accID == sourceAccID) {
+					sourceStatus = accSet.getString("status");
+					sourceFunds = accSet.getInt("funds");
+				}
+				if (accID == destAccID) {
+					destStatus = accSet.getString("status");
+				}
+			}
+			
+			TransferResult result = TransferResult.SUCCESS;
+			
+			if (sourceAccID != NO_ACCOUNT && sourceStatus == null) {
+				result = TransferResult.SOURCE_NOT_FOUND;
+			}
+			else if (destAccID != NO_ACCOUNT && destStatus == null) {
+				result = TransferResult.DESTINATION_NOT_FOUND;
+			}
+			else if (sourceAccID != NO_ACCOUNT && !sourceStatus.equals(ACCOUNT_STATUS_OPEN)) {
+				result = TransferResult.SOURCE_NOT_OPEN;
+			}
+			else if (destAccID != NO_ACCOUNT && !destStatus.equals(ACCOUNT_STATUS_OPEN)) {
+				result = TransferResult.DESTINATION_NOT_OPEN;
+			}
+			else if (sourceAccID != NO_ACCOUNT && sourceFunds < moneyAmount) {
+				result = TransferResult.INSUFFICIENT_FUNDS;
+			}
+			
+			if (result != TransferResult.SUCCESS) {
+				conn.rollback(); // releases the row locks
+				return result;
+			}
+			
+			pstm = conn.prepareStatement(ADJUST_FUNDS);
+			if (sourceAccID != NO_ACCOUNT) {
+				pstm.setInt(1, -moneyAmount);
+				pstm.setInt(2, sourceAccID);
+				pstm.executeUpdate();
+			}
+			if (destAccID != NO_ACCOUNT) {
+				pstm.setInt(1, moneyAmount);
+				pstm.setInt(2, destAccID);
+				pstm.executeUpdate();
+			}
+			if (record != null) {
+				writeTransactionRecords(conn, Collections.singletonList(record));
+			}
+			
+			conn.commit();
+			return result;
+		}
+		catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		}
+		finally {
+			conn.setAutoCommit(true);
+		}
+	}
+	
+	/**
+	 * @return true if the database has the transfer_funds function; only asks the database
+	 *     the first time, and again after each reset
+	 */
+	private boolean hasTransferFunction(Connection conn) throws SQLException {
+		
+		int resetCount = DatabaseUtil.getResetCount();
+		if (transferFunctionResetCount != resetCount) {
+			PreparedStatement pstm = conn.prepareStatement(SELECT_TRANSFER_FUNCTION_EXISTS);
+			pstm.setString(1, TRANSFER_FUNCTION_NAME);
+			ResultSet rs = pstm.executeQuery();
+			transferFunctionFound = rs.next() && rs.getInt("found") > 0;
+			transferFunctionResetCount = resetCount;
+		}
+		return transferFunctionFound;
 	}
 	
 	// util methods ------------------------------------------------------------
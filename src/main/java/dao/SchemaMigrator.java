@@ -0,0 +1,271 @@
+/**
+ * Brings the database schema up to date by running numbered SQL scripts, in order, that
+ * haven't been run against it yet. The scripts live in src/main/resources/db/migration and
+ * are listed in MIGRATIONS; a script's version is its position in that list (starting at 1).
+ *
+ * The versions that have been applied are recorded in the schema_version table, so running
+ * the migrator again only does whatever is new. Each script runs in its own transaction
+ * together with its schema_version row, so a script that fails part way leaves no trace.
+ *
+ * To change the schema, add a new script to the end of the list. Never edit one that has
+ * already been released, since databases that ran it won't run it again.
+ *
+ * A script whose first line is "-- postgresql only" (eg, one that creates a plpgsql function)
+ * is only run against PostgreSQL. Other databases, like the H2 stand-in the tests use, just
+ * record its version, so their version numbers still line up; code that depends on such a
+ * script should check for what it creates.
+ *
+ * @author Andrew Curry
+ */
+package dao;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class SchemaMigrator {
+
+	// constants
+	public static final String SCHEMA_VERSION_TABLE = "schema_version";
+
+	private static final String MIGRATION_DIRECTORY = "/db/migration/";
+	private static final String[] MIGRATIONS = {
+			"V1__create_tables.sql",
+			"V2__add_lookup_indexes.sql",
+			"V3__add_transfer_funds_function.sql",
+	};
+	private static final String POSTGRESQL_ONLY_MARKER = "-- postgresql only";
+	private static final String POSTGRESQL_PRODUCT_NAME = "PostgreSQL";
+
+	private static final String CREATE_SCHEMA_VERSION_TABLE
+			= "CREATE TABLE IF NOT EXISTS " + SCHEMA_VERSION_TABLE + " ("
+			+ "version INT NOT NULL PRIMARY KEY, "
+			+ "script VARCHAR(200) NOT NULL, "
+			+ "applied_at VARCHAR(120) NOT NULL);";
+	private static final String SELECT_CURRENT_VERSION
+			= "SELECT MAX(version) AS version FROM " + SCHEMA_VERSION_TABLE + ";";
+	private static final String INSERT_VERSION
+			= "INSERT INTO " + SCHEMA_VERSION_TABLE + " (version, script, applied_at) VALUES (?, ?, ?);";
+
+	// class / static variables
+	private static Logger log = Logger.getLogger(SchemaMigrator.class);
+
+	// no instances
+	private SchemaMigrator() {
+
+	}
+
+	// operation methods
+
+	/**
+	 * Runs every script newer than the database's current version.
+	 * @param conn : left in the same auto-commit mode it came in
+	 * @return the version the database is at afterwards
+	 * @throws SQLException if a script fails; earlier scripts stay applied
+	 */
+	public static int migrate(Connection conn) throws SQLException {
+
+		conn.createStatement().execute(CREATE_SCHEMA_VERSION_TABLE);
+		int current = getCurrentVersion(conn);
+
+		boolean autoCommit = conn.getAutoCommit();
+		try {
+			conn.setAutoCommit(false);
+			for (int version = current + 1; version <= MIGRATIONS.length; version++) {
+				applyMigration(conn, version, MIGRATIONS[version - 1]);
+			}
+		}
+		finally {
+			conn.setAutoCommit(autoCommit);
+		}
+
+		return Math.max(current, MIGRATIONS.length);
+	}
+
+	/**
+	 * @param conn
+	 * @return the highest version applied to the database, 0 if none
+	 * @throws SQLException if there is no schema_version table
+	 */
+	public static int getCurrentVersion(Connection conn) throws SQLException {
+
+		ResultSet rs = conn.createStatement().executeQuery(SELECT_CURRENT_VERSION);
+		return rs.next() ? rs.getInt("version") : 0; // null (no rows) comes back as 0
+	}
+
+	/**
+	 * @return the version a fully migrated database is at
+	 */
+	public static int getLatestVersion() {
+		return MIGRATIONS.length;
+	}
+
+	// helper methods
+
+	/**
+	 * Runs one script and records it, in one transaction.
+	 */
+	private static void applyMigration(Connection conn, int version, String script) throws SQLException {
+
+		try {
+			String contents = loadScript(script);
+			if (contents.startsWith(POSTGRESQL_ONLY_MARKER)
+					&& !POSTGRESQL_PRODUCT_NAME.equals(conn.getMetaData().getDatabaseProductName())) {
+				log.log(Level.INFO, "Skipping schema migration " + script + " (PostgreSQL only)");
+			}
+			else {
+				log.log(Level.INFO, "Applying schema migration " + script);
+				Statement stm = conn.createStatement();
+				for (String sql : splitStatements(contents)) {
+					stm.execute(sql);
+				}
+			}
+
+			PreparedStatement pstm = conn.prepareStatement(INSERT_VERSION);
+			pstm.setInt(1, version);
+			pstm.setString(2, script);
+			pstm.setString(3, java.time.LocalDateTime.now().toString());
+			pstm.execute();
+
+			conn.commit();
+		}
+		catch (SQLException e) {
+			conn.rollback();
+			log.log(Level.ERROR, "Schema migration " + script + " failed: " + e.getMessage());
+			throw e;
+		}
+	}
+
+	private static String loadScript(String script) throws SQLException {
+
+		InputStream in = SchemaMigrator.class.getResourceAsStream(MIGRATION_DIRECTORY + script);
+		if (in == null) {
+			throw new SQLException("Missing migration script: " + script);
+		}
+
+		StringBuilder sb = new StringBuilder();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				sb.append(line).append('\n');
+			}
+		}
+		catch (IOException e) {
+			throw new SQLException("Could not read migration script " + script + ": " + e.getMessage());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Splits a script into statements at each semicolon, except ones inside quotes,
+	 * comments, or dollar-quoted bodies ($$ ... $$ or $tag$ ... $tag$, as used for functions).
+	 * Comments are kept with the statement they are in; statements that are nothing but
+	 * whitespace and comments are dropped.
+	 * Public so that it can be tested directly.
+	 * @param script
+	 * @return the statements, without their semicolons
+	 */
+	public static List<String> splitStatements(String script) {
+
+		List<String> statements = new ArrayList<>();
+		StringBuilder current = new StringBuilder();
+		boolean hasCode = false; // anything in current besides whitespace and comments?
+		int i = 0;
+
+		while (i < script.length()) {
+			char c = script.charAt(i);
+			int end = i + 1; // end of the token starting at i
+
+			if (c == '-' && script.startsWith("--", i)) {
+				end = script.indexOf('\n', i);
+				end = (end == -1) ? script.length() : end;
+			}
+			else if (c == '/' && script.startsWith("/*", i)) {
+				end = script.indexOf("*/", i + 2);
+				end = (end == -1) ? script.length() : end + 2;
+			}
+			else if (c == '\'' || c == '"') {
+				end = closingQuote(script, i, c);
+				hasCode = true;
+			}
+			else if (c == '$' && dollarTag(script, i) != null) {
+				String tag = dollarTag(script, i);
+				end = script.indexOf(tag, i + tag.length());
+				end = (end == -1) ? script.length() : end + tag.length();
+				hasCode = true;
+			}
+			else if (c == ';') {
+				if (hasCode) {
+					statements.add(current.toString().trim());
+				}
+				current.setLength(0);
+				hasCode = false;
+				i++;
+				continue;
+			}
+			else if (!Character.isWhitespace(c)) {
+				hasCode = true;
+			}
+
+			current.append(script, i, end);
+			i = end;
+		}
+
+		if (hasCode) {
+			statements.add(current.toString().trim());
+		}
+		return statements;
+	}
+
+	/**
+	 * @return the index just past the quote that closes the one at start; doubled quotes
+	 *     inside ('it''s') don't count
+	 */
+	private static int closingQuote(String script, int start, char quote) {
+
+		int i = start + 1;
+		while (i < script.length()) {
+			if (script.charAt(i) == quote) {
+				if (i + 1 < script.length() && script.charAt(i + 1) == quote) {
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return script.length();
+	}
+
+	/**
+	 * @return the dollar quote tag ($$ or $name$) starting at the given index, or null
+	 *     if there isn't one there
+	 */
+	private static String dollarTag(String script, int start) {
+
+		int i = start + 1;
+		while (i < script.length()) {
+			char c = script.charAt(i);
+			if (c == '$') {
+				return script.substring(start, i + 1);
+			}
+			if (!(Character.isLetterOrDigit(c) || c == '_') || (i == start + 1 && Character.isDigit(c))) {
+				return null; // $1 is a parameter, not a quote
+			}
+			i++;
+		}
+		return null;
+	}
+}
@@ -1,80 +1,138 @@
 /**
  * This is a textfile-based DAO class that I will use to test other features
  * until the final, database version is written.
+ * The format of each line is handled by TextRecordCodec.
+ * 
+ * Reads go through the last published TextFileSnapshot rather than opening the file by
+ * name, so a read that overlaps a write sees the whole file as it was before the write,
+ * never a partial one, and neither has to wait for the other.
+ * 
+ * In mapped-read mode each snapshot is given a sorted index of "PREFIX id" tags (and where
+ * their lines are) the first time it's needed, so point reads are a binary search and one
+ * positioned read instead of a scan of the file. Despite the name, nothing is memory-mapped
+ * any more: Windows refuses to replace a file while it's mapped, and the published snapshot
+ * is still open when a write moves the new file over it.
+ * 
+ * Transaction history lookups by acting user or account go through sidecar index files
+ * next to the data file (see TextFileHistoryIndex), which are regenerated on every write.
+ * 
+ * Username lookups use an in-memory UsernameIndex, built from one scan of the file and
+ * kept up to date by writes; it is rebuilt if the file's size or modified time changes
+ * behind the DAO's back.
+ * 
+ * Every write replaces the file atomically (the new contents go to a temp file that is then
+ * moved over it), so a crash mid-write leaves the old file rather than half of the new one.
+ * A journaled DAO doesn't rewrite the file for each write: it appends the new lines to a
+ * WriteAheadJournal, waits for them to reach the disk, and keeps them in memory as
+ * PendingLines that reads lay over the file. The file is only rewritten (and forced) at a
+ * checkpoint, once the journal has grown big enough, and anything the journal holds is
+ * replayed when the DAO is created.
+ * 
+ * Writes are synchronized so one DAO can be shared by several sessions (the server); reads
+ * don't need the lock. Journaled writes let go of it while they wait for the disk, so that
+ * writers from different sessions can share one force.
  * 
  * Andrew Curry
  */
 package dao;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
 
 import com.revature.bankDataObjects.BankAccount;
 import com.revature.bankDataObjects.BankData;
 import com.revature.bankDataObjects.TransactionRecord;
 import com.revature.bankDataObjects.UserProfile;
-import com.revature.bankDataObjects.UserProfile.UserProfileType;
-import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
-import com.revature.bankDataObjects.BankAccount.BankAccountType;
-import com.revature.bankDataObjects.TransactionRecord.TransactionType;
 
 public class TextFileDAO implements BankDAO {
 	
 	// class/static variables
-	private static final String USER_PROFILE_PREFIX = "PRF";
-	private static final String BANK_ACCOUNT_PREFIX = "ACC";
-	private static final String TRANSACTION_RECORD_PREFIX = "TRR";
-	
-	private static final String ACCOUNT_STATUS_OPEN = "OPN";
-	private static final String ACCOUNT_STATUS_CLOSED = "CLS";
-	private static final String ACCOUNT_STATUS_PENDING = "PND";
-	private static final String ACCOUNT_STATUS_NONE = "NON"; // shouldn't be used?
-	
-	private static final String ACCOUNT_TYPE_NONE = "NON"; // shouldn't be used?
-	private static final String ACCOUNT_TYPE_SINGLE = "SNG";
-	private static final String ACCOUNT_TYPE_JOINT = "JNT";
-	
-	private static final String PROFILE_TYPE_NONE = "NON";
-	private static final String PROFILE_TYPE_CUSTOMER = "CST";
-	private static final String PROFILE_TYPE_EMPLOYEE = "EMP";
-	private static final String PROFILE_TYPE_ADMIN = "ADM";
-	
-	private static final String TRANSACTION_TYPE_ACCOUNT_REGISTERED = "ACR";
-	private static final String TRANSACTION_TYPE_ACCOUNT_APPROVED = "ACA";
-	private static final String TRANSACTION_TYPE_ACCOUNT_CLOSED = "ACC";
-	private static final String TRANSACTION_TYPE_ACCOUNT_OWNER_ADDED = "AOA";
-	private static final String TRANSACTION_TYPE_ACCOUNT_OWNER_REMOVED = "AOR";
-	private static final String TRANSACTION_TYPE_FUNDS_TRANSFERED = "FTR";
-	private static final String TRANSACTION_TYPE_FUNDS_DEPOSITED = "FDP";
-	private static final String TRANSACTION_TYPE_FUNDS_WITHDRAWN = "FWD";
-	private static final String TRANSACTION_TYPE_USER_REGISTERED = "URG";
-	private static final String TRANSACTION_TYPE_NONE = "NON";
+	private static final String USER_PROFILE_PREFIX = TextRecordCodec.USER_PROFILE_PREFIX;
+	private static final String BANK_ACCOUNT_PREFIX = TextRecordCodec.BANK_ACCOUNT_PREFIX;
+	private static final String TRANSACTION_RECORD_PREFIX = TextRecordCodec.TRANSACTION_RECORD_PREFIX;
+	
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final long JOURNAL_CHECKPOINT_BYTES = 1 << 20; // checkpoint after about this much journal
+	
+	// "HWM PRF 120" means user profile IDs up to 120 have been reserved
+	private static final String HIGH_WATER_MARK_PREFIX = "HWM";
+	
+	private static Logger log = Logger.getLogger(TextFileDAO.class);
 	
 	// instance variables
 	private String filename;
-	private BufferedReader reader;
-	private BufferedWriter writer;
+	private TextFileHistoryIndex historyIndex;
+	private WriteAheadJournal journal; // null unless journaled
+	
+	// the version of the file reads go to, and the journaled lines not in it yet; holds a
+	// reference to the snapshot until replaced
+	private volatile View published;
+	private final Object publishLock = new Object();
+	
+	// username -> user ID, null until first needed; the file's size and modified time when it was current
+	// guarded by usernameLock rather than the DAO, so lookups don't wait for writes
+	private final Object usernameLock = new Object();
+	private UsernameIndex usernameIndex;
+	private long usernameIndexLength;
+	private long usernameIndexModified;
+	
+	private boolean mappedReads;
 	
 	// constructor(s)
 	public TextFileDAO(String filename) throws BankDAOException {
+		this(filename, false);
+	}
+	
+	/**
+	 * @param filename
+	 * @param mappedReads : if true, point reads use an index of where each record's line is
+	 * @throws BankDAOException
+	 */
+	public TextFileDAO(String filename, boolean mappedReads) throws BankDAOException {
+		this(filename, mappedReads, false);
+	}
+	
+	/**
+	 * @param filename
+	 * @param mappedReads : if true, point reads use an index of where each record's line is
+	 * @param journaled : if true, writes are made durable through a journal next to the file,
+	 *     which is replayed now if the file is missing any of it
+	 * @throws BankDAOException
+	 */
+	public TextFileDAO(String filename, boolean mappedReads, boolean journaled) throws BankDAOException {
 		this.filename = filename;
+		this.mappedReads = mappedReads;
+		historyIndex = new TextFileHistoryIndex(filename);
 		
 		// make sure the filename is valid
-		try {
-			reader = openFileReader();
-		}
-		catch (BankDAOException e) {
-			throw e;
-		}
+		publish(TextFileSnapshot.open(filename), PendingLines.NONE);
 		
-		closeFile(reader);
+		if (journaled) {
+			journal = new WriteAheadJournal(filename, JOURNAL_CHECKPOINT_BYTES);
+			recover();
+		}
 	}
 	
 	// methods from BankDAO interface
@@ -94,8 +152,8 @@ public class TextFileDAO implements BankDAO {
 	 */
 	public BankAccount readBankAccount(int accID) throws BankDAOException {
 		
-		String entry = searchFile(BANK_ACCOUNT_PREFIX + " " + accID);
-		BankAccount ba = buildAccountFromEntry(entry);
+		String entry = pointRead(BANK_ACCOUNT_PREFIX, accID);
+		BankAccount ba = TextRecordCodec.buildAccountFromEntry(entry);
 		ba.setId(accID); // fixes problem if no matching bank account is found
 		return ba;
 	}
@@ -111,7 +169,7 @@ public class TextFileDAO implements BankDAO {
 		List<String> entries = searchFileMultiple(BANK_ACCOUNT_PREFIX);
 		
 		for (String e : entries) {
-			accounts.add(buildAccountFromEntry(e));
+			accounts.add(TextRecordCodec.buildAccountFromEntry(e));
 		}
 		
 		return accounts;
@@ -120,8 +178,8 @@ public class TextFileDAO implements BankDAO {
 	@Override
 	public UserProfile readUserProfile(int userID) throws BankDAOException {
 		
-		String entry = searchFile(USER_PROFILE_PREFIX + " " + userID);
-		UserProfile up = buildUserProfileFromEntry(entry);
+		String entry = pointRead(USER_PROFILE_PREFIX, userID);
+		UserProfile up = TextRecordCodec.buildUserProfileFromEntry(entry);
 		up.setId(userID); // in case it wasn't found
 		return up;
 	}
@@ -135,16 +193,15 @@ public class TextFileDAO implements BankDAO {
 	@Override
 	public UserProfile readUserProfile(String username) throws BankDAOException{
 		
-		List<String> entries = searchFileMultiple(USER_PROFILE_PREFIX);
-		
-		for (String e : entries) {
-			String[] tokens = e.split(" ", 4);
-			if (tokens[2].equals(username)) {
-				return buildUserProfileFromEntry(e);
-			}
+		int userID;
+		synchronized (usernameLock) {
+			userID = getUsernameIndex().get(username);
+		}
+		if (userID == UsernameIndex.NOT_FOUND) {
+			return TextRecordCodec.buildUserProfileFromEntry(""); // didn't find it
 		}
 		
-		return buildUserProfileFromEntry(""); // didn't find it
+		return TextRecordCodec.buildUserProfileFromEntry(pointRead(USER_PROFILE_PREFIX, userID));
 	}
 
 	@Override
@@ -154,7 +211,7 @@ public class TextFileDAO implements BankDAO {
 		List<String> entries = searchFileMultiple(USER_PROFILE_PREFIX);
 		
 		for (String e : entries) {
-			profiles.add(buildUserProfileFromEntry(e));
+			profiles.add(TextRecordCodec.buildUserProfileFromEntry(e));
 		}
 		
 		return profiles;
@@ -163,8 +220,8 @@ public class TextFileDAO implements BankDAO {
 	@Override
 	public TransactionRecord readTransactionRecord(int recID) throws BankDAOException {
 		
-		String entry = searchFile(TRANSACTION_RECORD_PREFIX + " " + recID);
-		TransactionRecord tr = buildTransactionRecordFromEntry(entry);
+		String entry = pointRead(TRANSACTION_RECORD_PREFIX, recID);
+		TransactionRecord tr = TextRecordCodec.buildTransactionRecordFromEntry(entry);
 		tr.setId(recID); // fixes issue when not found
 		return tr;
 	}
@@ -176,7 +233,7 @@ public class TextFileDAO implements BankDAO {
 		List<String> entries = searchFileMultiple(TRANSACTION_RECORD_PREFIX);
 		
 		for (String e : entries) {
-			transactions.add(buildTransactionRecordFromEntry(e));
+			transactions.add(TextRecordCodec.buildTransactionRecordFromEntry(e));
 		}
 		
 		return transactions;
@@ -205,61 +262,14 @@ public class TextFileDAO implements BankDAO {
 		List<String> entries = new ArrayList<>();
 		
 		for (BankData bd : toWrite) {
-			String entry;
-			
-			if (bd.getClass() == UserProfile.class) {
-				entry = saveUserProfile((UserProfile)bd);
-			}
-			else if (bd.getClass() == BankAccount.class) {
-				entry = saveBankAccount((BankAccount)bd);
-			}
-			else if (bd.getClass() == TransactionRecord.class) {
-				entry = saveTransactionRecord((TransactionRecord)bd);
-			}
-			else {
-				throw new BankDAOException("BankData subclass not supported in write: " + bd.getClass());
-			}
-			
-			entries.add(entry);
+			entries.add(TextRecordCodec.save(bd));
 		}
 		
-		// get all of the data so that we can verify if entries already exist
-		List<String> fileData = searchFileMultiple("");
-		List<String> outputData = new ArrayList<>(entries); // copy the list
-		
-		// rather than just calling WriteEntry for each entry, going to optimize things a little
-		// (actually is this even better?)
-		for (String s : fileData) {
-			String[] tokens = s.split(" ", 3);
-			String tag = tokens[0] + " " + tokens[1];
-			boolean was_found = false;
-			
-			for (String entry : outputData) {
-				if (entry.startsWith(tag)) {
-					was_found = true;
-					break; // don't add duplicates/outdated entries
-				}
-			} // end inner loop
-			
-			if (!was_found) {
-				outputData.add(s);
-			}
-		} // end outer loop
-		
-		writer = openFileWriter(filename);
-		
-		try {
-			for (String s : outputData) {
-				writer.write(s);
-				writer.write("\n");
-			}			
-		}
-		catch (IOException e) {
-			throw (new BankDAOException("ALERT: write failed to write to file: " + filename));
-		}
-		finally {
-			closeFile(writer);
+		long sequence;
+		synchronized (this) {
+			sequence = writeEntries(entries);
 		}
+		awaitJournal(sequence); // outside the lock, so other writers can join the same force
 	}
 	
 	/** 
@@ -286,6 +296,169 @@ public class TextFileDAO implements BankDAO {
 		return getHighestIDHelper(searchFileMultiple("TRR"));
 	};
 	
+	/**
+	 * Rewrites the file with everything in the journal, forces it to disk and empties the
+	 * journal. Journaled DAOs do this on their own every so often; calling it on one that
+	 * isn't journaled does nothing.
+	 * @throws BankDAOException
+	 */
+	public synchronized void checkpoint() throws BankDAOException {
+		
+		if (journal == null) {
+			return;
+		}
+		
+		if (!published.pending.isEmpty()) {
+			writeLines(searchFileMultiple(""), true); // forces it, and publishes it with nothing pending
+		}
+		else {
+			try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE)){
+				channel.force(true);
+			}
+			catch (IOException e) {
+				throw (new BankDAOException("ALERT: could not force file to disk: " + filename));
+			}
+			forceDirectory();
+		}
+		
+		journal.reset(new File(filename).length(), fileCrc());
+	}
+	
+	/**
+	 * @return how many times the journal has been forced for writes; 0 if not journaled
+	 */
+	public long getJournalForceCount() {
+		return (journal == null) ? 0 : journal.getForceCount();
+	}
+	
+	// helper methods for writes
+	
+	/**
+	 * Merges the given entries into the file, replacing any with the same tag; a journaled
+	 * DAO journals them instead, and they reach the file at the next checkpoint.
+	 * The caller should hold the lock, and hand the result to awaitJournal after letting go of it.
+	 * @param entries
+	 * @return the journal sequence number, or 0 if not journaled
+	 * @throws BankDAOException
+	 */
+	private long writeEntries(List<String> entries) throws BankDAOException {
+		
+		if (journal != null) {
+			return journalEntries(entries);
+		}
+		
+		// get all of the data so that we can verify if entries already exist
+		List<String> fileData = searchFileMultiple("");
+		List<String> outputData = new ArrayList<>(entries); // copy the list
+		List<String> replacedProfiles = new ArrayList<>();
+
+		// tags of everything being written, so each line of the file is one lookup
+		Set<String> writtenTags = new HashSet<>();
+		for (String entry : entries) {
+			writtenTags.add(PendingLines.tagOf(entry));
+		}
+
+		for (String s : fileData) {
+			String[] tokens = s.split(" ", 3);
+
+			if (!writtenTags.contains(PendingLines.tagOf(s))) { // don't add duplicates/outdated entries
+				outputData.add(s);
+			}
+			else if (tokens[0].equals(USER_PROFILE_PREFIX)) {
+				replacedProfiles.add(s);
+			}
+		} // end outer loop
+		
+		writeLines(outputData, false);
+		updateUsernames(replacedProfiles, entries);
+		return 0;
+	}
+	
+	/**
+	 * Appends the entries to the journal and lays them over the file for reads. The caller
+	 * holds the lock.
+	 * @param entries
+	 * @return the journal sequence number
+	 * @throws BankDAOException
+	 */
+	private long journalEntries(List<String> entries) throws BankDAOException {
+		
+		List<String> replacedProfiles = new ArrayList<>();
+		for (String s : entries) {
+			if (s.startsWith(USER_PROFILE_PREFIX + " ")) {
+				String old = pointRead(USER_PROFILE_PREFIX, Integer.parseInt(s.split(" ", 3)[1]));
+				if (!old.isEmpty()) {
+					replacedProfiles.add(old);
+				}
+			}
+		}
+		
+		long sequence = journal.append(entries);
+		publish(published.pending.with(entries));
+		updateUsernames(replacedProfiles, entries);
+		return sequence;
+	}
+	
+	/**
+	 * Brings the username index up to date with a write, if it's current.
+	 * @param replacedProfiles : the PRF lines the write replaced
+	 * @param entries : everything it wrote
+	 */
+	private void updateUsernames(List<String> replacedProfiles, List<String> entries) {
+		
+		synchronized (usernameLock) {
+			if (usernameIndex != null) { // still current, so bring it up to date with the new profiles
+				for (String s : replacedProfiles) {
+					String[] tokens = s.split(" ", 4);
+					if (usernameIndex.get(tokens[2]) == Integer.parseInt(tokens[1])) {
+						usernameIndex.remove(tokens[2]);
+					}
+				}
+				for (String s : entries) {
+					if (s.startsWith(USER_PROFILE_PREFIX + " ")) {
+						String[] tokens = s.split(" ", 4);
+						usernameIndex.put(tokens[2], Integer.parseInt(tokens[1]));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits for the given journal entry to reach the disk, then checkpoints if the journal
+	 * has got big enough. Call without the lock held.
+	 * @param sequence : from writeEntries / writeLines
+	 * @throws BankDAOException
+	 */
+	private void awaitJournal(long sequence) throws BankDAOException {
+		
+		if (journal == null) {
+			return;
+		}
+		journal.awaitDurable(sequence);
+		if (journal.checkpointDue()) {
+			checkpoint();
+		}
+	}
+	
+	/**
+	 * Replays whatever the journal holds over the file, then checkpoints.
+	 * @throws BankDAOException
+	 */
+	private synchronized void recover() throws BankDAOException {
+		
+		List<List<String>> missing = journal.open(new File(filename).length(), fileCrc());
+		PendingLines replayed = published.pending;
+		for (List<String> entries : missing) {
+			replayed = replayed.with(entries);
+		}
+		publish(replayed);
+		if (!missing.isEmpty()) {
+			log.log(Level.INFO, "Replayed " + missing.size() + " journal entries into " + filename);
+		}
+		checkpoint();
+	}
+	
 	/**
 	 * Determines whether or not the given username is free to use. Used during registration, to make sure that usernames are unique.
 	 * @param username
@@ -293,17 +466,9 @@ public class TextFileDAO implements BankDAO {
 	 */
 	@Override
 	public boolean isUsernameFree(String username) throws BankDAOException {
-		
-		List<String> userEntries = searchFileMultiple(USER_PROFILE_PREFIX);
-		
-		for (String e : userEntries) {
-			String[] tokens = e.split(" ", 4);
-			if (tokens[2].equals(username)) {
-				return false;
-			}
+		synchronized (usernameLock) {
+			return !getUsernameIndex().contains(username);
 		}
-		
-		return true; // if we got to the end, we didn't find it
 	}
 	
 	/**
@@ -315,16 +480,14 @@ public class TextFileDAO implements BankDAO {
 	@Override
 	public List<TransactionRecord> readTransactionRecordByActingUserId(int actingUserID) throws BankDAOException{
 		
-		List<TransactionRecord> allRecords = readAllTransactionRecords(); // is it more efficient to work with the strings?
-		List<TransactionRecord> matchingRecords = new ArrayList<>();
-		
-		for (TransactionRecord tr : allRecords) {
-			if (tr.getActingUser() == actingUserID) {
-				matchingRecords.add(tr);
-			}
+		View view = acquireView();
+		try {
+			List<String> lines = historyIndex.readActingUserLines(actingUserID, view.snapshot);
+			return buildTransactionRecords(view.withPending(lines, TransactionFilter.ACTING_USER, actingUserID));
+		}
+		finally {
+			view.snapshot.release();
 		}
-		
-		return matchingRecords;
 	}
 	
 	/**
@@ -336,20 +499,373 @@ public class TextFileDAO implements BankDAO {
 	@Override
 	public List<TransactionRecord> readTransactionRecordByAccountId(int accID) throws BankDAOException{
 		
-		List<TransactionRecord> allRecords = readAllTransactionRecords(); // is it more efficient to work with the strings?
-		List<TransactionRecord> matchingRecords = new ArrayList<>();
+		View view = acquireView();
+		try {
+			List<String> lines = historyIndex.readAccountLines(accID, view.snapshot);
+			return buildTransactionRecords(view.withPending(lines, TransactionFilter.ACCOUNT, accID));
+		}
+		finally {
+			view.snapshot.release();
+		}
+	}
+	
+	/**
+	 * Fetches one page of TransactionRecords with IDs after the given one, in ID order.
+	 * The file isn't sorted, so this reads it line by line and only ever keeps the 
+	 * pageSize lowest matching IDs seen so far. Filtered pages only look at the lines
+	 * the history index has for that user or account.
+	 */
+	@Override
+	public List<TransactionRecord> readTransactionRecordPage(TransactionFilter filter, 
+			int filterID, int afterID, int pageSize) throws BankDAOException {
+		
+		if (filter != TransactionFilter.ALL) {
+			List<TransactionRecord> matching = (filter == TransactionFilter.ACTING_USER)
+					? readTransactionRecordByActingUserId(filterID) : readTransactionRecordByAccountId(filterID);
+			matching.removeIf(tr -> tr.getId() <= afterID);
+			matching.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+			return new ArrayList<>(matching.subList(0, Math.min(pageSize, matching.size())));
+		}
+		
+		// highest ID on top, so it's the one dropped when something lower turns up
+		PriorityQueue<TransactionRecord> lowest = new PriorityQueue<>(pageSize, 
+				(a, b) -> Integer.compare(b.getId(), a.getId()));
+		View view = acquireView();
+		
+		try (BufferedReader reader = view.snapshot.openReader()){
+			for (String line : view.pending.lines()) {
+				addToPage(lowest, line, afterID, pageSize);
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!view.pending.hides(line)) {
+					addToPage(lowest, line, afterID, pageSize);
+				}
+			}
+		}
+		catch (IOException e) {
+			throw (new BankDAOException("Problem searching file: " + filename));
+		}
+		finally {
+			view.snapshot.release();
+		}
+		
+		List<TransactionRecord> page = new ArrayList<>(lowest);
+		page.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+		return page;
+	}
+	
+	/**
+	 * Keeps the line's record in the page if it's a transaction record that belongs there.
+	 * @param lowest : the pageSize lowest IDs after afterID so far, highest on top
+	 */
+	private static void addToPage(PriorityQueue<TransactionRecord> lowest, String line, int afterID,
+			int pageSize) {
+		
+		if (!line.startsWith(TRANSACTION_RECORD_PREFIX + " ")) {
+			return;
+		}
+		int id = Integer.parseInt(line.split(" ", 3)[1]);
+		if (id <= afterID || (lowest.size() == pageSize && id > lowest.peek().getId())) {
+			return; // not on this page, no need to parse the rest
+		}
 		
-		for (TransactionRecord tr : allRecords) {
-			if (tr.getSourceAccount() == accID || tr.getDestinationAccount() == accID) {
-				matchingRecords.add(tr);
+		lowest.add(TextRecordCodec.buildTransactionRecordFromEntry(line));
+		if (lowest.size() > pageSize) {
+			lowest.poll();
+		}
+	}
+	
+	/**
+	 * Reserves IDs above both the highest ID in the file and the high-water mark line
+	 * for that type, then saves the new high-water mark so the IDs aren't handed out again.
+	 */
+	@Override
+	public int[] reserveIDs(IDType type, int count) throws BankDAOException {
+		
+		String prefix;
+		switch (type) {
+			case USER_PROFILE:
+				prefix = USER_PROFILE_PREFIX;
+				break;
+			case BANK_ACCOUNT:
+				prefix = BANK_ACCOUNT_PREFIX;
+				break;
+			default:
+				prefix = TRANSACTION_RECORD_PREFIX;
+		}
+		String markTag = HIGH_WATER_MARK_PREFIX + " " + prefix + " ";
+		int first;
+		long sequence;
+		
+		synchronized (this) {
+			List<String> fileData = searchFileMultiple("");
+			List<String> entries = new ArrayList<>();
+			int mark = -1;
+			
+			for (int i = fileData.size() - 1; i >= 0; i--) {
+				String line = fileData.get(i);
+				if (line.startsWith(markTag)) {
+					mark = Math.max(mark, Integer.parseInt(line.substring(markTag.length()).trim()));
+					fileData.remove(i);
+				}
+				else if (line.startsWith(prefix + " ")) {
+					entries.add(line);
+				}
+			}
+			
+			first = Math.max(mark, getHighestIDHelper(entries)) + 1;
+			String markLine = markTag + (first + count - 1);
+			if (journal != null) {
+				sequence = journalEntries(Collections.singletonList(markLine)); // replaces the old mark
+			}
+			else {
+				fileData.add(markLine);
+				writeLines(fileData, false);
+				sequence = 0;
 			}
 		}
+		awaitJournal(sequence);
 		
-		return matchingRecords;
+		return IdAllocator.consecutiveIDs(first, count);
 	}
 	
 	// helper / util methods for file IO
 	
+	/**
+	 * Replaces the contents of the file with the given lines. They are written to a temp file
+	 * which is then moved over the real one and published as the new snapshot, with nothing
+	 * pending over it.
+	 * @param lines
+	 * @param force : if true, the temp file is forced before the move and the directory after
+	 *     it, so the new file is on disk (and not an empty one) once this returns
+	 * @throws BankDAOException
+	 */
+	private void writeLines(List<String> lines, boolean force) throws BankDAOException {
+		
+		boolean usernamesCurrent;
+		synchronized (usernameLock) {
+			usernamesCurrent = usernameIndex != null && fileUnchangedSince(usernameIndexLength, usernameIndexModified);
+		}
+		String tempFilename = filename + TEMP_SUFFIX;
+		BufferedOutputStream out = openFileOutput(tempFilename);
+		TextFileHistoryIndex.Builder history = historyIndex.rebuild();
+		TextFileSnapshot written = null;
+		
+		try {
+			long offset = 0;
+			try {
+				for (String s : lines) {
+					byte[] bytes = (s + "\n").getBytes(Charset.defaultCharset()); // same charset FileWriter uses
+					out.write(bytes);
+					history.add(s, bytes, offset);
+					offset += bytes.length;
+				}
+			}
+			finally {
+				closeFile(out);
+			}
+			
+			if (force) {
+				try (FileChannel channel = FileChannel.open(Paths.get(tempFilename), StandardOpenOption.WRITE)){
+					channel.force(true);
+				}
+			}
+			Files.move(Paths.get(tempFilename), Paths.get(filename),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			if (force) {
+				forceDirectory(); // so the rename is on disk too
+			}
+			written = TextFileSnapshot.open(filename);
+			publish(written, PendingLines.NONE); // it has them all now
+		}
+		catch (IOException e) {
+			throw (new BankDAOException("ALERT: write failed to write to file: " + filename));
+		}
+		finally {
+			if (written != null) {
+				history.finish(written);
+			}
+			else {
+				historyIndex.invalidate(); // gets rebuilt from whatever made it to the file
+			}
+			
+			// the caller updates the usernames for whatever it changed
+			synchronized (usernameLock) {
+				if (written != null && usernamesCurrent) {
+					usernameIndexLength = written.getLength();
+					usernameIndexModified = written.getModified();
+				}
+				else {
+					usernameIndex = null;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return the CRC32 of the file as it is now, to match against the journal
+	 * @throws BankDAOException
+	 */
+	private int fileCrc() throws BankDAOException {
+		
+		CRC32 crc = new CRC32();
+		byte[] buf = new byte[8192];
+		try (InputStream in = new FileInputStream(filename)){
+			int n;
+			while ((n = in.read(buf)) > 0) {
+				crc.update(buf, 0, n);
+			}
+		}
+		catch (IOException e) {
+			throw (new BankDAOException("Problem reading file: " + filename));
+		}
+		return (int)crc.getValue();
+	}
+	
+	/**
+	 * Forces the directory holding the file, so a rename into it survives a crash. Not every
+	 * platform lets a directory be opened (Windows doesn't), so this is best effort.
+	 */
+	private void forceDirectory() {
+		
+		File parent = new File(filename).getAbsoluteFile().getParentFile();
+		try (FileChannel dir = FileChannel.open(parent.toPath(), StandardOpenOption.READ)){
+			dir.force(true);
+		}
+		catch (IOException e) {
+			log.log(Level.DEBUG, "Could not force directory " + parent + ": " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * @return the username index, built from the file first if it isn't there or the file
+	 *     was changed by something else. Call with usernameLock held.
+	 * @throws BankDAOException
+	 */
+	private UsernameIndex getUsernameIndex() throws BankDAOException {
+		
+		if (usernameIndex != null && fileUnchangedSince(usernameIndexLength, usernameIndexModified)) {
+			return usernameIndex;
+		}
+		
+		File file = new File(filename);
+		long length = file.length();
+		long modified = file.lastModified();
+		List<String> entries = searchFileMultiple(USER_PROFILE_PREFIX + " ");
+		UsernameIndex index = new UsernameIndex(entries.size());
+		
+		for (String e : entries) {
+			String[] tokens = e.split(" ", 4);
+			if (tokens.length >= 3 && !index.contains(tokens[2])) { // first one wins, same as a scan
+				index.put(tokens[2], Integer.parseInt(tokens[1]));
+			}
+		}
+		
+		usernameIndex = index;
+		usernameIndexLength = length;
+		usernameIndexModified = modified;
+		return index;
+	}
+	
+	private boolean fileUnchangedSince(long length, long modified) {
+		File file = new File(filename);
+		return file.length() == length && file.lastModified() == modified;
+	}
+	
+	/**
+	 * Parses each of the given TRR lines.
+	 * @param entries
+	 * @return
+	 */
+	private static List<TransactionRecord> buildTransactionRecords(List<String> entries) {
+		
+		List<TransactionRecord> transactions = new ArrayList<>(entries.size());
+		for (String e : entries) {
+			transactions.add(TextRecordCodec.buildTransactionRecordFromEntry(e));
+		}
+		return transactions;
+	}
+	
+	/**
+	 * Finds the entry for the given type and ID, using the snapshot's index if that
+	 * mode is on.
+	 * @param prefix
+	 * @param id
+	 * @return the entry, or the empty string if there isn't one
+	 * @throws BankDAOException
+	 */
+	private String pointRead(String prefix, int id) throws BankDAOException {
+		
+		if (!mappedReads) {
+			return searchFile(prefix + " " + id + " "); // trailing space so PRF 10 doesn't match PRF 101
+		}
+		
+		View view = acquireView();
+		try {
+			String pending = view.pending.get(prefix + " " + id + " ");
+			return (pending != null) ? pending : view.snapshot.lookup(prefix, id);
+		}
+		finally {
+			view.snapshot.release();
+		}
+	}
+	
+	/**
+	 * Takes a reference to the published snapshot, first opening a new one if the file was
+	 * changed by something other than this DAO. The caller must release the view's snapshot.
+	 * @return the snapshot, with the lines pending over it
+	 * @throws BankDAOException
+	 */
+	private View acquireView() throws BankDAOException {
+		
+		File file = new File(filename);
+		while (true) {
+			View view = published;
+			if (!view.snapshot.matches(file)) {
+				synchronized (publishLock) {
+					if (published.snapshot == view.snapshot) { // nobody beat us to it
+						publish(TextFileSnapshot.open(filename), published.pending); // still goes on top
+					}
+				}
+				continue;
+			}
+			if (view.snapshot.retain()) {
+				return view;
+			}
+			// it was replaced and closed before we got our reference; try the new one
+		}
+	}
+	
+	/**
+	 * Makes the given snapshot the one reads go to, and lets go of the old one; readers
+	 * still using it keep it open until they're done.
+	 * @param snapshot : its first reference passes to the DAO
+	 * @param pending : the journaled lines that aren't in it
+	 */
+	private void publish(TextFileSnapshot snapshot, PendingLines pending) {
+		
+		View old;
+		synchronized (publishLock) {
+			old = published;
+			published = new View(snapshot, pending);
+		}
+		if (old != null) {
+			old.snapshot.release();
+		}
+	}
+	
+	/**
+	 * Makes the given lines the ones pending over the current snapshot.
+	 * @param pending
+	 */
+	private void publish(PendingLines pending) {
+		
+		synchronized (publishLock) {
+			published = new View(published.snapshot, pending);
+		}
+	}
+	
 	/**
 	 * Yet another helper method
 	 * @param entries
@@ -370,28 +886,14 @@ public class TextFileDAO implements BankDAO {
 	}
 	
 	/**
-	 * Opens the file with a BufferedReader, handles the try/catch
-	 * @return a reference to a new BufferedReader
-	 */
-	private BufferedReader openFileReader() throws BankDAOException {
-		
-		try {
-			BufferedReader temp = new BufferedReader(new FileReader(filename));
-			return temp;
-		}
-		catch (FileNotFoundException e) {
-			throw (new BankDAOException("File not found: " + filename));
-		}
-	}
-	
-	/**
-	 * Opens the file with a BufferedWriter, handles the try/catch
-	 * @return a reference to a new BufferedReader
+	 * Opens the file with a BufferedOutputStream, handles the try/catch.
+	 * Bytes rather than a Writer, so the history index knows where each line lands.
+	 * @return a reference to a new BufferedOutputStream
 	 */
-	private static BufferedWriter openFileWriter(String filename) throws BankDAOException {
+	private static BufferedOutputStream openFileOutput(String filename) throws BankDAOException {
 		
 		try {
-			BufferedWriter temp = new BufferedWriter(new FileWriter(filename));
+			BufferedOutputStream temp = new BufferedOutputStream(new FileOutputStream(filename));
 			return temp;
 		}
 		catch (IOException e) {
@@ -400,8 +902,7 @@ public class TextFileDAO implements BankDAO {
 	}
 	
 	/**
-	 * Closes the given BufferedReader or Writer 
-	 * (should only be this.reader or this.writer)
+	 * Closes the given output stream
 	 * @param closeMe
 	 * @throws BankDAOException
 	 */
@@ -424,13 +925,18 @@ public class TextFileDAO implements BankDAO {
 	 * @return a string containing all of the data in the entry matching the tag
 	 */
 	public String searchFile(String tag) throws BankDAOException {
-		reader = openFileReader();
+		View view = acquireView();
 		String result = "";
 		
-		try {
+		try (BufferedReader reader = view.snapshot.openReader()){
+			for (String line : view.pending.lines()) {
+				if (line.startsWith(tag)) {
+					return line;
+				}
+			}
 			while (reader.ready()) {
 				String line = reader.readLine();
-				if (line.startsWith(tag)){
+				if (line.startsWith(tag) && !view.pending.hides(line)){
 					result = line;
 					break;
 				}
@@ -440,7 +946,7 @@ public class TextFileDAO implements BankDAO {
 			throw (new BankDAOException("Problem searching file: " + filename));
 		}
 		finally {
-			closeFile(reader);
+			view.snapshot.release();
 		}
 		
 		return result;
@@ -456,13 +962,18 @@ public class TextFileDAO implements BankDAO {
 	 * @throws BankDAOException
 	 */
 	public List<String> searchFileMultiple(String tag) throws BankDAOException {
-		reader = openFileReader();
+		View view = acquireView();
 		List<String> results = new ArrayList<String>();
 		
-		try {
+		try (BufferedReader reader = view.snapshot.openReader()){
+			for (String line : view.pending.lines()) {
+				if (line.startsWith(tag)) {
+					results.add(line);
+				}
+			}
 			while (reader.ready()) {
 				String line = reader.readLine();
-				if (line.startsWith(tag)){
+				if (line.startsWith(tag) && !view.pending.hides(line)){
 					results.add(line);
 				}
 			}
@@ -471,308 +982,50 @@ public class TextFileDAO implements BankDAO {
 			throw (new BankDAOException("Problem searching file: " + filename));
 		}
 		finally {
-			closeFile(reader);
+			view.snapshot.release();
 		}
 		
 		return results;
 	}
 	
-	/**
-	 * Returns a BankAccount object based on the given entry. If the entry is the empty string,
-	 * an account with type NONE will be returned.
-	 * @param entry
-	 * @return
-	 */
-	private BankAccount buildAccountFromEntry(String entry) {
-		
-		BankAccount ba = new BankAccount();
-		
-		if (entry.equals("")){ // if not found
-			//ba.setId(-1);
-			ba.setType(BankAccountType.NONE);
-		}
-		else { // if found
-			// sample entry for format: "ACC 444 OPN SNG 78923 101"
-			String[] tokens = entry.split(" ");
-			ba.setId(Integer.parseInt(tokens[1]));
-			
-			
-			switch(tokens[2]) { // set the status
-				case ACCOUNT_STATUS_OPEN:
-					ba.setStatus(BankAccountStatus.OPEN);
-					break;
-				case ACCOUNT_STATUS_CLOSED:
-					ba.setStatus(BankAccountStatus.CLOSED);
-					break;
-				case ACCOUNT_STATUS_PENDING:
-					ba.setStatus(BankAccountStatus.PENDING);
-					break;
-				case ACCOUNT_STATUS_NONE:
-					ba.setStatus(BankAccountStatus.NONE);
-					break;
-			}
-			
-			switch(tokens[3]) { // set the account type
-				case ACCOUNT_TYPE_JOINT:
-					ba.setType(BankAccountType.JOINT);
-					break;
-				case ACCOUNT_TYPE_SINGLE:
-					ba.setType(BankAccountType.SINGLE);
-					break;
-				case ACCOUNT_TYPE_NONE:
-					ba.setType(BankAccountType.NONE);
-					break;
-			}
-			
-			ba.setFunds(Integer.parseInt(tokens[4]));
-			
-			// the rest of the tokens are the ID numbers of the owner(s) of this account
-			List<Integer> owners = new ArrayList<>();
-			
-			for (int i = 5; i < tokens.length; i++) {
-				owners.add(Integer.parseInt(tokens[i]));
-			}
-			
-			ba.setOwners(owners);
-		}
-		
-		return ba;
-	}
+	// inner classes
 	
 	/**
-	 * Returns a UserProfile object based on the given entry. If the entry is the empty string,
-	 * returns a UserProfile with type NONE.
-	 * @param entry
-	 * @return
+	 * A snapshot of the file and the journaled lines that go over it, published together so
+	 * a read never pairs a checkpointed file with lines from before it (or the other way round).
 	 */
-	private UserProfile buildUserProfileFromEntry(String entry) {
+	private static class View {
 		
-		UserProfile up = new UserProfile();
+		final TextFileSnapshot snapshot;
+		final PendingLines pending;
 		
-		if (entry.equals("")){ // if not found
-			//up.setId(-1);
-			up.setType(UserProfileType.NONE);
+		View(TextFileSnapshot snapshot, PendingLines pending) {
+			this.snapshot = snapshot;
+			this.pending = pending;
 		}
-		else {
-			// sample entry for format "PRF 101 user pass CST 444"
-			String[] tokens = entry.split(" ");
-			up.setId(Integer.parseInt(tokens[1]));
-			up.setUsername(tokens[2]);
-			up.setPassword(tokens[3]);
+		
+		/**
+		 * @param fileLines : TRR lines the history index found in the snapshot
+		 * @return those lines minus the ones replaced since, plus the pending ones that match
+		 */
+		List<String> withPending(List<String> fileLines, TransactionFilter filter, int filterID) {
 			
-			switch(tokens[4]) { // set the type
-			case PROFILE_TYPE_ADMIN:
-				up.setType(UserProfileType.ADMIN);
-				break;
-			case PROFILE_TYPE_CUSTOMER:
-				up.setType(UserProfileType.CUSTOMER);
-				break;
-			case PROFILE_TYPE_EMPLOYEE:
-				up.setType(UserProfileType.EMPLOYEE);
-				break;
-			case PROFILE_TYPE_NONE:
-				up.setType(UserProfileType.NONE);
-				break;
+			if (pending.isEmpty()) {
+				return fileLines;
 			}
-			
-			// the rest of the tokens are ID numbers corresponding to owned accounts
-			List<Integer> ownedAccounts = new ArrayList<>();
-			
-			for (int i = 5; i < tokens.length; i++) {
-				ownedAccounts.add(Integer.parseInt(tokens[i]));
+			List<String> lines = new ArrayList<>();
+			for (String line : pending.lines()) {
+				if (line.startsWith(TRANSACTION_RECORD_PREFIX + " ")
+						&& filter.matches(TextRecordCodec.buildTransactionRecordFromEntry(line), filterID)) {
+					lines.add(line);
+				}
 			}
-			up.setOwnedAccounts(ownedAccounts);
-		}
-		
-		return up;
-	}
-	
-	/**
-	 * Returns a TransactionRecord object based on the given entry. If the entry is the empty string,
-	 * returns a TransactionRecord with type NONE.
-	 * @param entry
-	 * @return
-	 */
-	private TransactionRecord buildTransactionRecordFromEntry(String entry) {
-		
-		TransactionRecord tr = new TransactionRecord();
-		
-		if (entry.equals("")) { // if not found
-			//tr.setId(-1);
-			tr.setType(TransactionType.NONE);
-		}
-		else { // if found
-			// sample entry for format: "TRR 123 3:00 FDD 101 -1 444 87654"
-			String[] tokens = entry.split(" ");
-			
-			tr.setId(Integer.parseInt(tokens[1]));
-			tr.setTime(tokens[2]);
-			
-			switch(tokens[3]) { // type
-				case TRANSACTION_TYPE_ACCOUNT_REGISTERED:
-					tr.setType(TransactionType.ACCOUNT_REGISTERED);
-					break;
-				case TRANSACTION_TYPE_ACCOUNT_APPROVED:
-					tr.setType(TransactionType.ACCOUNT_APPROVED);
-					break;
-				case TRANSACTION_TYPE_ACCOUNT_CLOSED:
-					tr.setType(TransactionType.ACCOUNT_CLOSED);
-					break;
-				case TRANSACTION_TYPE_FUNDS_DEPOSITED:
-					tr.setType(TransactionType.FUNDS_DEPOSITED);
-					break;
-				case TRANSACTION_TYPE_FUNDS_WITHDRAWN:
-					tr.setType(TransactionType.FUNDS_WITHDRAWN);
-					break;
-				case TRANSACTION_TYPE_FUNDS_TRANSFERED:
-					tr.setType(TransactionType.FUNDS_TRANSFERRED);
-					break;
-				case TRANSACTION_TYPE_USER_REGISTERED:
-					tr.setType(TransactionType.USER_REGISTERED);
-					break;
-				case TRANSACTION_TYPE_NONE:
-					tr.setType(TransactionType.NONE);
-					break;
+			for (String line : fileLines) {
+				if (!pending.hides(line)) {
+					lines.add(line);
+				}
 			}
-			
-			tr.setActingUser(Integer.parseInt(tokens[4]));
-			tr.setSourceAccount(Integer.parseInt(tokens[5]));
-			tr.setDestinationAccount(Integer.parseInt(tokens[6]));
-			tr.setMoneyAmount(Integer.parseInt(tokens[7]));
-		}
-		
-		return tr;
-	}
-
-	/**
-	 * Returns a string entry of the given UserProfile
-	 * @param up
-	 */
-	private String saveUserProfile(UserProfile up) {
-		
-		String entry = USER_PROFILE_PREFIX + " " + up.getId();
-		
-		// example entry for format: "PRF 101 user pass CST 444"
-		entry = entry + " " + up.getUsername() + " " + up.getPassword();
-		
-		switch(up.getType()) {
-			case NONE:
-				entry = entry + " " + PROFILE_TYPE_NONE;
-				break;
-			case CUSTOMER:
-				entry = entry + " " + PROFILE_TYPE_CUSTOMER;
-				break;
-			case EMPLOYEE:
-				entry = entry + " " + PROFILE_TYPE_EMPLOYEE;
-				break;
-			case ADMIN:
-				entry = entry + " " + PROFILE_TYPE_ADMIN;
-				break;
-		}
-		
-		// now do added accounts
-		for (Integer accID : up.getOwnedAccounts()) {
-			entry = entry + " " + accID;
-		}
-		
-		// we're done
-		return entry;
-	}
-	
-	/**
-	 * Returns a string entry of the given bank account.
-	 * @param ba
-	 */
-	private String saveBankAccount(BankAccount ba) {
-		
-		String entry = BANK_ACCOUNT_PREFIX + " " + ba.getId();
-		
-		// example entry for format: "ACC 444 OPN SNG 78923 101"
-		switch (ba.getStatus()) {
-			case NONE:
-				entry = entry + " " + ACCOUNT_STATUS_NONE;
-				break;
-			case OPEN:
-				entry = entry + " " + ACCOUNT_STATUS_OPEN;
-				break;
-			case CLOSED:
-				entry = entry + " " + ACCOUNT_STATUS_CLOSED;
-				break;
-			case PENDING:
-				entry = entry + " " + ACCOUNT_STATUS_PENDING;
-				break;
-		}
-		
-		switch (ba.getType()) {
-			case NONE:
-				entry = entry + " " + ACCOUNT_TYPE_NONE;
-				break;
-			case SINGLE:
-				entry = entry + " " + ACCOUNT_TYPE_SINGLE;
-				break;
-			case JOINT:
-				entry = entry + " " + ACCOUNT_TYPE_JOINT;
-				break;
+			return lines;
 		}
-		
-		entry = entry + " " + ba.getFunds();
-		
-		for (Integer ownerID : ba.getOwners()) {
-			entry = entry + " " + ownerID;
-		}
-		
-		return entry;
-	}
-	
-	/**
-	 * Returns a string entry of the given transaction record
-	 * @param tr
-	 */
-	private String saveTransactionRecord(TransactionRecord tr) {
-		
-		String entry = TRANSACTION_RECORD_PREFIX + " " + tr.getId();
-		
-		// example entry for format: "TRR 123 3:00 FDP 101 -1 444 87654"
-		entry = entry + " " + tr.getTime();
-		
-		switch (tr.getType()) { // big switch case
-			case ACCOUNT_REGISTERED:
-				entry = entry + " " + TRANSACTION_TYPE_ACCOUNT_REGISTERED;
-				break;
-			case ACCOUNT_APPROVED:
-				entry = entry + " " + TRANSACTION_TYPE_ACCOUNT_APPROVED;
-				break;
-			case ACCOUNT_CLOSED:
-				entry = entry + " " + TRANSACTION_TYPE_ACCOUNT_CLOSED;
-				break;
-			case FUNDS_TRANSFERRED:
-				entry = entry + " " + TRANSACTION_TYPE_FUNDS_TRANSFERED;
-				break;
-			case FUNDS_DEPOSITED:
-				entry = entry + " " + TRANSACTION_TYPE_FUNDS_DEPOSITED;
-				break;
-			case FUNDS_WITHDRAWN:
-				entry = entry + " " + TRANSACTION_TYPE_FUNDS_WITHDRAWN;
-				break;
-			case USER_REGISTERED:
-				entry = entry + " " + TRANSACTION_TYPE_USER_REGISTERED;
-				break;
-			case ACCOUNT_OWNER_ADDED:
-				entry = entry + " " + TRANSACTION_TYPE_ACCOUNT_OWNER_ADDED;
-				break;
-			case ACCOUNT_OWNER_REMOVED:
-				entry = entry + " " + TRANSACTION_TYPE_ACCOUNT_OWNER_REMOVED;
-				break;
-			case NONE:
-				entry = entry + " " + TRANSACTION_TYPE_NONE;
-				break;
-		}
-		
-		entry = entry + " " + tr.getActingUser() 
-				+ " " + tr.getSourceAccount() 
-				+ " " + tr.getDestinationAccount() 
-				+ " " + tr.getMoneyAmount();
-		
-		return entry;
 	}
 }
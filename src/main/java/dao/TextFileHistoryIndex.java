@@ -0,0 +1,490 @@
+/**
+ * On-disk secondary indexes for a TextFileDAO's transaction records: one sidecar file maps
+ * each acting user to the byte offsets of their TRR lines in the data file, another maps
+ * each account to the TRR lines it was the source or destination of. History lookups can
+ * then read just those lines instead of parsing the whole file.
+ *
+ * Both sidecars start with the length, last-modified time and CRC32 of the data file they
+ * describe, and end with a CRC32 of their own contents. When they are loaded the checksums
+ * are verified against the data file; if anything doesn't match (or a sidecar is missing)
+ * they are rebuilt from a scan of the data file. Once loaded, a cheap length / modified time
+ * check on each lookup catches the data file being changed by something else.
+ * 
+ * Lookups are made against a TextFileSnapshot, and the postings are checked against (and
+ * the lines read from) that snapshot, so a lookup racing a write never mixes the offsets of
+ * one version of the file with the contents of another.
+ *
+ * TextFileDAO rewrites the whole data file on every write, which moves every line, so the
+ * indexes are regenerated during that same write from the lines as they go out; the data
+ * file is never read back for it.
+ *
+ * Sidecar layout (big-endian, as written by DataOutputStream):
+ *   int magic, int version, long data length, long data last-modified, long data CRC32,
+ *   int key count, then for each key: int key, int posting count, (long offset, int length)...
+ *   and finally long CRC32 of everything before it.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+class TextFileHistoryIndex {
+
+	// constants
+	static final String ACTING_USER_SUFFIX = ".users.idx";
+	static final String ACCOUNT_SUFFIX = ".accounts.idx";
+
+	private static final int MAGIC = 0x42444649; // "BDFI"
+	private static final int FORMAT_VERSION = 1;
+	private static final String TRANSACTION_LINE_START = TextRecordCodec.TRANSACTION_RECORD_PREFIX + " ";
+	private static final Charset CHARSET = Charset.defaultCharset(); // same one FileReader/FileWriter use
+
+	// class / static variables
+	private static Logger log = Logger.getLogger(TextFileHistoryIndex.class);
+
+	// instance variables
+	private final File dataFile;
+	private final Path actingUserPath;
+	private final Path accountPath;
+
+	// what the data file looked like when the postings below were made; dataLength -1 = not loaded
+	private long dataLength = -1;
+	private long dataModified;
+	private Map<Integer, Postings> byActingUser;
+	private Map<Integer, Postings> byAccount;
+
+	// constructor(s)
+
+	/**
+	 * @param dataFilename : the sidecars go next to it, named after it
+	 */
+	TextFileHistoryIndex(String dataFilename) {
+		dataFile = new File(dataFilename);
+		actingUserPath = Paths.get(dataFilename + ACTING_USER_SUFFIX);
+		accountPath = Paths.get(dataFilename + ACCOUNT_SUFFIX);
+	}
+
+	// operation methods
+
+	/**
+	 * Reads the TRR lines carried out by the given user.
+	 * @param actingUserID
+	 * @param snapshot : the version of the data file to read; the caller holds a reference
+	 * @return the lines, in file order
+	 * @throws BankDAOException
+	 */
+	synchronized List<String> readActingUserLines(int actingUserID, TextFileSnapshot snapshot)
+			throws BankDAOException {
+		ensureFresh(snapshot);
+		return readLines(byActingUser.get(actingUserID), snapshot);
+	}
+
+	/**
+	 * Reads the TRR lines with the given account as source or destination; a line with it as
+	 * both only comes back once.
+	 * @param accID
+	 * @param snapshot : the version of the data file to read; the caller holds a reference
+	 * @return the lines, in file order
+	 * @throws BankDAOException
+	 */
+	synchronized List<String> readAccountLines(int accID, TextFileSnapshot snapshot) throws BankDAOException {
+		ensureFresh(snapshot);
+		return readLines(byAccount.get(accID), snapshot);
+	}
+
+	/**
+	 * Starts a new set of indexes for a data file that is about to be rewritten.
+	 * Call add for each line as it is written, then finish once the new file is in place.
+	 * @return the builder
+	 */
+	Builder rebuild() {
+		return new Builder();
+	}
+
+	/**
+	 * Forgets the in-memory postings, so the next lookup loads and verifies the sidecars.
+	 */
+	synchronized void invalidate() {
+		dataLength = -1;
+		byActingUser = null;
+		byAccount = null;
+	}
+
+	/**
+	 * Collects postings while the data file is written, then saves them.
+	 */
+	class Builder {
+
+		private final Map<Integer, Postings> users = new HashMap<>();
+		private final Map<Integer, Postings> accounts = new HashMap<>();
+		private final CRC32 crc = new CRC32();
+
+		/**
+		 * @param line : without its line break
+		 * @param bytes : the encoded line, with its line break, exactly as written
+		 * @param offset : where in the file the line starts
+		 */
+		void add(String line, byte[] bytes, long offset) {
+			crc.update(bytes, 0, bytes.length);
+			addPostings(users, accounts, line, offset, bytes.length - 1);
+		}
+
+		/**
+		 * Saves the sidecars and makes these the in-memory postings.
+		 * If the sidecars can't be written, the postings are still used, and the
+		 * checksum check will rebuild the files next time.
+		 * @param written : the snapshot of the file these lines went into
+		 */
+		void finish(TextFileSnapshot written) {
+			synchronized (TextFileHistoryIndex.this) {
+				install(users, accounts, crc.getValue(), written);
+			}
+		}
+	}
+
+	// helper methods
+
+	/**
+	 * Makes sure the in-memory postings describe the given snapshot, loading or rebuilding
+	 * them if they don't.
+	 */
+	private void ensureFresh(TextFileSnapshot snapshot) throws BankDAOException {
+
+		if (dataLength == snapshot.getLength() && dataModified == snapshot.getModified()) {
+			return;
+		}
+		if (dataLength != -1) {
+			log.log(Level.INFO, "History index doesn't describe this version of " + dataFile + ", reloading it");
+		}
+
+		long dataCrc = checksumDataFile(snapshot);
+		if (loadSidecars(dataCrc, snapshot)) {
+			return;
+		}
+
+		log.log(Level.INFO, "History index for " + dataFile + " is missing or stale, rebuilding it");
+		Map<Integer, Postings> users = new HashMap<>();
+		Map<Integer, Postings> accounts = new HashMap<>();
+		scanDataFile(users, accounts, snapshot);
+		install(users, accounts, dataCrc, snapshot);
+	}
+
+	/**
+	 * Saves the postings to the sidecars and keeps them in memory.
+	 */
+	private void install(Map<Integer, Postings> users, Map<Integer, Postings> accounts, long dataCrc,
+			TextFileSnapshot snapshot) {
+
+		for (Postings p : users.values()) {
+			p.trim();
+		}
+		for (Postings p : accounts.values()) {
+			p.trim();
+		}
+		byActingUser = users;
+		byAccount = accounts;
+		dataLength = snapshot.getLength();
+		dataModified = snapshot.getModified();
+
+		try {
+			saveSidecar(actingUserPath, users, dataCrc);
+			saveSidecar(accountPath, accounts, dataCrc);
+		}
+		catch (IOException e) {
+			log.log(Level.WARN, "Could not save history index for " + dataFile + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Records the line under its acting user and accounts, if it's a transaction record.
+	 */
+	private static void addPostings(Map<Integer, Postings> users, Map<Integer, Postings> accounts,
+			String line, long offset, int length) {
+
+		if (!line.startsWith(TRANSACTION_LINE_START)) {
+			return;
+		}
+		// sample entry for format: "TRR 123 3:00 FDD 101 -1 444 87654"
+		String[] tokens = line.split(" ");
+		if (tokens.length < 8) {
+			return; // damaged line, the full scan wouldn't parse it either
+		}
+		int actingUser;
+		int source;
+		int destination;
+		try {
+			actingUser = Integer.parseInt(tokens[4]);
+			source = Integer.parseInt(tokens[5]);
+			destination = Integer.parseInt(tokens[6]);
+		}
+		catch (NumberFormatException e) {
+			return;
+		}
+
+		users.computeIfAbsent(actingUser, k -> new Postings()).add(offset, length);
+		accounts.computeIfAbsent(source, k -> new Postings()).add(offset, length);
+		if (destination != source) {
+			accounts.computeIfAbsent(destination, k -> new Postings()).add(offset, length);
+		}
+	}
+
+	/**
+	 * Reads the given lines from the snapshot, in file order.
+	 */
+	private List<String> readLines(Postings postings, TextFileSnapshot snapshot) throws BankDAOException {
+
+		List<String> lines = new ArrayList<>();
+		if (postings == null) {
+			return lines;
+		}
+
+		try {
+			for (int i = 0; i < postings.size; i++) {
+				lines.add(snapshot.readLine(postings.offsets[i], postings.lengths[i]));
+			}
+		}
+		catch (IOException e) {
+			throw new BankDAOException("Problem reading file: " + dataFile);
+		}
+		return lines;
+	}
+
+	private long checksumDataFile(TextFileSnapshot snapshot) throws BankDAOException {
+
+		CRC32 crc = new CRC32();
+		try (InputStream in = new CheckedInputStream(snapshot.openStream(), crc)){
+			byte[] buf = new byte[64 * 1024];
+			while (in.read(buf) != -1) {
+				// just checksumming
+			}
+		}
+		catch (IOException e) {
+			throw new BankDAOException("Problem reading file: " + dataFile);
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Builds postings from the data file itself. Handles windows line breaks the same way
+	 * the point read index does.
+	 */
+	private void scanDataFile(Map<Integer, Postings> users, Map<Integer, Postings> accounts,
+			TextFileSnapshot snapshot) throws BankDAOException {
+
+		try (InputStream in = new BufferedInputStream(snapshot.openStream())){
+			ByteArrayLine line = new ByteArrayLine();
+			long offset = 0;
+			int b;
+			while ((b = in.read()) != -1) {
+				if (b != '\n') {
+					line.append(b);
+					continue;
+				}
+				addScannedLine(users, accounts, line, offset);
+				offset += line.size + 1;
+				line.size = 0;
+			}
+			if (line.size > 0) { // no line break at the end
+				addScannedLine(users, accounts, line, offset);
+			}
+		}
+		catch (IOException e) {
+			throw new BankDAOException("Problem indexing file: " + dataFile);
+		}
+	}
+
+	private static void addScannedLine(Map<Integer, Postings> users, Map<Integer, Postings> accounts,
+			ByteArrayLine line, long offset) {
+
+		int length = line.size;
+		if (length > 0 && line.bytes[length - 1] == '\r') {
+			length--;
+		}
+		addPostings(users, accounts, new String(line.bytes, 0, length, CHARSET), offset, length);
+	}
+
+	/**
+	 * Writes a sidecar next to where it goes, then moves it into place, so a crash part
+	 * way through never leaves half a file behind.
+	 */
+	private void saveSidecar(Path path, Map<Integer, Postings> postings, long dataCrc) throws IOException {
+
+		Path temp = Paths.get(path + ".tmp");
+		CRC32 crc = new CRC32();
+		BufferedOutputStream file = new BufferedOutputStream(new FileOutputStream(temp.toFile()));
+		try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(file, crc))){
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(dataLength);
+			out.writeLong(dataModified);
+			out.writeLong(dataCrc);
+			out.writeInt(postings.size());
+			for (Map.Entry<Integer, Postings> e : postings.entrySet()) {
+				Postings p = e.getValue();
+				out.writeInt(e.getKey());
+				out.writeInt(p.size);
+				for (int i = 0; i < p.size; i++) {
+					out.writeLong(p.offsets[i]);
+					out.writeInt(p.lengths[i]);
+				}
+			}
+			new DataOutputStream(file).writeLong(crc.getValue()); // not part of its own checksum
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Loads both sidecars, if they both exist, pass their own checksums, and describe the
+	 * snapshot.
+	 * @return true if they were loaded
+	 */
+	private boolean loadSidecars(long dataCrc, TextFileSnapshot snapshot) {
+
+		long length = snapshot.getLength();
+		long modified = snapshot.getModified();
+		Map<Integer, Postings> users = loadSidecar(actingUserPath, length, modified, dataCrc);
+		Map<Integer, Postings> accounts = (users == null) ? null
+				: loadSidecar(accountPath, length, modified, dataCrc);
+		if (accounts == null) {
+			return false;
+		}
+
+		byActingUser = users;
+		byAccount = accounts;
+		dataLength = length;
+		dataModified = modified;
+		return true;
+	}
+
+	/**
+	 * @return the sidecar's postings, or null if it is missing, damaged, or out of date.
+	 *     The modified time is allowed to differ (eg, the file was copied) if the data
+	 *     checksum still matches.
+	 */
+	private Map<Integer, Postings> loadSidecar(Path path, long length, long modified, long dataCrc) {
+
+		if (!Files.exists(path)) {
+			return null;
+		}
+
+		CRC32 crc = new CRC32();
+		InputStream file;
+		try {
+			file = new BufferedInputStream(Files.newInputStream(path));
+		}
+		catch (IOException e) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc))){
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+					|| in.readLong() != length) {
+				return null;
+			}
+			in.readLong(); // modified time, see above
+			if (in.readLong() != dataCrc) {
+				return null;
+			}
+
+			int keys = in.readInt();
+			Map<Integer, Postings> postings = new HashMap<>(Math.max(16, keys * 2));
+			for (int k = 0; k < keys; k++) {
+				int key = in.readInt();
+				int count = in.readInt();
+				if (count < 0 || count > length) {
+					return null;
+				}
+				Postings p = new Postings(count);
+				for (int i = 0; i < count; i++) {
+					p.add(in.readLong(), in.readInt());
+				}
+				postings.put(key, p);
+			}
+
+			long expected = crc.getValue();
+			long stored = new DataInputStream(file).readLong(); // not part of its own checksum
+			return (stored == expected) ? postings : null;
+		}
+		catch (EOFException e) {
+			return null; // truncated
+		}
+		catch (IOException e) {
+			log.log(Level.WARN, "Could not read history index " + path + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * The offsets and lengths of one key's lines, in file order.
+	 */
+	private static class Postings {
+
+		long[] offsets;
+		int[] lengths;
+		int size;
+
+		Postings() {
+			this(4);
+		}
+
+		Postings(int capacity) {
+			offsets = new long[Math.max(1, capacity)];
+			lengths = new int[offsets.length];
+		}
+
+		void add(long offset, int length) {
+			if (size == offsets.length) {
+				offsets = Arrays.copyOf(offsets, size * 2);
+				lengths = Arrays.copyOf(lengths, size * 2);
+			}
+			offsets[size] = offset;
+			lengths[size] = length;
+			size++;
+		}
+
+		void trim() {
+			offsets = Arrays.copyOf(offsets, size);
+			lengths = Arrays.copyOf(lengths, size);
+		}
+	}
+
+	/**
+	 * A growable byte buffer for the line being scanned.
+	 */
+	private static class ByteArrayLine {
+
+		byte[] bytes = new byte[128];
+		int size;
+
+		void append(int b) {
+			if (size == bytes.length) {
+				bytes = Arrays.copyOf(bytes, size * 2);
+			}
+			bytes[size++] = (byte)b;
+		}
+	}
+}
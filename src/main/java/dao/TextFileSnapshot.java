@@ -0,0 +1,385 @@
+/**
+ * One published version of a TextFileDAO's data file. The file is opened when the version
+ * is published, and because writes replace the file by moving a new one over it (rather
+ * than rewriting it in place), the open channel keeps seeing exactly that version however
+ * many writes come after. Readers take a reference, read whatever they need, and release
+ * it; the channel is closed once the DAO has moved on to a newer version and the last
+ * reader is done.
+ *
+ * Nothing about a snapshot changes after it's opened, so any number of threads can read
+ * it at once. The sorted "PREFIX id" index used for indexed point reads is built from it on
+ * first use and kept with it.
+ * 
+ * The file is only ever read through the channel with positioned reads, never memory-mapped:
+ * Windows won't let a file be replaced while any part of it is mapped, and the published
+ * snapshot is still open when the next write moves its file over this one. An open channel
+ * is fine there, since Java opens files with delete sharing.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TextFileSnapshot {
+
+	// constants
+	private static final Charset CHARSET = Charset.defaultCharset(); // same one FileReader/FileWriter use
+	private static final int READ_CHUNK_BYTES = 1 << 16;
+	private static final int TAG_BYTES = 15; // "PRF " and up to 10 digits and the space after them
+
+	// the prefixes in index order; a tag's index key is (prefix position << 32) | id
+	private static final String[] INDEXED_PREFIXES = {
+			TextRecordCodec.USER_PROFILE_PREFIX, TextRecordCodec.BANK_ACCOUNT_PREFIX,
+			TextRecordCodec.TRANSACTION_RECORD_PREFIX
+	};
+
+	// instance variables
+	private final String filename;
+	private final FileChannel channel;
+	private final long length;
+	private final long modified;
+	private final AtomicInteger references = new AtomicInteger(1); // the publisher's, until it moves on
+
+	// line index, null until the first point read that wants it
+	private long[] indexKeys; // sorted
+	private int[] indexOffsets; // byte offset of the line for the key at the same position
+	private int[] indexLengths; // length of that line, without the line break
+
+	// constructor(s)
+	private TextFileSnapshot(String filename, FileChannel channel, long length, long modified) {
+		this.filename = filename;
+		this.channel = channel;
+		this.length = length;
+		this.modified = modified;
+	}
+
+	/**
+	 * Opens the file as it is right now. The caller owns the first reference.
+	 * @param filename
+	 * @return the snapshot
+	 * @throws BankDAOException if the file can't be opened
+	 */
+	static TextFileSnapshot open(String filename) throws BankDAOException {
+
+		try {
+			FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+			return new TextFileSnapshot(filename, channel, channel.size(), new File(filename).lastModified());
+		}
+		catch (IOException e) {
+			throw new BankDAOException("File not found: " + filename);
+		}
+	}
+
+	// operation methods
+
+	/**
+	 * Takes a reference, unless the snapshot has already been closed.
+	 * @return true if the caller now holds a reference and must release it
+	 */
+	boolean retain() {
+
+		int count;
+		do {
+			count = references.get();
+			if (count == 0) {
+				return false;
+			}
+		} while (!references.compareAndSet(count, count + 1));
+		return true;
+	}
+
+	/**
+	 * Gives back a reference; the last one closes the file.
+	 */
+	void release() {
+
+		if (references.decrementAndGet() == 0) {
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				// nothing more to read from it anyway
+			}
+		}
+	}
+
+	/**
+	 * @param file
+	 * @return true if the file on disk still looks like this snapshot
+	 */
+	boolean matches(File file) {
+		return file.length() == length && file.lastModified() == modified;
+	}
+
+	long getLength() {
+		return length;
+	}
+
+	long getModified() {
+		return modified;
+	}
+
+	/**
+	 * @return a stream over the whole snapshot, from the start; only valid while a reference is held
+	 */
+	InputStream openStream() {
+		return new SnapshotInputStream();
+	}
+
+	/**
+	 * @return a reader over the whole snapshot, from the start; only valid while a reference is held
+	 */
+	BufferedReader openReader() {
+		return new BufferedReader(new InputStreamReader(openStream(), CHARSET));
+	}
+
+	/**
+	 * Reads one line from a known position.
+	 * @param offset
+	 * @param lineLength : without the line break
+	 * @return the line
+	 * @throws IOException
+	 */
+	String readLine(long offset, int lineLength) throws IOException {
+
+		ByteBuffer buf = ByteBuffer.allocate(lineLength);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, offset + buf.position()) < 0) {
+				throw new IOException("Line runs past the end of " + filename);
+			}
+		}
+		return new String(buf.array(), 0, lineLength, CHARSET);
+	}
+
+	/**
+	 * Finds the line for the given tag through the index, building it first if this is the
+	 * first lookup.
+	 * @param prefix : one of the record prefixes
+	 * @param id
+	 * @return the line, or the empty string if there isn't one
+	 * @throws BankDAOException
+	 */
+	String lookup(String prefix, int id) throws BankDAOException {
+
+		buildIndex();
+		int pos = Arrays.binarySearch(indexKeys, indexKey(Arrays.asList(INDEXED_PREFIXES).indexOf(prefix), id));
+		if (pos < 0) {
+			return "";
+		}
+
+		try {
+			return readLine(indexOffsets[pos], indexLengths[pos]);
+		}
+		catch (IOException e) {
+			throw new BankDAOException("Problem reading file: " + filename);
+		}
+	}
+
+	// helper methods
+
+	/**
+	 * Reads through the snapshot once and records where each "PREFIX id" line starts.
+	 * If a tag appears more than once, the first one wins, same as a scan.
+	 * @throws BankDAOException
+	 */
+	private synchronized void buildIndex() throws BankDAOException {
+
+		if (indexKeys != null) {
+			return;
+		}
+		if (length > Integer.MAX_VALUE) {
+			throw new BankDAOException("File too large to index: " + filename);
+		}
+
+		int size = 0;
+		long[] keys = new long[64];
+		int[] offsets = new int[64];
+		int[] lengths = new int[64];
+
+		// only the start of each line is kept, which is all a tag needs
+		byte[] chunk = new byte[READ_CHUNK_BYTES];
+		byte[] head = new byte[TAG_BYTES];
+		int headLength = 0;
+		int lineStart = 0;
+		int chunkStart = 0;
+		byte last = 0;
+		try (InputStream in = openStream()){
+			int n;
+			while (chunkStart < length && (n = in.read(chunk, 0, chunk.length)) > 0) {
+				for (int i = 0; i < n; i++) {
+					byte b = chunk[i];
+					if (b != '\n') {
+						if (headLength < head.length) {
+							head[headLength++] = b;
+						}
+						last = b;
+						continue;
+					}
+
+					int lineLength = chunkStart + i - lineStart;
+					if (lineLength > 0 && last == '\r') {
+						lineLength--; // file was saved with windows line breaks
+					}
+					long key = parseTag(head, Math.min(headLength, lineLength));
+					if (key != -1) {
+						if (size == keys.length) {
+							keys = Arrays.copyOf(keys, size * 2);
+							offsets = Arrays.copyOf(offsets, size * 2);
+							lengths = Arrays.copyOf(lengths, size * 2);
+						}
+						keys[size] = key;
+						offsets[size] = lineStart;
+						lengths[size] = lineLength;
+						size++;
+					}
+
+					lineStart = chunkStart + i + 1;
+					headLength = 0;
+					last = b;
+				}
+				chunkStart += n;
+			}
+		}
+		catch (IOException e) {
+			throw new BankDAOException("Problem reading file: " + filename);
+		}
+
+		// a last line without a line break
+		int lineLength = (int)length - lineStart;
+		if (lineLength > 0 && last == '\r') {
+			lineLength--;
+		}
+		long lastKey = (lineLength > 0) ? parseTag(head, Math.min(headLength, lineLength)) : -1;
+		if (lastKey != -1) {
+			keys = Arrays.copyOf(keys, size + 1);
+			offsets = Arrays.copyOf(offsets, size + 1);
+			lengths = Arrays.copyOf(lengths, size + 1);
+			keys[size] = lastKey;
+			offsets[size] = lineStart;
+			lengths[size] = lineLength;
+			size++;
+		}
+
+		// sort by key, keeping file order for duplicates, then drop the duplicates
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		final long[] unsorted = keys;
+		Arrays.sort(order, (a, b) -> (unsorted[a] != unsorted[b])
+				? Long.compare(unsorted[a], unsorted[b]) : Integer.compare(a, b));
+
+		long[] sortedKeys = new long[size];
+		int[] sortedOffsets = new int[size];
+		int[] sortedLengths = new int[size];
+		int unique = 0;
+		for (int i : order) {
+			if (unique > 0 && sortedKeys[unique - 1] == keys[i]) {
+				continue;
+			}
+			sortedKeys[unique] = keys[i];
+			sortedOffsets[unique] = offsets[i];
+			sortedLengths[unique] = lengths[i];
+			unique++;
+		}
+
+		indexOffsets = sortedOffsets;
+		indexLengths = sortedLengths;
+		indexKeys = Arrays.copyOf(sortedKeys, unique);
+	}
+
+	/**
+	 * Reads the "PREFIX id" tag at the start of a line.
+	 * @param line : the start of the line
+	 * @param length : how much of it there is, without the line break
+	 * @return the index key for the tag, or -1 if the line doesn't start with a valid one
+	 */
+	private static long parseTag(byte[] line, int length) {
+
+		final int prefixLength = 3;
+		if (length < prefixLength + 2 || line[prefixLength] != ' ') {
+			return -1;
+		}
+
+		int type = -1;
+		for (int t = 0; t < INDEXED_PREFIXES.length; t++) {
+			String prefix = INDEXED_PREFIXES[t];
+			if (line[0] == prefix.charAt(0) && line[1] == prefix.charAt(1) && line[2] == prefix.charAt(2)) {
+				type = t;
+				break;
+			}
+		}
+		if (type == -1) {
+			return -1;
+		}
+
+		long id = 0;
+		int digits = 0;
+		for (int i = prefixLength + 1; i < length; i++) {
+			byte b = line[i];
+			if (b == ' ') {
+				break;
+			}
+			if (b < '0' || b > '9' || ++digits > 10) {
+				return -1;
+			}
+			id = id * 10 + (b - '0');
+		}
+		if (digits == 0 || id > Integer.MAX_VALUE) {
+			return -1;
+		}
+
+		return indexKey(type, (int)id);
+	}
+
+	private static long indexKey(int type, int id) {
+		return ((long)type << 32) | (id & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Reads the snapshot from the start with positioned reads, so several of these can share
+	 * the one channel.
+	 */
+	private class SnapshotInputStream extends InputStream {
+
+		private long position;
+
+		@Override
+		public int read() throws IOException {
+			byte[] one = new byte[1];
+			return (read(one, 0, 1) < 0) ? -1 : (one[0] & 0xff);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+
+			if (position >= length) {
+				return -1;
+			}
+			ByteBuffer buf = ByteBuffer.wrap(b, off, (int)Math.min(len, length - position));
+			int n = channel.read(buf, position);
+			if (n < 0) {
+				return -1;
+			}
+			position += n;
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return (int)Math.min(Integer.MAX_VALUE, length - position);
+		}
+	}
+}
@@ -0,0 +1,538 @@
+/**
+ * Converts BankData objects to and from the single-line text format used in .bdf files,
+ * eg "ACC 444 OPN SNG 78923 101". Shared by the file-based DAOs.
+ * The entry points are public so the benchmarks can compare it with BinaryRecordCodec.
+ *
+ * Encoding appends to a StringBuilder (append can be given one to reuse), and decoding
+ * scans the line in place instead of splitting it, so the only garbage per record is the
+ * object itself and its String fields.
+ * 
+ * Andrew Curry
+ */
+package dao;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.IntSet;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.UserProfile;
+import com.revature.bankDataObjects.UserProfile.UserProfileType;
+import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.TransactionRecord.TransactionType;
+
+public class TextRecordCodec {
+	
+	// class/static variables
+	// record type prefixes, the first token of every line
+	static final String USER_PROFILE_PREFIX = "PRF";
+	static final String BANK_ACCOUNT_PREFIX = "ACC";
+	static final String TRANSACTION_RECORD_PREFIX = "TRR";
+	
+	private static final String ACCOUNT_STATUS_OPEN = "OPN";
+	private static final String ACCOUNT_STATUS_CLOSED = "CLS";
+	private static final String ACCOUNT_STATUS_PENDING = "PND";
+	private static final String ACCOUNT_STATUS_NONE = "NON"; // shouldn't be used?
+	
+	private static final String ACCOUNT_TYPE_NONE = "NON"; // shouldn't be used?
+	private static final String ACCOUNT_TYPE_SINGLE = "SNG";
+	private static final String ACCOUNT_TYPE_JOINT = "JNT";
+	
+	private static final String PROFILE_TYPE_NONE = "NON";
+	private static final String PROFILE_TYPE_CUSTOMER = "CST";
+	private static final String PROFILE_TYPE_EMPLOYEE = "EMP";
+	private static final String PROFILE_TYPE_ADMIN = "ADM";
+	
+	private static final String TRANSACTION_TYPE_ACCOUNT_REGISTERED = "ACR";
+	private static final String TRANSACTION_TYPE_ACCOUNT_APPROVED = "ACA";
+	private static final String TRANSACTION_TYPE_ACCOUNT_CLOSED = "ACC";
+	private static final String TRANSACTION_TYPE_ACCOUNT_OWNER_ADDED = "AOA";
+	private static final String TRANSACTION_TYPE_ACCOUNT_OWNER_REMOVED = "AOR";
+	private static final String TRANSACTION_TYPE_FUNDS_TRANSFERED = "FTR";
+	private static final String TRANSACTION_TYPE_FUNDS_DEPOSITED = "FDP";
+	private static final String TRANSACTION_TYPE_FUNDS_WITHDRAWN = "FWD";
+	private static final String TRANSACTION_TYPE_USER_REGISTERED = "URG";
+	private static final String TRANSACTION_TYPE_NONE = "NON";
+	
+	// one builder per thread for save(), so only the finished String is allocated
+	private static final ThreadLocal<StringBuilder> ENTRY_BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(64));
+	
+	// not meant to be instantiated
+	private TextRecordCodec() {
+		
+	}
+	
+	/**
+	 * Returns the string entry for any kind of BankData
+	 * @param bd
+	 * @return
+	 * @throws BankDAOException if the BankData subclass isn't supported
+	 */
+	public static String save(BankData bd) throws BankDAOException {
+		
+		StringBuilder sb = ENTRY_BUILDER.get();
+		sb.setLength(0);
+		append(bd, sb);
+		return sb.toString();
+	}
+	
+	/**
+	 * Appends the entry for any kind of BankData to the given builder, without a newline.
+	 * Callers encoding lots of records can reuse one builder and skip the String entirely.
+	 * @param bd
+	 * @param sb
+	 * @throws BankDAOException if the BankData subclass isn't supported
+	 */
+	public static void append(BankData bd, StringBuilder sb) throws BankDAOException {
+		
+		if (bd.getClass() == UserProfile.class) {
+			appendUserProfile((UserProfile)bd, sb);
+		}
+		else if (bd.getClass() == BankAccount.class) {
+			appendBankAccount((BankAccount)bd, sb);
+		}
+		else if (bd.getClass() == TransactionRecord.class) {
+			appendTransactionRecord((TransactionRecord)bd, sb);
+		}
+		else {
+			throw new BankDAOException("BankData subclass not supported in write: " + bd.getClass());
+		}
+	}
+	
+	/**
+	 * Returns the type prefix + ' ' + ID at the start of an entry, eg "PRF 101".
+	 * @param entry
+	 * @return
+	 */
+	static String tagOf(String entry) {
+		
+		int firstSpace = entry.indexOf(' ');
+		int secondSpace = entry.indexOf(' ', firstSpace + 1);
+		return (secondSpace < 0) ? entry : entry.substring(0, secondSpace);
+	}
+	
+	/**
+	 * Returns a BankAccount object based on the given entry. If the entry is the empty string,
+	 * an account with type NONE will be returned.
+	 * @param entry
+	 * @return
+	 */
+	public static BankAccount buildAccountFromEntry(String entry) {
+		
+		BankAccount ba = new BankAccount();
+		
+		if (entry.isEmpty()){ // if not found
+			ba.setType(BankAccountType.NONE);
+		}
+		else { // if found
+			// sample entry for format: "ACC 444 OPN SNG 78923 101"
+			// the tokens are scanned in place; start/end bracket the current one
+			int start = nextToken(entry, 0);
+			int end = tokenEnd(entry, start);
+			ba.setId(parseInt(entry, start, end));
+			
+			start = nextToken(entry, end);
+			end = tokenEnd(entry, start);
+			BankAccountStatus status = accountStatusOf(entry, start, end);
+			if (status != null) {
+				ba.setStatus(status);
+			}
+			
+			start = nextToken(entry, end);
+			end = tokenEnd(entry, start);
+			BankAccountType type = accountTypeOf(entry, start, end);
+			if (type != null) {
+				ba.setType(type);
+			}
+			
+			start = nextToken(entry, end);
+			end = tokenEnd(entry, start);
+			ba.setFunds(parseInt(entry, start, end));
+			
+			// the rest of the tokens are the ID numbers of the owner(s) of this account
+			for (start = nextToken(entry, end); start < entry.length(); start = nextToken(entry, end)) {
+				end = tokenEnd(entry, start);
+				ba.addOwner(parseInt(entry, start, end));
+			}
+		}
+		
+		return ba;
+	}
+	
+	/**
+	 * Returns a UserProfile object based on the given entry. If the entry is the empty string,
+	 * returns a UserProfile with type NONE.
+	 * @param entry
+	 * @return
+	 */
+	public static UserProfile buildUserProfileFromEntry(String entry) {
+		
+		UserProfile up = new UserProfile();
+		
+		if (entry.isEmpty()){ // if not found
+			up.setType(UserProfileType.NONE);
+		}
+		else {
+			// sample entry for format "PRF 101 user pass CST 444"
+			int start = nextToken(entry, 0);
+			int end = tokenEnd(entry, start);
+			up.setId(parseInt(entry, start, end));
+			
+			// the only tokens that have to become Strings
+			start = nextToken(entry, end);
+			end = tokenEnd(entry, start);
+			up.setUsername(entry.substring(start, end));
+			start = nextToken(entry, end);
+			end = tokenEnd(entry, start);
+			up.setPassword(entry.substring(start, end));
+			
+			start = nextToken(entry, end);
+			end = tokenEnd(entry, start);
+			UserProfileType type = profileTypeOf(entry, start, end);
+			if (type != null) {
+				up.setType(type);
+			}
+			
+			// the rest of the tokens are ID numbers corresponding to owned accounts
+			for (start = nextToken(entry, end); start < entry.length(); start = nextToken(entry, end)) {
+				end = tokenEnd(entry, start);
+				up.addAccount(parseInt(entry, start, end));
+			}
+		}
+		
+		return up;
+	}
+	
+	/**
+	 * Returns a TransactionRecord object based on the given entry. If the entry is the empty string,
+	 * returns a TransactionRecord with type NONE.
+	 * @param entry
+	 * @return
+	 */
+	public static TransactionRecord buildTransactionRecordFromEntry(String entry) {
+		
+		TransactionRecord tr = new TransactionRecord();
+		
+		if (entry.isEmpty()) { // if not found
+			tr.setType(TransactionType.NONE);
+		}
+		else { // if found
+			// sample entry for format: "TRR 123 3:00 FDP 101 -1 444 87654"
+			int start = nextToken(entry, 0);
+			int end = tokenEnd(entry, start);
+			tr.setId(parseInt(entry, start, end));
+			
+			start = nextToken(entry, end);
+			end = tokenEnd(entry, start);
+			tr.setTime(entry.substring(start, end));
+			
+			start = nextToken(entry, end);
+			end = tokenEnd(entry, start);
+			TransactionType type = transactionTypeOf(entry, start, end);
+			if (type != null) {
+				tr.setType(type);
+			}
+			
+			start = nextToken(entry, end);
+			end = tokenEnd(entry, start);
+			tr.setActingUser(parseInt(entry, start, end));
+			start = nextToken(entry, end);
+			end = tokenEnd(entry, start);
+			tr.setSourceAccount(parseInt(entry, start, end));
+			start = nextToken(entry, end);
+			end = tokenEnd(entry, start);
+			tr.setDestinationAccount(parseInt(entry, start, end));
+			start = nextToken(entry, end);
+			end = tokenEnd(entry, start);
+			tr.setMoneyAmount(parseInt(entry, start, end));
+		}
+		
+		return tr;
+	}
+
+	/**
+	 * Appends the entry for the given UserProfile
+	 * @param up
+	 * @param sb
+	 */
+	static void appendUserProfile(UserProfile up, StringBuilder sb) {
+		
+		// example entry for format: "PRF 101 user pass CST 444"
+		sb.append(USER_PROFILE_PREFIX).append(' ').append(up.getId());
+		sb.append(' ').append(up.getUsername()).append(' ').append(up.getPassword());
+		
+		sb.append(' ');
+		switch(up.getType()) {
+			case NONE:
+				sb.append(PROFILE_TYPE_NONE);
+				break;
+			case CUSTOMER:
+				sb.append(PROFILE_TYPE_CUSTOMER);
+				break;
+			case EMPLOYEE:
+				sb.append(PROFILE_TYPE_EMPLOYEE);
+				break;
+			case ADMIN:
+				sb.append(PROFILE_TYPE_ADMIN);
+				break;
+		}
+		
+		// now do added accounts, straight from the set so nothing gets boxed
+		IntSet accounts = up.getOwnedAccountSet();
+		for (int i = 0; i < accounts.size(); i++) {
+			sb.append(' ').append(accounts.get(i));
+		}
+	}
+	
+	/**
+	 * Appends the entry for the given bank account.
+	 * @param ba
+	 * @param sb
+	 */
+	static void appendBankAccount(BankAccount ba, StringBuilder sb) {
+		
+		// example entry for format: "ACC 444 OPN SNG 78923 101"
+		sb.append(BANK_ACCOUNT_PREFIX).append(' ').append(ba.getId());
+		
+		sb.append(' ');
+		switch (ba.getStatus()) {
+			case NONE:
+				sb.append(ACCOUNT_STATUS_NONE);
+				break;
+			case OPEN:
+				sb.append(ACCOUNT_STATUS_OPEN);
+				break;
+			case CLOSED:
+				sb.append(ACCOUNT_STATUS_CLOSED);
+				break;
+			case PENDING:
+				sb.append(ACCOUNT_STATUS_PENDING);
+				break;
+		}
+		
+		sb.append(' ');
+		switch (ba.getType()) {
+			case NONE:
+				sb.append(ACCOUNT_TYPE_NONE);
+				break;
+			case SINGLE:
+				sb.append(ACCOUNT_TYPE_SINGLE);
+				break;
+			case JOINT:
+				sb.append(ACCOUNT_TYPE_JOINT);
+				break;
+		}
+		
+		sb.append(' ').append(ba.getFunds());
+		
+		IntSet owners = ba.getOwnerSet();
+		for (int i = 0; i < owners.size(); i++) {
+			sb.append(' ').append(owners.get(i));
+		}
+	}
+	
+	/**
+	 * Appends the entry for the given transaction record
+	 * @param tr
+	 * @param sb
+	 */
+	static void appendTransactionRecord(TransactionRecord tr, StringBuilder sb) {
+		
+		// example entry for format: "TRR 123 3:00 FDP 101 -1 444 87654"
+		sb.append(TRANSACTION_RECORD_PREFIX).append(' ').append(tr.getId());
+		sb.append(' ').append(tr.getTime());
+		
+		sb.append(' ');
+		switch (tr.getType()) { // big switch case
+			case ACCOUNT_REGISTERED:
+				sb.append(TRANSACTION_TYPE_ACCOUNT_REGISTERED);
+				break;
+			case ACCOUNT_APPROVED:
+				sb.append(TRANSACTION_TYPE_ACCOUNT_APPROVED);
+				break;
+			case ACCOUNT_CLOSED:
+				sb.append(TRANSACTION_TYPE_ACCOUNT_CLOSED);
+				break;
+			case FUNDS_TRANSFERRED:
+				sb.append(TRANSACTION_TYPE_FUNDS_TRANSFERED);
+				break;
+			case FUNDS_DEPOSITED:
+				sb.append(TRANSACTION_TYPE_FUNDS_DEPOSITED);
+				break;
+			case FUNDS_WITHDRAWN:
+				sb.append(TRANSACTION_TYPE_FUNDS_WITHDRAWN);
+				break;
+			case USER_REGISTERED:
+				sb.append(TRANSACTION_TYPE_USER_REGISTERED);
+				break;
+			case ACCOUNT_OWNER_ADDED:
+				sb.append(TRANSACTION_TYPE_ACCOUNT_OWNER_ADDED);
+				break;
+			case ACCOUNT_OWNER_REMOVED:
+				sb.append(TRANSACTION_TYPE_ACCOUNT_OWNER_REMOVED);
+				break;
+			case NONE:
+				sb.append(TRANSACTION_TYPE_NONE);
+				break;
+		}
+		
+		sb.append(' ').append(tr.getActingUser())
+				.append(' ').append(tr.getSourceAccount())
+				.append(' ').append(tr.getDestinationAccount())
+				.append(' ').append(tr.getMoneyAmount());
+	}
+	
+	// helper methods
+	// entries are scanned in place rather than split, so decoding a line doesn't make a
+	// String for every token; only the fields that are Strings in the objects get one
+	
+	/**
+	 * @return the start of the token after the one that ends at (or contains) from
+	 */
+	private static int nextToken(String entry, int from) {
+		int space = entry.indexOf(' ', from);
+		return (space < 0) ? entry.length() : space + 1;
+	}
+	
+	/**
+	 * @return the end (exclusive) of the token starting at start
+	 */
+	private static int tokenEnd(String entry, int start) {
+		int space = entry.indexOf(' ', start);
+		return (space < 0) ? entry.length() : space;
+	}
+	
+	/**
+	 * Integer.parseInt over entry[start, end), without the substring.
+	 * @throws NumberFormatException if the token is empty, missing, or not a number
+	 */
+	private static int parseInt(String entry, int start, int end) {
+		
+		if (start >= end) {
+			throw new NumberFormatException("Missing number in entry: " + entry);
+		}
+		boolean negative = entry.charAt(start) == '-';
+		int i = negative ? start + 1 : start;
+		if (i == end) {
+			throw new NumberFormatException("Bad number in entry: " + entry);
+		}
+		
+		// accumulate negatively so Integer.MIN_VALUE fits, like Integer.parseInt does
+		int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		int result = 0;
+		for (; i < end; i++) {
+			int digit = entry.charAt(i) - '0';
+			if (digit < 0 || digit > 9 || result < limit / 10) {
+				throw new NumberFormatException("Bad number in entry: " + entry);
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				throw new NumberFormatException("Bad number in entry: " + entry);
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+	
+	/**
+	 * @return true if entry[start, end) is exactly the given code
+	 */
+	private static boolean tokenIs(String entry, int start, int end, String code) {
+		return (end - start == code.length()) && entry.regionMatches(start, code, 0, code.length());
+	}
+	
+	/**
+	 * @return the status for the code at entry[start, end), or null if it isn't one
+	 */
+	private static BankAccountStatus accountStatusOf(String entry, int start, int end) {
+		
+		if (tokenIs(entry, start, end, ACCOUNT_STATUS_OPEN)) {
+			return BankAccountStatus.OPEN;
+		}
+		else if (tokenIs(entry, start, end, ACCOUNT_STATUS_CLOSED)) {
+			return BankAccountStatus.CLOSED;
+		}
+		else if (tokenIs(entry, start, end, ACCOUNT_STATUS_PENDING)) {
+			return BankAccountStatus.PENDING;
+		}
+		else if (tokenIs(entry, start, end, ACCOUNT_STATUS_NONE)) {
+			return BankAccountStatus.NONE;
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the account type for the code at entry[start, end), or null if it isn't one
+	 */
+	private static BankAccountType accountTypeOf(String entry, int start, int end) {
+		
+		if (tokenIs(entry, start, end, ACCOUNT_TYPE_SINGLE)) {
+			return BankAccountType.SINGLE;
+		}
+		else if (tokenIs(entry, start, end, ACCOUNT_TYPE_JOINT)) {
+			return BankAccountType.JOINT;
+		}
+		else if (tokenIs(entry, start, end, ACCOUNT_TYPE_NONE)) {
+			return BankAccountType.NONE;
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the profile type for the code at entry[start, end), or null if it isn't one
+	 */
+	private static UserProfileType profileTypeOf(String entry, int start, int end) {
+		
+		if (tokenIs(entry, start, end, PROFILE_TYPE_CUSTOMER)) {
+			return UserProfileType.CUSTOMER;
+		}
+		else if (tokenIs(entry, start, end, PROFILE_TYPE_EMPLOYEE)) {
+			return UserProfileType.EMPLOYEE;
+		}
+		else if (tokenIs(entry, start, end, PROFILE_TYPE_ADMIN)) {
+			return UserProfileType.ADMIN;
+		}
+		else if (tokenIs(entry, start, end, PROFILE_TYPE_NONE)) {
+			return UserProfileType.NONE;
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the transaction type for the code at entry[start, end), or null if it isn't one
+	 */
+	private static TransactionType transactionTypeOf(String entry, int start, int end) {
+		
+		if (tokenIs(entry, start, end, TRANSACTION_TYPE_ACCOUNT_REGISTERED)) {
+			return TransactionType.ACCOUNT_REGISTERED;
+		}
+		else if (tokenIs(entry, start, end, TRANSACTION_TYPE_ACCOUNT_APPROVED)) {
+			return TransactionType.ACCOUNT_APPROVED;
+		}
+		else if (tokenIs(entry, start, end, TRANSACTION_TYPE_ACCOUNT_CLOSED)) {
+			return TransactionType.ACCOUNT_CLOSED;
+		}
+		else if (tokenIs(entry, start, end, TRANSACTION_TYPE_ACCOUNT_OWNER_ADDED)) {
+			return TransactionType.ACCOUNT_OWNER_ADDED;
+		}
+		else if (tokenIs(entry, start, end, TRANSACTION_TYPE_ACCOUNT_OWNER_REMOVED)) {
+			return TransactionType.ACCOUNT_OWNER_REMOVED;
+		}
+		else if (tokenIs(entry, start, end, TRANSACTION_TYPE_FUNDS_TRANSFERED)) {
+			return TransactionType.FUNDS_TRANSFERRED;
+		}
+		else if (tokenIs(entry, start, end, TRANSACTION_TYPE_FUNDS_DEPOSITED)) {
+			return TransactionType.FUNDS_DEPOSITED;
+		}
+		else if (tokenIs(entry, start, end, TRANSACTION_TYPE_FUNDS_WITHDRAWN)) {
+			return TransactionType.FUNDS_WITHDRAWN;
+		}
+		else if (tokenIs(entry, start, end, TRANSACTION_TYPE_USER_REGISTERED)) {
+			return TransactionType.USER_REGISTERED;
+		}
+		else if (tokenIs(entry, start, end, TRANSACTION_TYPE_NONE)) {
+			return TransactionType.NONE;
+		}
+		return null;
+	}
+}
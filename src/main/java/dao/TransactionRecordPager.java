@@ -0,0 +1,99 @@
+/**
+ * Reads a set of transaction records a page at a time, so a long history never has to be
+ * held in memory all at once. Each page picks up after the last ID of the previous one.
+ *
+ * Eg,
+ *   TransactionRecordPager pager = TransactionRecordPager.byAccount(dao, accID);
+ *   while (pager.hasNextPage()) {
+ *       display(pager.nextPage());
+ *   }
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.revature.bankDataObjects.TransactionRecord;
+
+import dao.BankDAO.TransactionFilter;
+
+public class TransactionRecordPager {
+
+	// constants
+	public static final int DEFAULT_PAGE_SIZE = 100;
+
+	// instance variables
+	private final BankDAO dao;
+	private final TransactionFilter filter;
+	private final int filterID;
+	private final int pageSize;
+
+	private int lastID; // ID of the last record handed out
+	private boolean finished;
+
+	// constructor(s)
+
+	/**
+	 * @param dao
+	 * @param filter : which records to include
+	 * @param filterID : the acting user or account ID for the filter; ignored for ALL
+	 * @param pageSize : most records per page
+	 */
+	public TransactionRecordPager(BankDAO dao, TransactionFilter filter, int filterID, int pageSize) {
+
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("pageSize must be at least 1");
+		}
+		this.dao = dao;
+		this.filter = filter;
+		this.filterID = filterID;
+		this.pageSize = pageSize;
+		lastID = BankDAO.FIRST_PAGE;
+		finished = false;
+	}
+
+	public static TransactionRecordPager all(BankDAO dao) {
+		return new TransactionRecordPager(dao, TransactionFilter.ALL, 0, DEFAULT_PAGE_SIZE);
+	}
+
+	public static TransactionRecordPager byActingUser(BankDAO dao, int actingUserID) {
+		return new TransactionRecordPager(dao, TransactionFilter.ACTING_USER, actingUserID,
+				DEFAULT_PAGE_SIZE);
+	}
+
+	public static TransactionRecordPager byAccount(BankDAO dao, int accID) {
+		return new TransactionRecordPager(dao, TransactionFilter.ACCOUNT, accID, DEFAULT_PAGE_SIZE);
+	}
+
+	// operation methods
+
+	/**
+	 * @return false once a page has come back short, meaning everything has been read.
+	 *     May be true with nothing left, if the last page happened to be exactly full.
+	 */
+	public boolean hasNextPage() {
+		return !finished;
+	}
+
+	/**
+	 * @return the next page of records in ID order; empty if there are no more
+	 * @throws BankDAOException
+	 */
+	public List<TransactionRecord> nextPage() throws BankDAOException {
+
+		if (finished) {
+			return new ArrayList<>();
+		}
+
+		List<TransactionRecord> page = dao.readTransactionRecordPage(filter, filterID, lastID, pageSize);
+		if (page.size() < pageSize) {
+			finished = true;
+		}
+		if (!page.isEmpty()) {
+			lastID = page.get(page.size() - 1).getId();
+		}
+		return page;
+	}
+}
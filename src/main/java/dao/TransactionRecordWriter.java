@@ -0,0 +1,389 @@
+/**
+ * Takes transaction records off the request path. Records go into a bounded queue, and a
+ * background thread writes them to the DAO in batches: as many as are waiting (up to the
+ * batch size), or whatever has arrived by the time the oldest one has waited the maximum
+ * delay. When the queue is full, submitters wait for room, and give up with an exception
+ * if none turns up in time, so a slow DAO slows the bank down instead of letting the
+ * queue grow without limit.
+ *
+ * Each writer is either durable before acknowledgement, where submit returns only once the
+ * record's batch is written (and throws if it couldn't be), or not, where submit returns
+ * as soon as the record is queued and write failures are only logged. Durable batches are
+ * written as soon as the writer gets to them, since someone is waiting; they still share
+ * a write with whatever else is queued at the time.
+ *
+ * flush waits for everything queued so far; close does the same and then stops the thread.
+ * One writer should be shared by everything using the same DAO.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+
+public class TransactionRecordWriter {
+
+	// constants
+	public static final int DEFAULT_CAPACITY = 1024;
+	public static final int DEFAULT_BATCH_SIZE = 64;
+	public static final long DEFAULT_MAX_DELAY_MILLIS = 20;
+	private static final long SUBMIT_TIMEOUT_MILLIS = 5000; // how long to wait for room in the queue
+
+	// class / static variables
+	private static Logger log = Logger.getLogger(TransactionRecordWriter.class);
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	// instance variables
+	private final BankDAO dao;
+	private final BlockingQueue<Pending> queue;
+	private final int batchSize;
+	private final long maxDelayNanos;
+	private final boolean durableBeforeAck;
+
+	// submitters hold the read lock while queueing, so close can't slip in between
+	// a submitter checking that it's open and its record landing in the queue
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+	private boolean closed; // guarded by closeLock
+	private Thread writerThread; // started by the first record, guarded by this
+
+	// only changed by the writer thread
+	private volatile long writtenCount;
+	private volatile long failedCount;
+	private volatile long batchCount;
+
+	// constructor(s)
+
+	/**
+	 * A durable before acknowledgement writer with the default sizes.
+	 * @param dao
+	 */
+	public TransactionRecordWriter(BankDAO dao) {
+		this(dao, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS, true);
+	}
+
+	/**
+	 * @param dao
+	 * @param capacity : how many records can be queued before submitters have to wait
+	 * @param batchSize : the most records written at once
+	 * @param maxDelayMillis : how long a record with no one waiting on it can sit in a
+	 *     partial batch
+	 * @param durableBeforeAck : true if submit should wait for the record to be written
+	 */
+	public TransactionRecordWriter(BankDAO dao, int capacity, int batchSize, long maxDelayMillis,
+			boolean durableBeforeAck) {
+
+		this.dao = dao;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.batchSize = batchSize;
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+		this.durableBeforeAck = durableBeforeAck;
+	}
+
+	// operation methods
+
+	/**
+	 * Queues the record to be written. Waits for room if the queue is full, and, if this
+	 * writer is durable before acknowledgement, for the record to be written.
+	 * @param tr : should already have its ID, acting user and time
+	 * @throws BankDAOException if the writer is closed, the queue stays full for too long,
+	 *     or (if durable) the record couldn't be written
+	 */
+	public void submit(TransactionRecord tr) throws BankDAOException {
+
+		Pending pending = new Pending(tr, durableBeforeAck ? new CompletableFuture<Void>() : null, false);
+		enqueue(pending);
+		if (pending.done != null) {
+			await(pending.done);
+		}
+	}
+
+	/**
+	 * Waits until every record queued before this call has been written (or has failed).
+	 * @throws BankDAOException if the thread is interrupted while waiting
+	 */
+	public void flush() throws BankDAOException {
+
+		Pending marker = new Pending(null, new CompletableFuture<Void>(), false);
+		closeLock.readLock().lock();
+		try {
+			if (closed || !isStarted()) {
+				return; // nothing queued, or close has already drained it
+			}
+			put(marker);
+		}
+		finally {
+			closeLock.readLock().unlock();
+		}
+		await(marker.done);
+	}
+
+	/**
+	 * Stops taking records, writes everything already queued, and stops the writer thread.
+	 * Does nothing the second time.
+	 */
+	public void close() {
+
+		closeLock.writeLock().lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		finally {
+			closeLock.writeLock().unlock();
+		}
+
+		Thread thread;
+		synchronized (this) {
+			thread = writerThread;
+		}
+		if (thread == null) {
+			return;
+		}
+		try {
+			put(new Pending(null, null, true));
+			thread.join();
+		}
+		catch (BankDAOException | InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.log(Level.WARN, "Interrupted while draining transaction records; "
+					+ queue.size() + " may not have been written");
+		}
+	}
+
+	public boolean isDurableBeforeAck() {
+		return durableBeforeAck;
+	}
+
+	/**
+	 * @return how many records have been written so far
+	 */
+	public long getWrittenCount() {
+		return writtenCount;
+	}
+
+	/**
+	 * @return how many records couldn't be written
+	 */
+	public long getFailedCount() {
+		return failedCount;
+	}
+
+	/**
+	 * @return how many writes it took to write them
+	 */
+	public long getBatchCount() {
+		return batchCount;
+	}
+
+	// helper methods
+
+	private void enqueue(Pending pending) throws BankDAOException {
+
+		closeLock.readLock().lock();
+		try {
+			if (closed) {
+				throw new BankDAOException("Transaction record writer is closed");
+			}
+			startIfNeeded();
+			boolean queued;
+			try {
+				queued = queue.offer(pending, SUBMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new BankDAOException("Interrupted waiting to queue a transaction record");
+			}
+			if (!queued) {
+				log.log(Level.WARN, "Transaction record queue stayed full for "
+						+ SUBMIT_TIMEOUT_MILLIS + "ms, dropping record " + pending.record.getId());
+				throw new BankDAOException("Transaction record queue is full");
+			}
+		}
+		finally {
+			closeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Queues a marker, waiting as long as it takes; markers aren't dropped.
+	 */
+	private void put(Pending marker) throws BankDAOException {
+
+		try {
+			queue.put(marker);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BankDAOException("Interrupted waiting to queue a transaction record");
+		}
+	}
+
+	private static void await(CompletableFuture<Void> done) throws BankDAOException {
+
+		try {
+			done.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BankDAOException("Interrupted waiting for a transaction record to be written");
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof BankDAOException) {
+				throw (BankDAOException)e.getCause();
+			}
+			throw new BankDAOException("Could not write transaction record: " + e.getCause());
+		}
+	}
+
+	private synchronized boolean isStarted() {
+		return writerThread != null;
+	}
+
+	private synchronized void startIfNeeded() {
+
+		if (writerThread == null) {
+			writerThread = new Thread(this::run, "transaction-record-writer-" + threadCount.incrementAndGet());
+			writerThread.setDaemon(true); // close drains it; the JVM shouldn't wait on it otherwise
+			writerThread.start();
+		}
+	}
+
+	/**
+	 * The writer thread: gathers a batch, writes it, and repeats until it reaches the
+	 * marker close puts in.
+	 */
+	private void run() {
+
+		List<Pending> batch = new ArrayList<>(batchSize);
+		boolean stopping = false;
+		while (!stopping) {
+			batch.clear();
+			try {
+				stopping = gather(batch);
+			}
+			catch (InterruptedException e) {
+				// only close should stop this thread; keep going with what we have
+			}
+			writeBatch(batch);
+		}
+	}
+
+	/**
+	 * Takes the next batch off the queue: waits for a first entry, then keeps taking what's
+	 * queued until the batch is full. If no one is waiting on the batch yet, it also waits up
+	 * to the maximum delay for more to arrive. A marker ends the batch early.
+	 * @param batch : filled in
+	 * @return true if the batch ends with close's marker
+	 * @throws InterruptedException
+	 */
+	private boolean gather(List<Pending> batch) throws InterruptedException {
+
+		Pending next = queue.take();
+		long deadline = System.nanoTime() + maxDelayNanos;
+		int records = 0;
+		boolean anyoneWaiting = false;
+
+		while (next != null) {
+			batch.add(next);
+			if (next.record == null) {
+				return next.stop;
+			}
+			records++;
+			anyoneWaiting |= (next.done != null);
+			if (records >= batchSize) {
+				return false;
+			}
+
+			next = queue.poll();
+			if (next == null && !anyoneWaiting) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining > 0) {
+					next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the records in the batch with one DAO call, then lets everyone waiting on the
+	 * batch (submitters and markers) know how it went.
+	 */
+	private void writeBatch(List<Pending> batch) {
+
+		List<BankData> records = new ArrayList<>(batch.size());
+		for (Pending p : batch) {
+			if (p.record != null) {
+				records.add(p.record);
+			}
+		}
+
+		BankDAOException failure = null;
+		if (!records.isEmpty()) {
+			try {
+				dao.write(records);
+				writtenCount += records.size();
+			}
+			catch (BankDAOException e) {
+				failure = e;
+			}
+			catch (RuntimeException e) { // don't let a bad DAO kill the thread
+				failure = new BankDAOException("Could not write transaction records: " + e);
+			}
+			batchCount++;
+
+			if (failure != null) {
+				failedCount += records.size();
+				for (BankData bd : records) {
+					log.log(Level.ERROR, "Transaction record " + bd.getId() + " was not saved: "
+							+ failure.getMessage());
+				}
+			}
+		}
+
+		for (Pending p : batch) {
+			if (p.done == null) {
+				continue;
+			}
+			if (failure != null && p.record != null) {
+				p.done.completeExceptionally(failure);
+			}
+			else {
+				p.done.complete(null);
+			}
+		}
+	}
+
+	/**
+	 * A queued record, or (with no record) a marker for flush or close.
+	 */
+	private static class Pending {
+
+		final TransactionRecord record;
+		final CompletableFuture<Void> done; // null if no one is waiting
+		final boolean stop;
+
+		Pending(TransactionRecord record, CompletableFuture<Void> done, boolean stop) {
+			this.record = record;
+			this.done = done;
+			this.stop = stop;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * A BankDAO that can move money between accounts as a single atomic operation
+ * inside the data store itself (for example, by locking rows in a database transaction),
+ * and can make other changes to an account under the same lock.
+ * The TransferEngine uses this when it's available instead of its own in-memory locks,
+ * since it also protects against other processes using the same data store.
+ * 
+ * Andrew Curry
+ */
+package dao;
+
+import java.util.List;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+
+public interface TransactionalBankDAO extends BankDAO {
+	
+	/**
+	 * Used as the source for a deposit, or the destination for a withdrawal.
+	 * Matches the -1 stored in transaction records for 'no account'.
+	 */
+	public static final int NO_ACCOUNT = -1;
+	
+	/**
+	 * The possible outcomes of a transfer. Checks happen in this order,
+	 * so the first problem found is the one reported.
+	 */
+	public enum TransferResult {
+		SUCCESS, 
+		SOURCE_NOT_FOUND, 
+		DESTINATION_NOT_FOUND, 
+		SOURCE_NOT_OPEN, 
+		DESTINATION_NOT_OPEN, 
+		INSUFFICIENT_FUNDS
+	}
+	
+	/**
+	 * A change to make to an account while it's locked; see updateAccount.
+	 * @param <E> : what the change throws to leave the account as it was
+	 */
+	public interface AccountChange<E extends Exception> {
+		
+		/**
+		 * @param ba : the account as it is now, to be changed in place
+		 * @return anything else to write along with the account (may be empty)
+		 */
+		public List<BankData> apply(BankAccount ba) throws E, BankDAOException;
+	}
+	
+	/**
+	 * Moves the given amount from one account to another. Either both balances change or neither does.
+	 * Pass NO_ACCOUNT as the source for a deposit, or as the destination for a withdrawal.
+	 * @param sourceAccID
+	 * @param destAccID
+	 * @param moneyAmount : should be positive
+	 * @return SUCCESS, or the reason nothing was changed
+	 * @throws BankDAOException
+	 */
+	public TransferResult transferFunds(int sourceAccID, int destAccID, int moneyAmount) 
+			throws BankDAOException;
+	
+	/**
+	 * Moves the money the record describes (its source, destination and amount, as above), and
+	 * saves the record in the same transaction. The record is only saved if the transfer happens,
+	 * so there's never a transfer without its record or the other way round.
+	 * @param record : with its ID, time and acting user already set
+	 * @return SUCCESS, or the reason nothing was changed (or saved)
+	 * @throws BankDAOException
+	 */
+	public TransferResult transferFunds(TransactionRecord record) throws BankDAOException;
+	
+	/**
+	 * Reads the account, lets the change change it, and writes it back (with anything else the
+	 * change returns, written first), all in one transaction that holds the account's lock,
+	 * so no transfer can change the balance in between.
+	 * @param accID
+	 * @param change
+	 * @return the account as it was written
+	 * @throws E from the change, in which case nothing is written
+	 * @throws BankDAOException
+	 */
+	public <E extends Exception> BankAccount updateAccount(int accID, AccountChange<E> change) 
+			throws E, BankDAOException;
+}
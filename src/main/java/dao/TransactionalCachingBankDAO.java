@@ -0,0 +1,100 @@
+/**
+ * A CachingBankDAO over a TransactionalBankDAO, made by CachingBankDAO.wrap. Transfers and
+ * account updates go straight to the wrapped DAO, without taking the cache's lock, so they
+ * only wait on its row locks; the accounts, and anything else they wrote, are then dropped
+ * from the cache like a write. The row locks work across processes, but the cache doesn't
+ * (see CachingBankDAO), so this still has to be the only process using the database.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+
+public class TransactionalCachingBankDAO extends CachingBankDAO implements TransactionalBankDAO {
+
+	// instance variables
+	private final TransactionalBankDAO dao;
+
+	// constructor(s)
+
+	/**
+	 * @param dao : the DAO that actually stores the data
+	 * @param maxProfiles : most user profiles (and usernames) to keep in memory
+	 * @param maxAccounts : most bank accounts to keep in memory
+	 * @param maxTransactions : most transaction records to keep in memory
+	 */
+	public TransactionalCachingBankDAO(TransactionalBankDAO dao, int maxProfiles, int maxAccounts,
+			int maxTransactions) {
+
+		super(dao, maxProfiles, maxAccounts, maxTransactions);
+		this.dao = dao;
+	}
+
+	// methods from TransactionalBankDAO interface
+
+	@Override
+	public TransferResult transferFunds(int sourceAccID, int destAccID, int moneyAmount)
+			throws BankDAOException {
+
+		try {
+			return dao.transferFunds(sourceAccID, destAccID, moneyAmount);
+		}
+		finally {
+			invalidateAccounts(Collections.<BankData>emptyList(), sourceAccID, destAccID);
+		}
+	}
+
+	@Override
+	public TransferResult transferFunds(TransactionRecord record) throws BankDAOException {
+
+		try {
+			return dao.transferFunds(record);
+		}
+		finally {
+			invalidateAccounts(Collections.<BankData>singletonList(record), record.getSourceAccount(),
+					record.getDestinationAccount());
+		}
+	}
+
+	@Override
+	public <E extends Exception> BankAccount updateAccount(int accID, AccountChange<E> change)
+			throws E, BankDAOException {
+
+		List<BankData> written = new ArrayList<>();
+		try {
+			return dao.updateAccount(accID, ba -> {
+				List<BankData> others = change.apply(ba);
+				written.addAll(others);
+				return others;
+			});
+		}
+		finally {
+			invalidateAccounts(written, accID, NO_ACCOUNT);
+		}
+	}
+
+	// helper methods
+
+	/**
+	 * Even a failed transfer may have got as far as the database, so these always run.
+	 */
+	private void invalidateAccounts(List<BankData> written, int sourceAccID, int destAccID) {
+
+		if (sourceAccID == NO_ACCOUNT) {
+			invalidateAfterChange(written, destAccID);
+		}
+		else if (destAccID == NO_ACCOUNT) {
+			invalidateAfterChange(written, sourceAccID);
+		}
+		else {
+			invalidateAfterChange(written, sourceAccID, destAccID);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * A Bloom filter of usernames, so that checking a name nobody has taken (the common case
+ * during registration) can be answered without going to the database at all.
+ *
+ * mightContain never says no for a name that was added, but can say yes for one that wasn't
+ * (about falsePositiveRate of the time, until more than the expected number of names have
+ * been added); those fall through to a real lookup. Names can't be taken back out, so a
+ * removed name stays a "maybe" until the filter is rebuilt.
+ *
+ * Thread safe; adds and checks on different threads may race, but a name is only ever
+ * missed if it is checked before its add has finished, same as with the database.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class UsernameBloomFilter {
+
+	// instance variables
+	private final AtomicLongArray bits;
+	private final long bitCount;
+	private final int hashCount;
+	private final int expected;
+
+	// constructor(s)
+
+	/**
+	 * @param expected : how many names it should hold before the false positive rate slips
+	 * @param falsePositiveRate : eg, 0.01
+	 */
+	public UsernameBloomFilter(int expected, double falsePositiveRate) {
+
+		if (expected < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+			throw new IllegalArgumentException("expected must be at least 1 and the rate between 0 and 1");
+		}
+		this.expected = expected;
+
+		// the usual optimal sizes: m = -n ln p / (ln 2)^2, k = (m / n) ln 2
+		long m = (long)Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		m = Math.max(64, (m + 63) / 64 * 64);
+		bitCount = m;
+		hashCount = Math.max(1, (int)Math.round((double)m / expected * Math.log(2)));
+		bits = new AtomicLongArray((int)(m / 64));
+	}
+
+	// operation methods
+
+	public void add(String username) {
+
+		long h = hash64(username);
+		int h1 = (int)h;
+		int h2 = (int)(h >>> 32);
+		for (int i = 0; i < hashCount; i++) {
+			long bit = bitFor(h1, h2, i);
+			int word = (int)(bit >>> 6);
+			long mask = 1L << bit;
+			long old;
+			do { // no getAndBitwiseOr in java 8
+				old = bits.get(word);
+			} while ((old & mask) == 0 && !bits.compareAndSet(word, old, old | mask));
+		}
+	}
+
+	/**
+	 * @param username
+	 * @return false if the name was definitely never added
+	 */
+	public boolean mightContain(String username) {
+
+		long h = hash64(username);
+		int h1 = (int)h;
+		int h2 = (int)(h >>> 32);
+		for (int i = 0; i < hashCount; i++) {
+			long bit = bitFor(h1, h2, i);
+			if ((bits.get((int)(bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of names it was sized for
+	 */
+	public int getExpected() {
+		return expected;
+	}
+
+	// helper methods
+
+	/**
+	 * The i-th bit position, from two hashes (Kirsch and Mitzenmacher's trick, which is as
+	 * good as i independent hashes for this).
+	 */
+	private long bitFor(int h1, int h2, int i) {
+		long combined = (h1 + (long)i * h2) & Long.MAX_VALUE;
+		return combined % bitCount;
+	}
+
+	/**
+	 * 64-bit FNV-1a of the UTF-8 bytes, then mixed so both halves are usable on their own.
+	 */
+	private static long hash64(String username) {
+
+		long h = 0xcbf29ce484222325L;
+		for (byte b : username.getBytes(StandardCharsets.UTF_8)) {
+			h ^= (b & 0xff);
+			h *= 0x100000001b3L;
+		}
+		// finalizer from MurmurHash3
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * An in-memory map from username to user ID, for DAOs that would otherwise have to scan every
+ * profile to find one by name (the text file one). Open addressing with linear probing, kept
+ * at most half full, with each slot's hash stored next to it so a probe only compares strings
+ * whose hashes already match.
+ *
+ * Not thread safe; the DAO using it is expected to synchronize.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.util.Arrays;
+
+public class UsernameIndex {
+
+	// constants
+	public static final int NOT_FOUND = -1;
+
+	private static final int MIN_CAPACITY = 16; // always a power of two
+	private static final String REMOVED = new String("<removed>"); // compared by reference only
+
+	// instance variables
+	private String[] keys;
+	private int[] hashes;
+	private int[] values;
+	private int size; // live entries
+	private int used; // live entries plus removed markers
+
+	// constructor(s)
+
+	public UsernameIndex() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expected : how many usernames it will probably hold, so it doesn't have to grow
+	 */
+	public UsernameIndex(int expected) {
+		allocate(capacityFor(expected));
+	}
+
+	// operation methods
+
+	/**
+	 * @param username
+	 * @return the ID of the user with that name, or NOT_FOUND
+	 */
+	public int get(String username) {
+
+		int slot = find(username, hash(username));
+		return (slot < 0) ? NOT_FOUND : values[slot];
+	}
+
+	public boolean contains(String username) {
+		return find(username, hash(username)) >= 0;
+	}
+
+	/**
+	 * Adds the username, or changes the ID it goes with.
+	 * @param username
+	 * @param userID
+	 */
+	public void put(String username, int userID) {
+
+		int hash = hash(username);
+		int slot = find(username, hash);
+		if (slot >= 0) {
+			values[slot] = userID;
+			return;
+		}
+
+		if ((used + 1) * 2 > keys.length) {
+			resize(capacityFor(size + 1)); // also clears out removed markers
+		}
+
+		int mask = keys.length - 1;
+		int i = hash & mask;
+		while (keys[i] != null && keys[i] != REMOVED) {
+			i = (i + 1) & mask;
+		}
+		if (keys[i] == null) {
+			used++;
+		}
+		keys[i] = username;
+		hashes[i] = hash;
+		values[i] = userID;
+		size++;
+	}
+
+	/**
+	 * @param username
+	 * @return true if it was there
+	 */
+	public boolean remove(String username) {
+
+		int slot = find(username, hash(username));
+		if (slot < 0) {
+			return false;
+		}
+		keys[slot] = REMOVED; // the probe chain has to stay unbroken
+		size--;
+		return true;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		allocate(MIN_CAPACITY);
+	}
+
+	// helper methods
+
+	/**
+	 * @return the slot holding the username, or -1 if it isn't there
+	 */
+	private int find(String username, int hash) {
+
+		int mask = keys.length - 1;
+		int i = hash & mask;
+		while (keys[i] != null) {
+			if (keys[i] != REMOVED && hashes[i] == hash && keys[i].equals(username)) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private void resize(int capacity) {
+
+		String[] oldKeys = keys;
+		int[] oldHashes = hashes;
+		int[] oldValues = values;
+		allocate(capacity);
+
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] == null || oldKeys[j] == REMOVED) {
+				continue;
+			}
+			int i = oldHashes[j] & mask;
+			while (keys[i] != null) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = oldKeys[j];
+			hashes[i] = oldHashes[j];
+			values[i] = oldValues[j];
+			size++;
+		}
+		used = size;
+	}
+
+	private void allocate(int capacity) {
+		keys = new String[capacity];
+		hashes = new int[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, NOT_FOUND);
+		size = 0;
+		used = 0;
+	}
+
+	/**
+	 * @return the smallest power of two that keeps the given count at most half full
+	 */
+	private static int capacityFor(int count) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < count * 2) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * String.hashCode with its bits spread, since the low bits pick the slot.
+	 */
+	private static int hash(String username) {
+		int h = username.hashCode();
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,14 @@
+/**
+ * Thrown by a write when a new user profile's username turns out to be taken already, eg by
+ * another process since isUsernameFree said it was free. Nothing in the write is saved.
+ */
+package dao;
+
+public class UsernameTakenException extends BankDAOException {
+	
+	static final long serialVersionUID = 0;
+	
+	public UsernameTakenException (String message) {
+		super(message);
+	}
+}
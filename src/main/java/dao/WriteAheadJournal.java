@@ -0,0 +1,306 @@
+/**
+ * A write-ahead journal for a journaled TextFileDAO, kept next to the data file as
+ * "<file>.wal". Each write's lines are appended as one checksummed entry, and the write
+ * doesn't return until the entry has been forced to disk; the data file isn't touched.
+ * Writers that arrive while a force is running wait for the next one, which covers all of
+ * them, so a burst of concurrent writes costs a couple of forces instead of one each
+ * (group commit).
+ *
+ * The data file is only rewritten at a checkpoint, which forces it and then empties the
+ * journal, so the journal always holds exactly the writes since the data file it starts
+ * from (the base, recorded in the header). On startup every intact entry is replayed over
+ * the data file. An entry only ever replaces whole lines, so replaying one the data file
+ * already has (a crash after a checkpoint's rewrite but before it emptied the journal)
+ * changes nothing. A torn entry at the end (a crash mid-append) fails its checksum and is
+ * ignored along with anything after it.
+ *
+ * Layout (big-endian):
+ *   header: int magic, int version, long base length, int base CRC32, int header CRC32
+ *   entry: int magic, int payload length, long sequence,
+ *       payload (the lines in UTF-8, separated by '\n'), int CRC32 of everything before it
+ *   Version 1 entries also had a long and an int after the sequence; they're skipped over.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+class WriteAheadJournal {
+
+	// constants
+	static final String SUFFIX = ".wal";
+	static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4;
+
+	private static final int MAGIC = 0x42444A4C; // "BDJL"
+	private static final int VERSION = 2;
+	private static final int OLD_VERSION = 1;
+	private static final int ENTRY_MAGIC = 0x4A454E54; // "JENT"
+	private static final int ENTRY_HEADER_SIZE = 4 + 4 + 8;
+	private static final int OLD_ENTRY_HEADER_SIZE = ENTRY_HEADER_SIZE + 8 + 4;
+	private static final int ENTRY_TRAILER_SIZE = 4;
+
+	// class / static variables
+	private static Logger log = Logger.getLogger(WriteAheadJournal.class);
+
+	// instance variables
+	private final String journalFilename;
+	private final long checkpointBytes;
+	private FileChannel channel;
+	private long appendPosition;
+	private long appendedSequence; // the last entry written
+	private long durableSequence; // the last entry known to be on disk
+	private boolean forcing; // a writer is in force() for everyone waiting
+	private long forceCount;
+
+	// constructor(s)
+
+	/**
+	 * @param dataFilename : the journal goes next to this file
+	 * @param checkpointBytes : how big the journal can get before checkpointDue says so
+	 */
+	WriteAheadJournal(String dataFilename, long checkpointBytes) {
+		this.journalFilename = dataFilename + SUFFIX;
+		this.checkpointBytes = checkpointBytes;
+	}
+
+	// operation methods
+
+	/**
+	 * Opens the journal (creating it if needed) and reads its entries. The caller should
+	 * apply them in order, checkpoint, and then call reset.
+	 * @param dataLength : the data file's current length
+	 * @param dataCrc : the data file's current CRC32
+	 * @return the lines of each entry to replay, oldest first
+	 * @throws BankDAOException if the journal can't be opened or read
+	 */
+	synchronized List<List<String>> open(long dataLength, int dataCrc) throws BankDAOException {
+
+		ByteBuffer journal;
+		try {
+			channel = FileChannel.open(Paths.get(journalFilename), StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			journal = ByteBuffer.allocate((int)channel.size());
+			while (journal.hasRemaining() && channel.read(journal, journal.position()) >= 0) {
+				// keep reading
+			}
+			journal.flip();
+		}
+		catch (IOException e) {
+			throw new BankDAOException("Could not open journal: " + journalFilename);
+		}
+
+		if (journal.remaining() < HEADER_SIZE) {
+			return Collections.emptyList(); // new, or never got past creating it
+		}
+		int version = journal.getInt(4);
+		if (journal.getInt(0) != MAGIC || (version != VERSION && version != OLD_VERSION)
+				|| journal.getInt(HEADER_SIZE - 4) != crcOf(journal, 0, HEADER_SIZE - 4)) {
+			log.log(Level.WARN, "Journal header is damaged, ignoring it: " + journalFilename);
+			return Collections.emptyList();
+		}
+		long baseLength = journal.getLong(8);
+		int baseCrc = journal.getInt(16);
+
+		int entryHeaderSize = (version == OLD_VERSION) ? OLD_ENTRY_HEADER_SIZE : ENTRY_HEADER_SIZE;
+		List<List<String>> batches = new ArrayList<>();
+		int pos = HEADER_SIZE;
+		while (true) {
+			int entryLength = validEntryLength(journal, pos, entryHeaderSize);
+			if (entryLength < 0) {
+				break;
+			}
+			String payload = new String(journal.array(), pos + entryHeaderSize,
+					journal.getInt(pos + 4), StandardCharsets.UTF_8);
+			batches.add(payload.isEmpty() ? new ArrayList<String>() : Arrays.asList(payload.split("\n")));
+			appendedSequence = journal.getLong(pos + 8);
+			pos += entryLength;
+		}
+		if (pos < journal.limit()) {
+			log.log(Level.WARN, "Ignoring " + (journal.limit() - pos) + " bytes of torn journal tail in "
+					+ journalFilename);
+		}
+		durableSequence = appendedSequence;
+
+		if (!batches.isEmpty() && (baseLength != dataLength || baseCrc != dataCrc)) {
+			// a checkpoint that didn't get as far as emptying the journal, or an edit from outside
+			log.log(Level.INFO, "Data file has changed since the journal's last checkpoint, replaying "
+					+ batches.size() + " entries over it anyway: " + journalFilename);
+		}
+		return batches;
+	}
+
+	/**
+	 * Appends one entry, without waiting for it to reach the disk; see awaitDurable.
+	 * @param lines : the lines the write added or replaced
+	 * @return the entry's sequence number
+	 * @throws BankDAOException if the journal can't be written
+	 */
+	synchronized long append(List<String> lines) throws BankDAOException {
+
+		byte[] payload = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+		ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER_SIZE + payload.length + ENTRY_TRAILER_SIZE);
+		long sequence = appendedSequence + 1;
+		entry.putInt(ENTRY_MAGIC).putInt(payload.length).putLong(sequence).put(payload);
+		entry.putInt(crcOf(entry, 0, entry.position()));
+		entry.flip();
+
+		try {
+			long pos = appendPosition;
+			while (entry.hasRemaining()) {
+				pos += channel.write(entry, pos);
+			}
+		}
+		catch (IOException e) {
+			throw new BankDAOException("ALERT: could not append to journal: " + journalFilename);
+		}
+		appendPosition += entry.limit();
+		appendedSequence = sequence;
+		return sequence;
+	}
+
+	/**
+	 * Returns once the entry with the given sequence number is on disk. If no one is forcing
+	 * the journal, this thread does, on behalf of every entry appended so far; otherwise it
+	 * waits for that force to finish and checks again.
+	 * @param sequence
+	 * @throws BankDAOException if the force fails, or the thread is interrupted
+	 */
+	void awaitDurable(long sequence) throws BankDAOException {
+
+		long covered;
+		synchronized (this) {
+			while (durableSequence < sequence && forcing) {
+				try {
+					wait();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new BankDAOException("Interrupted waiting for the journal: " + journalFilename);
+				}
+			}
+			if (durableSequence >= sequence) {
+				return;
+			}
+			forcing = true;
+			covered = appendedSequence;
+		}
+
+		boolean forced = false;
+		try {
+			forceChannel();
+			forced = true;
+		}
+		catch (IOException e) {
+			throw new BankDAOException("ALERT: could not force journal to disk: " + journalFilename);
+		}
+		finally {
+			synchronized (this) {
+				forcing = false;
+				if (forced) {
+					durableSequence = Math.max(durableSequence, covered);
+					forceCount++;
+				}
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Empties the journal, starting over from the given data file. Only call this once the
+	 * data file has every entry and has been forced, since the entries are gone afterwards.
+	 * @param dataLength
+	 * @param dataCrc
+	 * @throws BankDAOException if the journal can't be written
+	 */
+	synchronized void reset(long dataLength, int dataCrc) throws BankDAOException {
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putLong(dataLength).putInt(dataCrc);
+		header.putInt(crcOf(header, 0, header.position()));
+		header.flip();
+
+		try {
+			channel.truncate(0);
+			long pos = 0;
+			while (header.hasRemaining()) {
+				pos += channel.write(header, pos);
+			}
+			channel.force(true);
+		}
+		catch (IOException e) {
+			throw new BankDAOException("ALERT: could not reset journal: " + journalFilename);
+		}
+		appendPosition = HEADER_SIZE;
+		durableSequence = appendedSequence; // whatever was pending is in the data file now
+		notifyAll();
+	}
+
+	/**
+	 * @return true once the journal has grown past its checkpoint size
+	 */
+	synchronized boolean checkpointDue() {
+		return appendPosition - HEADER_SIZE >= checkpointBytes;
+	}
+
+	/**
+	 * @return how many times the journal has been forced for writers
+	 */
+	synchronized long getForceCount() {
+		return forceCount;
+	}
+
+	String getFilename() {
+		return journalFilename;
+	}
+
+	// helper methods
+
+	/**
+	 * Forces the appended entries to disk. Tests override this to hold a force open while
+	 * other writers arrive.
+	 * @throws IOException
+	 */
+	void forceChannel() throws IOException {
+		channel.force(false);
+	}
+
+	/**
+	 * @return the length of the intact entry at pos, or -1 if there isn't one
+	 */
+	private static int validEntryLength(ByteBuffer journal, int pos, int entryHeaderSize) {
+
+		if (journal.limit() - pos < entryHeaderSize + ENTRY_TRAILER_SIZE
+				|| journal.getInt(pos) != ENTRY_MAGIC) {
+			return -1;
+		}
+		int payloadLength = journal.getInt(pos + 4);
+		if (payloadLength < 0 || payloadLength > journal.limit() - pos - entryHeaderSize - ENTRY_TRAILER_SIZE) {
+			return -1;
+		}
+		int crcAt = pos + entryHeaderSize + payloadLength;
+		if (journal.getInt(crcAt) != crcOf(journal, pos, crcAt - pos)) {
+			return -1;
+		}
+		return crcAt + ENTRY_TRAILER_SIZE - pos;
+	}
+
+	private static int crcOf(ByteBuffer buf, int from, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), buf.arrayOffset() + from, length);
+		return (int)crc.getValue();
+	}
+}
@@ -5,6 +5,7 @@
 package driver;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 
@@ -13,10 +14,15 @@ import org.apache.log4j.Logger;
 
 import BankIO.BankIO;
 import BankIO.CommandLineIO;
+import bankSystem.BankServer;
 import bankSystem.BankSystem;
 import dao.BankDAO;
 import dao.BankDAOException;
+import dao.BinaryFileConverter;
+import dao.BinaryFileDAO;
+import dao.CachingBankDAO;
 import dao.DatabaseUtil;
+import dao.InMemoryBankDAO;
 import dao.PostgresDAO;
 import dao.TextFileDAO;
 
@@ -25,11 +31,17 @@ public class Driver {
 	// constants
 	private static final String USE_TEXT_ARG = "-t";
 	private static final String RESET_DATABSE_ARG = "-r";
+	private static final String USE_CACHE_ARG = "-c";
+	private static final String SERVER_ARG = "-s"; // serve sessions over a local socket
+	private static final String USE_BINARY_ARG = "-b"; // the text file, converted to the binary format
+	private static final String USE_MEMORY_ARG = "-m"; // in memory, snapshotted to its own copy of the text file
 	
 	// class / static vars
 	private static Logger log = Logger.getLogger(Driver.class);
 	
 	static private final String testFilename = "testfile.bdf"; // 'bank data file'
+	static private final String binaryTestFilename = "testfile.bdb"; // 'bank data binary'
+	static private final String memoryTestFilename = "testmemory.bdf"; // the in memory DAO's snapshot
 	static private final String[] FILELINES = {
 			"PRF 101 user pass CST 444", "ACC 444 OPN SNG 78923 101", 
 			"PRF 103 user2 pass CST 317 515", "ACC 317 OPN SNG 7892312 103", 
@@ -44,6 +56,10 @@ public class Driver {
 		// look for flags in the params
 		boolean useText = false;
 		boolean resetDatabase = false;
+		boolean useCache = false;
+		boolean serve = false;
+		boolean useBinary = false;
+		boolean useMemory = false;
 		
 		for (String s : args) {
 			
@@ -53,23 +69,52 @@ public class Driver {
 			else if (s.equals(RESET_DATABSE_ARG)) {
 				resetDatabase = true;
 			}
+			else if (s.equals(USE_CACHE_ARG)) {
+				useCache = true;
+			}
+			else if (s.equals(SERVER_ARG)) {
+				serve = true;
+			}
+			else if (s.equals(USE_BINARY_ARG)) {
+				useBinary = true;
+			}
+			else if (s.equals(USE_MEMORY_ARG)) {
+				useMemory = true;
+			}
 		}
 		
 		BankIO io = new CommandLineIO();
-		prepareTextFile();
+		prepareTextFile(testFilename);
 		
 		BankDAO dao = null; // will be instantiated (or crash)
+		InMemoryBankDAO memoryDAO = null; // kept to save its last snapshot at the end
 		
 		try {
 			if (useText) {
 				dao = new TextFileDAO(testFilename);
 				
 			}
+			else if (useBinary) {
+				if (!new File(binaryTestFilename).exists()) { // don't overwrite what's been written since
+					BinaryFileConverter.textToBinary(testFilename, binaryTestFilename);
+				}
+				dao = new BinaryFileDAO(binaryTestFilename);
+			}
+			else if (useMemory) {
+				if (!new File(memoryTestFilename).exists()) { // keep what was snapshotted last time
+					prepareTextFile(memoryTestFilename);
+				}
+				memoryDAO = new InMemoryBankDAO(memoryTestFilename);
+				dao = memoryDAO;
+			}
 			else {
 				dao = new PostgresDAO();
 				if (resetDatabase) {
 					DatabaseUtil.resetDatabase();
 				}
+				else {
+					DatabaseUtil.migrateDatabase(); // no-op if already up to date
+				}
 			}			
 		}
 		catch (BankDAOException e) {
@@ -78,22 +123,67 @@ public class Driver {
 			System.exit(1);
 		}
 		
+		if (useCache) {
+			dao = CachingBankDAO.wrap(dao); // stays transactional if it was
+		}
 		
-		BankSystem bank = new BankSystem(io, dao);
-		bank.start();
+		if (serve) {
+			runServer(dao, memoryDAO);
+		}
+		else {
+			BankSystem bank = new BankSystem(io, dao);
+			bank.start();
+		}
 		// clean things up
 		io.close();
+		if (memoryDAO != null) {
+			memoryDAO.close();
+		}
+		DatabaseUtil.closePool();
+		if (useCache) {
+			log.log(Level.INFO, dao.toString()); // cache statistics
+		}
 		log.log(Level.INFO, "Project0 Bank offline");
 	}
 	
+	/**
+	 * Runs the bank as a server until the process is stopped (eg, with ctrl-c).
+	 * Stopping it skips the rest of main, so the in memory DAO's last snapshot is taken here.
+	 * @param dao
+	 * @param memoryDAO : null unless it's the in memory DAO
+	 */
+	private static void runServer(BankDAO dao, InMemoryBankDAO memoryDAO) {
+		
+		BankServer server = null;
+		try {
+			server = new BankServer(dao, BankServer.DEFAULT_PORT, BankServer.DEFAULT_MAX_SESSIONS);
+		}
+		catch (IOException e) {
+			System.out.println("ERROR: Could not start server: " + e.getMessage());
+			log.log(Level.FATAL, "Error while starting server: " + e.getMessage());
+			return;
+		}
+		
+		System.out.println("Bank server listening on port " + server.getPort());
+		final BankServer toClose = server;
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			toClose.close();
+			if (memoryDAO != null) {
+				memoryDAO.close();
+			}
+		}));
+		server.serve();
+	}
+	
 	/**
 	 * Sets up a text file for use in tests.
+	 * @param filename
 	 * @return true if the file could be set up, false otherwise
 	 */
-	private static boolean prepareTextFile() {
+	private static boolean prepareTextFile(String filename) {
 		
 		try {
-			BufferedWriter writer = new BufferedWriter(new FileWriter(testFilename));
+			BufferedWriter writer = new BufferedWriter(new FileWriter(filename));
 			
 			for (String line : FILELINES){
 				writer.write(line);
@@ -0,0 +1,43 @@
+-- The original tables.
+-- IF NOT EXISTS so that databases set up before there were migrations can be brought under them.
+
+CREATE TABLE IF NOT EXISTS "user_profile"
+(
+	"user_id" INT NOT NULL,
+	"username" VARCHAR(120) NOT NULL,
+	"password" VARCHAR(120) NOT NULL,
+	"type" VARCHAR(120) NOT NULL,
+	CONSTRAINT "PK_user_profile" PRIMARY KEY ("user_id")
+);
+
+CREATE TABLE IF NOT EXISTS "bank_account"
+(
+	"account_id" INT NOT NULL,
+	"status" VARCHAR(120) NOT NULL,
+	"type" VARCHAR(120) NOT NULL,
+	"funds" INT NOT NULL,
+	CONSTRAINT "PK_bank_account" PRIMARY KEY ("account_id")
+);
+
+-- accounts are not foreign keys because they may be -1 (none)
+CREATE TABLE IF NOT EXISTS "transaction_record"
+(
+	"transaction_id" INT NOT NULL,
+	"time" VARCHAR(120) NOT NULL,
+	"type" VARCHAR(120) NOT NULL,
+	"acting_user" INT NOT NULL,
+	"source_account" INT,
+	"destination_account" INT,
+	"money_amount" INT,
+	CONSTRAINT "PK_transaction_record" PRIMARY KEY ("transaction_id"),
+	CONSTRAINT "FK_acting_user" FOREIGN KEY ("acting_user") REFERENCES "user_profile" ("user_id")
+);
+
+CREATE TABLE IF NOT EXISTS "account_ownership"
+(
+	"user_id" INT NOT NULL,
+	"account_id" INT NOT NULL,
+	PRIMARY KEY ("user_id", "account_id"),
+	CONSTRAINT "FK_user" FOREIGN KEY ("user_id") REFERENCES "user_profile" ("user_id"),
+	CONSTRAINT "FK_account" FOREIGN KEY ("account_id") REFERENCES "bank_account" ("account_id")
+);
@@ -0,0 +1,18 @@
+-- Indexes for the lookups PostgresDAO does other than by primary key.
+
+-- transaction history by user or account; transaction_id is included so that
+-- readTransactionRecordPage can read a page straight off the index in order
+CREATE INDEX IF NOT EXISTS "idx_transaction_record_acting_user"
+	ON "transaction_record" ("acting_user", "transaction_id");
+CREATE INDEX IF NOT EXISTS "idx_transaction_record_source_account"
+	ON "transaction_record" ("source_account", "transaction_id");
+CREATE INDEX IF NOT EXISTS "idx_transaction_record_destination_account"
+	ON "transaction_record" ("destination_account", "transaction_id");
+
+-- the primary key only helps when looking up by user_id first
+CREATE INDEX IF NOT EXISTS "idx_account_ownership_account"
+	ON "account_ownership" ("account_id");
+
+-- log in and registration look profiles up by name, and names must be unique
+CREATE UNIQUE INDEX IF NOT EXISTS "idx_user_profile_username"
+	ON "user_profile" ("username");
@@ -0,0 +1,54 @@
+-- postgresql only
+-- A server-side transfer, so moving money and saving its transaction record is one round trip.
+-- Does the same checks, in the same order, as PostgresDAO.transferFunds, and returns the name of
+-- the TransferResult: SUCCESS, or the reason nothing was changed. -1 means 'no account', so the
+-- same function also does deposits and withdrawals. The record is only saved on SUCCESS.
+
+CREATE OR REPLACE FUNCTION transfer_funds(
+	source_id INT,
+	destination_id INT,
+	amount INT,
+	actor INT,
+	record_id INT,
+	record_time VARCHAR)
+RETURNS VARCHAR AS $$
+DECLARE
+	source_status VARCHAR(120);
+	source_funds INT;
+	destination_status VARCHAR(120);
+BEGIN
+	-- rows are locked in id order so two transfers between the same accounts can't deadlock
+	PERFORM 1 FROM bank_account WHERE account_id IN (source_id, destination_id)
+		ORDER BY account_id FOR UPDATE;
+
+	SELECT status, funds INTO source_status, source_funds
+		FROM bank_account WHERE account_id = source_id;
+	SELECT status INTO destination_status
+		FROM bank_account WHERE account_id = destination_id;
+
+	IF source_id <> -1 AND source_status IS NULL THEN
+		RETURN 'SOURCE_NOT_FOUND';
+	ELSIF destination_id <> -1 AND destination_status IS NULL THEN
+		RETURN 'DESTINATION_NOT_FOUND';
+	ELSIF source_id <> -1 AND source_status <> 'OPEN' THEN
+		RETURN 'SOURCE_NOT_OPEN';
+	ELSIF destination_id <> -1 AND destination_status <> 'OPEN' THEN
+		RETURN 'DESTINATION_NOT_OPEN';
+	ELSIF source_id <> -1 AND source_funds < amount THEN
+		RETURN 'INSUFFICIENT_FUNDS';
+	END IF;
+
+	UPDATE bank_account SET funds = funds - amount WHERE account_id = source_id;
+	UPDATE bank_account SET funds = funds + amount WHERE account_id = destination_id;
+
+	INSERT INTO transaction_record (transaction_id, time, type, acting_user,
+			source_account, destination_account, money_amount)
+		VALUES (record_id, record_time,
+			CASE WHEN source_id = -1 THEN 'FUNDS_DEPOSITED'
+				WHEN destination_id = -1 THEN 'FUNDS_WITHDRAWN'
+				ELSE 'FUNDS_TRANSFERRED' END,
+			actor, source_id, destination_id, amount);
+
+	RETURN 'SUCCESS';
+END;
+$$ LANGUAGE plpgsql;
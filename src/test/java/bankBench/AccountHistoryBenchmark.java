@@ -0,0 +1,142 @@
+/**
+ * Compares the old way of finding an account's transactions (one query with an OR across the
+ * source and destination columns) with the PostgresDAO's current one (a UNION ALL of a lookup
+ * on each column's index), on generated data.
+ *
+ * Runs against an in-memory H2 database in PostgreSQL mode standing in for a real server,
+ * with the schema from the migrations. Figures for a large real table should be checked on
+ * Postgres itself, with EXPLAIN ANALYZE.
+ *
+ * Run with: mvn -P benchmarks verify -Djmh.args="AccountHistory"
+ *
+ * @author Andrew Curry
+ */
+package bankBench;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.revature.bankDataObjects.TransactionRecord;
+
+import dao.BankDAOException;
+import dao.DatabaseUtil;
+import dao.PostgresDAO;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class AccountHistoryBenchmark {
+
+	// constants
+	private static final String STAND_IN_ADDRESS
+			= "jdbc:h2:mem:history;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+	private static final int RECORDS_PER_ACCOUNT = 20; // on average
+	private static final int FIRST_ID = 1000;
+	private static final int BATCH_SIZE = 10000;
+
+	// what readTransactionRecordByAccountId used to run
+	private static final String OR_QUERY
+			= "SELECT * FROM transaction_record WHERE destination_account = ? OR source_account = ?;";
+
+	// parameters
+	@Param({"100000", "1000000"})
+	public int records;
+
+	// instance variables
+	private PostgresDAO pdao;
+	private int accounts;
+
+	// setup
+
+	/**
+	 * Fills the transaction table with transfers between random accounts.
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws SQLException {
+
+		pdao = new PostgresDAO(STAND_IN_ADDRESS, "sa", "");
+		DatabaseUtil.resetDatabase();
+		accounts = records / RECORDS_PER_ACCOUNT;
+
+		Random rand = new Random(42);
+		try (Connection conn = DatabaseUtil.getConnection()){
+			conn.setAutoCommit(false);
+			PreparedStatement pstm = conn.prepareStatement(
+					"INSERT INTO transaction_record (transaction_id, time, type, acting_user, "
+					+ "source_account, destination_account, money_amount) "
+					+ "VALUES (?, '3:00', 'FUNDS_TRANSFERRED', 3, ?, ?, 100);");
+
+			for (int i = 0; i < records; i++) {
+				pstm.setInt(1, FIRST_ID + i);
+				pstm.setInt(2, rand.nextInt(accounts));
+				pstm.setInt(3, rand.nextInt(accounts));
+				pstm.addBatch();
+				if (i % BATCH_SIZE == BATCH_SIZE - 1) {
+					pstm.executeBatch();
+				}
+			}
+			pstm.executeBatch();
+			conn.commit();
+			conn.createStatement().execute("ANALYZE;"); // so the planner knows the table is big
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		DatabaseUtil.closePool();
+	}
+
+	// benchmarks
+
+	@Benchmark
+	public List<TransactionRecord> orQuery() throws SQLException {
+
+		int accID = ThreadLocalRandom.current().nextInt(accounts);
+		List<TransactionRecord> transactions = new ArrayList<>();
+		try (Connection conn = DatabaseUtil.getConnection()){
+			PreparedStatement pstm = conn.prepareStatement(OR_QUERY);
+			pstm.setInt(1, accID);
+			pstm.setInt(2, accID);
+			ResultSet rs = pstm.executeQuery();
+			while (rs.next()) { // same mapping the DAO does
+				TransactionRecord tr = new TransactionRecord(rs.getInt("transaction_id"));
+				tr.setTime(rs.getString("time"));
+				tr.setActingUser(rs.getInt("acting_user"));
+				tr.setSourceAccount(rs.getInt("source_account"));
+				tr.setDestinationAccount(rs.getInt("destination_account"));
+				tr.setMoneyAmount(rs.getInt("money_amount"));
+				transactions.add(tr);
+			}
+		}
+		return transactions;
+	}
+
+	@Benchmark
+	public List<TransactionRecord> unionQuery() throws BankDAOException {
+		return pdao.readTransactionRecordByAccountId(ThreadLocalRandom.current().nextInt(accounts));
+	}
+}
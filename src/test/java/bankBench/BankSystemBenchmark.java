@@ -0,0 +1,167 @@
+/**
+ * Measures a full request going through the BankSystem, from the IO handing it over to the
+ * response being displayed. Uses the MockIO so nothing is printed, and a logged in customer
+ * so the permission checks all run.
+ *
+ * Run with: mvn -P benchmarks verify -Djmh.args="BankSystem"
+ *
+ * @author Andrew Curry
+ */
+package bankBench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.UserProfile;
+import com.revature.bankDataObjects.UserProfile.UserProfileType;
+
+import BankIO.MockIO;
+import bankSystem.BankSystem;
+import bankSystem.Request;
+import bankSystem.Request.RequestType;
+import dao.BankDAO;
+import dao.BankDAOException;
+import dao.LogStructuredDAO;
+import dao.TextFileDAO;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BankSystemBenchmark {
+
+	// constants
+	private static final int ACCOUNTS = 100;
+	private static final int USER_ID = 1;
+
+	// parameters
+	@Param({"textFile", "logStructured"})
+	public String daoType;
+
+	// instance variables
+	private BankDAO dao;
+	private MockIO mio;
+	private BankSystem bank;
+	private Request depositRequest;
+	private Request viewAccountsRequest;
+
+	// setup
+
+	/**
+	 * Makes a customer owning a number of accounts, and logs them in.
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws BankDAOException, IOException {
+
+		new File(TextFileDAOBenchmark.BENCH_DIR).mkdirs();
+		if (daoType.equals("textFile")) {
+			File file = new File(TextFileDAOBenchmark.BENCH_DIR + "/banksystem.bdf");
+			file.delete();
+			file.createNewFile(); // the DAO expects the file to already be there
+			dao = new TextFileDAO(file.getPath());
+		}
+		else {
+			File dir = new File(TextFileDAOBenchmark.BENCH_DIR + "/banksystem-log");
+			deleteDirectory(dir);
+			dao = new LogStructuredDAO(dir.getPath());
+		}
+
+		List<BankData> toWrite = new ArrayList<>();
+		UserProfile up = new UserProfile(USER_ID);
+		up.setUsername("user");
+		up.setPassword("pass");
+		up.setType(UserProfileType.CUSTOMER);
+		for (int accID = 1; accID <= ACCOUNTS; accID++) {
+			BankAccount ba = new BankAccount(accID);
+			ba.setStatus(BankAccountStatus.OPEN);
+			ba.setType(BankAccountType.SINGLE);
+			ba.setFunds(1000);
+			ba.addOwner(USER_ID);
+			up.addAccount(accID);
+			toWrite.add(ba);
+		}
+		toWrite.add(up);
+		dao.write(toWrite);
+
+		mio = new MockIO();
+		bank = new BankSystem(mio, dao);
+		submit(new Request(RequestType.LOG_IN, listOf("user", "pass")));
+
+		depositRequest = new Request(RequestType.DEPOSIT, listOf("" + (ACCOUNTS / 2), "100"));
+		viewAccountsRequest = new Request(RequestType.VIEW_ACCOUNTS,
+				listOf(BankSystem.USER_PROFILE_TAG, "" + USER_ID));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws BankDAOException {
+
+		if (dao instanceof LogStructuredDAO) {
+			((LogStructuredDAO)dao).close();
+		}
+	}
+
+	// benchmarks
+
+	@Benchmark
+	public List<Object> deposit() {
+		return submit(depositRequest);
+	}
+
+	@Benchmark
+	public List<Object> viewAccounts() {
+		return submit(viewAccountsRequest);
+	}
+
+	// helper methods
+
+	private List<Object> submit(Request request) {
+
+		mio.resetCachedOutput();
+		mio.setNextRequest(request);
+		bank.testLoop();
+		return mio.getCachedOutput();
+	}
+
+	private static List<String> listOf(String... strings) {
+
+		List<String> list = new ArrayList<>();
+		for (String s : strings) {
+			list.add(s);
+		}
+		return list;
+	}
+
+	private static void deleteDirectory(File dir) {
+
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+}
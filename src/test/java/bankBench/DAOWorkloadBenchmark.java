@@ -0,0 +1,304 @@
+/**
+ * Runs the same mixed workload against each kind of BankDAO, so they can be compared on more
+ * than one operation at a time: customers registering, logging in, depositing, transferring
+ * and looking at their history, all at once from several threads. The operations do what the
+ * BankSystem does for the matching requests (money moves through a TransferEngine, IDs come
+ * from an IdAllocator), just without the IO in front of them.
+ *
+ * Runs in two modes: throughput, and sampled time, which reports p50/p99/p99.9 latencies.
+ * JMH reports both for each operation in the group as well as for the mix as a whole.
+ *
+ * Scale is the number of starting customers (-p users=...), each with ACCOUNTS_PER_USER
+ * accounts and RECORDS_PER_ACCOUNT deposits on each. The mix is the @GroupThreads counts
+ * below, in the order the methods are declared; change it with eg -tg 4,4,2,2,1 (login,
+ * history, deposit, transfer, register). Registered customers add up over a run, so the
+ * data keeps growing a little while it's measured, as it would in real use.
+ *
+ * "postgres" isn't in the default list because H2 can't take its upserts; pass
+ * -p daoType=postgres to run against the server in the config file.
+ *
+ * Run with: mvn -P benchmarks verify -Djmh.args="DAOWorkload"
+ *
+ * @author Andrew Curry
+ */
+package bankBench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.TransactionRecord.TransactionType;
+import com.revature.bankDataObjects.UserProfile;
+import com.revature.bankDataObjects.UserProfile.UserProfileType;
+
+import bankSystem.TransferEngine;
+import dao.BankDAO;
+import dao.BankDAO.IDType;
+import dao.BankDAOException;
+import dao.BinaryFileDAO;
+import dao.DatabaseUtil;
+import dao.IdAllocator;
+import dao.InMemoryBankDAO;
+import dao.LogStructuredDAO;
+import dao.PostgresDAO;
+import dao.TextFileDAO;
+import dao.TransactionRecordPager;
+import dao.TransactionalBankDAO;
+import dao.TransactionalBankDAO.TransferResult;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class DAOWorkloadBenchmark {
+
+	// constants
+	private static final int ACCOUNTS_PER_USER = 2;
+	private static final int RECORDS_PER_ACCOUNT = 5;
+	private static final int STARTING_FUNDS = 1000000;
+	private static final String USERNAME_PREFIX = "bench_";
+	private static final String PASSWORD = "pass";
+
+	// parameters
+	@Param({"inMemory", "textFile", "binaryFile", "logStructured"})
+	public String daoType;
+
+	@Param({"100", "1000"})
+	public int users;
+
+	// instance variables
+	private BankDAO dao;
+	private TransferEngine engine;
+	private IdAllocator idAllocator;
+	private int[] userIDs;
+	private int[] accountIDs;
+	private final AtomicInteger registered = new AtomicInteger();
+
+	// setup
+
+	/**
+	 * Makes the DAO and fills it with the starting customers, accounts and deposits, using
+	 * IDs reserved from the DAO so none of them get handed out again during the run.
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws BankDAOException, IOException {
+
+		dao = createDAO();
+		engine = new TransferEngine(dao);
+		idAllocator = new IdAllocator(dao);
+		registered.set(0);
+
+		int accounts = users * ACCOUNTS_PER_USER;
+		userIDs = dao.reserveIDs(IDType.USER_PROFILE, users);
+		accountIDs = dao.reserveIDs(IDType.BANK_ACCOUNT, accounts);
+		int[] recordIDs = dao.reserveIDs(IDType.TRANSACTION_RECORD, accounts * RECORDS_PER_ACCOUNT);
+
+		List<BankData> toWrite = new ArrayList<>();
+		for (int u = 0; u < users; u++) {
+			UserProfile up = new UserProfile(userIDs[u]);
+			up.setUsername(USERNAME_PREFIX + u);
+			up.setPassword(PASSWORD);
+			up.setType(UserProfileType.CUSTOMER);
+			for (int a = u * ACCOUNTS_PER_USER; a < (u + 1) * ACCOUNTS_PER_USER; a++) {
+				up.addAccount(accountIDs[a]);
+			}
+			toWrite.add(up);
+		}
+		int nextRecord = 0;
+		for (int a = 0; a < accounts; a++) {
+			BankAccount ba = new BankAccount(accountIDs[a]);
+			ba.setStatus(BankAccountStatus.OPEN);
+			ba.setType(BankAccountType.SINGLE);
+			ba.setFunds(STARTING_FUNDS);
+			ba.addOwner(userIDs[a / ACCOUNTS_PER_USER]);
+			toWrite.add(ba);
+			for (int r = 0; r < RECORDS_PER_ACCOUNT; r++) {
+				toWrite.add(makeRecord(recordIDs[nextRecord++], userIDs[a / ACCOUNTS_PER_USER],
+						TransactionalBankDAO.NO_ACCOUNT, accountIDs[a], 100));
+			}
+		}
+		dao.write(toWrite);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+
+		if (dao instanceof InMemoryBankDAO) {
+			((InMemoryBankDAO)dao).close();
+		}
+		else if (dao instanceof LogStructuredDAO) {
+			((LogStructuredDAO)dao).close();
+		}
+		else if (dao instanceof PostgresDAO) {
+			DatabaseUtil.closePool();
+		}
+	}
+
+	// benchmarks
+
+	/**
+	 * Looks a customer up by username and checks the password, same as logging in.
+	 */
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public boolean login() throws BankDAOException {
+
+		int u = ThreadLocalRandom.current().nextInt(users);
+		return PASSWORD.equals(dao.readUserProfile(USERNAME_PREFIX + u).getPassword());
+	}
+
+	/**
+	 * The first page of one account's transactions.
+	 */
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(2)
+	public int history() throws BankDAOException {
+		return TransactionRecordPager.byAccount(dao, randomAccount()).nextPage().size();
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(2)
+	public TransferResult deposit() throws BankDAOException {
+		return move(TransactionalBankDAO.NO_ACCOUNT, randomAccount(), 10);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(2)
+	public TransferResult transfer() throws BankDAOException {
+		return move(randomAccount(), randomAccount(), 1);
+	}
+
+	/**
+	 * Checks a new username is free, then saves a profile for it with a fresh ID.
+	 */
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public int register() throws BankDAOException {
+
+		String username = USERNAME_PREFIX + "new_" + registered.incrementAndGet();
+		if (!dao.isUsernameFree(username)) {
+			return -1;
+		}
+		UserProfile up = new UserProfile(idAllocator.nextUserProfileID());
+		up.setUsername(username);
+		up.setPassword(PASSWORD);
+		up.setType(UserProfileType.CUSTOMER);
+		dao.write(up);
+		return up.getId();
+	}
+
+	// helper methods
+
+	/**
+	 * Moves money and saves the record for it, the way BankSystem does: the engine saves
+	 * the record along with the balances if it can, otherwise it's written afterwards.
+	 */
+	private TransferResult move(int source, int dest, int amount) throws BankDAOException {
+
+		TransactionRecord tr = makeRecord(idAllocator.nextTransactionRecordID(),
+				userIDs[ThreadLocalRandom.current().nextInt(users)], source, dest, amount);
+		TransferResult result = engine.transfer(tr);
+		if (result == TransferResult.SUCCESS && !engine.savesRecordsWithTransfers()) {
+			dao.write(tr);
+		}
+		return result;
+	}
+
+	private int randomAccount() {
+		return accountIDs[ThreadLocalRandom.current().nextInt(accountIDs.length)];
+	}
+
+	private static TransactionRecord makeRecord(int id, int actingUser, int source, int dest, int amount) {
+
+		TransactionRecord tr = new TransactionRecord(id);
+		tr.setTime("bench");
+		if (source == TransactionalBankDAO.NO_ACCOUNT) {
+			tr.setType(TransactionType.FUNDS_DEPOSITED);
+		}
+		else {
+			tr.setType(TransactionType.FUNDS_TRANSFERRED);
+		}
+		tr.setActingUser(actingUser);
+		tr.setSourceAccount(source);
+		tr.setDestinationAccount(dest);
+		tr.setMoneyAmount(amount);
+		return tr;
+	}
+
+	private BankDAO createDAO() throws BankDAOException, IOException {
+
+		new File(TextFileDAOBenchmark.BENCH_DIR).mkdirs();
+		switch (daoType) {
+			case "inMemory":
+				return new InMemoryBankDAO();
+			case "textFile":
+				return new TextFileDAO(emptyFile("workload.bdf").getPath());
+			case "binaryFile":
+				return new BinaryFileDAO(emptyFile("workload.bdb").getPath());
+			case "logStructured":
+				File dir = new File(TextFileDAOBenchmark.BENCH_DIR + "/workload-log");
+				deleteDirectory(dir);
+				return new LogStructuredDAO(dir.getPath());
+			case "postgres":
+				PostgresDAO pdao = new PostgresDAO();
+				DatabaseUtil.resetDatabase();
+				return pdao;
+			default:
+				throw new IllegalArgumentException("Unknown daoType: " + daoType);
+		}
+	}
+
+	/**
+	 * The file DAOs expect their file to already be there.
+	 */
+	private static File emptyFile(String name) throws IOException {
+
+		File file = new File(TextFileDAOBenchmark.BENCH_DIR + "/" + name);
+		file.delete();
+		file.createNewFile();
+		return file;
+	}
+
+	private static void deleteDirectory(File dir) {
+
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+}
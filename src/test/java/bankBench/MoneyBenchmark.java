@@ -0,0 +1,53 @@
+/**
+ * Measures the conversions between money strings and cents in the CommandLineIO,
+ * which run for every amount a user types in or is shown.
+ *
+ * Run with: mvn -P benchmarks verify -Djmh.args="Money"
+ *
+ * @author Andrew Curry
+ */
+package bankBench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import BankIO.BadMoneyFormatException;
+import BankIO.CommandLineIO;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+	// parameters
+	@Param({"5", "$123.45", "1000000.01"})
+	public String moneyString;
+
+	// instance variables
+	private int cents = 1234567;
+
+	// benchmarks
+
+	@Benchmark
+	public int moneyStringToInt() throws BadMoneyFormatException {
+		return CommandLineIO.moneyStringToInt(moneyString);
+	}
+
+	@Benchmark
+	public String intToMoneyString() {
+		return CommandLineIO.intToMoneyString(cents);
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * Measures how long the PostgresDAO takes to turn result sets into BankAccounts and
+ * UserProfiles. Runs against an in-memory H2 database in PostgreSQL mode as a stand-in for
+ * a real server, so the numbers are mostly the row mapping rather than the network.
+ *
+ * Run with: mvn -P benchmarks verify -Djmh.args="PostgresDAO"
+ *
+ * @author Andrew Curry
+ */
+package bankBench;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.UserProfile;
+
+import dao.BankDAOException;
+import dao.DatabaseUtil;
+import dao.PostgresDAO;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PostgresDAOBenchmark {
+
+	// constants
+	private static final String STAND_IN_ADDRESS
+			= "jdbc:h2:mem:bench;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+	private static final int FIRST_EXTRA_ID = 100;
+
+	// parameters
+	@Param({"1000", "10000"})
+	public int accounts;
+
+	// instance variables
+	private PostgresDAO pdao;
+
+	// setup
+
+	/**
+	 * Resets the stand-in database, then adds joint accounts owned by users 3 and 4.
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws SQLException {
+
+		pdao = new PostgresDAO(STAND_IN_ADDRESS, "sa", "");
+		DatabaseUtil.resetDatabase();
+
+		try (Connection conn = DatabaseUtil.getConnection()){
+			conn.setAutoCommit(false);
+			PreparedStatement accStm = conn.prepareStatement(
+					"INSERT INTO bank_account (account_id, status, type, funds) VALUES (?, 'OPEN', 'JOINT', ?);");
+			PreparedStatement ownStm = conn.prepareStatement(
+					"INSERT INTO account_ownership (user_id, account_id) VALUES (?, ?);");
+
+			for (int accID = FIRST_EXTRA_ID; accID < FIRST_EXTRA_ID + accounts; accID++) {
+				accStm.setInt(1, accID);
+				accStm.setInt(2, accID * 10);
+				accStm.addBatch();
+
+				for (int userID = 3; userID <= 4; userID++) {
+					ownStm.setInt(1, userID);
+					ownStm.setInt(2, accID);
+					ownStm.addBatch();
+				}
+			}
+			accStm.executeBatch();
+			ownStm.executeBatch();
+			conn.commit();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		DatabaseUtil.closePool();
+	}
+
+	// benchmarks
+
+	@Benchmark
+	public List<BankAccount> readAllBankAccounts() throws BankDAOException {
+		return pdao.readAllBankAccounts();
+	}
+
+	@Benchmark
+	public List<UserProfile> readAllUserProfiles() throws BankDAOException {
+		return pdao.readAllUserProfiles();
+	}
+
+	@Benchmark
+	public BankAccount readBankAccount() throws BankDAOException {
+		return pdao.readBankAccount(FIRST_EXTRA_ID + ThreadLocalRandom.current().nextInt(accounts));
+	}
+
+	@Benchmark
+	public UserProfile readUserProfile() throws BankDAOException {
+		return pdao.readUserProfile("cust");
+	}
+}
@@ -0,0 +1,150 @@
+/**
+ * Compares the text record format (TextRecordCodec, used in .bdf files) with the binary
+ * one (BinaryRecordCodec, used in .bdb files), parsing and encoding a batch of accounts or
+ * transaction records in memory, so the numbers are the formats alone without any file I/O.
+ *
+ * Run with: mvn -P benchmarks verify -Djmh.args="RecordCodec"
+ *
+ * @author Andrew Curry
+ */
+package bankBench;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.TransactionRecord.TransactionType;
+
+import dao.BankDAOException;
+import dao.BinaryRecordCodec;
+import dao.TextRecordCodec;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class RecordCodecBenchmark {
+
+	// constants
+	private static final int BATCH_SIZE = 1000;
+
+	// parameters
+	@Param({"ACC", "TRR"})
+	public String recordType;
+
+	// instance variables
+	private List<BankData> records;
+	private List<String> textEntries;
+	private ByteBuffer binaryEntries; // all of the records back to back
+	private ByteBuffer encodeBuffer; // reused by the binary encode benchmark
+
+	// setup
+
+	@Setup(Level.Trial)
+	public void setup() throws BankDAOException {
+
+		Random rand = new Random(42);
+		records = new ArrayList<>();
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			records.add(recordType.equals("ACC") ? randomAccount(rand, 1000 + i) : randomTransaction(rand, 1000 + i));
+		}
+
+		textEntries = new ArrayList<>();
+		int size = 0;
+		for (BankData bd : records) {
+			textEntries.add(TextRecordCodec.save(bd));
+			size += BinaryRecordCodec.encodedSize(bd);
+		}
+		binaryEntries = ByteBuffer.allocate(size);
+		for (BankData bd : records) {
+			BinaryRecordCodec.encode(bd, binaryEntries);
+		}
+		binaryEntries.flip();
+		encodeBuffer = ByteBuffer.allocate(size);
+	}
+
+	// benchmarks
+
+	@Benchmark
+	public void textParse(Blackhole bh) {
+		if (recordType.equals("ACC")) {
+			for (String entry : textEntries) {
+				bh.consume(TextRecordCodec.buildAccountFromEntry(entry));
+			}
+		}
+		else {
+			for (String entry : textEntries) {
+				bh.consume(TextRecordCodec.buildTransactionRecordFromEntry(entry));
+			}
+		}
+	}
+
+	@Benchmark
+	public void binaryDecode(Blackhole bh) throws BankDAOException {
+		ByteBuffer buf = binaryEntries.duplicate();
+		while (buf.hasRemaining()) {
+			bh.consume(BinaryRecordCodec.decode(buf));
+		}
+	}
+
+	@Benchmark
+	public void textEncode(Blackhole bh) throws BankDAOException {
+		for (BankData bd : records) {
+			bh.consume(TextRecordCodec.save(bd));
+		}
+	}
+
+	@Benchmark
+	public ByteBuffer binaryEncode() throws BankDAOException {
+		encodeBuffer.clear();
+		for (BankData bd : records) {
+			BinaryRecordCodec.encode(bd, encodeBuffer);
+		}
+		return encodeBuffer;
+	}
+
+	// helper methods
+
+	private static BankAccount randomAccount(Random rand, int id) {
+		BankAccount ba = new BankAccount(id);
+		ba.setStatus(BankAccountStatus.OPEN);
+		ba.setType(BankAccountType.SINGLE);
+		ba.setFunds(rand.nextInt(10000000));
+		ba.addOwner(100 + rand.nextInt(1000));
+		return ba;
+	}
+
+	private static TransactionRecord randomTransaction(Random rand, int id) {
+		TransactionRecord tr = new TransactionRecord(id);
+		tr.setTime("2021-03-0" + (1 + rand.nextInt(9)) + "T12:34:56.789");
+		tr.setType(TransactionType.FUNDS_TRANSFERRED);
+		tr.setActingUser(100 + rand.nextInt(1000));
+		tr.setSourceAccount(rand.nextInt(5000));
+		tr.setDestinationAccount(rand.nextInt(5000));
+		tr.setMoneyAmount(rand.nextInt(100000));
+		return tr;
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Measures single-record reads and writes on the TextFileDAO as the file grows.
+ * Each trial builds a file of the given number of bank accounts under target/bench.
+ *
+ * Run with: mvn -P benchmarks verify -Djmh.args="TextFileDAO"
+ *
+ * @author Andrew Curry
+ */
+package bankBench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.revature.bankDataObjects.BankAccount;
+
+import dao.BankDAOException;
+import dao.TextFileDAO;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class TextFileDAOBenchmark {
+
+	// constants
+	static final String BENCH_DIR = "target/bench";
+
+	// parameters
+	@Param({"1000", "100000", "1000000"})
+	public int records;
+
+	@Param({"false", "true"})
+	public boolean mappedReads;
+
+	// instance variables
+	private TextFileDAO tdao;
+
+	// setup
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, BankDAOException {
+
+		new File(BENCH_DIR).mkdirs();
+		String filename = BENCH_DIR + "/textfile-" + records + "-" + mappedReads + ".bdf";
+
+		try (BufferedWriter bw = new BufferedWriter(new FileWriter(filename))) {
+			bw.write("PRF 1 user pass CST 1");
+			bw.newLine();
+			for (int accID = 1; accID <= records; accID++) {
+				bw.write("ACC " + accID + " OPN SNG " + (accID * 10) + " 1");
+				bw.newLine();
+			}
+		}
+
+		tdao = new TextFileDAO(filename, mappedReads);
+	}
+
+	// benchmarks
+
+	@Benchmark
+	public BankAccount readBankAccount() throws BankDAOException {
+		return tdao.readBankAccount(ThreadLocalRandom.current().nextInt(records) + 1);
+	}
+
+	/**
+	 * Rewrites one account in the middle of the file, which is the cost of every
+	 * deposit or withdrawal.
+	 */
+	@Benchmark
+	public void writeBankAccount() throws BankDAOException {
+
+		BankAccount ba = tdao.readBankAccount(records / 2);
+		ba.setFunds(ba.getFunds() + 1);
+		tdao.write(ba);
+	}
+}
@@ -0,0 +1,372 @@
+/**
+ * This file contains the Junit tests every BankDAO should pass: what the BankDAO interface
+ * promises, checked the same way for each implementation. Each DAO gets a small subclass that
+ * says how to make one.
+ *
+ * The tests write their own data, with IDs in the 5000s and 6000s and usernames starting
+ * with "contract_", so a DAO can start with other data in it (eg, the database's starting
+ * data) as long as none of it is in the way.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.TransactionRecord.TransactionType;
+import com.revature.bankDataObjects.UserProfile;
+import com.revature.bankDataObjects.UserProfile.UserProfileType;
+
+import dao.BankDAO;
+import dao.BankDAO.IDType;
+import dao.BankDAO.TransactionFilter;
+import dao.BankDAOException;
+import dao.TransactionRecordPager;
+
+public abstract class BankDAOContractTest {
+
+	// some helper methods/variables
+
+	protected BankDAO dao;
+
+	/**
+	 * @return a DAO that doesn't hold any of the IDs or usernames these tests use
+	 * @throws Exception
+	 */
+	protected abstract BankDAO createDAO() throws Exception;
+
+	/**
+	 * Releases whatever createDAO set up. Does nothing unless overridden.
+	 * @param dao
+	 * @throws Exception
+	 */
+	protected void closeDAO(BankDAO dao) throws Exception {
+	}
+
+	@Before
+	public void setupContract() throws Exception {
+
+		dao = createDAO();
+
+		List<BankData> toWrite = new ArrayList<>();
+		toWrite.add(makeProfile(5101, "contract_user", UserProfileType.CUSTOMER, 5444));
+		toWrite.add(makeProfile(5103, "contract_user2", UserProfileType.CUSTOMER, 5317, 5515));
+		toWrite.add(makeProfile(5999, "contract_admin", UserProfileType.ADMIN));
+		toWrite.add(makeAccount(5444, 78923, 5101));
+		toWrite.add(makeAccount(5317, 7892312, 5103));
+		toWrite.add(makeAccount(5515, 111111, 5103));
+		TransactionRecord tr = makeTransaction(5123, 5101, -1, 5444);
+		tr.setType(TransactionType.FUNDS_DEPOSITED);
+		tr.setMoneyAmount(87654);
+		toWrite.add(tr);
+		dao.write(toWrite);
+	}
+
+	@After
+	public void cleanupContract() throws Exception {
+		closeDAO(dao);
+	}
+
+	private static UserProfile makeProfile(int id, String username, UserProfileType type, int... accounts) {
+
+		UserProfile up = new UserProfile(id);
+		up.setUsername(username);
+		up.setPassword("pass");
+		up.setType(type);
+		for (int accID : accounts) {
+			up.addAccount(accID);
+		}
+		return up;
+	}
+
+	private static BankAccount makeAccount(int id, int funds, int owner) {
+
+		BankAccount ba = new BankAccount(id);
+		ba.setStatus(BankAccountStatus.OPEN);
+		ba.setType(BankAccountType.SINGLE);
+		ba.setFunds(funds);
+		ba.addOwner(owner);
+		return ba;
+	}
+
+	private static TransactionRecord makeTransaction(int id, int actingUser, int source, int dest) {
+
+		TransactionRecord tr = new TransactionRecord(id);
+		tr.setTime("6:00");
+		tr.setType(TransactionType.FUNDS_TRANSFERRED);
+		tr.setActingUser(actingUser);
+		tr.setSourceAccount(source);
+		tr.setDestinationAccount(dest);
+		tr.setMoneyAmount(10);
+		return tr;
+	}
+
+	private static List<Integer> idsOf(List<? extends BankData> data) {
+
+		List<Integer> ids = new ArrayList<>();
+		for (BankData bd : data) {
+			ids.add(bd.getId());
+		}
+		return ids;
+	}
+
+	/**
+	 * For lookups that don't promise any order.
+	 */
+	private static List<Integer> sortedIdsOf(List<? extends BankData> data) {
+
+		List<Integer> ids = idsOf(data);
+		Collections.sort(ids);
+		return ids;
+	}
+
+	// tests
+
+	@Test
+	public void testReadBankAccount() throws BankDAOException {
+
+		BankAccount ba = dao.readBankAccount(5444);
+		assertEquals(5444, ba.getId());
+		assertEquals(BankAccountStatus.OPEN, ba.getStatus());
+		assertEquals(BankAccountType.SINGLE, ba.getType());
+		assertEquals(78923, ba.getFunds());
+		assertEquals(Arrays.asList(5101), ba.getOwners());
+	}
+
+	@Test
+	public void testReadUserProfile() throws BankDAOException {
+
+		UserProfile up = dao.readUserProfile(5103);
+		assertEquals("contract_user2", up.getUsername());
+		assertEquals("pass", up.getPassword());
+		assertEquals(UserProfileType.CUSTOMER, up.getType());
+		assertEquals(2, up.getOwnedAccounts().size());
+		assertTrue(up.getOwnedAccounts().containsAll(Arrays.asList(5317, 5515)));
+
+		up = dao.readUserProfile("contract_admin");
+		assertEquals(5999, up.getId());
+		assertEquals(UserProfileType.ADMIN, up.getType());
+		assertTrue(up.getOwnedAccounts().isEmpty());
+	}
+
+	@Test
+	public void testReadTransactionRecord() throws BankDAOException {
+
+		TransactionRecord tr = dao.readTransactionRecord(5123);
+		assertEquals(5123, tr.getId());
+		assertEquals("6:00", tr.getTime());
+		assertEquals(TransactionType.FUNDS_DEPOSITED, tr.getType());
+		assertEquals(5101, tr.getActingUser());
+		assertEquals(-1, tr.getSourceAccount());
+		assertEquals(5444, tr.getDestinationAccount());
+		assertEquals(87654, tr.getMoneyAmount());
+	}
+
+	@Test
+	public void testReadsNotFound() throws BankDAOException {
+
+		BankAccount ba = dao.readBankAccount(5555);
+		assertEquals(5555, ba.getId());
+		assertEquals(BankAccountType.NONE, ba.getType());
+
+		UserProfile up = dao.readUserProfile(5777);
+		assertEquals(5777, up.getId());
+		assertEquals(UserProfileType.NONE, up.getType());
+		assertEquals(UserProfileType.NONE, dao.readUserProfile("contract_nobody").getType());
+
+		TransactionRecord tr = dao.readTransactionRecord(5777);
+		assertEquals(5777, tr.getId());
+		assertEquals(TransactionType.NONE, tr.getType());
+	}
+
+	@Test
+	public void testReadAllIncludesWhatWasWritten() throws BankDAOException {
+
+		assertTrue(idsOf(dao.readAllBankAccounts()).containsAll(Arrays.asList(5444, 5317, 5515)));
+		assertTrue(idsOf(dao.readAllUserProfiles()).containsAll(Arrays.asList(5101, 5103, 5999)));
+		assertTrue(idsOf(dao.readAllTransactionRecords()).contains(5123));
+	}
+
+	@Test
+	public void testWriteOverwrites() throws BankDAOException {
+
+		BankAccount ba = dao.readBankAccount(5317);
+		ba.setFunds(99999);
+		ba.setType(BankAccountType.JOINT);
+		ba.addOwner(5101);
+		UserProfile up = dao.readUserProfile(5101);
+		up.addAccount(5317);
+		List<BankData> toWrite = new ArrayList<>();
+		toWrite.add(up);
+		toWrite.add(ba);
+		dao.write(toWrite);
+
+		ba = dao.readBankAccount(5317);
+		assertEquals(99999, ba.getFunds());
+		assertEquals(BankAccountType.JOINT, ba.getType());
+		assertEquals(2, ba.getOwners().size());
+		assertTrue(ba.getOwners().contains(5101));
+		assertEquals(2, dao.readUserProfile(5101).getOwnedAccounts().size());
+
+		ba.removeOwner(5101);
+		ba.setStatus(BankAccountStatus.CLOSED);
+		dao.write(ba);
+		ba = dao.readBankAccount(5317);
+		assertEquals(BankAccountStatus.CLOSED, ba.getStatus());
+		assertEquals(Arrays.asList(5103), ba.getOwners());
+	}
+
+	@Test
+	public void testReadsAreCopies() throws BankDAOException {
+
+		BankAccount ba = dao.readBankAccount(5444);
+		ba.setFunds(1);
+		ba.addOwner(5103);
+		UserProfile up = dao.readUserProfile(5101);
+		up.addAccount(5515);
+
+		assertEquals(78923, dao.readBankAccount(5444).getFunds());
+		assertEquals(1, dao.readBankAccount(5444).getOwners().size());
+		assertEquals(1, dao.readUserProfile(5101).getOwnedAccounts().size());
+	}
+
+	@Test
+	public void testHighestIDs() throws BankDAOException {
+
+		assertTrue(dao.getHighestUserProfileID() >= 5999);
+		assertTrue(dao.getHighestBankAccountID() >= 5515);
+		assertTrue(dao.getHighestTransactionRecordID() >= 5123);
+
+		List<BankData> toWrite = new ArrayList<>();
+		toWrite.add(makeProfile(6500, "contract_new", UserProfileType.CUSTOMER, 6501));
+		toWrite.add(makeAccount(6501, 0, 6500));
+		toWrite.add(makeTransaction(6502, 6500, 6501, 5444));
+		dao.write(toWrite);
+
+		assertEquals(6500, dao.getHighestUserProfileID());
+		assertEquals(6501, dao.getHighestBankAccountID());
+		assertEquals(6502, dao.getHighestTransactionRecordID());
+	}
+
+	@Test
+	public void testIsUsernameFree() throws BankDAOException {
+
+		assertFalse(dao.isUsernameFree("contract_user"));
+		assertTrue(dao.isUsernameFree("contract_nobody"));
+
+		dao.write(makeProfile(6500, "contract_nobody", UserProfileType.CUSTOMER));
+		assertFalse(dao.isUsernameFree("contract_nobody"));
+		assertEquals(6500, dao.readUserProfile("contract_nobody").getId());
+	}
+
+	/**
+	 * Some DAOs keep the username a profile was first written with (the database never changes
+	 * a profile) and some take the new one, but either way the name it has now is taken and
+	 * the other one is free.
+	 */
+	@Test
+	public void testRenamedProfileFreesTheOtherName() throws BankDAOException {
+
+		dao.write(makeProfile(5999, "contract_renamed", UserProfileType.ADMIN));
+		String current = dao.readUserProfile(5999).getUsername();
+		String other = current.equals("contract_admin") ? "contract_renamed" : "contract_admin";
+
+		assertFalse(dao.isUsernameFree(current));
+		assertTrue(dao.isUsernameFree(other));
+		assertEquals(5999, dao.readUserProfile(current).getId());
+		assertEquals(UserProfileType.NONE, dao.readUserProfile(other).getType());
+	}
+
+	@Test
+	public void testTransactionHistory() throws BankDAOException {
+
+		List<BankData> toWrite = new ArrayList<>();
+		toWrite.add(makeTransaction(5200, 5103, 5317, 5515));
+		toWrite.add(makeTransaction(5201, 5103, 5515, 5515)); // same account both ways
+		toWrite.add(makeTransaction(5202, 5101, 5444, 5317));
+		dao.write(toWrite);
+
+		assertEquals(Arrays.asList(5200, 5201), sortedIdsOf(dao.readTransactionRecordByActingUserId(5103)));
+		assertEquals(Arrays.asList(5200, 5201), sortedIdsOf(dao.readTransactionRecordByAccountId(5515)));
+		assertEquals(Arrays.asList(5200, 5202), sortedIdsOf(dao.readTransactionRecordByAccountId(5317)));
+		assertEquals(Arrays.asList(5123, 5202), sortedIdsOf(dao.readTransactionRecordByAccountId(5444)));
+		assertTrue(dao.readTransactionRecordByAccountId(5555).isEmpty());
+		assertTrue(dao.readTransactionRecordByActingUserId(5999).isEmpty());
+	}
+
+	@Test
+	public void testTransactionRecordPages() throws BankDAOException {
+
+		// written out of order, ids 6001 to 6025, every third one by user 5103
+		List<BankData> toWrite = new ArrayList<>();
+		for (int id = 6025; id >= 6001; id--) {
+			boolean third = (id % 3 == 0);
+			TransactionRecord tr = makeTransaction(id, third ? 5103 : 5101, -1, third ? 5317 : 5444);
+			tr.setType(TransactionType.FUNDS_DEPOSITED);
+			toWrite.add(tr);
+		}
+		dao.write(toWrite);
+
+		TransactionRecordPager pager = new TransactionRecordPager(dao, TransactionFilter.ACCOUNT, 5444, 10);
+		List<Integer> seen = new ArrayList<>();
+		while (pager.hasNextPage()) {
+			seen.addAll(idsOf(pager.nextPage()));
+		}
+		assertEquals(18, seen.size()); // 5123, plus 17 of the new ones
+		assertEquals(5123, (int)seen.get(0));
+		for (int i = 1; i < seen.size(); i++) {
+			assertTrue(seen.get(i) > seen.get(i - 1));
+		}
+
+		List<TransactionRecord> page = dao.readTransactionRecordPage(TransactionFilter.ACTING_USER, 5103,
+				BankDAO.FIRST_PAGE, 3);
+		assertEquals(Arrays.asList(6003, 6006, 6009), idsOf(page));
+
+		page = dao.readTransactionRecordPage(TransactionFilter.ACCOUNT, 5317, 6009, 100);
+		assertEquals(Arrays.asList(6012, 6015, 6018, 6021, 6024), idsOf(page));
+
+		page = dao.readTransactionRecordPage(TransactionFilter.ALL, 0, 6020, 3);
+		assertEquals(Arrays.asList(6021, 6022, 6023), idsOf(page));
+
+		page = dao.readTransactionRecordPage(TransactionFilter.ACCOUNT, 5444, 6025, 100);
+		assertTrue(page.isEmpty());
+	}
+
+	/**
+	 * Reserved IDs aren't in use and aren't handed out twice.
+	 */
+	@Test
+	public void testReserveIDs() throws BankDAOException {
+
+		int[] first = dao.reserveIDs(IDType.BANK_ACCOUNT, 3);
+		int[] second = dao.reserveIDs(IDType.BANK_ACCOUNT, 2);
+		assertEquals(3, first.length);
+		assertEquals(2, second.length);
+		assertTrue(first[0] < first[1] && first[1] < first[2]);
+		assertTrue(second[0] > first[2]);
+		for (int accID : first) {
+			assertEquals(BankAccountType.NONE, dao.readBankAccount(accID).getType());
+		}
+
+		int[] users = dao.reserveIDs(IDType.USER_PROFILE, 1);
+		assertEquals(UserProfileType.NONE, dao.readUserProfile(users[0]).getType());
+		int[] records = dao.reserveIDs(IDType.TRANSACTION_RECORD, 1);
+		assertEquals(TransactionType.NONE, dao.readTransactionRecord(records[0]).getType());
+	}
+}
@@ -0,0 +1,207 @@
+/**
+ * This file contains Junit tests for the BankServer class. Clients connect over real
+ * sockets and type the same input a console user would. The sessions share one TextFileDAO.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import bankSystem.BankServer;
+import bankSystem.BankSystem;
+import dao.BankDAOException;
+import dao.TextFileDAO;
+
+public class BankServerTest {
+
+	// some helper methods/variables
+
+	private static final String TEST_FILENAME = "target/servertest.bdf";
+	private static final String[] FILELINES = {
+			"PRF 1 user pass CST 10", "PRF 2 user2 pass CST 10",
+			"ACC 10 OPN JNT 0 1 2"
+	};
+
+	private static final int CLIENTS = 6;
+	private static final int DEPOSITS_PER_CLIENT = 10;
+
+	// menu choices, see BankSystem for the order
+	private static final String LOG_IN_CHOICE = "1";
+	private static final String DEPOSIT_CHOICE = "3";
+	private static final String QUIT_CHOICE = "11";
+
+	private BankServer server;
+	private Thread serverThread;
+
+	@After
+	public void cleanup() throws InterruptedException {
+
+		if (server != null) {
+			server.close();
+			serverThread.join(5000);
+		}
+		new File(TEST_FILENAME).delete();
+	}
+
+	private TextFileDAO prepareDAO() throws IOException, BankDAOException {
+
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(TEST_FILENAME))) {
+			for (String line : FILELINES) {
+				writer.write(line);
+				writer.write("\n");
+			}
+		}
+		return new TextFileDAO(TEST_FILENAME);
+	}
+
+	private void startServer(TextFileDAO tdao, int maxSessions) throws IOException {
+
+		server = new BankServer(tdao, 0, maxSessions);
+		serverThread = new Thread(() -> server.serve());
+		serverThread.start();
+	}
+
+	private Socket connect() throws IOException {
+		return new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+	}
+
+	/**
+	 * Sends all of the input at once, then reads everything the server says until it hangs up.
+	 */
+	private String runClient(String input) throws IOException {
+
+		try (Socket socket = connect()) {
+			OutputStream out = socket.getOutputStream();
+			out.write(input.getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			return readAll(socket.getInputStream());
+		}
+	}
+
+	private String readAll(InputStream in) throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			bytes.write(buffer, 0, read);
+		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private String sessionInput(String username, int deposits) {
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(LOG_IN_CHOICE).append("\n").append(username).append("\npass\n");
+		for (int i = 0; i < deposits; i++) {
+			sb.append(DEPOSIT_CHOICE).append("\n10\n1\n"); // $1.00 into account 10
+		}
+		sb.append(QUIT_CHOICE).append("\n");
+		return sb.toString();
+	}
+
+	// tests
+
+	@Test
+	public void testSingleSession() throws Exception {
+
+		TextFileDAO tdao = prepareDAO();
+		startServer(tdao, 4);
+
+		String output = runClient(sessionInput("user", 1));
+
+		assertTrue(output.contains(BankSystem.START_MESSAGE));
+		assertTrue(output.contains(BankSystem.LOG_IN_SUCCESSFUL_PREFIX + "user"));
+		assertTrue(output.contains(BankSystem.DEPOSIT_SUCCESSFUL_MESSAGE));
+		assertTrue(output.contains(BankSystem.QUIT_MESSAGE));
+		assertEquals(100, tdao.readBankAccount(10).getFunds());
+	}
+
+	/**
+	 * Several users depositing into the same account at once shouldn't lose any money,
+	 * and each session should only ever see its own user logged in.
+	 */
+	@Test
+	public void testConcurrentSessions() throws Exception {
+
+		TextFileDAO tdao = prepareDAO();
+		startServer(tdao, CLIENTS);
+
+		ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+		List<Future<String>> outputs = new ArrayList<>();
+		for (int i = 0; i < CLIENTS; i++) {
+			String username = (i % 2 == 0) ? "user" : "user2";
+			outputs.add(clients.submit(() -> runClient(sessionInput(username, DEPOSITS_PER_CLIENT))));
+		}
+		clients.shutdown();
+		assertTrue(clients.awaitTermination(60, TimeUnit.SECONDS));
+
+		for (int i = 0; i < CLIENTS; i++) {
+			String output = outputs.get(i).get();
+			String other = (i % 2 == 0) ? "user2" : "user";
+			assertTrue(output.contains(BankSystem.QUIT_MESSAGE));
+			assertTrue(!output.contains(BankSystem.LOG_IN_SUCCESSFUL_PREFIX + other + "\n"));
+		}
+
+		assertEquals(100 * CLIENTS * DEPOSITS_PER_CLIENT, tdao.readBankAccount(10).getFunds());
+		assertEquals(CLIENTS * DEPOSITS_PER_CLIENT, tdao.readTransactionRecordByAccountId(10).size());
+	}
+
+	@Test
+	public void testFullServerTurnsAwayNewSessions() throws Exception {
+
+		TextFileDAO tdao = prepareDAO();
+		startServer(tdao, 1);
+
+		try (Socket first = connect()) {
+			// make sure the first session has its thread before trying the second
+			first.getInputStream().read();
+
+			String output = readAll(connect().getInputStream());
+			assertTrue(output.contains(BankServer.SERVER_BUSY_MESSAGE));
+		}
+	}
+
+	@Test
+	public void testHangingUpEndsSession() throws Exception {
+
+		TextFileDAO tdao = prepareDAO();
+		startServer(tdao, 1);
+
+		try (Socket first = connect()) {
+			first.getInputStream().read();
+		} // hang up without quitting
+
+		// the one session thread should be freed up again
+		long deadline = System.currentTimeMillis() + 5000;
+		while (server.getActiveSessionCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, server.getActiveSessionCount());
+
+		String output = runClient(sessionInput("user", 0));
+		assertTrue(output.contains(BankSystem.QUIT_MESSAGE));
+	}
+}
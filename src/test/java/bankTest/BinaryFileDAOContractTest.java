@@ -0,0 +1,30 @@
+/**
+ * Runs the BankDAO contract tests against a BinaryFileDAO, starting from an empty file.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import java.io.File;
+
+import dao.BankDAO;
+import dao.BinaryFileDAO;
+
+public class BinaryFileDAOContractTest extends BankDAOContractTest {
+
+	private static final String TEST_FILENAME = "target/contract.bdb";
+
+	@Override
+	protected BankDAO createDAO() throws Exception {
+
+		File file = new File(TEST_FILENAME);
+		file.delete();
+		file.createNewFile(); // gets its header on the first write
+		return new BinaryFileDAO(TEST_FILENAME);
+	}
+
+	@Override
+	protected void closeDAO(BankDAO dao) {
+		new File(TEST_FILENAME).delete();
+	}
+}
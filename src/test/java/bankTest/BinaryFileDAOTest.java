@@ -0,0 +1,267 @@
+/**
+ * This file contains Junit tests for the BinaryFileDAO class, along with the
+ * BinaryRecordCodec and BinaryFileConverter it is built on.
+ * 
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.TransactionRecord.TransactionType;
+import com.revature.bankDataObjects.UserProfile;
+import com.revature.bankDataObjects.UserProfile.UserProfileType;
+
+import dao.BankDAO;
+import dao.BankDAO.IDType;
+import dao.BankDAO.TransactionFilter;
+import dao.BankDAOException;
+import dao.BinaryFileConverter;
+import dao.BinaryFileDAO;
+import dao.BinaryRecordCodec;
+
+public class BinaryFileDAOTest {
+
+	// some helper methods/variables
+
+	private static final String TEXT_FILENAME = "target/binarytest.bdf";
+	private static final String BINARY_FILENAME = "target/binarytest.bdb";
+	private static final String[] FILELINES = {
+			"PRF 101 user pass CST 444", "ACC 444 OPN SNG 78923 101", "PRF 103 user2 pass CST 317 515",
+			"ACC 317 OPN SNG 7892312 103", "PRF 999 admin admin ADM", "ACC 515 OPN SNG 111111 103",
+			"TRR 123 3:00 FDP 101 -1 444 87654", "HWM TRR 150"
+	};
+
+	private BinaryFileDAO bdao;
+
+	@Before
+	public void setup() throws IOException, BankDAOException {
+
+		Files.write(Paths.get(TEXT_FILENAME), Arrays.asList(FILELINES), Charset.defaultCharset());
+		assertEquals(FILELINES.length, BinaryFileConverter.textToBinary(TEXT_FILENAME, BINARY_FILENAME));
+		bdao = new BinaryFileDAO(BINARY_FILENAME);
+	}
+
+	@After
+	public void cleanup() {
+		new File(TEXT_FILENAME).delete();
+		new File(BINARY_FILENAME).delete();
+	}
+
+	// tests
+
+	@Test
+	public void testReadsMatchTextFile() throws BankDAOException {
+
+		BankAccount ba = bdao.readBankAccount(317);
+		assertEquals(BankAccountStatus.OPEN, ba.getStatus());
+		assertEquals(BankAccountType.SINGLE, ba.getType());
+		assertEquals(7892312, ba.getFunds());
+		assertEquals(Arrays.asList(103), ba.getOwners());
+
+		UserProfile up = bdao.readUserProfile("user2");
+		assertEquals(103, up.getId());
+		assertEquals("pass", up.getPassword());
+		assertEquals(UserProfileType.CUSTOMER, up.getType());
+		assertEquals(Arrays.asList(317, 515), up.getOwnedAccounts());
+
+		TransactionRecord tr = bdao.readTransactionRecord(123);
+		assertEquals("3:00", tr.getTime());
+		assertEquals(TransactionType.FUNDS_DEPOSITED, tr.getType());
+		assertEquals(-1, tr.getSourceAccount());
+		assertEquals(87654, tr.getMoneyAmount());
+
+		assertEquals(3, bdao.readAllUserProfiles().size());
+		assertEquals(3, bdao.readAllBankAccounts().size());
+		assertEquals(BankAccountType.NONE, bdao.readBankAccount(44).getType());
+		assertEquals(44, bdao.readBankAccount(44).getId());
+		assertTrue(bdao.isUsernameFree("nobody"));
+		assertFalse(bdao.isUsernameFree("admin"));
+	}
+
+	@Test
+	public void testWriteReplacesRecords() throws BankDAOException {
+
+		BankAccount ba = bdao.readBankAccount(444);
+		ba.setFunds(1);
+		ba.addOwner(103);
+		ba.setType(BankAccountType.JOINT);
+
+		UserProfile up = new UserProfile(104);
+		up.setUsername("\u00fcn\u00efcode"); // multi-byte UTF-8
+		up.setPassword("pw");
+		up.setType(UserProfileType.EMPLOYEE);
+
+		List<BankData> toWrite = new ArrayList<>();
+		toWrite.add(ba);
+		toWrite.add(up);
+		bdao.write(toWrite);
+
+		ba = bdao.readBankAccount(444);
+		assertEquals(1, ba.getFunds());
+		assertEquals(BankAccountType.JOINT, ba.getType());
+		assertEquals(Arrays.asList(101, 103), ba.getOwners());
+		assertEquals(3, bdao.readAllBankAccounts().size()); // replaced, not added
+		assertEquals(104, bdao.readUserProfile("\u00fcn\u00efcode").getId());
+		assertEquals(999, bdao.getHighestUserProfileID());
+		assertEquals(515, bdao.getHighestBankAccountID());
+	}
+
+	@Test
+	public void testTransactionQueries() throws BankDAOException {
+
+		List<BankData> toWrite = new ArrayList<>();
+		for (int id = 10; id >= 1; id--) {
+			TransactionRecord tr = new TransactionRecord(id);
+			tr.setTime("5:00");
+			tr.setType(TransactionType.FUNDS_TRANSFERRED);
+			tr.setActingUser((id % 2 == 0) ? 103 : 101);
+			tr.setSourceAccount(317);
+			tr.setDestinationAccount((id % 2 == 0) ? 515 : 444);
+			tr.setMoneyAmount(id);
+			toWrite.add(tr);
+		}
+		bdao.write(toWrite);
+
+		assertEquals(11, bdao.readAllTransactionRecords().size());
+		assertEquals(5, bdao.readTransactionRecordByActingUserId(103).size());
+		assertEquals(6, bdao.readTransactionRecordByAccountId(444).size()); // plus 123
+		assertEquals(10, bdao.readTransactionRecordByAccountId(317).size());
+
+		List<TransactionRecord> page = bdao.readTransactionRecordPage(TransactionFilter.ACCOUNT, 515,
+				BankDAO.FIRST_PAGE, 3);
+		assertEquals(3, page.size());
+		assertEquals(2, page.get(0).getId());
+		assertEquals(6, page.get(2).getId());
+		page = bdao.readTransactionRecordPage(TransactionFilter.ALL, 0, 9, 100);
+		assertEquals(2, page.size()); // 10 and 123
+	}
+
+	@Test
+	public void testReserveIDsUsesHighWaterMark() throws BankDAOException {
+
+		assertArrayEquals(new int[] {151, 152}, bdao.reserveIDs(IDType.TRANSACTION_RECORD, 2));
+		assertArrayEquals(new int[] {1000}, bdao.reserveIDs(IDType.USER_PROFILE, 1));
+		assertArrayEquals(new int[] {153}, bdao.reserveIDs(IDType.TRANSACTION_RECORD, 1));
+		assertEquals(3, bdao.readAllUserProfiles().size()); // marks aren't data
+	}
+
+	@Test
+	public void testMarksStayInTheHeader() throws BankDAOException, IOException {
+
+		long size = Files.size(Paths.get(BINARY_FILENAME));
+		bdao.reserveIDs(IDType.BANK_ACCOUNT, 5);
+		assertEquals(size, Files.size(Paths.get(BINARY_FILENAME))); // overwritten in place
+
+		bdao.write(bdao.readBankAccount(444)); // a rewrite keeps the marks
+		assertArrayEquals(new int[] {521}, bdao.reserveIDs(IDType.BANK_ACCOUNT, 1));
+		assertArrayEquals(new int[] {151}, bdao.reserveIDs(IDType.TRANSACTION_RECORD, 1));
+		assertEquals(3, bdao.readAllBankAccounts().size());
+	}
+
+	@Test
+	public void testReadsVersionOneFiles() throws BankDAOException, IOException {
+
+		// the old layout: an 8 byte header, and the marks as records amongst the data
+		ByteBuffer account = BinaryRecordCodec.encode(bdao.readBankAccount(444));
+		ByteBuffer old = ByteBuffer.allocate(8 + account.remaining() + BinaryRecordCodec.RECORD_HEADER_SIZE + 4)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		old.putInt(BinaryRecordCodec.MAGIC).putShort((short)1).putShort((short)0);
+		old.put(account);
+		old.put(BinaryRecordCodec.KIND_HIGH_WATER_MARK).putInt(BinaryRecordCodec.KIND_BANK_ACCOUNT).putInt(4)
+				.putInt(600);
+		Files.write(Paths.get(BINARY_FILENAME), old.array());
+
+		bdao = new BinaryFileDAO(BINARY_FILENAME);
+		assertEquals(1, bdao.readAllBankAccounts().size());
+		assertArrayEquals(new int[] {601}, bdao.reserveIDs(IDType.BANK_ACCOUNT, 1)); // rewritten as version 2
+		assertArrayEquals(new int[] {602}, bdao.reserveIDs(IDType.BANK_ACCOUNT, 1));
+		assertEquals(78923, bdao.readBankAccount(444).getFunds());
+
+		ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(Paths.get(BINARY_FILENAME)));
+		int[] marks = BinaryRecordCodec.readFileHeader(header);
+		assertEquals(602, marks[BinaryRecordCodec.KIND_BANK_ACCOUNT]);
+		assertEquals(BinaryRecordCodec.NO_MARK, marks[BinaryRecordCodec.KIND_USER_PROFILE]);
+	}
+
+	@Test
+	public void testConvertBackToText() throws BankDAOException, IOException {
+
+		bdao.reserveIDs(IDType.BANK_ACCOUNT, 1);
+		BinaryFileConverter.binaryToText(BINARY_FILENAME, TEXT_FILENAME);
+
+		List<String> lines = Files.readAllLines(Paths.get(TEXT_FILENAME), Charset.defaultCharset());
+		assertEquals(FILELINES.length + 1, lines.size());
+		assertTrue(lines.containsAll(Arrays.asList(FILELINES)));
+		assertTrue(lines.contains("HWM ACC 516"));
+	}
+
+	@Test
+	public void testCodecRoundTrip() throws BankDAOException {
+
+		TransactionRecord tr = new TransactionRecord(7); // time left null
+		tr.setType(TransactionType.ACCOUNT_OWNER_REMOVED);
+		tr.setActingUser(Integer.MIN_VALUE);
+		tr.setDestinationAccount(Integer.MAX_VALUE);
+
+		ByteBuffer encoded = BinaryRecordCodec.encode(tr);
+		assertEquals(BinaryRecordCodec.encodedSize(tr), encoded.remaining());
+		assertEquals(7, BinaryRecordCodec.idOf(encoded));
+		assertEquals(Integer.MAX_VALUE, BinaryRecordCodec.transactionDestinationAccount(encoded));
+
+		TransactionRecord decoded = (TransactionRecord)BinaryRecordCodec.decode(encoded);
+		assertFalse(encoded.hasRemaining());
+		assertNull(decoded.getTime());
+		assertEquals(TransactionType.ACCOUNT_OWNER_REMOVED, decoded.getType());
+		assertEquals(Integer.MIN_VALUE, decoded.getActingUser());
+		assertEquals(-1, decoded.getSourceAccount());
+		assertEquals(-1, decoded.getMoneyAmount());
+	}
+
+	@Test
+	public void testRejectsOtherFiles() throws BankDAOException {
+
+		try {
+			new BinaryFileDAO(TEXT_FILENAME);
+			fail("a text file isn't a binary file");
+		}
+		catch (BankDAOException e) {
+			// expected
+		}
+
+		ByteBuffer truncated = BinaryRecordCodec.encode(bdao.readBankAccount(444));
+		truncated.limit(truncated.limit() - 1);
+		try {
+			BinaryRecordCodec.decode(truncated);
+			fail("a truncated record should be rejected");
+		}
+		catch (BankDAOException e) {
+			// expected
+		}
+	}
+}
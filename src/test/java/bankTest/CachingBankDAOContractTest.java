@@ -0,0 +1,35 @@
+/**
+ * Runs the BankDAO contract tests against a CachingBankDAO in front of a TextFileDAO, with
+ * caches small enough that some reads miss.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import java.io.File;
+
+import dao.BankDAO;
+import dao.CachingBankDAO;
+import dao.TextFileDAO;
+
+public class CachingBankDAOContractTest extends BankDAOContractTest {
+
+	private static final String TEST_FILENAME = "target/cachingcontract.bdf";
+
+	@Override
+	protected BankDAO createDAO() throws Exception {
+
+		File file = new File(TEST_FILENAME);
+		file.delete();
+		file.createNewFile();
+		return new CachingBankDAO(new TextFileDAO(TEST_FILENAME), 2, 2, 2);
+	}
+
+	@Override
+	protected void closeDAO(BankDAO dao) {
+
+		new File(TEST_FILENAME).delete();
+		new File(TEST_FILENAME + ".users.idx").delete();
+		new File(TEST_FILENAME + ".accounts.idx").delete();
+	}
+}
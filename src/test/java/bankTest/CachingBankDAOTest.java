@@ -0,0 +1,333 @@
+/**
+ * This file contains Junit tests for the CachingBankDAO class.
+ * A LogStructuredDAO in a scratch directory is used as the backing DAO.
+ * 
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.TransactionRecord.TransactionType;
+import com.revature.bankDataObjects.UserProfile;
+import com.revature.bankDataObjects.UserProfile.UserProfileType;
+
+import bankSystem.TransferEngine;
+import dao.BankDAOException;
+import dao.CachingBankDAO;
+import dao.LogStructuredDAO;
+import dao.TransactionalBankDAO;
+import dao.TransactionalBankDAO.TransferResult;
+
+public class CachingBankDAOTest {
+
+	// some helper methods/variables
+
+	private static final String TEST_DIRECTORY = "target/cachetest";
+
+	private LogStructuredDAO backing;
+	private CachingBankDAO cdao;
+
+	@Before
+	public void setup() throws BankDAOException {
+
+		deleteDirectory();
+		backing = new LogStructuredDAO(TEST_DIRECTORY, 1024 * 1024, false);
+
+		UserProfile up = new UserProfile(101);
+		up.setUsername("user");
+		up.setPassword("pass");
+		up.setType(UserProfileType.CUSTOMER);
+		up.addAccount(444);
+
+		BankAccount ba = new BankAccount(444);
+		ba.setStatus(BankAccountStatus.OPEN);
+		ba.setType(BankAccountType.SINGLE);
+		ba.setFunds(500);
+		ba.addOwner(101);
+
+		List<BankData> data = new ArrayList<>();
+		data.add(up);
+		data.add(ba);
+		backing.write(data);
+
+		cdao = new CachingBankDAO(backing, 2, 2, 2);
+	}
+
+	@After
+	public void cleanup() {
+
+		backing.close();
+		deleteDirectory();
+	}
+
+	private void deleteDirectory() {
+
+		File dir = new File(TEST_DIRECTORY);
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	// tests
+
+	@Test
+	public void testRepeatedReadsHitCache() throws BankDAOException {
+
+		assertEquals(500, cdao.readBankAccount(444).getFunds());
+		assertEquals(500, cdao.readBankAccount(444).getFunds());
+		assertEquals("user", cdao.readUserProfile(101).getUsername());
+		assertEquals(101, cdao.readUserProfile("user").getId());
+
+		assertEquals(2, cdao.getMissCount());
+		assertEquals(2, cdao.getHitCount());
+		assertFalse(cdao.isUsernameFree("user"));
+		assertEquals(3, cdao.getHitCount());
+	}
+
+	@Test
+	public void testReturnedObjectsAreCopies() throws BankDAOException {
+
+		BankAccount ba = cdao.readBankAccount(444);
+		ba.setFunds(0); // modified but never written
+		assertEquals(500, cdao.readBankAccount(444).getFunds());
+	}
+
+	@Test
+	public void testWriteThroughAndInvalidate() throws BankDAOException {
+
+		cdao.readUserProfile(101);
+		BankAccount ba = cdao.readBankAccount(444);
+		ba.setFunds(750);
+		ba.addOwner(102);
+		cdao.write(ba);
+
+		assertEquals(750, backing.readBankAccount(444).getFunds()); // went through
+		assertEquals(750, cdao.readBankAccount(444).getFunds());
+
+		long misses = cdao.getMissCount();
+		cdao.readUserProfile(101); // owner of a written account, so it was dropped
+		assertEquals(misses + 1, cdao.getMissCount());
+	}
+
+	@Test
+	public void testEviction() throws BankDAOException {
+
+		for (int accID = 1; accID <= 3; accID++) {
+			BankAccount ba = new BankAccount(accID);
+			ba.setStatus(BankAccountStatus.OPEN);
+			ba.setType(BankAccountType.SINGLE);
+			backing.write(ba);
+			cdao.readBankAccount(accID);
+		}
+
+		assertEquals(1, cdao.getEvictionCount());
+		cdao.readBankAccount(1); // least recently used, so it was the one dropped
+		assertEquals(4, cdao.getMissCount());
+		cdao.readBankAccount(3);
+		assertEquals(1, cdao.getHitCount());
+	}
+
+	@Test
+	public void testNotFoundIsNotCached() throws BankDAOException {
+
+		assertEquals(UserProfileType.NONE, cdao.readUserProfile(5555).getType());
+		assertTrue(cdao.isUsernameFree("newuser"));
+
+		UserProfile up = new UserProfile(5555);
+		up.setUsername("newuser");
+		up.setPassword("pass");
+		up.setType(UserProfileType.CUSTOMER);
+		cdao.write(up);
+
+		assertEquals("newuser", cdao.readUserProfile(5555).getUsername());
+		assertFalse(cdao.isUsernameFree("newuser"));
+	}
+
+	@Test
+	public void testTransactionalDAOStaysTransactional() throws BankDAOException {
+
+		backing.close();
+		TransferringDAO transferring = new TransferringDAO(TEST_DIRECTORY);
+		try {
+			new CachingBankDAO(transferring, 2, 2, 2);
+			fail("should refuse to hide transferFunds");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		CachingBankDAO wrapped = CachingBankDAO.wrap(transferring, 2, 2, 2);
+		assertTrue(wrapped instanceof TransactionalBankDAO);
+		assertSame(CachingBankDAO.class, CachingBankDAO.wrap(backing).getClass());
+
+		assertEquals(500, wrapped.readBankAccount(444).getFunds()); // now cached
+		TransferEngine engine = new TransferEngine(wrapped);
+		assertTrue(engine.savesRecordsWithTransfers());
+
+		TransactionRecord tr = new TransactionRecord(900);
+		tr.setTime("6:00");
+		tr.setType(TransactionType.FUNDS_WITHDRAWN);
+		tr.setActingUser(101);
+		tr.setSourceAccount(444);
+		tr.setDestinationAccount(TransactionalBankDAO.NO_ACCOUNT);
+		tr.setMoneyAmount(200);
+		assertEquals(TransferResult.SUCCESS, engine.transfer(tr));
+
+		assertEquals(1, transferring.transfers);
+		assertEquals(300, wrapped.readBankAccount(444).getFunds()); // not the cached 500
+		assertEquals(200, wrapped.readTransactionRecord(900).getMoneyAmount());
+		transferring.close();
+	}
+
+	/**
+	 * A read that's waiting on the backing DAO doesn't hold up other reads, and what it gets
+	 * back isn't cached if a write finished while it was waiting.
+	 */
+	@Test
+	public void testSlowReadDoesntBlockOrCacheOverAWrite() throws Exception {
+
+		HeldDAO held = new HeldDAO(TEST_DIRECTORY + "held");
+		try {
+			held.write(new ArrayList<BankData>(backing.readAllUserProfiles()));
+			held.write(new ArrayList<BankData>(backing.readAllBankAccounts()));
+			CachingBankDAO heldCache = new CachingBankDAO(held, 2, 2, 2);
+
+			Thread slowReader = new Thread(() -> {
+				try {
+					heldCache.readBankAccount(444);
+				}
+				catch (BankDAOException e) {
+					throw new RuntimeException(e);
+				}
+			});
+			held.holdNextRead = true;
+			slowReader.start();
+			assertTrue(held.readDone.await(10, TimeUnit.SECONDS)); // read the old balance, not back yet
+
+			assertEquals("user", heldCache.readUserProfile(101).getUsername());
+			BankAccount ba = heldCache.readBankAccount(444);
+			ba.setFunds(7);
+			heldCache.write(ba);
+
+			held.release.countDown();
+			slowReader.join();
+			assertEquals(7, heldCache.readBankAccount(444).getFunds());
+		}
+		finally {
+			held.release.countDown();
+			held.close();
+			File dir = new File(TEST_DIRECTORY + "held");
+			File[] files = dir.listFiles();
+			if (files != null) {
+				for (File f : files) {
+					f.delete();
+				}
+			}
+			dir.delete();
+		}
+	}
+
+	/**
+	 * Holds the next account read after it's read, until the test lets it go.
+	 */
+	private static class HeldDAO extends LogStructuredDAO {
+
+		volatile boolean holdNextRead;
+		final CountDownLatch readDone = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		HeldDAO(String directoryName) throws BankDAOException {
+			super(directoryName, 1024 * 1024, false);
+		}
+
+		@Override
+		public BankAccount readBankAccount(int accID) throws BankDAOException {
+
+			BankAccount ba = super.readBankAccount(accID);
+			if (holdNextRead) {
+				holdNextRead = false;
+				readDone.countDown();
+				try {
+					release.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return ba;
+		}
+	}
+
+	/**
+	 * Stands in for the Postgres DAO: a transactional DAO that counts its transfers.
+	 */
+	private static class TransferringDAO extends LogStructuredDAO implements TransactionalBankDAO {
+
+		int transfers;
+
+		TransferringDAO(String directoryName) throws BankDAOException {
+			super(directoryName, 1024 * 1024, false);
+		}
+
+		@Override
+		public synchronized TransferResult transferFunds(int sourceAccID, int destAccID, int moneyAmount)
+				throws BankDAOException {
+
+			transfers++;
+			List<BankData> toWrite = new ArrayList<>();
+			for (int accID : new int[] {sourceAccID, destAccID}) {
+				if (accID != NO_ACCOUNT) {
+					BankAccount ba = readBankAccount(accID);
+					ba.setFunds(ba.getFunds() + ((accID == sourceAccID) ? -moneyAmount : moneyAmount));
+					toWrite.add(ba);
+				}
+			}
+			write(toWrite);
+			return TransferResult.SUCCESS;
+		}
+
+		@Override
+		public synchronized TransferResult transferFunds(TransactionRecord record) throws BankDAOException {
+
+			TransferResult result = transferFunds(record.getSourceAccount(), record.getDestinationAccount(),
+					record.getMoneyAmount());
+			write(record);
+			return result;
+		}
+
+		@Override
+		public synchronized <E extends Exception> BankAccount updateAccount(int accID, AccountChange<E> change)
+				throws E, BankDAOException {
+
+			BankAccount ba = readBankAccount(accID);
+			List<BankData> toWrite = new ArrayList<>(change.apply(ba));
+			toWrite.add(ba);
+			write(toWrite);
+			return ba;
+		}
+	}
+}
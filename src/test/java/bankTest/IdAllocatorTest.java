@@ -0,0 +1,163 @@
+/**
+ * This file contains Junit tests for the IdAllocator class, and the reserveIDs
+ * method of each DAO it draws from.
+ * 
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+
+import dao.BankDAO.IDType;
+import dao.BankDAOException;
+import dao.DatabaseUtil;
+import dao.IdAllocator;
+import dao.LogStructuredDAO;
+import dao.PostgresDAO;
+import dao.TextFileDAO;
+
+public class IdAllocatorTest {
+
+	// some helper methods/variables
+
+	private static final String TEST_DIRECTORY = "target/idtest";
+	private static final String TEST_FILENAME = "target/idtest.bdf";
+	private static final String STAND_IN_ADDRESS
+			= "jdbc:h2:mem:ids;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+	private LogStructuredDAO ldao;
+
+	@After
+	public void cleanup() {
+
+		if (ldao != null) {
+			ldao.close();
+		}
+		File dir = new File(TEST_DIRECTORY);
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+		new File(TEST_FILENAME).delete();
+		DatabaseUtil.closePool();
+	}
+
+	private TextFileDAO prepareTextFileDAO() throws IOException, BankDAOException {
+
+		BufferedWriter writer = new BufferedWriter(new FileWriter(TEST_FILENAME));
+		writer.write("PRF 101 user pass CST 444\n");
+		writer.write("ACC 444 OPN SNG 78923 101\n");
+		writer.write("TRR 123 3:00 FDP 101 -1 444 87654\n");
+		writer.close();
+		return new TextFileDAO(TEST_FILENAME);
+	}
+
+	// tests
+
+	@Test
+	public void testIDsStartAfterExistingData() throws Exception {
+
+		IdAllocator allocator = new IdAllocator(prepareTextFileDAO(), 5);
+
+		assertEquals(102, allocator.nextUserProfileID());
+		assertEquals(103, allocator.nextUserProfileID());
+		assertEquals(445, allocator.nextBankAccountID());
+		assertEquals(124, allocator.nextTransactionRecordID());
+	}
+
+	@Test
+	public void testTextFileHighWaterMarkIsSaved() throws Exception {
+
+		TextFileDAO tdao = prepareTextFileDAO();
+		IdAllocator allocator = new IdAllocator(tdao, 5);
+		assertEquals(102, allocator.nextUserProfileID()); // reserves 102 - 106
+
+		// a new allocator (eg after a restart) doesn't reuse the reserved block
+		allocator = new IdAllocator(new TextFileDAO(TEST_FILENAME), 5);
+		assertEquals(107, allocator.nextUserProfileID());
+
+		// and the mark line doesn't get in the way of normal reads
+		assertEquals(101, tdao.getHighestUserProfileID());
+		assertEquals(1, tdao.readAllUserProfiles().size());
+	}
+
+	@Test
+	public void testBlocksRefill() throws BankDAOException {
+
+		ldao = new LogStructuredDAO(TEST_DIRECTORY, 64 * 1024, false);
+		IdAllocator allocator = new IdAllocator(ldao, 3);
+
+		for (int expected = 0; expected < 10; expected++) {
+			assertEquals(expected, allocator.nextBankAccountID());
+		}
+	}
+
+	@Test
+	public void testConcurrentIDsAreUnique() throws Exception {
+
+		ldao = new LogStructuredDAO(TEST_DIRECTORY, 64 * 1024, false);
+		final IdAllocator allocator = new IdAllocator(ldao, 7);
+		final int threads = 8;
+		final int perThread = 1000;
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<List<Integer>>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			futures.add(pool.submit(() -> {
+				List<Integer> ids = new ArrayList<>();
+				for (int i = 0; i < perThread; i++) {
+					ids.add(allocator.nextID(IDType.TRANSACTION_RECORD));
+				}
+				return ids;
+			}));
+		}
+
+		Set<Integer> seen = new HashSet<>();
+		for (Future<List<Integer>> f : futures) {
+			for (int id : f.get()) {
+				assertTrue("duplicate ID " + id, seen.add(id));
+			}
+		}
+		pool.shutdown();
+
+		assertEquals(threads * perThread, seen.size());
+		assertTrue(Collections.max(seen) < threads * perThread + threads * 7); // gaps are bounded
+	}
+
+	@Test
+	public void testDatabaseSequences() throws BankDAOException {
+
+		PostgresDAO pdao = new PostgresDAO(STAND_IN_ADDRESS, "sa", "");
+		DatabaseUtil.resetDatabase();
+
+		int highest = pdao.getHighestUserProfileID();
+		IdAllocator allocator = new IdAllocator(pdao, 4);
+		for (int i = 1; i <= 6; i++) {
+			assertEquals(highest + i, allocator.nextUserProfileID());
+		}
+
+		int[] ids = pdao.reserveIDs(IDType.BANK_ACCOUNT, 3);
+		assertEquals(3, ids.length);
+		assertEquals(pdao.getHighestBankAccountID() + 1, ids[0]);
+	}
+}
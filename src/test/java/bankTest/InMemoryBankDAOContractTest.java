@@ -0,0 +1,17 @@
+/**
+ * Runs the BankDAO contract tests against an InMemoryBankDAO with no snapshot file.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import dao.BankDAO;
+import dao.InMemoryBankDAO;
+
+public class InMemoryBankDAOContractTest extends BankDAOContractTest {
+
+	@Override
+	protected BankDAO createDAO() {
+		return new InMemoryBankDAO();
+	}
+}
@@ -0,0 +1,263 @@
+/**
+ * This file contains Junit tests for the InMemoryBankDAO class: the same reads and writes
+ * the TextFileDAO tests check, plus the indexes, copies, and snapshots.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.TransactionRecord.TransactionType;
+import com.revature.bankDataObjects.UserProfile;
+import com.revature.bankDataObjects.UserProfile.UserProfileType;
+
+import dao.BankDAO;
+import dao.BankDAO.IDType;
+import dao.BankDAO.TransactionFilter;
+import dao.BankDAOException;
+import dao.InMemoryBankDAO;
+import dao.TextFileDAO;
+import dao.TransactionRecordPager;
+
+public class InMemoryBankDAOTest {
+
+	// some helper methods/variables
+
+	private static final String TEST_FILENAME = "target/memorytest.bdf";
+	private static final String[] FILELINES = {
+			"PRF 101 user pass CST 444", "ACC 444 OPN SNG 78923 101", "PRF 103 user2 pass CST 317 515",
+			"ACC 317 OPN SNG 7892312 103", "PRF 999 admin admin ADM", "ACC 515 OPN SNG 111111 103",
+			"TRR 123 3:00 FDP 101 -1 444 87654"
+	};
+
+	private InMemoryBankDAO mdao;
+
+	@Before
+	public void setup() throws IOException, BankDAOException {
+
+		Files.write(Paths.get(TEST_FILENAME), Arrays.asList(FILELINES), Charset.defaultCharset());
+		mdao = new InMemoryBankDAO(TEST_FILENAME, 0); // only snapshots when told to
+	}
+
+	@After
+	public void cleanup() {
+
+		mdao.close();
+		new File(TEST_FILENAME).delete();
+	}
+
+	private static TransactionRecord makeTransaction(int id, int actingUser, int source, int dest) {
+
+		TransactionRecord tr = new TransactionRecord(id);
+		tr.setTime("6:00");
+		tr.setType(TransactionType.FUNDS_TRANSFERRED);
+		tr.setActingUser(actingUser);
+		tr.setSourceAccount(source);
+		tr.setDestinationAccount(dest);
+		tr.setMoneyAmount(10);
+		return tr;
+	}
+
+	// tests
+
+	@Test
+	public void testReadsWhatWasLoaded() throws BankDAOException {
+
+		BankAccount ba = mdao.readBankAccount(444);
+		assertEquals(BankAccountStatus.OPEN, ba.getStatus());
+		assertEquals(BankAccountType.SINGLE, ba.getType());
+		assertEquals(78923, ba.getFunds());
+		assertEquals(Arrays.asList(101), ba.getOwners());
+
+		UserProfile up = mdao.readUserProfile(103);
+		assertEquals("user2", up.getUsername());
+		assertEquals(UserProfileType.CUSTOMER, up.getType());
+		assertEquals(Arrays.asList(317, 515), up.getOwnedAccounts());
+
+		TransactionRecord tr = mdao.readTransactionRecord(123);
+		assertEquals("3:00", tr.getTime());
+		assertEquals(TransactionType.FUNDS_DEPOSITED, tr.getType());
+		assertEquals(87654, tr.getMoneyAmount());
+
+		assertEquals(3, mdao.readAllBankAccounts().size());
+		assertEquals(3, mdao.readAllUserProfiles().size());
+		assertEquals(1, mdao.readAllTransactionRecords().size());
+		assertEquals(999, mdao.getHighestUserProfileID());
+		assertEquals(515, mdao.getHighestBankAccountID());
+		assertEquals(123, mdao.getHighestTransactionRecordID());
+	}
+
+	@Test
+	public void testReadsNotFound() throws BankDAOException {
+
+		BankAccount ba = mdao.readBankAccount(5555);
+		assertEquals(5555, ba.getId());
+		assertEquals(BankAccountType.NONE, ba.getType());
+
+		UserProfile up = mdao.readUserProfile(7777);
+		assertEquals(7777, up.getId());
+		assertEquals(UserProfileType.NONE, up.getType());
+		assertEquals(0, mdao.readUserProfile("doesn't_exist").getId());
+
+		TransactionRecord tr = mdao.readTransactionRecord(7777);
+		assertEquals(7777, tr.getId());
+		assertEquals(TransactionType.NONE, tr.getType());
+	}
+
+	@Test
+	public void testWritesOverwriteAndStayCopies() throws BankDAOException {
+
+		BankAccount ba = mdao.readBankAccount(444);
+		ba.setFunds(99999);
+		assertEquals(78923, mdao.readBankAccount(444).getFunds()); // not until it's written
+
+		mdao.write(ba);
+		ba.setFunds(1); // and not after, either
+		assertEquals(99999, mdao.readBankAccount(444).getFunds());
+
+		UserProfile up = new UserProfile(123456);
+		up.setUsername("writeuser");
+		up.setPassword("writepass");
+		up.setType(UserProfileType.CUSTOMER);
+		up.addAccount(54321);
+		List<BankData> toWrite = new ArrayList<>();
+		toWrite.add(up);
+		toWrite.add(makeTransaction(76543, 123456, 54321, 444));
+		mdao.write(toWrite);
+
+		assertEquals(123456, mdao.readUserProfile("writeuser").getId());
+		assertFalse(mdao.isUsernameFree("writeuser"));
+		assertEquals(76543, mdao.getHighestTransactionRecordID());
+		assertEquals(2, mdao.readAllTransactionRecords().size());
+	}
+
+	@Test
+	public void testIndexesFollowWrites() throws BankDAOException {
+
+		UserProfile up = mdao.readUserProfile(101);
+		up.setUsername("renamed");
+		mdao.write(up);
+		assertTrue(mdao.isUsernameFree("user"));
+		assertEquals(UserProfileType.NONE, mdao.readUserProfile("user").getType());
+		assertEquals(101, mdao.readUserProfile("renamed").getId());
+
+		BankAccount ba = mdao.readBankAccount(515);
+		ba.removeOwner(103);
+		ba.addOwner(101);
+		mdao.write(ba);
+		assertEquals(1, mdao.readBankAccountsByOwner(103).size());
+		assertEquals(2, mdao.readBankAccountsByOwner(101).size());
+
+		List<BankData> toWrite = new ArrayList<>();
+		toWrite.add(makeTransaction(200, 103, 317, 515));
+		toWrite.add(makeTransaction(201, 103, 515, 515)); // same account both ways
+		toWrite.add(makeTransaction(202, 101, 444, 317));
+		mdao.write(toWrite);
+
+		assertEquals(2, mdao.readTransactionRecordByActingUserId(103).size());
+		assertEquals(2, mdao.readTransactionRecordByAccountId(515).size());
+		assertEquals(2, mdao.readTransactionRecordByAccountId(317).size());
+		assertEquals(2, mdao.readTransactionRecordByAccountId(444).size());
+
+		mdao.write(makeTransaction(202, 103, 515, 317)); // rewritten with different participants
+		assertEquals(3, mdao.readTransactionRecordByActingUserId(103).size());
+		assertEquals(1, mdao.readTransactionRecordByAccountId(444).size());
+	}
+
+	@Test
+	public void testReadTransactionRecordPages() throws BankDAOException {
+
+		List<BankData> toWrite = new ArrayList<>();
+		for (int id = 25; id >= 1; id--) {
+			TransactionRecord tr = makeTransaction(id, (id % 3 == 0) ? 103 : 101, -1, (id % 3 == 0) ? 317 : 444);
+			tr.setType(TransactionType.FUNDS_DEPOSITED);
+			toWrite.add(tr);
+		}
+		mdao.write(toWrite);
+
+		TransactionRecordPager pager = new TransactionRecordPager(mdao, TransactionFilter.ALL, 0, 10);
+		List<Integer> seen = new ArrayList<>();
+		while (pager.hasNextPage()) {
+			for (TransactionRecord tr : pager.nextPage()) {
+				seen.add(tr.getId());
+			}
+		}
+		assertEquals(26, seen.size());
+		for (int i = 0; i < 25; i++) {
+			assertEquals(i + 1, (int)seen.get(i));
+		}
+		assertEquals(123, (int)seen.get(25));
+
+		List<TransactionRecord> page = mdao.readTransactionRecordPage(TransactionFilter.ACTING_USER, 103,
+				BankDAO.FIRST_PAGE, 3);
+		assertEquals(3, page.size());
+		assertEquals(3, page.get(0).getId());
+		assertEquals(9, page.get(2).getId());
+
+		page = mdao.readTransactionRecordPage(TransactionFilter.ACCOUNT, 317, 9, 100);
+		assertEquals(5, page.size()); // 12, 15, 18, 21, 24
+		assertEquals(12, page.get(0).getId());
+
+		page = mdao.readTransactionRecordPage(TransactionFilter.ACCOUNT, 444, 123, 100);
+		assertTrue(page.isEmpty());
+	}
+
+	@Test
+	public void testSnapshotRoundTrip() throws BankDAOException {
+
+		BankAccount ba = mdao.readBankAccount(444);
+		ba.setFunds(5);
+		mdao.write(ba);
+		mdao.write(makeTransaction(124, 101, 444, 317));
+		assertArrayEquals(new int[] {125, 126}, mdao.reserveIDs(IDType.TRANSACTION_RECORD, 2));
+		mdao.snapshot();
+
+		InMemoryBankDAO reloaded = new InMemoryBankDAO(TEST_FILENAME, 0);
+		assertEquals(5, reloaded.readBankAccount(444).getFunds());
+		assertEquals(2, reloaded.readTransactionRecordByAccountId(444).size());
+		assertArrayEquals(new int[] {127}, reloaded.reserveIDs(IDType.TRANSACTION_RECORD, 1)); // mark came back too
+		assertEquals(3, reloaded.readAllUserProfiles().size());
+
+		// and it's a .bdf file like any other
+		TextFileDAO tdao = new TextFileDAO(TEST_FILENAME);
+		assertEquals(5, tdao.readBankAccount(444).getFunds());
+		assertEquals(2, tdao.readAllTransactionRecords().size());
+		assertArrayEquals(new int[] {127}, tdao.reserveIDs(IDType.TRANSACTION_RECORD, 1));
+	}
+
+	@Test
+	public void testUnsavedChangesOnlyReachTheFileOnSnapshotOrClose() throws BankDAOException {
+
+		mdao.write(makeTransaction(124, 101, 444, 317));
+		assertEquals(1, new InMemoryBankDAO(TEST_FILENAME, 0).readAllTransactionRecords().size());
+
+		mdao.close();
+		assertEquals(2, new InMemoryBankDAO(TEST_FILENAME, 0).readAllTransactionRecords().size());
+
+		InMemoryBankDAO empty = new InMemoryBankDAO("target/no_such_snapshot.bdf", 0);
+		assertTrue(empty.readAllUserProfiles().isEmpty());
+		assertEquals(-1, empty.getHighestBankAccountID());
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * This file contains Junit tests for the IntObjectMap class, including reads that run while
+ * the table is being grown.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import dao.IntObjectMap;
+
+public class IntObjectMapTest {
+
+	@Test
+	public void testPutGetAndReplace() {
+
+		IntObjectMap<String> map = new IntObjectMap<>();
+		assertNull(map.get(5));
+		assertNull(map.put(5, "five"));
+		assertNull(map.put(-1, "none")); // NO_ACCOUNT ends up as a key in the history indexes
+		assertEquals("five", map.put(5, "FIVE"));
+
+		assertEquals("FIVE", map.get(5));
+		assertEquals("none", map.get(-1));
+		assertTrue(map.containsKey(-1));
+		assertFalse(map.containsKey(6));
+		assertEquals(2, map.size());
+		assertEquals("made", map.computeIfAbsent(7, k -> "made"));
+		assertEquals("made", map.computeIfAbsent(7, k -> "not made"));
+	}
+
+	@Test
+	public void testGrowsAndKeepsKeyOrder() {
+
+		IntObjectMap<Integer> map = new IntObjectMap<>();
+		int[] expected = new int[1000];
+		for (int i = 0; i < 1000; i++) {
+			int key = (i * 7919) % 1000; // out of order on the way in
+			map.put(key, key * 10);
+			expected[i] = i;
+		}
+
+		assertEquals(1000, map.size());
+		assertArrayEquals(expected, map.sortedKeys());
+		for (int key = 0; key < 1000; key++) {
+			assertEquals(key * 10, (int)map.get(key));
+		}
+		assertEquals(Arrays.asList(0, 10, 20), map.valuesInKeyOrder().subList(0, 3));
+	}
+
+	@Test
+	public void testReadersSeeEverythingAlreadyWrittenWhileItGrows() throws InterruptedException {
+
+		IntObjectMap<Integer> map = new IntObjectMap<>();
+		AtomicInteger written = new AtomicInteger(-1); // the highest key put so far
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicInteger misses = new AtomicInteger();
+
+		Thread[] readers = new Thread[4];
+		for (int r = 0; r < readers.length; r++) {
+			readers[r] = new Thread(() -> {
+				while (!done.get()) {
+					int upTo = written.get();
+					for (int key = Math.max(0, upTo - 50); key <= upTo; key++) {
+						Integer value = map.get(key);
+						if (value == null || value != key) {
+							misses.incrementAndGet();
+						}
+					}
+				}
+			});
+			readers[r].start();
+		}
+
+		for (int key = 0; key < 200000; key++) {
+			map.put(key, key);
+			written.set(key);
+		}
+		done.set(true);
+		for (Thread t : readers) {
+			t.join();
+		}
+
+		assertEquals(0, misses.get());
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * This file contains Junit tests for the IntSet class, and the ownership lists that use it,
+ * including the changes tracked since an object was last marked clean.
+ * 
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.IntSet;
+import com.revature.bankDataObjects.UserProfile;
+
+public class IntSetTest {
+	
+	@Test
+	public void testKeepsAddingOrderWithoutRepeats() {
+		
+		IntSet set = new IntSet();
+		assertTrue(set.add(5));
+		assertTrue(set.add(2));
+		assertFalse(set.add(5));
+		assertTrue(set.add(9));
+		
+		assertEquals(3, set.size());
+		assertEquals(Arrays.asList(5, 2, 9), set.asList());
+		assertTrue(set.remove(2));
+		assertFalse(set.remove(2));
+		assertEquals(Arrays.asList(5, 9), set.asList());
+		assertEquals(1, set.indexOf(9));
+	}
+	
+	@Test
+	public void testLargeSetUsesHashTable() {
+		
+		IntSet set = new IntSet();
+		for (int i = 0; i < 500; i++) {
+			set.add(i * 7);
+		}
+		assertEquals(500, set.size());
+		for (int i = 0; i < 500; i++) {
+			assertTrue(set.contains(i * 7));
+			assertEquals(i, set.indexOf(i * 7));
+		}
+		assertFalse(set.contains(3));
+		
+		for (int i = 0; i < 495; i++) { // shrinks back below the hash table size
+			set.remove(i * 7);
+		}
+		assertEquals(Arrays.asList(495 * 7, 496 * 7, 497 * 7, 498 * 7, 499 * 7), set.asList());
+		assertTrue(set.contains(499 * 7));
+		assertFalse(set.contains(0));
+	}
+	
+	@Test
+	public void testListViewWritesThrough() {
+		
+		UserProfile up = new UserProfile(1);
+		List<Integer> view = up.getOwnedAccounts();
+		view.add(10);
+		view.add(10);
+		up.addAccount(20);
+		
+		assertEquals(2, view.size());
+		assertTrue(up.ownsAccount(10));
+		assertTrue(view.contains(20));
+		
+		view.remove(Integer.valueOf(10));
+		assertFalse(up.ownsAccount(10));
+		assertEquals(new ArrayList<>(Arrays.asList(20)), view); // equal to a plain list
+		
+		List<Integer> owners = new ArrayList<>(Arrays.asList(3, 4, 3));
+		BankAccount ba = new BankAccount(1);
+		ba.setOwners(owners);
+		owners.add(99); // copied, not shared
+		assertEquals(Arrays.asList(3, 4), ba.getOwners());
+		assertTrue(ba.hasOwner(4));
+		ba.removeOwner(4);
+		ba.removeOwner(4); // not an owner any more, nothing happens
+		assertFalse(ba.hasOwner(4));
+	}
+	
+	@Test
+	public void testTracksChangesSinceMarkedClean() {
+		
+		BankAccount ba = new BankAccount(1);
+		ba.addOwner(3);
+		assertFalse(ba.isTracked()); // never read or written: everything counts as changed
+		assertTrue(ba.isFundsDirty());
+		assertEquals(Arrays.asList(3), ba.getAddedOwners().asList());
+		
+		ba.addOwner(4);
+		ba.markClean();
+		assertFalse(ba.isFundsDirty() || ba.isStatusDirty() || ba.isTypeDirty());
+		ba.setFunds(50);
+		ba.removeOwner(3);
+		ba.addOwner(5);
+		assertTrue(ba.isFundsDirty());
+		assertFalse(ba.isStatusDirty());
+		assertEquals(Arrays.asList(5), ba.getAddedOwners().asList());
+		assertEquals(Arrays.asList(3), ba.getRemovedOwners().asList());
+		
+		BankAccount copy = new BankAccount(ba); // copies keep the clean state
+		assertTrue(copy.isFundsDirty());
+		assertEquals(Arrays.asList(3), copy.getRemovedOwners().asList());
+		
+		UserProfile up = new UserProfile(1);
+		up.addAccount(10);
+		up.addAccount(20);
+		up.markClean();
+		up.removeAccount(10);
+		up.addAccount(10); // back where it started
+		assertTrue(up.getAddedAccounts().isEmpty());
+		assertTrue(up.getRemovedAccounts().isEmpty());
+		
+		IntSet set = new IntSet(Arrays.asList(1, 2, 3, 4));
+		assertEquals(Arrays.asList(1, 3), set.without(new IntSet(Arrays.asList(4, 2, 9))).asList());
+	}
+}
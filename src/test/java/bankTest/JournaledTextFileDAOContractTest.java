@@ -0,0 +1,36 @@
+/**
+ * Runs the BankDAO contract tests against a journaled TextFileDAO with mapped reads, so every
+ * read also goes through the lines that are still only in the journal.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import java.io.File;
+
+import dao.BankDAO;
+import dao.TextFileDAO;
+
+public class JournaledTextFileDAOContractTest extends BankDAOContractTest {
+
+	private static final String TEST_FILENAME = "target/journalcontract.bdf";
+
+	@Override
+	protected BankDAO createDAO() throws Exception {
+
+		File file = new File(TEST_FILENAME);
+		file.delete();
+		new File(TEST_FILENAME + ".wal").delete();
+		file.createNewFile(); // the DAO expects the file to already be there
+		return new TextFileDAO(TEST_FILENAME, true, true);
+	}
+
+	@Override
+	protected void closeDAO(BankDAO dao) {
+
+		new File(TEST_FILENAME).delete();
+		new File(TEST_FILENAME + ".wal").delete();
+		new File(TEST_FILENAME + ".users.idx").delete();
+		new File(TEST_FILENAME + ".accounts.idx").delete();
+	}
+}
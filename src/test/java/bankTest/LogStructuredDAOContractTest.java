@@ -0,0 +1,43 @@
+/**
+ * Runs the BankDAO contract tests against a LogStructuredDAO, with segments small enough
+ * that the tests' writes span several of them.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import java.io.File;
+
+import dao.BankDAO;
+import dao.LogStructuredDAO;
+
+public class LogStructuredDAOContractTest extends BankDAOContractTest {
+
+	private static final String TEST_DIRECTORY = "target/contract-log";
+
+	@Override
+	protected BankDAO createDAO() throws Exception {
+
+		deleteDirectory();
+		return new LogStructuredDAO(TEST_DIRECTORY, 512, false);
+	}
+
+	@Override
+	protected void closeDAO(BankDAO dao) {
+
+		((LogStructuredDAO)dao).close();
+		deleteDirectory();
+	}
+
+	private static void deleteDirectory() {
+
+		File dir = new File(TEST_DIRECTORY);
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+}
@@ -0,0 +1,264 @@
+/**
+ * This file contains Junit tests for the LogStructuredDAO class.
+ * 
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.TransactionRecord.TransactionType;
+import com.revature.bankDataObjects.UserProfile;
+import com.revature.bankDataObjects.UserProfile.UserProfileType;
+
+import dao.BankDAO;
+import dao.BankDAO.TransactionFilter;
+import dao.BankDAOException;
+import dao.LogStructuredDAO;
+
+public class LogStructuredDAOTest {
+
+	// some helper methods/variables
+
+	private static final String TEST_DIRECTORY = "target/logtest";
+	private static final long SMALL_SEGMENT = 256; // bytes, so a few writes fill a segment
+
+	private LogStructuredDAO ldao;
+
+	@Before
+	public void setup() throws BankDAOException {
+
+		deleteDirectory();
+		ldao = new LogStructuredDAO(TEST_DIRECTORY, SMALL_SEGMENT, false);
+	}
+
+	@After
+	public void cleanup() {
+
+		ldao.close();
+		deleteDirectory();
+	}
+
+	private void deleteDirectory() {
+
+		File dir = new File(TEST_DIRECTORY);
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	private static UserProfile makeProfile(int id, String username, int... accounts) {
+
+		UserProfile up = new UserProfile(id);
+		up.setUsername(username);
+		up.setPassword("pass");
+		up.setType(UserProfileType.CUSTOMER);
+		for (int acc : accounts) {
+			up.addAccount(acc);
+		}
+		return up;
+	}
+
+	private static BankAccount makeAccount(int id, int funds, int owner) {
+
+		BankAccount ba = new BankAccount(id);
+		ba.setStatus(BankAccountStatus.OPEN);
+		ba.setType(BankAccountType.SINGLE);
+		ba.setFunds(funds);
+		ba.addOwner(owner);
+		return ba;
+	}
+
+	private static TransactionRecord makeTransaction(int id, int actingUser, int source, int dest, int amount) {
+
+		TransactionRecord tr = new TransactionRecord(id);
+		tr.setTime("3:00");
+		tr.setType(TransactionType.FUNDS_TRANSFERRED);
+		tr.setActingUser(actingUser);
+		tr.setSourceAccount(source);
+		tr.setDestinationAccount(dest);
+		tr.setMoneyAmount(amount);
+		return tr;
+	}
+
+	// tests
+
+	@Test
+	public void testReadAfterWrite() throws BankDAOException {
+
+		List<BankData> data = new ArrayList<>();
+		data.add(makeProfile(101, "user", 444));
+		data.add(makeAccount(444, 7800, 101));
+		data.add(makeTransaction(5, 101, 444, 555, 100));
+		ldao.write(data);
+
+		UserProfile up = ldao.readUserProfile(101);
+		assertEquals("user", up.getUsername());
+		assertTrue(up.getOwnedAccounts().contains(444));
+		assertEquals(101, ldao.readUserProfile("user").getId());
+
+		BankAccount ba = ldao.readBankAccount(444);
+		assertEquals(7800, ba.getFunds());
+		assertTrue(ba.getOwners().contains(101));
+
+		TransactionRecord tr = ldao.readTransactionRecord(5);
+		assertEquals(100, tr.getMoneyAmount());
+		assertEquals(1, ldao.readTransactionRecordByAccountId(555).size());
+		assertEquals(1, ldao.readTransactionRecordByActingUserId(101).size());
+
+		assertEquals(101, ldao.getHighestUserProfileID());
+		assertEquals(444, ldao.getHighestBankAccountID());
+		assertEquals(5, ldao.getHighestTransactionRecordID());
+		assertFalse(ldao.isUsernameFree("user"));
+		assertTrue(ldao.isUsernameFree("nobody"));
+	}
+
+	@Test
+	public void testNotFound() throws BankDAOException {
+
+		UserProfile up = ldao.readUserProfile(1);
+		assertEquals(1, up.getId());
+		assertEquals(UserProfileType.NONE, up.getType());
+
+		BankAccount ba = ldao.readBankAccount(2);
+		assertEquals(2, ba.getId());
+		assertEquals(BankAccountType.NONE, ba.getType());
+
+		assertEquals(UserProfileType.NONE, ldao.readUserProfile("nobody").getType());
+		assertEquals(-1, ldao.getHighestUserProfileID());
+	}
+
+	@Test
+	public void testNewestVersionWins() throws BankDAOException {
+
+		for (int funds = 0; funds < 50; funds++) {
+			ldao.write(makeAccount(444, funds, 101));
+		}
+
+		assertEquals(49, ldao.readBankAccount(444).getFunds());
+		assertEquals(1, ldao.readAllBankAccounts().size());
+		assertTrue(ldao.getSegmentCount() > 1); // small segments should have rolled over
+	}
+
+	@Test
+	public void testRecoveryReplaysLog() throws BankDAOException {
+
+		ldao.write(makeProfile(101, "user", 444));
+		for (int funds = 0; funds < 20; funds++) {
+			ldao.write(makeAccount(444, funds, 101));
+		}
+		ldao.close();
+
+		ldao = new LogStructuredDAO(TEST_DIRECTORY, SMALL_SEGMENT, false);
+		assertEquals(19, ldao.readBankAccount(444).getFunds());
+		assertEquals(101, ldao.readUserProfile("user").getId());
+		assertEquals(444, ldao.getHighestBankAccountID());
+	}
+
+	@Test
+	public void testRecoveryForgetsOldUsernames() throws BankDAOException {
+
+		ldao.write(makeProfile(101, "user", 444));
+		ldao.write(makeProfile(101, "renamed", 444));
+		assertTrue(ldao.isUsernameFree("user"));
+		ldao.close();
+
+		ldao = new LogStructuredDAO(TEST_DIRECTORY, SMALL_SEGMENT, false);
+		assertTrue(ldao.isUsernameFree("user"));
+		assertFalse(ldao.isUsernameFree("renamed"));
+	}
+
+	@Test
+	public void testRecoveryDropsTornWrite() throws BankDAOException, IOException {
+
+		ldao.write(makeAccount(444, 100, 101));
+		ldao.close();
+
+		// simulate a crash part way through an append
+		File segment = new File(TEST_DIRECTORY, "segment-1.log");
+		try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+			raf.seek(raf.length());
+			raf.writeBytes("ACC 444 OPN SNG 99");
+		}
+
+		ldao = new LogStructuredDAO(TEST_DIRECTORY, SMALL_SEGMENT, false);
+		assertEquals(100, ldao.readBankAccount(444).getFunds());
+
+		ldao.write(makeAccount(444, 200, 101)); // appends cleanly after the cut
+		ldao.close();
+		ldao = new LogStructuredDAO(TEST_DIRECTORY, SMALL_SEGMENT, false);
+		assertEquals(200, ldao.readBankAccount(444).getFunds());
+	}
+
+	@Test
+	public void testCompaction() throws BankDAOException {
+
+		ldao.write(makeProfile(101, "user", 444, 445));
+		for (int funds = 0; funds < 50; funds++) {
+			ldao.write(makeAccount(444, funds, 101));
+			ldao.write(makeAccount(445, funds * 2, 101));
+		}
+		int before = ldao.getSegmentCount();
+		assertTrue(before > 2);
+
+		ldao.compact();
+
+		assertEquals(2, ldao.getSegmentCount()); // one compacted, plus the active one
+		assertEquals(49, ldao.readBankAccount(444).getFunds());
+		assertEquals(98, ldao.readBankAccount(445).getFunds());
+		assertEquals(101, ldao.readUserProfile("user").getId());
+
+		// and the compacted log still replays correctly
+		ldao.close();
+		ldao = new LogStructuredDAO(TEST_DIRECTORY, SMALL_SEGMENT, false);
+		assertEquals(49, ldao.readBankAccount(444).getFunds());
+		assertEquals(98, ldao.readBankAccount(445).getFunds());
+		assertEquals(2, ldao.readAllBankAccounts().size());
+	}
+
+	@Test
+	public void testReadTransactionRecordPage() throws BankDAOException {
+
+		List<BankData> data = new ArrayList<>();
+		for (int id = 30; id >= 1; id--) { // written newest first
+			data.add(makeTransaction(id, (id % 2 == 0) ? 101 : 103, 444, 445, id));
+		}
+		ldao.write(data);
+
+		List<TransactionRecord> page = ldao.readTransactionRecordPage(TransactionFilter.ALL, 0,
+				BankDAO.FIRST_PAGE, 10);
+		assertEquals(10, page.size());
+		assertEquals(1, page.get(0).getId());
+		assertEquals(10, page.get(9).getId());
+
+		page = ldao.readTransactionRecordPage(TransactionFilter.ACTING_USER, 101, 10, 10);
+		assertEquals(10, page.size());
+		assertEquals(12, page.get(0).getId());
+		assertEquals(30, page.get(9).getId());
+
+		page = ldao.readTransactionRecordPage(TransactionFilter.ACCOUNT, 444, 25, 10);
+		assertEquals(5, page.size());
+		assertTrue(ldao.readTransactionRecordPage(TransactionFilter.ACCOUNT, 446, 0, 10).isEmpty());
+	}
+}
@@ -0,0 +1,315 @@
+/**
+ * Runs a plpgsql function from one of the migration scripts on H2, which can't run plpgsql
+ * itself, so the tests exercise the function as written instead of a copy of it in Java.
+ * An H2 alias points at a static method here, which hands its arguments to run().
+ *
+ * Only the plain subset the migrations use is understood: parameters and DECLAREd variables,
+ * PERFORM, SELECT ... INTO, UPDATE / INSERT / other statements, RETURN, and IF / ELSIF / ELSE
+ * chains (not nested) whose branches are single statements. Each statement runs as ordinary
+ * SQL on the caller's connection, with every variable replaced by a parameter of its declared
+ * type. Anything else fails loudly rather than being skipped.
+ *
+ * @author Andrew Curry
+ */
+package bankTest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import dao.SchemaMigrator;
+
+public class PlpgsqlStandIn {
+
+	// constants
+	private static final String MIGRATION_DIRECTORY = "/db/migration/";
+	private static final String TRANSFER_FUNDS_SCRIPT = "V3__add_transfer_funds_function.sql";
+
+	private static final Pattern FUNCTION = Pattern.compile(
+			"CREATE (?:OR REPLACE )?FUNCTION (\\w+)\\s*\\((.*?)\\)\\s*RETURNS \\w+ AS \\$\\$(.*)\\$\\$\\s*LANGUAGE plpgsql",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern BODY = Pattern.compile(
+			"^\\s*(?:DECLARE(.*?))?\\bBEGIN\\b(.*)\\bEND\\s*;?\\s*$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern SELECT_INTO = Pattern.compile(
+			"^SELECT (.*?) INTO (.*?) (FROM .*)$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern BRANCH = Pattern.compile(
+			"^(IF|ELSIF) (.*?) THEN\\s+(.*)$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	// class / static variables
+	private static final Map<String, PlpgsqlStandIn> loaded = new HashMap<>();
+
+	// instance variables
+	private final String name;
+	private final Map<String, String> parameters = new LinkedHashMap<>(); // name -> SQL type, in order
+	private final Map<String, String> variables = new LinkedHashMap<>(); // same, for DECLAREd ones
+	private final List<String> statements = new ArrayList<>();
+
+	// constructor(s)
+
+	/**
+	 * @param createFunction : a CREATE FUNCTION statement from a migration script
+	 * @throws SQLException if it isn't one this can run
+	 */
+	public PlpgsqlStandIn(String createFunction) throws SQLException {
+
+		Matcher function = FUNCTION.matcher(createFunction);
+		if (!function.find()) {
+			throw new SQLException("Not a plpgsql function: " + createFunction);
+		}
+		name = function.group(1);
+		for (String parameter : function.group(2).split(",")) {
+			addDeclaration(parameters, parameter);
+		}
+
+		Matcher body = BODY.matcher(withoutComments(function.group(3)));
+		if (!body.find()) {
+			throw new SQLException("Can't find BEGIN ... END in " + name);
+		}
+		if (body.group(1) != null) {
+			for (String declaration : body.group(1).split(";")) {
+				addDeclaration(variables, declaration);
+			}
+		}
+		for (String statement : SchemaMigrator.splitStatements(body.group(2))) {
+			statements.add(statement.replaceAll("\\s+", " "));
+		}
+	}
+
+	// static methods
+
+	/**
+	 * What an H2 alias for V3's transfer_funds points at.
+	 */
+	public static String transferFunds(Connection conn, int sourceID, int destID, int amount, int actor,
+			int recordID, String recordTime) throws SQLException {
+		return (String)load(TRANSFER_FUNDS_SCRIPT).run(conn, sourceID, destID, amount, actor, recordID, recordTime);
+	}
+
+	/**
+	 * @param script : a migration script holding one CREATE FUNCTION
+	 * @return the function, parsed
+	 * @throws SQLException if the script can't be read or parsed
+	 */
+	public static synchronized PlpgsqlStandIn load(String script) throws SQLException {
+
+		PlpgsqlStandIn function = loaded.get(script);
+		if (function == null) {
+			function = new PlpgsqlStandIn(readScript(script));
+			loaded.put(script, function);
+		}
+		return function;
+	}
+
+	// operation methods
+
+	/**
+	 * Runs the function body on the given connection.
+	 * @param conn
+	 * @param arguments : one per parameter, in order
+	 * @return whatever the function RETURNs, or null if it runs off the end
+	 * @throws SQLException if a statement fails, or isn't one this understands
+	 */
+	public Object run(Connection conn, Object... arguments) throws SQLException {
+
+		if (arguments.length != parameters.size()) {
+			throw new SQLException(name + " takes " + parameters.size() + " arguments, not " + arguments.length);
+		}
+		Map<String, Object> values = new HashMap<>();
+		int i = 0;
+		for (String parameter : parameters.keySet()) {
+			values.put(parameter, arguments[i++]);
+		}
+		for (String variable : variables.keySet()) {
+			values.put(variable, null);
+		}
+
+		boolean inIf = false;
+		boolean branchTaken = false;
+		for (String statement : statements) {
+			String upper = statement.toUpperCase();
+			String toRun = statement;
+
+			if (upper.startsWith("IF ") || upper.startsWith("ELSIF ")) {
+				Matcher branch = BRANCH.matcher(statement);
+				if (!branch.find() || (upper.startsWith("IF ") == inIf)) {
+					throw new SQLException("Can't follow this IF in " + name + ": " + statement);
+				}
+				inIf = true;
+				if (branchTaken || !isTrue(conn, branch.group(2), values)) {
+					continue;
+				}
+				branchTaken = true;
+				toRun = branch.group(3);
+			}
+			else if (upper.startsWith("ELSE ")) {
+				if (!inIf || branchTaken) {
+					continue;
+				}
+				branchTaken = true;
+				toRun = statement.substring("ELSE ".length());
+			}
+			else if (upper.equals("END IF")) {
+				inIf = false;
+				branchTaken = false;
+				continue;
+			}
+			else if (inIf) {
+				throw new SQLException("Only one statement per branch in " + name + ": " + statement);
+			}
+
+			Object[] returned = runStatement(conn, toRun, values);
+			if (returned != null) {
+				return returned[0];
+			}
+		}
+		return null;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<String> getParameterNames() {
+		return new ArrayList<>(parameters.keySet());
+	}
+
+	// helper methods
+
+	/**
+	 * Runs one statement that isn't part of an IF.
+	 * @return the returned value, wrapped so a null can be told apart from not returning
+	 */
+	private Object[] runStatement(Connection conn, String statement, Map<String, Object> values)
+			throws SQLException {
+
+		String upper = statement.toUpperCase();
+		if (upper.startsWith("RETURN ")) {
+			return new Object[] {queryOne(conn, "SELECT " + statement.substring("RETURN ".length()), values)};
+		}
+		if (upper.startsWith("PERFORM ")) {
+			query(conn, "SELECT " + statement.substring("PERFORM ".length()), values).close();
+			return null;
+		}
+
+		Matcher selectInto = SELECT_INTO.matcher(statement);
+		if (selectInto.find()) {
+			String[] targets = selectInto.group(2).split(",");
+			try (ResultSet rs = query(conn, "SELECT " + selectInto.group(1) + " " + selectInto.group(3), values)) {
+				boolean found = rs.next(); // no row sets them all to NULL, same as plpgsql
+				for (int i = 0; i < targets.length; i++) {
+					String target = targets[i].trim().toLowerCase();
+					if (!variables.containsKey(target) && !parameters.containsKey(target)) {
+						throw new SQLException("SELECT INTO an undeclared variable in " + name + ": " + target);
+					}
+					values.put(target, found ? rs.getObject(i + 1) : null);
+				}
+			}
+			return null;
+		}
+
+		prepare(conn, statement, values).execute();
+		return null;
+	}
+
+	private boolean isTrue(Connection conn, String condition, Map<String, Object> values) throws SQLException {
+		return Boolean.TRUE.equals(queryOne(conn, "SELECT CASE WHEN " + condition + " THEN TRUE ELSE FALSE END",
+				values));
+	}
+
+	private Object queryOne(Connection conn, String sql, Map<String, Object> values) throws SQLException {
+
+		try (ResultSet rs = query(conn, sql, values)) {
+			return rs.next() ? rs.getObject(1) : null;
+		}
+	}
+
+	private ResultSet query(Connection conn, String sql, Map<String, Object> values) throws SQLException {
+		return prepare(conn, sql, values).executeQuery();
+	}
+
+	/**
+	 * Replaces each variable outside of quotes with a typed parameter, and binds its value.
+	 */
+	private PreparedStatement prepare(Connection conn, String sql, Map<String, Object> values)
+			throws SQLException {
+
+		StringBuilder rewritten = new StringBuilder();
+		List<Object> bound = new ArrayList<>();
+		Matcher word = Pattern.compile("'(?:[^']|'')*'|\\b[A-Za-z_]\\w*\\b").matcher(sql);
+		int last = 0;
+		while (word.find()) {
+			String token = word.group();
+			String type = typeOf(token.toLowerCase());
+			rewritten.append(sql, last, word.start());
+			if (type != null && !token.startsWith("'")) {
+				rewritten.append("CAST(? AS ").append(type).append(")");
+				bound.add(values.get(token.toLowerCase()));
+			}
+			else {
+				rewritten.append(token);
+			}
+			last = word.end();
+		}
+		rewritten.append(sql.substring(last));
+
+		PreparedStatement pstm = conn.prepareStatement(rewritten.toString());
+		for (int i = 0; i < bound.size(); i++) {
+			pstm.setObject(i + 1, bound.get(i));
+		}
+		return pstm;
+	}
+
+	private String typeOf(String identifier) {
+		return parameters.containsKey(identifier) ? parameters.get(identifier) : variables.get(identifier);
+	}
+
+	private static void addDeclaration(Map<String, String> declarations, String declaration) throws SQLException {
+
+		String trimmed = declaration.trim();
+		if (trimmed.isEmpty()) {
+			return;
+		}
+		String[] parts = trimmed.split("\\s+", 2);
+		if (parts.length != 2) {
+			throw new SQLException("Can't read declaration: " + trimmed);
+		}
+		declarations.put(parts[0].toLowerCase(), parts[1]);
+	}
+
+	private static String withoutComments(String body) {
+		return body.replaceAll("--[^\\n]*", "");
+	}
+
+	private static String readScript(String script) throws SQLException {
+
+		InputStream in = PlpgsqlStandIn.class.getResourceAsStream(MIGRATION_DIRECTORY + script);
+		if (in == null) {
+			throw new SQLException("Missing migration script: " + script);
+		}
+
+		StringBuilder sb = new StringBuilder();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				sb.append(line).append('\n');
+			}
+		}
+		catch (IOException e) {
+			throw new SQLException("Could not read migration script " + script + ": " + e.getMessage());
+		}
+		return sb.toString();
+	}
+}
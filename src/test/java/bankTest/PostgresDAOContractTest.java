@@ -0,0 +1,50 @@
+/**
+ * Runs the BankDAO contract tests against a PostgresDAO, using an in-memory H2 database in
+ * PostgreSQL mode as a stand-in for a real server. H2 doesn't take Postgres' ON CONFLICT
+ * clauses, so connections go through the round trip tests' driver, which turns them into
+ * MERGEs that do the same thing.
+ * The database's starting data stays in; none of it uses the contract's IDs.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+import dao.BankDAO;
+import dao.DatabaseUtil;
+import dao.PostgresDAO;
+
+public class PostgresDAOContractTest extends BankDAOContractTest {
+
+	private static final String STAND_IN_ADDRESS
+			= "jdbc:counting:h2:mem:contract;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+	private static TestPostgresDAORoundTrips.CountingDriver driver;
+
+	@BeforeClass
+	public static void registerDriver() throws SQLException {
+
+		driver = new TestPostgresDAORoundTrips.CountingDriver();
+		DriverManager.registerDriver(driver);
+	}
+
+	@AfterClass
+	public static void deregisterDriver() throws SQLException {
+
+		DatabaseUtil.closePool();
+		DriverManager.deregisterDriver(driver);
+	}
+
+	@Override
+	protected BankDAO createDAO() {
+
+		PostgresDAO pdao = new PostgresDAO(STAND_IN_ADDRESS, "sa", "");
+		DatabaseUtil.resetDatabase();
+		return pdao;
+	}
+}
@@ -0,0 +1,158 @@
+/**
+ * This file contains Junit tests for the SchemaMigrator class, run against an in-memory H2
+ * database in PostgreSQL mode standing in for a real server.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dao.SchemaMigrator;
+
+public class SchemaMigratorTest {
+
+	// some helper methods/variables
+
+	private static final String STAND_IN_ADDRESS
+			= "jdbc:h2:mem:migrations;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+
+	private Connection conn; // the database lives as long as this is open
+
+	@Before
+	public void setup() throws SQLException {
+		conn = DriverManager.getConnection(STAND_IN_ADDRESS, "sa", "");
+	}
+
+	@After
+	public void cleanup() throws SQLException {
+		conn.close();
+	}
+
+	private boolean indexExists(String name) throws SQLException {
+
+		PreparedStatement pstm = conn.prepareStatement(
+				"SELECT COUNT(*) AS found FROM information_schema.indexes WHERE index_name = ?;");
+		pstm.setString(1, name);
+		ResultSet rs = pstm.executeQuery();
+		return rs.next() && rs.getInt("found") > 0;
+	}
+
+	private int countVersionRows() throws SQLException {
+
+		ResultSet rs = conn.createStatement().executeQuery(
+				"SELECT COUNT(*) AS found FROM " + SchemaMigrator.SCHEMA_VERSION_TABLE + ";");
+		rs.next();
+		return rs.getInt("found");
+	}
+
+	// tests
+
+	@Test
+	public void testMigrateFreshDatabase() throws SQLException {
+
+		assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.migrate(conn));
+		assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.getCurrentVersion(conn));
+		assertEquals(SchemaMigrator.getLatestVersion(), countVersionRows());
+
+		assertTrue(indexExists("idx_transaction_record_acting_user"));
+		assertTrue(indexExists("idx_transaction_record_source_account"));
+		assertTrue(indexExists("idx_transaction_record_destination_account"));
+		assertTrue(indexExists("idx_account_ownership_account"));
+		assertTrue(indexExists("idx_user_profile_username"));
+		assertTrue(conn.getAutoCommit());
+	}
+
+	@Test
+	public void testMigrateIsIdempotent() throws SQLException {
+
+		SchemaMigrator.migrate(conn);
+		conn.createStatement().execute(
+				"INSERT INTO user_profile (user_id, username, password, type) VALUES (1, 'a', 'b', 'ADMIN');");
+
+		assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.migrate(conn));
+		assertEquals(SchemaMigrator.getLatestVersion(), countVersionRows());
+
+		ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) AS found FROM user_profile;");
+		rs.next();
+		assertEquals(1, rs.getInt("found")); // data untouched
+	}
+
+	/**
+	 * A database made before there were migrations already has the tables, but no indexes.
+	 */
+	@Test
+	public void testMigrateExistingTables() throws SQLException {
+
+		Statement stm = conn.createStatement();
+		stm.execute("CREATE TABLE user_profile (user_id INT PRIMARY KEY, username VARCHAR(120) NOT NULL, "
+				+ "password VARCHAR(120) NOT NULL, type VARCHAR(120) NOT NULL);");
+		stm.execute("INSERT INTO user_profile VALUES (1, 'admin', 'admin', 'ADMIN');");
+
+		SchemaMigrator.migrate(conn);
+
+		assertTrue(indexExists("idx_user_profile_username"));
+		try {
+			stm.execute("INSERT INTO user_profile VALUES (2, 'admin', 'other', 'CUSTOMER');");
+			fail("duplicate username should be rejected");
+		}
+		catch (SQLException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * H2 can't run the plpgsql transfer function, so it records that version without running it.
+	 */
+	@Test
+	public void testPostgresOnlyScriptIsRecordedButSkipped() throws SQLException {
+
+		SchemaMigrator.migrate(conn);
+		assertEquals(SchemaMigrator.getLatestVersion(), countVersionRows());
+
+		ResultSet rs = conn.createStatement().executeQuery(
+				"SELECT COUNT(*) AS found FROM information_schema.routines WHERE routine_name = 'transfer_funds';");
+		rs.next();
+		assertEquals(0, rs.getInt("found"));
+	}
+
+	@Test
+	public void testSplitStatements() {
+
+		String script = "-- a comment; with a semicolon\n"
+				+ "CREATE TABLE a (x INT);\n"
+				+ "INSERT INTO a VALUES ('it''s; fine');\n"
+				+ "/* block; comment */\n"
+				+ "CREATE FUNCTION f() RETURNS INT AS $$\n"
+				+ "BEGIN\n"
+				+ "  RETURN 1;\n"
+				+ "END;\n"
+				+ "$$ LANGUAGE plpgsql;\n"
+				+ "CREATE FUNCTION g() RETURNS INT AS $body$ SELECT 1; $body$ LANGUAGE sql;\n"
+				+ "SELECT $1;\n"
+				+ "-- trailing comment only\n";
+
+		List<String> statements = SchemaMigrator.splitStatements(script);
+
+		assertEquals(5, statements.size());
+		assertTrue(statements.get(0).endsWith("CREATE TABLE a (x INT)"));
+		assertEquals("INSERT INTO a VALUES ('it''s; fine')", statements.get(1));
+		assertTrue(statements.get(2).contains("RETURN 1;\nEND;\n$$ LANGUAGE plpgsql"));
+		assertTrue(statements.get(3).contains("$body$ SELECT 1; $body$"));
+		assertEquals("SELECT $1", statements.get(4));
+	}
+}
@@ -0,0 +1,798 @@
+/**
+ * This class checks how many statements the PostgresDAO sends to the database for its reads
+ * and writes.
+ * It runs against an in-memory H2 database in PostgreSQL mode as a stand-in for a real server,
+ * reached through a small wrapper driver that counts every statement execution (and turns
+ * Postgres' ON CONFLICT clauses into something H2 understands).
+ *
+ * @author Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.TransactionRecord.TransactionType;
+import com.revature.bankDataObjects.UserProfile;
+import com.revature.bankDataObjects.UserProfile.UserProfileType;
+
+import dao.BankDAO.TransactionFilter;
+import dao.BankDAOException;
+import dao.DatabaseUtil;
+import dao.PostgresDAO;
+import dao.TransactionRecordPager;
+import dao.TransactionalBankDAO;
+import dao.TransactionalBankDAO.TransferResult;
+import dao.UsernameTakenException;
+
+public class TestPostgresDAORoundTrips {
+
+	// class variables / constants
+	private static final String STAND_IN_ADDRESS
+			= "jdbc:counting:h2:mem:roundtrips;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+	private static final int EXTRA_ACCOUNTS = 200;
+	private static final int FIRST_EXTRA_ID = 100;
+
+	private static AtomicInteger roundTrips = new AtomicInteger();
+	private static CountingDriver driver;
+
+	// instance variables ----------------------------------------------------------
+	private PostgresDAO pdao;
+
+	// junit util methods ----------------------------------------------------------
+
+	@BeforeClass
+	public static void registerDriver() throws SQLException {
+
+		driver = new CountingDriver();
+		DriverManager.registerDriver(driver);
+	}
+
+	@AfterClass
+	public static void deregisterDriver() throws SQLException {
+
+		DatabaseUtil.closePool();
+		DriverManager.deregisterDriver(driver);
+	}
+
+	/**
+	 * Resets the stand-in database, then adds a batch of extra joint accounts
+	 * owned by users 3 and 4 so that per-row lookups would be obvious.
+	 */
+	@Before
+	public void setupDatabase() throws SQLException {
+
+		pdao = new PostgresDAO(STAND_IN_ADDRESS, "sa", "");
+		DatabaseUtil.resetDatabase();
+
+		try (Connection conn = DatabaseUtil.getConnection()){
+			PreparedStatement accStm = conn.prepareStatement(
+					"INSERT INTO bank_account (account_id, status, type, funds) VALUES (?, 'OPEN', 'JOINT', ?);");
+			PreparedStatement ownStm = conn.prepareStatement(
+					"INSERT INTO account_ownership (user_id, account_id) VALUES (?, ?);");
+
+			for (int accID = FIRST_EXTRA_ID; accID < FIRST_EXTRA_ID + EXTRA_ACCOUNTS; accID++) {
+				accStm.setInt(1, accID);
+				accStm.setInt(2, accID * 10);
+				accStm.execute();
+
+				ownStm.setInt(1, 3);
+				ownStm.setInt(2, accID);
+				ownStm.execute();
+				ownStm.setInt(1, 4);
+				ownStm.setInt(2, accID);
+				ownStm.execute();
+			}
+		}
+
+		roundTrips.set(0);
+	}
+
+	// test methods ----------------------------------------------------------------
+
+	@Test
+	public void testReadAllBankAccountsIsOneRoundTrip() throws BankDAOException {
+
+		List<BankAccount> accounts = pdao.readAllBankAccounts();
+
+		assertEquals(1, roundTrips.get());
+		assertEquals(2 + EXTRA_ACCOUNTS, accounts.size());
+
+		BankAccount ba = accounts.get(0);
+		assertEquals(1, ba.getId());
+		assertEquals(1, ba.getOwners().size());
+		assertTrue(3 == ba.getOwners().get(0));
+
+		ba = accounts.get(2); // first extra account
+		assertEquals(FIRST_EXTRA_ID, ba.getId());
+		assertEquals(FIRST_EXTRA_ID * 10, ba.getFunds());
+		assertEquals(2, ba.getOwners().size());
+		assertTrue(ba.getOwners().contains(3));
+		assertTrue(ba.getOwners().contains(4));
+	}
+
+	@Test
+	public void testReadAllUserProfilesIsOneRoundTrip() throws BankDAOException {
+
+		List<UserProfile> users = pdao.readAllUserProfiles();
+
+		assertEquals(1, roundTrips.get());
+		assertEquals(4, users.size());
+
+		UserProfile admin = users.get(0);
+		assertEquals(1, admin.getId());
+		assertTrue(admin.getOwnedAccounts().isEmpty());
+
+		UserProfile cust = users.get(2);
+		assertEquals(3, cust.getId());
+		assertEquals(1 + EXTRA_ACCOUNTS, cust.getOwnedAccounts().size());
+	}
+
+	@Test
+	public void testSingleReadsAreOneRoundTrip() throws BankDAOException {
+
+		BankAccount ba = pdao.readBankAccount(FIRST_EXTRA_ID);
+		assertEquals(1, roundTrips.get());
+		assertEquals(2, ba.getOwners().size());
+
+		UserProfile up = pdao.readUserProfile("cust2");
+		assertEquals(2, roundTrips.get());
+		assertEquals(4, up.getId());
+		assertEquals(1 + EXTRA_ACCOUNTS, up.getOwnedAccounts().size());
+
+		up = pdao.readUserProfile(1001); // not found
+		assertEquals(3, roundTrips.get());
+		assertEquals(1001, up.getId());
+		assertEquals(UserProfileType.NONE, up.getType());
+	}
+
+	@Test
+	public void testListWriteIsBatched() throws BankDAOException {
+
+		final int newUsers = 50;
+		final int newRecords = 1000;
+		List<BankData> toWrite = new ArrayList<>();
+
+		for (int i = 0; i < newUsers; i++) {
+			UserProfile up = new UserProfile(1000 + i);
+			up.setUsername("bulk" + i);
+			up.setPassword("pass");
+			up.setType(UserProfileType.CUSTOMER);
+			up.addAccount(1);
+			toWrite.add(up);
+		}
+		for (int i = 0; i < newRecords; i++) {
+			TransactionRecord tr = new TransactionRecord(1000 + i);
+			tr.setTime("3:00");
+			tr.setType(TransactionType.FUNDS_DEPOSITED);
+			tr.setActingUser(1000 + (i % newUsers));
+			tr.setDestinationAccount(1);
+			tr.setMoneyAmount(i);
+			toWrite.add(tr);
+		}
+
+		pdao.write(toWrite);
+
+		// profiles, ownership delete, ownership insert, transactions
+		assertEquals(4, roundTrips.get());
+		assertEquals(4 + newUsers, pdao.readAllUserProfiles().size());
+		assertEquals(newRecords, pdao.readTransactionRecordByActingUserId(1000).size() * newUsers);
+		assertTrue(pdao.readUserProfile("bulk7").getOwnedAccounts().contains(1));
+	}
+
+	@Test
+	public void testTransactionPagesAreOneRoundTripEach() throws BankDAOException {
+
+		List<BankData> toWrite = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			TransactionRecord tr = new TransactionRecord(1000 + i);
+			tr.setTime("3:00");
+			tr.setType(TransactionType.FUNDS_DEPOSITED);
+			tr.setActingUser(3);
+			tr.setDestinationAccount(FIRST_EXTRA_ID + (i % 2));
+			tr.setMoneyAmount(i);
+			toWrite.add(tr);
+		}
+		pdao.write(toWrite);
+		roundTrips.set(0);
+
+		TransactionRecordPager pager = new TransactionRecordPager(pdao, TransactionFilter.ACCOUNT,
+				FIRST_EXTRA_ID, 5);
+		int found = 0;
+		int lastID = 0;
+		while (pager.hasNextPage()) {
+			for (TransactionRecord tr : pager.nextPage()) {
+				assertTrue(tr.getId() > lastID);
+				assertEquals(FIRST_EXTRA_ID, tr.getDestinationAccount());
+				lastID = tr.getId();
+				found++;
+			}
+		}
+
+		assertEquals(13, found);
+		assertEquals(3, roundTrips.get()); // 5, 5, then a short page of 3
+		
+		List<TransactionRecord> page = pdao.readTransactionRecordPage(TransactionFilter.ACTING_USER, 3,
+				1010, 100);
+		assertEquals(14, page.size());
+		assertEquals(1011, page.get(0).getId());
+	}
+
+	@Test
+	public void testReadByAccountFindsEachRecordOnce() throws BankDAOException {
+
+		List<BankData> toWrite = new ArrayList<>();
+		int[][] accounts = { // source, destination
+				{-1, FIRST_EXTRA_ID}, {FIRST_EXTRA_ID, 1}, {FIRST_EXTRA_ID, FIRST_EXTRA_ID},
+				{1, FIRST_EXTRA_ID}, {FIRST_EXTRA_ID, -1}, {1, 2}
+		};
+		for (int i = 0; i < accounts.length; i++) {
+			TransactionRecord tr = new TransactionRecord(2000 + i);
+			tr.setTime("3:00");
+			tr.setType(TransactionType.FUNDS_TRANSFERRED);
+			tr.setActingUser(3);
+			tr.setSourceAccount(accounts[i][0]);
+			tr.setDestinationAccount(accounts[i][1]);
+			tr.setMoneyAmount(i);
+			toWrite.add(tr);
+		}
+		pdao.write(toWrite);
+		roundTrips.set(0);
+
+		List<TransactionRecord> found = pdao.readTransactionRecordByAccountId(FIRST_EXTRA_ID);
+		assertEquals(1, roundTrips.get());
+		assertEquals(5, found.size());
+		for (int i = 0; i < found.size(); i++) {
+			assertEquals(2000 + i, found.get(i).getId()); // in ID order, same-account one only once
+		}
+
+		List<TransactionRecord> page = pdao.readTransactionRecordPage(TransactionFilter.ACCOUNT,
+				FIRST_EXTRA_ID, 2000, 2);
+		assertEquals(2, page.size());
+		assertEquals(2001, page.get(0).getId());
+		assertEquals(2002, page.get(1).getId());
+	}
+
+	@Test
+	public void testFreeUsernamesSkipTheDatabase() throws BankDAOException {
+
+		assertFalse(pdao.isUsernameFree("cust2")); // loads the filter, then checks
+		assertEquals(2, roundTrips.get());
+
+		roundTrips.set(0);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(pdao.isUsernameFree("nobody" + i));
+		}
+		assertTrue(roundTrips.get() < 5); // the odd false positive still asks
+
+		UserProfile up = new UserProfile(1000);
+		up.setUsername("nobody7");
+		up.setPassword("pass");
+		up.setType(UserProfileType.CUSTOMER);
+		pdao.write(up);
+		roundTrips.set(0);
+		assertFalse(pdao.isUsernameFree("nobody7"));
+		assertEquals(1, roundTrips.get()); // one EXISTS query
+
+		DatabaseUtil.resetDatabase(); // filter has to be reloaded
+		assertTrue(pdao.isUsernameFree("nobody7"));
+		assertFalse(pdao.isUsernameFree("cust2"));
+	}
+
+	/**
+	 * With the transfer_funds function there, a transfer and its record are one call.
+	 * The function is V3's plpgsql, run on H2 by PlpgsqlStandIn.
+	 */
+	@Test
+	public void testTransferWithRecordIsOneRoundTrip() throws BankDAOException, SQLException {
+
+		createTransferFunction();
+		try {
+			assertEquals(TransferResult.SUCCESS, pdao.transferFunds(transferRecord(1000, 100, 101, 5)));
+
+			roundTrips.set(0); // the first call also checks the function is there
+			assertEquals(TransferResult.SUCCESS, pdao.transferFunds(transferRecord(1001, 100, 101, 5)));
+			assertEquals(1, roundTrips.get());
+
+			assertEquals(TransferResult.INSUFFICIENT_FUNDS,
+					pdao.transferFunds(transferRecord(1002, 100, 101, 1000000)));
+			assertEquals(FIRST_EXTRA_ID * 10 - 10, pdao.readBankAccount(100).getFunds());
+			assertEquals(TransactionType.FUNDS_TRANSFERRED, pdao.readTransactionRecord(1001).getType());
+			assertEquals(TransactionType.NONE, pdao.readTransactionRecord(1002).getType());
+		}
+		finally {
+			dropTransferFunction();
+		}
+	}
+
+	/**
+	 * Every way V3's transfer_funds can come out, called through PostgresDAO.transferFunds.
+	 */
+	@Test
+	public void testTransferFunctionResults() throws BankDAOException, SQLException {
+
+		try (Connection conn = DatabaseUtil.getConnection()){
+			conn.createStatement().execute("UPDATE bank_account SET status = 'CLOSED' WHERE account_id = "
+					+ (FIRST_EXTRA_ID + 2));
+		}
+		int closed = FIRST_EXTRA_ID + 2;
+		int none = TransactionalBankDAO.NO_ACCOUNT;
+
+		createTransferFunction();
+		try {
+			assertEquals(TransferResult.SOURCE_NOT_FOUND, pdao.transferFunds(transferRecord(1000, 99, 101, 5)));
+			assertEquals(TransferResult.DESTINATION_NOT_FOUND, pdao.transferFunds(transferRecord(1000, 100, 99, 5)));
+			assertEquals(TransferResult.SOURCE_NOT_OPEN, pdao.transferFunds(transferRecord(1000, closed, 101, 5)));
+			assertEquals(TransferResult.DESTINATION_NOT_OPEN,
+					pdao.transferFunds(transferRecord(1000, 100, closed, 5)));
+			assertEquals(TransferResult.INSUFFICIENT_FUNDS,
+					pdao.transferFunds(transferRecord(1000, 100, 101, FIRST_EXTRA_ID * 10 + 1)));
+			assertEquals(TransactionType.NONE, pdao.readTransactionRecord(1000).getType()); // none saved
+
+			assertEquals(TransferResult.SUCCESS, pdao.transferFunds(transferRecord(1001, none, 100, 40)));
+			assertEquals(TransferResult.SUCCESS, pdao.transferFunds(transferRecord(1002, 101, none, 10)));
+			assertEquals(TransferResult.SUCCESS, pdao.transferFunds(transferRecord(1003, 100, 101, 1)));
+
+			assertEquals(FIRST_EXTRA_ID * 10 + 40 - 1, pdao.readBankAccount(100).getFunds());
+			assertEquals(101 * 10 - 10 + 1, pdao.readBankAccount(101).getFunds());
+			assertEquals(TransactionType.FUNDS_DEPOSITED, pdao.readTransactionRecord(1001).getType());
+			assertEquals(TransactionType.FUNDS_WITHDRAWN, pdao.readTransactionRecord(1002).getType());
+			TransactionRecord tr = pdao.readTransactionRecord(1003);
+			assertEquals(TransactionType.FUNDS_TRANSFERRED, tr.getType());
+			assertEquals("3:00", tr.getTime());
+			assertEquals(3, tr.getActingUser());
+			assertEquals(1, tr.getMoneyAmount());
+		}
+		finally {
+			dropTransferFunction();
+		}
+	}
+
+	/**
+	 * Without the function (eg, H2 skips the plpgsql migration), the record is still only
+	 * saved along with the transfer.
+	 */
+	@Test
+	public void testTransferWithRecordWithoutTheFunction() throws BankDAOException {
+
+		assertEquals(TransferResult.SUCCESS, pdao.transferFunds(transferRecord(1000, 100, 101, 5)));
+		assertEquals(TransferResult.SOURCE_NOT_FOUND, pdao.transferFunds(transferRecord(1001, 99, 101, 5)));
+
+		assertEquals(FIRST_EXTRA_ID * 10 - 5, pdao.readBankAccount(100).getFunds());
+		assertEquals(101 * 10 + 5, pdao.readBankAccount(101).getFunds());
+		assertEquals(5, pdao.readTransactionRecord(1000).getMoneyAmount());
+		assertEquals(TransactionType.NONE, pdao.readTransactionRecord(1001).getType());
+	}
+
+	/**
+	 * An account read from the database only sends what changed: a deposit is one UPDATE,
+	 * and writing it again unchanged sends nothing.
+	 */
+	@Test
+	public void testDepositIsOneUpdate() throws BankDAOException {
+
+		BankAccount ba = pdao.readBankAccount(FIRST_EXTRA_ID);
+		ba.setFunds(ba.getFunds() + 25);
+		roundTrips.set(0);
+
+		pdao.write(ba);
+		assertEquals(1, roundTrips.get());
+
+		pdao.write(ba);
+		assertEquals(1, roundTrips.get());
+
+		ba = pdao.readBankAccount(FIRST_EXTRA_ID);
+		assertEquals(FIRST_EXTRA_ID * 10 + 25, ba.getFunds());
+		assertEquals(2, ba.getOwners().size());
+	}
+
+	@Test
+	public void testOwnershipChangesAreWrittenAsDeltas() throws BankDAOException {
+
+		UserProfile up = pdao.readUserProfile(3);
+		BankAccount ba = pdao.readBankAccount(FIRST_EXTRA_ID);
+		up.addAccount(2);
+		up.removeAccount(FIRST_EXTRA_ID + 1);
+		ba.removeOwner(4);
+		roundTrips.set(0);
+
+		List<BankData> toWrite = new ArrayList<>();
+		toWrite.add(up);
+		toWrite.add(ba);
+		pdao.write(toWrite);
+
+		// one insert, one delete, whatever the number of accounts the user owns, plus the
+		// profile's insert in case it isn't there
+		assertEquals(3, roundTrips.get());
+		assertTrue(pdao.readBankAccount(2).getOwners().contains(3));
+		assertEquals(2, pdao.readBankAccount(2).getOwners().size());
+		assertFalse(pdao.readBankAccount(FIRST_EXTRA_ID + 1).getOwners().contains(3));
+		assertEquals(1, pdao.readBankAccount(FIRST_EXTRA_ID).getOwners().size());
+		assertEquals(1 + EXTRA_ACCOUNTS, pdao.readUserProfile(3).getOwnedAccounts().size());
+	}
+
+	/**
+	 * If an account that was read has since disappeared, its update finds nothing, and it's
+	 * written whole instead.
+	 */
+	@Test
+	public void testMissingReadAccountIsWrittenWhole() throws BankDAOException, SQLException {
+
+		BankAccount ba = pdao.readBankAccount(FIRST_EXTRA_ID);
+		try (Connection conn = DatabaseUtil.getConnection()){
+			conn.createStatement().execute("DELETE FROM account_ownership WHERE account_id = " + FIRST_EXTRA_ID);
+			conn.createStatement().execute("DELETE FROM bank_account WHERE account_id = " + FIRST_EXTRA_ID);
+		}
+		ba.setFunds(7);
+
+		pdao.write(ba);
+		ba = pdao.readBankAccount(FIRST_EXTRA_ID);
+		assertEquals(7, ba.getFunds());
+		assertEquals(2, ba.getOwners().size());
+	}
+
+	/**
+	 * Same as for accounts, if a profile that was read has since disappeared, it's written
+	 * whole along with its changes.
+	 */
+	@Test
+	public void testMissingReadProfileIsWrittenWhole() throws BankDAOException, SQLException {
+
+		UserProfile up = pdao.readUserProfile(4);
+		try (Connection conn = DatabaseUtil.getConnection()){
+			conn.createStatement().execute("DELETE FROM account_ownership WHERE user_id = 4");
+			conn.createStatement().execute("DELETE FROM user_profile WHERE user_id = 4");
+		}
+		up.addAccount(1);
+
+		pdao.write(up);
+		up = pdao.readUserProfile(4);
+		assertEquals("cust2", up.getUsername());
+		assertEquals(2 + EXTRA_ACCOUNTS, up.getOwnedAccounts().size());
+		assertTrue(up.getOwnedAccounts().contains(1));
+	}
+
+	/**
+	 * Two copies of the same profile or account in one list both get their changes written.
+	 */
+	@Test
+	public void testCopiesInOneListAreMerged() throws BankDAOException {
+
+		UserProfile firstUp = pdao.readUserProfile(3);
+		UserProfile secondUp = pdao.readUserProfile(3);
+		firstUp.addAccount(2);
+		secondUp.removeAccount(FIRST_EXTRA_ID + 1);
+
+		BankAccount firstBa = pdao.readBankAccount(FIRST_EXTRA_ID);
+		BankAccount secondBa = pdao.readBankAccount(FIRST_EXTRA_ID);
+		firstBa.setStatus(BankAccountStatus.CLOSED);
+		firstBa.addOwner(1);
+		firstBa.setFunds(1);
+		secondBa.setFunds(2);
+		secondBa.removeOwner(4);
+
+		List<BankData> toWrite = new ArrayList<>();
+		toWrite.add(firstUp);
+		toWrite.add(firstBa);
+		toWrite.add(secondUp);
+		toWrite.add(secondBa);
+		pdao.write(toWrite);
+
+		UserProfile up = pdao.readUserProfile(3);
+		assertTrue(up.getOwnedAccounts().contains(2));
+		assertFalse(up.getOwnedAccounts().contains(FIRST_EXTRA_ID + 1));
+		BankAccount ba = pdao.readBankAccount(FIRST_EXTRA_ID);
+		assertEquals(BankAccountStatus.CLOSED, ba.getStatus());
+		assertEquals(2, ba.getFunds()); // the later copy wins
+		assertEquals(2, ba.getOwners().size());
+		assertTrue(ba.getOwners().contains(1));
+		assertTrue(ba.getOwners().contains(3));
+
+		// and all four are clean now
+		roundTrips.set(0);
+		pdao.write(toWrite);
+		assertEquals(0, roundTrips.get());
+	}
+
+	/**
+	 * An account that wasn't read from here is upserted: over an existing row, that's the
+	 * DO UPDATE, and its owners are rewritten to match.
+	 */
+	@Test
+	public void testNewAccountOverAnExistingOneReplacesIt() throws BankDAOException {
+
+		BankAccount ba = new BankAccount(FIRST_EXTRA_ID);
+		ba.setStatus(BankAccountStatus.CLOSED);
+		ba.setType(BankAccountType.SINGLE);
+		ba.setFunds(3);
+		ba.addOwner(4);
+
+		pdao.write(ba);
+		ba = pdao.readBankAccount(FIRST_EXTRA_ID);
+		assertEquals(BankAccountStatus.CLOSED, ba.getStatus());
+		assertEquals(BankAccountType.SINGLE, ba.getType());
+		assertEquals(3, ba.getFunds());
+		assertEquals(1, ba.getOwners().size());
+		assertTrue(4 == ba.getOwners().get(0));
+	}
+
+	/**
+	 * A profile that wasn't read from here skips the insert if its ID is taken (it can't be
+	 * changed), but a different profile with a taken username still fails.
+	 */
+	@Test
+	public void testNewProfileOverAnExistingOneKeepsTheOriginal() throws BankDAOException {
+
+		UserProfile up = new UserProfile(3);
+		up.setUsername("cust");
+		up.setPassword("changed");
+		up.setType(UserProfileType.CUSTOMER);
+		up.addAccount(2);
+
+		pdao.write(up);
+		up = pdao.readUserProfile(3);
+		assertFalse("changed".equals(up.getPassword()));
+		assertEquals(1, up.getOwnedAccounts().size()); // the ownership is rewritten, though
+		assertTrue(2 == up.getOwnedAccounts().get(0));
+
+		UserProfile copy = new UserProfile(1005);
+		copy.setUsername("cust");
+		copy.setPassword("pass");
+		copy.setType(UserProfileType.CUSTOMER);
+		try {
+			pdao.write(copy);
+			fail("a taken username should fail");
+		}
+		catch (BankDAOException e) {
+			assertEquals(UserProfileType.NONE, pdao.readUserProfile(1005).getType());
+		}
+	}
+
+	/**
+	 * Transaction records can't change, so writing one again leaves the first one there.
+	 */
+	@Test
+	public void testRewrittenTransactionRecordIsIgnored() throws BankDAOException {
+
+		TransactionRecord tr = pdao.readTransactionRecord(1);
+		int amount = tr.getMoneyAmount();
+		tr.setMoneyAmount(amount + 1000);
+
+		pdao.write(tr);
+		assertEquals(amount, pdao.readTransactionRecord(1).getMoneyAmount());
+	}
+
+	/**
+	 * If someone else added an owner first, adding them again is skipped instead of failing.
+	 */
+	@Test
+	public void testAddingAnOwnerTwiceIsSkipped() throws BankDAOException, SQLException {
+
+		UserProfile up = pdao.readUserProfile(4);
+		try (Connection conn = DatabaseUtil.getConnection()){
+			conn.createStatement().execute("INSERT INTO account_ownership (user_id, account_id) VALUES (4, 1);");
+		}
+		up.addAccount(1);
+
+		pdao.write(up);
+		assertEquals(2, pdao.readBankAccount(1).getOwners().size());
+	}
+
+	/**
+	 * Two DAOs (standing in for two processes) both think a username is free; the second one to
+	 * write it gets told it's taken instead of a generic failure, and nothing of its write is kept.
+	 */
+	@Test
+	public void testUsernameTakenByAnotherDAOIsReported() throws BankDAOException {
+
+		PostgresDAO other = new PostgresDAO(STAND_IN_ADDRESS, "sa", "");
+		assertTrue(pdao.isUsernameFree("twice"));
+		assertTrue(other.isUsernameFree("twice"));
+
+		UserProfile first = new UserProfile(1005);
+		first.setUsername("twice");
+		first.setPassword("pass");
+		first.setType(UserProfileType.CUSTOMER);
+		pdao.write(first);
+
+		UserProfile second = new UserProfile(1006);
+		second.setUsername("twice");
+		second.setPassword("pass");
+		second.setType(UserProfileType.CUSTOMER);
+		try {
+			other.write(second);
+			fail("the second write should find the username taken");
+		}
+		catch (UsernameTakenException e) {
+			// expected
+		}
+		assertFalse(other.isUsernameFree("twice"));
+		assertEquals(UserProfileType.NONE, other.readUserProfile(1006).getType());
+	}
+
+	// helper methods --------------------------------------------------------------
+
+	private static void createTransferFunction() throws SQLException {
+
+		try (Connection conn = DatabaseUtil.getConnection()){
+			conn.createStatement().execute("CREATE ALIAS transfer_funds FOR '"
+					+ PlpgsqlStandIn.class.getName() + ".transferFunds';");
+		}
+	}
+
+	private static void dropTransferFunction() throws SQLException {
+
+		try (Connection conn = DatabaseUtil.getConnection()){
+			conn.createStatement().execute("DROP ALIAS transfer_funds;");
+		}
+	}
+
+	private static TransactionRecord transferRecord(int id, int source, int dest, int amount) {
+
+		TransactionRecord tr = new TransactionRecord(id);
+		tr.setTime("3:00");
+		tr.setType(TransactionType.FUNDS_TRANSFERRED);
+		tr.setActingUser(3);
+		tr.setSourceAccount(source);
+		tr.setDestinationAccount(dest);
+		tr.setMoneyAmount(amount);
+		return tr;
+	}
+
+	// helper classes --------------------------------------------------------------
+
+	/**
+	 * Accepts "jdbc:counting:..." urls and hands them to the real driver for "jdbc:...",
+	 * counting each statement that gets executed on the resulting connections.
+	 * PostgresDAOContractTest borrows it for the ON CONFLICT handling.
+	 */
+	static class CountingDriver implements Driver {
+
+		private static final String PREFIX = "jdbc:counting:";
+		private static final Pattern UPSERT = Pattern.compile(
+				"INSERT INTO (\\w+) \\(([^)]*)\\) VALUES \\(([^)]*)\\) ON CONFLICT \\(([^)]*)\\) "
+				+ "DO (?:NOTHING|UPDATE SET (.*?));?", Pattern.DOTALL);
+
+		@Override
+		public Connection connect(String url, Properties info) throws SQLException {
+
+			if (!acceptsURL(url)) {
+				return null;
+			}
+
+			Connection real = DriverManager.getConnection("jdbc:" + url.substring(PREFIX.length()), info);
+			return (Connection)wrap(real, Connection.class);
+		}
+
+		@Override
+		public boolean acceptsURL(String url) {
+			return url != null && url.startsWith(PREFIX);
+		}
+
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+			return new DriverPropertyInfo[0];
+		}
+
+		@Override
+		public int getMajorVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getMinorVersion() {
+			return 0;
+		}
+
+		@Override
+		public boolean jdbcCompliant() {
+			return false;
+		}
+
+		@Override
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+
+		/**
+		 * Wraps a connection or statement so that statements it creates are wrapped too,
+		 * and executions are counted.
+		 */
+		private static Object wrap(Object target, Class<?> iface) {
+
+			InvocationHandler handler = (proxy, method, args) -> {
+				if (method.getName().startsWith("execute")) {
+					roundTrips.incrementAndGet();
+				}
+				if (method.getName().equals("prepareStatement")) {
+					args[0] = forH2((String)args[0]);
+				}
+
+				try {
+					Object result = method.invoke(target, args);
+					Class<?> returnType = method.getReturnType();
+					if (result != null && Statement.class.isAssignableFrom(returnType)) {
+						return wrap(result, returnType);
+					}
+					return result;
+				}
+				catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			};
+
+			return Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[] {iface}, handler);
+		}
+
+		/**
+		 * H2 doesn't understand Postgres' ON CONFLICT (key) clause, so an insert that has one
+		 * becomes the equivalent MERGE, with the new row named "excluded" like in Postgres:
+		 * DO NOTHING only inserts when no row has the key, and DO UPDATE runs its SET list
+		 * when one does. Any other unique constraint still fails the same as it would there.
+		 * H2 does take ON CONFLICT DO NOTHING without a key, so that's left alone; anything
+		 * else with ON CONFLICT in it fails, rather than quietly testing something different.
+		 */
+		static String forH2(String sql) throws SQLException {
+
+			if (!sql.contains(" ON CONFLICT ") || sql.contains(" ON CONFLICT DO NOTHING")) {
+				return sql;
+			}
+			Matcher upsert = UPSERT.matcher(sql);
+			if (!upsert.matches()) {
+				throw new SQLFeatureNotSupportedException("No H2 version of: " + sql);
+			}
+
+			String table = upsert.group(1);
+			String columns = upsert.group(2);
+			List<String> keyMatches = new ArrayList<>();
+			for (String key : upsert.group(4).split(",")) {
+				keyMatches.add(table + "." + key.trim() + " = excluded." + key.trim());
+			}
+			List<String> newValues = new ArrayList<>();
+			for (String column : columns.split(",")) {
+				newValues.add("excluded." + column.trim());
+			}
+
+			StringBuilder merge = new StringBuilder("MERGE INTO ").append(table)
+					.append(" USING (VALUES (").append(upsert.group(3)).append(")) AS excluded (").append(columns)
+					.append(") ON ").append(String.join(" AND ", keyMatches));
+			if (upsert.group(5) != null) {
+				merge.append(" WHEN MATCHED THEN UPDATE SET ").append(upsert.group(5));
+			}
+			return merge.append(" WHEN NOT MATCHED THEN INSERT (").append(columns).append(") VALUES (")
+					.append(String.join(", ", newValues)).append(");").toString();
+		}
+	}
+}
@@ -0,0 +1,33 @@
+/**
+ * Runs the BankDAO contract tests against a TextFileDAO, starting from an empty file.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import java.io.File;
+
+import dao.BankDAO;
+import dao.TextFileDAO;
+
+public class TextFileDAOContractTest extends BankDAOContractTest {
+
+	private static final String TEST_FILENAME = "target/contract.bdf";
+
+	@Override
+	protected BankDAO createDAO() throws Exception {
+
+		File file = new File(TEST_FILENAME);
+		file.delete();
+		file.createNewFile(); // the DAO expects the file to already be there
+		return new TextFileDAO(TEST_FILENAME);
+	}
+
+	@Override
+	protected void closeDAO(BankDAO dao) {
+
+		new File(TEST_FILENAME).delete();
+		new File(TEST_FILENAME + ".users.idx").delete();
+		new File(TEST_FILENAME + ".accounts.idx").delete();
+	}
+}
@@ -10,13 +10,22 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 import org.junit.Test;
 
@@ -29,9 +38,11 @@ import com.revature.bankDataObjects.BankAccount.BankAccountType;
 import com.revature.bankDataObjects.TransactionRecord;
 import com.revature.bankDataObjects.TransactionRecord.TransactionType;
 
-//import dao.BankDAO;
+import dao.BankDAO;
+import dao.BankDAO.TransactionFilter;
 import dao.BankDAOException;
 import dao.TextFileDAO;
+import dao.TransactionRecordPager;
 
 public class TextFileDAOTest {
 	
@@ -524,4 +535,297 @@ public class TextFileDAOTest {
 		assertEquals(1, records.size());
 	}
 	
+	@Test
+	public void testMappedReads() throws BankDAOException {
+		
+		prepareTextFile();
+		tdao = new TextFileDAO(testFilename, true);
+		
+		BankAccount ba = tdao.readBankAccount(317);
+		assertEquals(7892312, ba.getFunds());
+		assertTrue(ba.getOwners().contains(103));
+		
+		UserProfile up = tdao.readUserProfile(103);
+		assertEquals("user2", up.getUsername());
+		assertEquals(2, up.getOwnedAccounts().size());
+		
+		TransactionRecord tr = tdao.readTransactionRecord(123);
+		assertEquals(87654, tr.getMoneyAmount());
+		
+		// exact tags only, "ACC 44" shouldn't match "ACC 444"
+		assertEquals(BankAccountType.NONE, tdao.readBankAccount(44).getType());
+		assertEquals(UserProfileType.NONE, tdao.readUserProfile(5555).getType());
+	}
+	
+	@Test
+	public void testMappedReadsWithWindowsLineBreaks() throws BankDAOException, IOException {
+		
+		// and no line break at all after the last line
+		Files.write(Paths.get(testFilename), String.join("\r\n", FILELINES).getBytes());
+		tdao = new TextFileDAO(testFilename, true);
+		
+		assertEquals("user", tdao.readUserProfile(101).getUsername());
+		assertEquals(111111, tdao.readBankAccount(515).getFunds());
+		assertEquals(87654, tdao.readTransactionRecord(123).getMoneyAmount());
+	}
+	
+	@Test
+	public void testMappedReadsSeeOwnWrites() throws BankDAOException {
+		
+		prepareTextFile();
+		tdao = new TextFileDAO(testFilename, true);
+		
+		BankAccount ba = tdao.readBankAccount(444);
+		ba.setFunds(1);
+		tdao.write(ba);
+		assertEquals(1, tdao.readBankAccount(444).getFunds());
+		
+		ba = new BankAccount(600);
+		ba.setStatus(BankAccountStatus.OPEN);
+		ba.setType(BankAccountType.JOINT);
+		ba.addOwner(101);
+		ba.addOwner(103);
+		tdao.write(ba);
+		assertEquals(2, tdao.readBankAccount(600).getOwners().size());
+		assertEquals(7892312, tdao.readBankAccount(317).getFunds());
+	}
+	
+	@Test
+	public void testReadTransactionRecordPages() throws BankDAOException {
+		
+		prepareTextFile();
+		prepareTextFileDAO();
+		
+		// written out of order, ids 1 to 25, every third one by user 103
+		List<BankData> toWrite = new ArrayList<>();
+		for (int id = 25; id >= 1; id--) {
+			TransactionRecord tr = new TransactionRecord(id);
+			tr.setTime("5:00");
+			tr.setType(TransactionType.FUNDS_DEPOSITED);
+			tr.setActingUser((id % 3 == 0) ? 103 : 101);
+			tr.setDestinationAccount((id % 3 == 0) ? 317 : 444);
+			tr.setMoneyAmount(id);
+			toWrite.add(tr);
+		}
+		tdao.write(toWrite);
+		
+		TransactionRecordPager pager = new TransactionRecordPager(tdao, TransactionFilter.ALL, 0, 10);
+		List<Integer> seen = new ArrayList<>();
+		int pages = 0;
+		while (pager.hasNextPage()) {
+			for (TransactionRecord tr : pager.nextPage()) {
+				seen.add(tr.getId());
+			}
+			pages++;
+		}
+		assertEquals(3, pages);
+		assertEquals(26, seen.size()); // plus the original 123
+		for (int i = 0; i < 25; i++) {
+			assertEquals(i + 1, (int)seen.get(i));
+		}
+		assertEquals(123, (int)seen.get(25));
+		
+		List<TransactionRecord> page = tdao.readTransactionRecordPage(TransactionFilter.ACTING_USER, 103, 
+				BankDAO.FIRST_PAGE, 3);
+		assertEquals(3, page.size());
+		assertEquals(3, page.get(0).getId());
+		assertEquals(9, page.get(2).getId());
+		
+		page = tdao.readTransactionRecordPage(TransactionFilter.ACCOUNT, 317, 9, 100);
+		assertEquals(5, page.size()); // 12, 15, 18, 21, 24
+		assertEquals(12, page.get(0).getId());
+		
+		page = tdao.readTransactionRecordPage(TransactionFilter.ACCOUNT, 444, 123, 100);
+		assertTrue(page.isEmpty());
+	}
+	
+	/**
+	 * Makes a transfer record for the history index tests.
+	 */
+	private TransactionRecord makeTransfer(int id, int actingUser, int source, int destination) {
+		
+		TransactionRecord tr = new TransactionRecord(id);
+		tr.setTime("6:00");
+		tr.setType(TransactionType.FUNDS_TRANSFERRED);
+		tr.setActingUser(actingUser);
+		tr.setSourceAccount(source);
+		tr.setDestinationAccount(destination);
+		tr.setMoneyAmount(10);
+		return tr;
+	}
+	
+	@Test
+	public void testHistoryIndexWrittenWithData() throws BankDAOException {
+		
+		prepareTextFile();
+		prepareTextFileDAO();
+		
+		List<BankData> toWrite = new ArrayList<>();
+		toWrite.add(makeTransfer(200, 103, 317, 515));
+		toWrite.add(makeTransfer(201, 103, 515, 515)); // same account both ways
+		toWrite.add(makeTransfer(202, 101, 444, 317));
+		tdao.write(toWrite);
+		
+		assertTrue(Files.exists(Paths.get(testFilename + ".users.idx")));
+		assertTrue(Files.exists(Paths.get(testFilename + ".accounts.idx")));
+		
+		assertEquals(2, tdao.readTransactionRecordByActingUserId(103).size());
+		assertEquals(2, tdao.readTransactionRecordByActingUserId(101).size()); // 123 and 202
+		assertEquals(2, tdao.readTransactionRecordByAccountId(515).size());
+		assertEquals(2, tdao.readTransactionRecordByAccountId(317).size());
+		assertEquals(202, tdao.readTransactionRecordByAccountId(317).get(1).getId()); // file order
+		
+		// a fresh DAO loads the same thing from the sidecars
+		prepareTextFileDAO();
+		assertEquals(2, tdao.readTransactionRecordByAccountId(515).size());
+		assertEquals(87654, tdao.readTransactionRecordByActingUserId(101).get(1).getMoneyAmount());
+	}
+	
+	@Test
+	public void testHistoryIndexRebuiltWhenDamaged() throws BankDAOException, IOException {
+		
+		prepareTextFile();
+		prepareTextFileDAO();
+		tdao.write(makeTransfer(200, 103, 317, 515));
+		
+		try (RandomAccessFile sidecar = new RandomAccessFile(testFilename + ".accounts.idx", "rw")){
+			sidecar.seek(sidecar.length() - 20);
+			int b = sidecar.read();
+			sidecar.seek(sidecar.length() - 20);
+			sidecar.write(b ^ 0xFF);
+		}
+		Files.delete(Paths.get(testFilename + ".users.idx"));
+		
+		prepareTextFileDAO();
+		assertEquals(1, tdao.readTransactionRecordByAccountId(515).size());
+		assertEquals(1, tdao.readTransactionRecordByActingUserId(103).size());
+		assertTrue(Files.exists(Paths.get(testFilename + ".users.idx")));
+	}
+	
+	@Test
+	public void testHistoryIndexSeesOutsideChanges() throws BankDAOException, IOException {
+		
+		prepareTextFile();
+		prepareTextFileDAO();
+		assertEquals(1, tdao.readTransactionRecordByAccountId(444).size());
+		
+		// someone else appends to the file behind the DAO's back
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(testFilename, true))){
+			writer.write("TRR 300 7:00 FDP 101 -1 444 5\n");
+		}
+		
+		List<TransactionRecord> records = tdao.readTransactionRecordByAccountId(444);
+		assertEquals(2, records.size());
+		assertEquals(300, records.get(1).getId());
+	}
+	
+	@Test
+	public void testUsernameIndexFollowsWrites() throws BankDAOException {
+		
+		prepareTextFile();
+		prepareTextFileDAO();
+		assertFalse(tdao.isUsernameFree("user2"));
+		
+		UserProfile up = tdao.readUserProfile(103);
+		up.setUsername("renamed");
+		tdao.write(up);
+		assertTrue(tdao.isUsernameFree("user2"));
+		assertEquals(103, tdao.readUserProfile("renamed").getId());
+		assertEquals(UserProfileType.NONE, tdao.readUserProfile("user2").getType());
+		
+		up = new UserProfile(10); // "PRF 10" shouldn't be mistaken for "PRF 101"
+		up.setUsername("ten");
+		up.setPassword("pass");
+		up.setType(UserProfileType.CUSTOMER);
+		tdao.write(up);
+		tdao.reserveIDs(BankDAO.IDType.USER_PROFILE, 5);
+		assertEquals(10, tdao.readUserProfile("ten").getId());
+		assertEquals("user", tdao.readUserProfile("user").getUsername());
+	}
+	
+	@Test
+	public void testUsernameIndexSeesOutsideChanges() throws BankDAOException, IOException {
+		
+		prepareTextFile();
+		prepareTextFileDAO();
+		assertTrue(tdao.isUsernameFree("outsider"));
+		
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(testFilename, true))){
+			writer.write("PRF 500 outsider pass CST\n");
+		}
+		
+		assertFalse(tdao.isUsernameFree("outsider"));
+		assertEquals(500, tdao.readUserProfile("outsider").getId());
+	}
+	
+	@Test
+	public void testReadsDontWaitForWriters() throws Exception {
+		
+		prepareTextFile();
+		prepareTextFileDAO();
+		ExecutorService reader = Executors.newSingleThreadExecutor();
+		
+		try {
+			synchronized (tdao) { // what a writer holds for the whole of its write
+				Future<List<BankAccount>> accounts = reader.submit(() -> tdao.readAllBankAccounts());
+				Future<UserProfile> profile = reader.submit(() -> tdao.readUserProfile("user2"));
+				assertEquals(3, accounts.get(5, TimeUnit.SECONDS).size());
+				assertEquals(103, profile.get(5, TimeUnit.SECONDS).getId());
+			}
+		}
+		finally {
+			reader.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void testReadersNeverSeeAPartialFile() throws Exception {
+		
+		prepareTextFile();
+		prepareTextFileDAO();
+		final int writes = 40;
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final List<String> problems = Collections.synchronizedList(new ArrayList<String>());
+		List<Thread> readers = new ArrayList<>();
+		
+		for (int t = 0; t < 4; t++) {
+			Thread reader = new Thread(() -> {
+				int last = 0;
+				try {
+					while (!done.get()) {
+						// accounts only ever get added, and each write is all or nothing
+						List<BankAccount> accounts = tdao.readAllBankAccounts();
+						if (accounts.size() < last || accounts.size() < 3) {
+							problems.add("saw " + accounts.size() + " accounts after " + last);
+						}
+						last = accounts.size();
+						if (tdao.readUserProfile(103).getType() != UserProfileType.CUSTOMER) {
+							problems.add("lost profile 103");
+						}
+					}
+				}
+				catch (BankDAOException e) {
+					problems.add(e.getMessage());
+				}
+			});
+			readers.add(reader);
+			reader.start();
+		}
+		
+		for (int id = 1; id <= writes; id++) {
+			BankAccount ba = new BankAccount(1000 + id);
+			ba.setStatus(BankAccountStatus.OPEN);
+			ba.setType(BankAccountType.SINGLE);
+			ba.addOwner(101);
+			tdao.write(ba);
+		}
+		done.set(true);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		
+		assertTrue(problems.toString(), problems.isEmpty());
+		assertEquals(3 + writes, tdao.readAllBankAccounts().size());
+	}
+	
 } // end class
@@ -0,0 +1,230 @@
+/**
+ * This file contains Junit tests for journaled TextFileDAOs: writes that only go to the
+ * journal, replaying it after a crash, ignoring a torn entry, and checkpoints. Sharing forces
+ * between writers is tested against the journal itself, in WriteAheadJournalTest.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.TransactionRecord.TransactionType;
+
+import dao.BankDAO.IDType;
+import dao.BankDAOException;
+import dao.TextFileDAO;
+
+public class TextFileJournalTest {
+
+	// some helper methods/variables
+
+	private static final String TEST_FILENAME = "target/journaltest.bdf";
+	private static final String JOURNAL_FILENAME = TEST_FILENAME + ".wal";
+	private static final String[] FILELINES = {
+			"PRF 101 user pass CST 444", "ACC 444 OPN SNG 78923 101",
+			"TRR 123 3:00 FDP 101 -1 444 87654"
+	};
+
+	private byte[] original;
+
+	@Before
+	public void setup() throws IOException {
+		Files.write(Paths.get(TEST_FILENAME), Arrays.asList(FILELINES), Charset.defaultCharset());
+		new File(JOURNAL_FILENAME).delete();
+		original = Files.readAllBytes(Paths.get(TEST_FILENAME));
+	}
+
+	@After
+	public void cleanup() {
+		new File(TEST_FILENAME).delete();
+		new File(JOURNAL_FILENAME).delete();
+	}
+
+	private static TransactionRecord deposit(int id, int amount) {
+		TransactionRecord tr = new TransactionRecord(id);
+		tr.setTime("5:00");
+		tr.setType(TransactionType.FUNDS_DEPOSITED);
+		tr.setActingUser(101);
+		tr.setDestinationAccount(444);
+		tr.setMoneyAmount(amount);
+		return tr;
+	}
+
+	/**
+	 * Puts the data file back the way it was at the last checkpoint, as if none of the
+	 * writes since had reached the disk.
+	 */
+	private void loseUnforcedWrites() throws IOException {
+		Files.write(Paths.get(TEST_FILENAME), original);
+	}
+
+	// tests
+
+	@Test
+	public void testReplaysWritesTheFileLost() throws BankDAOException, IOException {
+
+		TextFileDAO tdao = new TextFileDAO(TEST_FILENAME, false, true);
+		BankAccount ba = tdao.readBankAccount(444);
+		ba.setFunds(5);
+		tdao.write(ba);
+		tdao.write(deposit(124, 7));
+		assertArrayEquals(new int[] {125, 126}, tdao.reserveIDs(IDType.TRANSACTION_RECORD, 2));
+
+		loseUnforcedWrites();
+		tdao = new TextFileDAO(TEST_FILENAME, false, true);
+
+		assertEquals(5, tdao.readBankAccount(444).getFunds());
+		assertEquals(7, tdao.readTransactionRecord(124).getMoneyAmount());
+		assertArrayEquals(new int[] {127}, tdao.reserveIDs(IDType.TRANSACTION_RECORD, 1)); // mark came back too
+		assertEquals(2, tdao.readAllTransactionRecords().size());
+	}
+
+	@Test
+	public void testWritesOnlyGoToTheJournalUntilACheckpoint() throws BankDAOException, IOException {
+
+		TextFileDAO tdao = new TextFileDAO(TEST_FILENAME, true, true);
+		BankAccount ba = tdao.readBankAccount(444);
+		ba.setFunds(5);
+		tdao.write(ba);
+		tdao.write(deposit(124, 7));
+		tdao.reserveIDs(IDType.TRANSACTION_RECORD, 2);
+
+		assertArrayEquals(original, Files.readAllBytes(Paths.get(TEST_FILENAME)));
+		assertEquals(5, tdao.readBankAccount(444).getFunds());
+		assertEquals(7, tdao.readTransactionRecord(124).getMoneyAmount());
+		assertEquals(2, tdao.readTransactionRecordByAccountId(444).size());
+		assertEquals(1, tdao.readAllBankAccounts().size()); // replaced, not added
+
+		tdao.checkpoint();
+		List<String> lines = Files.readAllLines(Paths.get(TEST_FILENAME), Charset.defaultCharset());
+		assertTrue(lines.contains("ACC 444 OPN SNG 5 101"));
+		assertTrue(lines.contains("HWM TRR 126"));
+		assertEquals(5, lines.size());
+		assertEquals(5, tdao.readBankAccount(444).getFunds());
+	}
+
+	@Test
+	public void testReplayOverACheckpointedFileChangesNothing() throws BankDAOException, IOException {
+
+		TextFileDAO tdao = new TextFileDAO(TEST_FILENAME, false, true);
+		tdao.write(deposit(124, 7));
+		tdao.write(deposit(125, 8));
+		byte[] journal = Files.readAllBytes(Paths.get(JOURNAL_FILENAME));
+		tdao.checkpoint();
+
+		// the checkpoint rewrote the file but crashed before it emptied the journal
+		Files.write(Paths.get(JOURNAL_FILENAME), journal);
+		tdao = new TextFileDAO(TEST_FILENAME, false, true);
+
+		assertEquals(3, tdao.readAllTransactionRecords().size());
+		assertEquals(8, tdao.readTransactionRecord(125).getMoneyAmount());
+	}
+
+	@Test
+	public void testTornEntryIsIgnored() throws BankDAOException, IOException {
+
+		TextFileDAO tdao = new TextFileDAO(TEST_FILENAME, false, true);
+		tdao.write(deposit(124, 7));
+		tdao.write(deposit(125, 8));
+
+		// chop the last entry in half, as if the crash came mid-append
+		byte[] journal = Files.readAllBytes(Paths.get(JOURNAL_FILENAME));
+		Files.write(Paths.get(JOURNAL_FILENAME), Arrays.copyOf(journal, journal.length - 10));
+		loseUnforcedWrites();
+		tdao = new TextFileDAO(TEST_FILENAME, false, true);
+
+		assertEquals(7, tdao.readTransactionRecord(124).getMoneyAmount());
+		assertEquals(TransactionType.NONE, tdao.readTransactionRecord(125).getType());
+	}
+
+	@Test
+	public void testCheckpointEmptiesTheJournal() throws BankDAOException, IOException {
+
+		TextFileDAO tdao = new TextFileDAO(TEST_FILENAME, false, true);
+		long emptyJournal = new File(JOURNAL_FILENAME).length();
+		tdao.write(deposit(124, 7));
+		assertTrue(new File(JOURNAL_FILENAME).length() > emptyJournal);
+
+		tdao.checkpoint();
+		assertEquals(emptyJournal, new File(JOURNAL_FILENAME).length());
+
+		// a file changed by something else doesn't get the (already applied) entries again
+		Files.write(Paths.get(TEST_FILENAME), "PRF 1 x y CST\n".getBytes(Charset.defaultCharset()),
+				StandardOpenOption.APPEND);
+		tdao = new TextFileDAO(TEST_FILENAME, false, true);
+		assertEquals(2, tdao.readAllUserProfiles().size());
+		assertEquals(2, tdao.readAllTransactionRecords().size());
+	}
+
+	@Test
+	public void testConcurrentWritersAreAllJournaled() throws Exception {
+
+		final TextFileDAO tdao = new TextFileDAO(TEST_FILENAME, false, true);
+		final int threads = 8;
+		final int writesEach = 10;
+		List<Thread> writers = new ArrayList<>();
+		final List<Exception> failures = new ArrayList<>();
+
+		for (int t = 0; t < threads; t++) {
+			final int base = 1000 * (t + 1);
+			Thread writer = new Thread(() -> {
+				try {
+					for (int i = 0; i < writesEach; i++) {
+						List<BankData> batch = new ArrayList<>();
+						batch.add(deposit(base + i, i));
+						tdao.write(batch);
+					}
+				}
+				catch (BankDAOException e) {
+					synchronized (failures) {
+						failures.add(e);
+					}
+				}
+			});
+			writers.add(writer);
+			writer.start();
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+
+		assertTrue(failures.toString(), failures.isEmpty());
+		assertEquals(1 + threads * writesEach, tdao.readAllTransactionRecords().size());
+
+		// and all of them come back from the journal alone
+		loseUnforcedWrites();
+		assertEquals(1 + threads * writesEach,
+				new TextFileDAO(TEST_FILENAME, false, true).readAllTransactionRecords().size());
+	}
+
+	@Test
+	public void testUnjournaledWritesLeaveNoTempFile() throws BankDAOException {
+
+		TextFileDAO tdao = new TextFileDAO(TEST_FILENAME);
+		tdao.write(deposit(124, 7));
+		assertEquals(7, tdao.readTransactionRecord(124).getMoneyAmount());
+		assertTrue(!new File(TEST_FILENAME + ".tmp").exists());
+		assertTrue(!new File(JOURNAL_FILENAME).exists());
+		tdao.checkpoint(); // does nothing
+	}
+}
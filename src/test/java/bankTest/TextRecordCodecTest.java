@@ -0,0 +1,165 @@
+/**
+ * This file contains Junit tests for TextRecordCodec: round trips through the in-place
+ * scanner, and how many bytes each record costs to encode and decode.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.TransactionRecord.TransactionType;
+import com.revature.bankDataObjects.UserProfile;
+import com.revature.bankDataObjects.UserProfile.UserProfileType;
+
+import dao.BankDAOException;
+import dao.TextRecordCodec;
+
+public class TextRecordCodecTest {
+
+	// constants
+	private static final int RECORDS = 20000;
+	private static final int WARMUP_ROUNDS = 5; // enough for the JIT to get to the loops
+
+	// per record limits; the split/concatenate version was several hundred bytes each
+	private static final long ENCODE_INTO_BUILDER_LIMIT = 8; // should really be 0
+	private static final long DECODE_ACCOUNT_LIMIT = 160; // account + IntSet + its array
+	private static final long DECODE_TRANSACTION_LIMIT = 128; // record + the time String
+
+	private static final String ACCOUNT_ENTRY = "ACC 444 OPN JNT 78923 101 102";
+	private static final String TRANSACTION_ENTRY = "TRR 123 3:00 FTR 101 444 445 -87654";
+
+	// class / static variables
+	private static Object sink; // so the decoded objects are used
+
+	@Test
+	public void testRoundTripsEveryKind() throws BankDAOException {
+
+		UserProfile up = new UserProfile(101);
+		up.setUsername("user");
+		up.setPassword("pass");
+		up.setType(UserProfileType.EMPLOYEE);
+		up.addAccount(444);
+		up.addAccount(-7);
+		String profileEntry = TextRecordCodec.save(up);
+		assertEquals("PRF 101 user pass EMP 444 -7", profileEntry);
+		UserProfile read = TextRecordCodec.buildUserProfileFromEntry(profileEntry);
+		assertEquals("pass", read.getPassword());
+		assertEquals(UserProfileType.EMPLOYEE, read.getType());
+		assertEquals(up.getOwnedAccounts(), read.getOwnedAccounts());
+
+		BankAccount ba = TextRecordCodec.buildAccountFromEntry(ACCOUNT_ENTRY);
+		assertEquals(444, ba.getId());
+		assertEquals(BankAccountStatus.OPEN, ba.getStatus());
+		assertEquals(BankAccountType.JOINT, ba.getType());
+		assertEquals(78923, ba.getFunds());
+		assertTrue(ba.hasOwner(101) && ba.hasOwner(102));
+		assertEquals(ACCOUNT_ENTRY, TextRecordCodec.save(ba));
+
+		TransactionRecord tr = TextRecordCodec.buildTransactionRecordFromEntry(TRANSACTION_ENTRY);
+		assertEquals("3:00", tr.getTime());
+		assertEquals(TransactionType.FUNDS_TRANSFERRED, tr.getType());
+		assertEquals(-87654, tr.getMoneyAmount());
+		assertEquals(TRANSACTION_ENTRY, TextRecordCodec.save(tr));
+
+		// every transaction type comes back as itself
+		for (TransactionType type : TransactionType.values()) {
+			tr.setType(type);
+			assertEquals(type, TextRecordCodec.buildTransactionRecordFromEntry(TextRecordCodec.save(tr)).getType());
+		}
+	}
+
+	@Test
+	public void testScannerEdgeCases() {
+
+		// a trailing space (as split allowed) and the extreme ints
+		BankAccount ba = TextRecordCodec.buildAccountFromEntry("ACC 5 CLS SNG " + Integer.MIN_VALUE + " " + Integer.MAX_VALUE + " ");
+		assertEquals(Integer.MIN_VALUE, ba.getFunds());
+		assertEquals(1, ba.getOwners().size());
+		assertEquals(Integer.MAX_VALUE, (int)ba.getOwners().get(0));
+
+		// not found
+		assertEquals(BankAccountType.NONE, TextRecordCodec.buildAccountFromEntry("").getType());
+		assertEquals(UserProfileType.NONE, TextRecordCodec.buildUserProfileFromEntry("").getType());
+
+		String[] bad = {"ACC 5 CLS SNG 12x", "ACC 5 CLS SNG -", "ACC 5 CLS SNG 2147483648", "ACC 5 CLS"};
+		for (String entry : bad) {
+			try {
+				TextRecordCodec.buildAccountFromEntry(entry);
+				fail("parsed " + entry);
+			}
+			catch (NumberFormatException e) {
+				// expected, same as Integer.parseInt
+			}
+		}
+	}
+
+	@Test
+	public void testEncodingIntoABuilderAllocatesNothing() throws BankDAOException {
+
+		BankData[] records = {
+				TextRecordCodec.buildAccountFromEntry(ACCOUNT_ENTRY),
+				TextRecordCodec.buildTransactionRecordFromEntry(TRANSACTION_ENTRY)
+		};
+		StringBuilder sb = new StringBuilder(256);
+
+		long perRecord = Long.MAX_VALUE;
+		for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+			long before = allocatedBytes();
+			for (int i = 0; i < RECORDS; i++) {
+				sb.setLength(0);
+				TextRecordCodec.append(records[i & 1], sb);
+			}
+			perRecord = (allocatedBytes() - before) / RECORDS;
+		}
+		assertTrue("encoding allocated " + perRecord + " bytes per record", perRecord <= ENCODE_INTO_BUILDER_LIMIT);
+	}
+
+	@Test
+	public void testDecodingAllocatesOnlyTheRecord() {
+
+		long accountBytes = Long.MAX_VALUE;
+		long transactionBytes = Long.MAX_VALUE;
+		for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+			long before = allocatedBytes();
+			for (int i = 0; i < RECORDS; i++) {
+				sink = TextRecordCodec.buildAccountFromEntry(ACCOUNT_ENTRY);
+			}
+			long middle = allocatedBytes();
+			for (int i = 0; i < RECORDS; i++) {
+				sink = TextRecordCodec.buildTransactionRecordFromEntry(TRANSACTION_ENTRY);
+			}
+			accountBytes = (middle - before) / RECORDS;
+			transactionBytes = (allocatedBytes() - middle) / RECORDS;
+		}
+		assertTrue("account decode allocated " + accountBytes + " bytes per record", accountBytes <= DECODE_ACCOUNT_LIMIT);
+		assertTrue("transaction decode allocated " + transactionBytes + " bytes per record",
+				transactionBytes <= DECODE_TRANSACTION_LIMIT);
+	}
+
+	// helper methods
+
+	/**
+	 * Bytes allocated by this thread so far; skips the test on JVMs that can't say.
+	 */
+	private static long allocatedBytes() {
+
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ * This file contains Junit tests for the TransactionRecordWriter class: batching, waiting
+ * for durable records, holding submitters back when the queue is full, and draining on close.
+ *
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revature.bankDataObjects.BankData;
+import com.revature.bankDataObjects.TransactionRecord;
+import com.revature.bankDataObjects.TransactionRecord.TransactionType;
+
+import dao.BankDAOException;
+import dao.TextFileDAO;
+import dao.TransactionRecordWriter;
+
+public class TransactionRecordWriterTest {
+
+	// some helper methods/variables
+
+	private static final String TEST_FILENAME = "target/recordwritertest.bdf";
+	private static final String[] FILELINES = {
+			"PRF 101 user pass CST 444", "ACC 444 OPN SNG 78923 101"
+	};
+	private static final long LONG_DELAY_MILLIS = 60000; // batches only end early in these tests
+
+	private TransactionRecordWriter writer;
+
+	@Before
+	public void setup() throws IOException {
+		Files.write(Paths.get(TEST_FILENAME), Arrays.asList(FILELINES), Charset.defaultCharset());
+	}
+
+	@After
+	public void cleanup() {
+		if (writer != null) {
+			writer.close();
+		}
+		new File(TEST_FILENAME).delete();
+	}
+
+	private static TransactionRecord deposit(int id) {
+		TransactionRecord tr = new TransactionRecord(id);
+		tr.setTime("5:00");
+		tr.setType(TransactionType.FUNDS_DEPOSITED);
+		tr.setActingUser(101);
+		tr.setDestinationAccount(444);
+		tr.setMoneyAmount(id);
+		return tr;
+	}
+
+	/**
+	 * A DAO whose batch writes wait for the gate to open, or fail if told to.
+	 */
+	private static class GatedDAO extends TextFileDAO {
+
+		final CountDownLatch gate;
+		volatile boolean failing;
+
+		GatedDAO(String filename, CountDownLatch gate) throws BankDAOException {
+			super(filename);
+			this.gate = gate;
+		}
+
+		@Override
+		public void write(List<BankData> toWrite) throws BankDAOException {
+			try {
+				gate.await();
+			}
+			catch (InterruptedException e) {
+				throw new BankDAOException("interrupted");
+			}
+			if (failing) {
+				throw new BankDAOException("disk on fire");
+			}
+			super.write(toWrite);
+		}
+	}
+
+	// tests
+
+	@Test
+	public void testQueuedRecordsAreWrittenTogether() throws BankDAOException {
+
+		TextFileDAO tdao = new TextFileDAO(TEST_FILENAME);
+		writer = new TransactionRecordWriter(tdao, 100, 50, LONG_DELAY_MILLIS, false);
+
+		for (int id = 1; id <= 20; id++) {
+			writer.submit(deposit(id));
+		}
+		writer.flush();
+
+		assertEquals(20, tdao.readAllTransactionRecords().size());
+		assertEquals(20, writer.getWrittenCount());
+		assertTrue("took " + writer.getBatchCount() + " writes", writer.getBatchCount() <= 2);
+	}
+
+	@Test
+	public void testDurableSubmitWaitsForTheWrite() throws BankDAOException {
+
+		TextFileDAO tdao = new TextFileDAO(TEST_FILENAME);
+		writer = new TransactionRecordWriter(tdao, 100, 50, LONG_DELAY_MILLIS, true);
+
+		writer.submit(deposit(7)); // shouldn't sit out the delay, someone's waiting on it
+		assertEquals(7, tdao.readTransactionRecord(7).getMoneyAmount());
+	}
+
+	@Test
+	public void testDurableSubmitReportsFailures() throws BankDAOException {
+
+		GatedDAO gdao = new GatedDAO(TEST_FILENAME, new CountDownLatch(0));
+		gdao.failing = true;
+		writer = new TransactionRecordWriter(gdao, 100, 50, LONG_DELAY_MILLIS, true);
+
+		try {
+			writer.submit(deposit(7));
+			fail("submit didn't report the failed write");
+		}
+		catch (BankDAOException e) {
+			assertEquals("disk on fire", e.getMessage());
+		}
+		assertEquals(1, writer.getFailedCount());
+
+		gdao.failing = false; // the writer carries on afterwards
+		writer.submit(deposit(8));
+		assertEquals(8, gdao.readTransactionRecord(8).getMoneyAmount());
+	}
+
+	@Test
+	public void testFullQueueHoldsSubmittersBack() throws Exception {
+
+		CountDownLatch gate = new CountDownLatch(1);
+		GatedDAO gdao = new GatedDAO(TEST_FILENAME, gate);
+		writer = new TransactionRecordWriter(gdao, 2, 1, LONG_DELAY_MILLIS, false);
+
+		// one record stuck in the write, two filling the queue, and one waiting for room
+		ExecutorService submitter = Executors.newSingleThreadExecutor();
+		Future<?> submits = submitter.submit(() -> {
+			for (int id = 1; id <= 4; id++) {
+				writer.submit(deposit(id));
+			}
+			return null;
+		});
+		try {
+			submits.get(300, TimeUnit.MILLISECONDS);
+			fail("submit didn't wait for room in the queue");
+		}
+		catch (TimeoutException e) {
+			// expected
+		}
+
+		gate.countDown();
+		submits.get(5, TimeUnit.SECONDS);
+		submitter.shutdown();
+		writer.flush();
+		assertEquals(4, gdao.readAllTransactionRecords().size());
+	}
+
+	@Test
+	public void testCloseDrainsTheQueue() throws BankDAOException {
+
+		TextFileDAO tdao = new TextFileDAO(TEST_FILENAME);
+		writer = new TransactionRecordWriter(tdao, 100, 8, LONG_DELAY_MILLIS, false);
+
+		for (int id = 1; id <= 20; id++) {
+			writer.submit(deposit(id));
+		}
+		writer.close();
+		assertEquals(20, tdao.readAllTransactionRecords().size());
+
+		try {
+			writer.submit(deposit(21));
+			fail("closed writer took a record");
+		}
+		catch (BankDAOException e) {
+			// expected
+		}
+		writer.flush(); // nothing to wait for
+	}
+}
@@ -0,0 +1,307 @@
+/**
+ * This file contains Junit tests for the TransferEngine class, including a stress test
+ * that runs many transfers at once and checks that no money is created or lost.
+ * The locking path is tested over a LogStructuredDAO, and the database path over 
+ * an in-memory H2 database standing in for Postgres.
+ * 
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.revature.bankDataObjects.BankAccount;
+import com.revature.bankDataObjects.BankAccount.BankAccountStatus;
+import com.revature.bankDataObjects.BankAccount.BankAccountType;
+import com.revature.bankDataObjects.BankData;
+
+import bankSystem.ImpossibleActionException;
+import bankSystem.TransferEngine;
+import dao.BankDAO;
+import dao.BankDAOException;
+import dao.DatabaseUtil;
+import dao.LogStructuredDAO;
+import dao.PostgresDAO;
+import dao.TransactionalBankDAO.TransferResult;
+
+public class TransferEngineTest {
+
+	// some helper methods/variables
+
+	private static final String TEST_DIRECTORY = "target/transfertest";
+	private static final String STAND_IN_ADDRESS
+			= "jdbc:h2:mem:transfers;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+	private static final int ACCOUNTS = 20;
+	private static final int STARTING_FUNDS = 10000;
+	private static final int THREADS = 8;
+	private static final int TRANSFERS_PER_THREAD = 500;
+
+	private LogStructuredDAO ldao;
+
+	@After
+	public void cleanup() {
+
+		if (ldao != null) {
+			ldao.close();
+		}
+		deleteDirectory();
+		DatabaseUtil.closePool();
+	}
+
+	private void deleteDirectory() {
+
+		File dir = new File(TEST_DIRECTORY);
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	/**
+	 * Accounts 1 to ACCOUNTS, all open with STARTING_FUNDS, plus a closed account 0.
+	 */
+	private LogStructuredDAO prepareLogDAO() throws BankDAOException {
+
+		deleteDirectory();
+		ldao = new LogStructuredDAO(TEST_DIRECTORY, 64 * 1024, false);
+
+		List<BankData> accounts = new ArrayList<>();
+		for (int accID = 0; accID <= ACCOUNTS; accID++) {
+			BankAccount ba = new BankAccount(accID);
+			ba.setStatus(accID == 0 ? BankAccountStatus.CLOSED : BankAccountStatus.OPEN);
+			ba.setType(BankAccountType.SINGLE);
+			ba.setFunds(accID == 0 ? 0 : STARTING_FUNDS);
+			accounts.add(ba);
+		}
+		ldao.write(accounts);
+		return ldao;
+	}
+
+	/**
+	 * Same accounts as prepareLogDAO, in the stand-in database.
+	 */
+	private PostgresDAO prepareDatabaseDAO() throws SQLException {
+
+		PostgresDAO pdao = new PostgresDAO(STAND_IN_ADDRESS, "sa", "");
+		DatabaseUtil.resetDatabase();
+
+		try (Connection conn = DatabaseUtil.getConnection()){
+			PreparedStatement pstm = conn.prepareStatement(
+					"INSERT INTO bank_account (account_id, status, type, funds) VALUES (?, ?, 'SINGLE', ?);");
+			for (int accID = 0; accID <= ACCOUNTS; accID++) {
+				pstm.setInt(1, accID + 100); // reset already made a few low numbered accounts
+				pstm.setString(2, accID == 0 ? "CLOSED" : "OPEN");
+				pstm.setInt(3, accID == 0 ? 0 : STARTING_FUNDS);
+				pstm.execute();
+			}
+		}
+		return pdao;
+	}
+
+	private static int totalFunds(BankDAO dao, int firstID) throws BankDAOException {
+
+		int total = 0;
+		for (int accID = firstID; accID < firstID + ACCOUNTS; accID++) {
+			BankAccount ba = dao.readBankAccount(accID);
+			assertTrue(ba.getFunds() >= 0);
+			total += ba.getFunds();
+		}
+		return total;
+	}
+
+	/**
+	 * Runs lots of random transfers between the accounts from several threads at once.
+	 * Amounts are large enough that plenty of them get refused for insufficient funds.
+	 */
+	private static void runConcurrentTransfers(TransferEngine engine, int firstID) throws Exception {
+
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<>();
+
+		for (int t = 0; t < THREADS; t++) {
+			final long seed = t;
+			futures.add(pool.submit(() -> {
+				Random rand = new Random(seed);
+				for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+					int source = firstID + rand.nextInt(ACCOUNTS);
+					int dest = firstID + rand.nextInt(ACCOUNTS);
+					engine.transfer(source, dest, 1 + rand.nextInt(STARTING_FUNDS / 2));
+				}
+				return null;
+			}));
+		}
+
+		for (Future<?> f : futures) {
+			f.get(); // rethrows anything that went wrong in the thread
+		}
+		pool.shutdown();
+		pool.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	// tests
+
+	@Test
+	public void testTransferChecks() throws BankDAOException {
+
+		TransferEngine engine = new TransferEngine(prepareLogDAO());
+
+		assertEquals(TransferResult.SUCCESS, engine.transfer(1, 2, 500));
+		assertEquals(STARTING_FUNDS - 500, ldao.readBankAccount(1).getFunds());
+		assertEquals(STARTING_FUNDS + 500, ldao.readBankAccount(2).getFunds());
+
+		assertEquals(TransferResult.SOURCE_NOT_FOUND, engine.transfer(999, 2, 1));
+		assertEquals(TransferResult.DESTINATION_NOT_FOUND, engine.transfer(1, 999, 1));
+		assertEquals(TransferResult.SOURCE_NOT_OPEN, engine.transfer(0, 2, 1));
+		assertEquals(TransferResult.DESTINATION_NOT_OPEN, engine.transfer(1, 0, 1));
+		assertEquals(TransferResult.INSUFFICIENT_FUNDS, engine.transfer(1, 2, STARTING_FUNDS));
+		assertEquals(STARTING_FUNDS - 500, ldao.readBankAccount(1).getFunds()); // unchanged
+
+		assertEquals(TransferResult.SUCCESS, engine.deposit(3, 50));
+		assertEquals(TransferResult.SUCCESS, engine.withdraw(3, 25));
+		assertEquals(STARTING_FUNDS + 25, ldao.readBankAccount(3).getFunds());
+		assertEquals(TransferResult.INSUFFICIENT_FUNDS, engine.withdraw(3, STARTING_FUNDS * 2));
+	}
+
+	@Test
+	public void testConcurrentTransfersConserveFunds() throws Exception {
+
+		TransferEngine engine = new TransferEngine(prepareLogDAO(), 4); // few stripes, lots of sharing
+		runConcurrentTransfers(engine, 1);
+		assertEquals(ACCOUNTS * STARTING_FUNDS, totalFunds(ldao, 1));
+	}
+
+	@Test
+	public void testAccountUpdatesDontOverwriteTransfers() throws Exception {
+
+		TransferEngine engine = new TransferEngine(prepareLogDAO(), 4);
+
+		// flips every account between single and joint, a whole read-change-write each time
+		AtomicBoolean done = new AtomicBoolean();
+		Thread updater = new Thread(() -> {
+			try {
+				while (!done.get()) {
+					for (int accID = 1; accID <= ACCOUNTS; accID++) {
+						engine.updateAccount(accID, ba -> {
+							ba.setType(ba.getType() == BankAccountType.SINGLE
+									? BankAccountType.JOINT : BankAccountType.SINGLE);
+							return Collections.emptyList();
+						});
+					}
+				}
+			}
+			catch (ImpossibleActionException | BankDAOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		updater.start();
+		runConcurrentTransfers(engine, 1);
+		done.set(true);
+		updater.join();
+
+		assertEquals(ACCOUNTS * STARTING_FUNDS, totalFunds(ldao, 1));
+
+		int funds = ldao.readBankAccount(1).getFunds();
+		try {
+			engine.updateAccount(1, ba -> {
+				ba.setFunds(funds + 1);
+				throw new ImpossibleActionException("changed my mind");
+			});
+			fail("the update's exception should come back out");
+		}
+		catch (ImpossibleActionException e) {
+			assertEquals(funds, ldao.readBankAccount(1).getFunds()); // never written
+		}
+	}
+
+	@Test
+	public void testDatabaseTransferChecks() throws Exception {
+
+		TransferEngine engine = new TransferEngine(prepareDatabaseDAO());
+
+		assertEquals(TransferResult.SUCCESS, engine.transfer(101, 102, 500));
+		assertEquals(TransferResult.SOURCE_NOT_OPEN, engine.transfer(100, 102, 1));
+		assertEquals(TransferResult.DESTINATION_NOT_FOUND, engine.transfer(101, 999, 1));
+		assertEquals(TransferResult.INSUFFICIENT_FUNDS, engine.withdraw(101, STARTING_FUNDS));
+		assertEquals(TransferResult.SUCCESS, engine.deposit(101, 500));
+	}
+
+	@Test
+	public void testConcurrentDatabaseTransfersConserveFunds() throws Exception {
+
+		PostgresDAO pdao = prepareDatabaseDAO();
+		runConcurrentTransfers(new TransferEngine(pdao), 101);
+		assertEquals(ACCOUNTS * STARTING_FUNDS, totalFunds(pdao, 101));
+	}
+
+	/**
+	 * Closing an account while deposits go in: what the close takes out has to include every
+	 * deposit that got in before it, and none can get in after.
+	 */
+	@Test
+	public void testDatabaseCloseDoesntLoseDeposits() throws Exception {
+
+		PostgresDAO pdao = prepareDatabaseDAO();
+		TransferEngine engine = new TransferEngine(pdao);
+		final int accID = 101;
+		AtomicInteger deposited = new AtomicInteger();
+
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			futures.add(pool.submit(() -> {
+				while (engine.deposit(accID, 1) == TransferResult.SUCCESS) {
+					deposited.incrementAndGet();
+				}
+				return null;
+			}));
+		}
+		while (deposited.get() < 100) {
+			Thread.sleep(1);
+		}
+
+		int[] closedWith = new int[1];
+		engine.updateAccount(accID, ba -> {
+			closedWith[0] = ba.getFunds();
+			try {
+				Thread.sleep(50); // plenty of time for a deposit to sneak in, if it could
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			ba.setFunds(0);
+			ba.setStatus(BankAccountStatus.CLOSED);
+			return Collections.emptyList();
+		});
+
+		for (Future<?> f : futures) {
+			f.get();
+		}
+		pool.shutdown();
+		assertEquals(STARTING_FUNDS + deposited.get(), closedWith[0]);
+		assertEquals(0, pdao.readBankAccount(accID).getFunds());
+	}
+}
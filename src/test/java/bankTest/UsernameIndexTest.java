@@ -0,0 +1,77 @@
+/**
+ * This file contains Junit tests for the UsernameIndex and UsernameBloomFilter classes.
+ * 
+ * Andrew Curry
+ */
+package bankTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import dao.UsernameBloomFilter;
+import dao.UsernameIndex;
+
+public class UsernameIndexTest {
+	
+	@Test
+	public void testPutGetRemove() {
+		
+		UsernameIndex index = new UsernameIndex();
+		for (int i = 0; i < 1000; i++) { // enough to grow several times
+			index.put("user" + i, i);
+		}
+		assertEquals(1000, index.size());
+		assertEquals(537, index.get("user537"));
+		assertEquals(UsernameIndex.NOT_FOUND, index.get("user1000"));
+		
+		index.put("user537", 5);
+		assertEquals(5, index.get("user537"));
+		assertEquals(1000, index.size());
+		
+		for (int i = 0; i < 1000; i += 2) {
+			assertTrue(index.remove("user" + i));
+		}
+		assertFalse(index.remove("user0"));
+		assertEquals(500, index.size());
+		assertFalse(index.contains("user998"));
+		assertTrue(index.contains("user999")); // still reachable past the removed slots
+		
+		index.put("user0", 77); // reuses a removed slot
+		assertEquals(77, index.get("user0"));
+	}
+	
+	@Test
+	public void testCollidingHashes() {
+		
+		UsernameIndex index = new UsernameIndex();
+		index.put("Aa", 1); // same String.hashCode
+		index.put("BB", 2);
+		assertEquals(1, index.get("Aa"));
+		assertEquals(2, index.get("BB"));
+		index.remove("Aa");
+		assertEquals(2, index.get("BB"));
+	}
+	
+	@Test
+	public void testBloomFilter() {
+		
+		UsernameBloomFilter filter = new UsernameBloomFilter(1000, 0.01);
+		for (int i = 0; i < 1000; i++) {
+			filter.add("user" + i);
+		}
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(filter.mightContain("user" + i)); // never a false negative
+		}
+		
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (filter.mightContain("other" + i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue("false positives: " + falsePositives, falsePositives < 300); // about 100 expected
+	}
+}
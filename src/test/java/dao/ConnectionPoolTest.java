@@ -0,0 +1,156 @@
+/**
+ * This file contains Junit tests for ConnectionPool, using in-memory H2 databases. It's in the
+ * dao package so the tests can run the housekeeping (eviction and leak checks) themselves
+ * instead of waiting on the pool's thread.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ConnectionPoolTest {
+
+	// some helper methods/variables
+
+	private static final String ADDRESS = "jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1";
+
+	private ConnectionPool pool;
+
+	private ConnectionPool createPool(int minSize, int maxSize, long idleTimeoutMillis, long leakThresholdMillis,
+			long acquireTimeoutMillis) {
+
+		Properties props = new Properties();
+		props.setProperty("user", "sa");
+		props.setProperty("password", "");
+		pool = new ConnectionPool(ADDRESS, props, minSize, maxSize, idleTimeoutMillis, leakThresholdMillis,
+				acquireTimeoutMillis);
+		return pool;
+	}
+
+	@After
+	public void cleanup() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	private static int selectOne(Connection conn) throws SQLException {
+
+		try (ResultSet rs = conn.prepareStatement("SELECT 1").executeQuery()) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	// tests
+
+	@Test
+	public void testCheckoutTimesOutWhenThePoolIsFull() throws SQLException {
+
+		createPool(0, 1, 60000, 0, 100);
+		Connection held = pool.getConnection();
+
+		long start = System.currentTimeMillis();
+		try {
+			pool.getConnection();
+			fail("the second checkout should time out");
+		}
+		catch (SQLException e) {
+			assertTrue(System.currentTimeMillis() - start >= 100);
+		}
+		assertEquals(1, pool.getAcquireTimeoutCount());
+
+		held.close();
+		try (Connection conn = pool.getConnection()) {
+			assertEquals(1, selectOne(conn));
+		}
+		assertEquals(1, pool.getCreatedCount());
+	}
+
+	@Test
+	public void testBrokenIdleConnectionIsReplaced() throws Exception {
+
+		createPool(0, 1, 60000, 0, 1000);
+		Connection physical;
+		try (Connection conn = pool.getConnection()) {
+			physical = conn.unwrap(Connection.class);
+		}
+		physical.close(); // broken while it sat in the pool
+		Thread.sleep(600); // long enough that it gets validated
+
+		try (Connection conn = pool.getConnection()) {
+			assertEquals(1, selectOne(conn));
+		}
+		assertEquals(1, pool.getEvictedCount());
+		assertEquals(2, pool.getCreatedCount());
+		assertEquals(1, pool.getTotalCount());
+	}
+
+	@Test
+	public void testIdleConnectionsAboveTheMinimumAreEvicted() throws Exception {
+
+		createPool(1, 3, 50, 0, 1000);
+		Connection first = pool.getConnection();
+		Connection second = pool.getConnection();
+		Connection third = pool.getConnection();
+		first.close();
+		second.close();
+		third.close();
+		assertEquals(3, pool.getIdleCount());
+
+		Thread.sleep(100);
+		pool.houseKeep();
+		assertEquals(1, pool.getTotalCount());
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(2, pool.getEvictedCount());
+	}
+
+	@Test
+	public void testLeakIsReportedOnce() throws Exception {
+
+		createPool(0, 1, 60000, 50, 1000);
+		Connection conn = pool.getConnection();
+		pool.houseKeep();
+		assertEquals(0, pool.getLeakCount());
+
+		Thread.sleep(100);
+		pool.houseKeep();
+		pool.houseKeep();
+		assertEquals(1, pool.getLeakCount());
+		conn.close();
+
+		conn = pool.getConnection(); // a new borrow starts the clock again
+		pool.houseKeep();
+		assertEquals(1, pool.getLeakCount());
+		conn.close();
+	}
+
+	@Test
+	public void testClosedStatementsAreDropped() throws SQLException {
+
+		createPool(0, 1, 60000, 0, 1000);
+		PreparedStatement kept;
+		try (Connection conn = pool.getConnection()) {
+			kept = conn.prepareStatement("SELECT 1");
+			for (int i = 0; i < 1000; i++) {
+				conn.prepareStatement("SELECT 2").close();
+			}
+			assertTrue(ConnectionPool.getStatementCount(conn) < 100);
+			assertFalse(kept.isClosed());
+		}
+		assertTrue(kept.isClosed()); // the open one still goes with the connection
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * This file contains Junit tests for WriteAheadJournal's group commit. It's in the dao package
+ * because the journal is package-private; the rest of the journal's behaviour is tested
+ * through TextFileDAO in bankTest.TextFileJournalTest.
+ *
+ * Andrew Curry
+ */
+package dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WriteAheadJournalTest {
+
+	// some helper methods/variables
+
+	private static final String DATA_FILENAME = "target/grouptest.bdf";
+
+	/**
+	 * Holds the first force open until the test lets it go.
+	 */
+	private static class HeldJournal extends WriteAheadJournal {
+
+		final CountDownLatch forceStarted = new CountDownLatch(1);
+		final CountDownLatch releaseForce = new CountDownLatch(1);
+
+		HeldJournal() {
+			super(DATA_FILENAME, Long.MAX_VALUE);
+		}
+
+		@Override
+		void forceChannel() throws IOException {
+
+			forceStarted.countDown();
+			try {
+				releaseForce.await();
+			}
+			catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			super.forceChannel();
+		}
+	}
+
+	private HeldJournal journal;
+
+	@Before
+	public void setup() throws BankDAOException {
+		new File(DATA_FILENAME + WriteAheadJournal.SUFFIX).delete();
+		journal = new HeldJournal();
+		journal.open(0, 0);
+		journal.reset(0, 0);
+	}
+
+	@After
+	public void cleanup() {
+		new File(DATA_FILENAME + WriteAheadJournal.SUFFIX).delete();
+	}
+
+	private Thread awaitInBackground(long sequence, List<Exception> failures) {
+
+		Thread t = new Thread(() -> {
+			try {
+				journal.awaitDurable(sequence);
+			}
+			catch (BankDAOException e) {
+				synchronized (failures) {
+					failures.add(e);
+				}
+			}
+		});
+		t.start();
+		return t;
+	}
+
+	// tests
+
+	@Test
+	public void testWritersArrivingDuringAForceShareTheNextOne() throws Exception {
+
+		final int writers = 8;
+		List<Exception> failures = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+
+		threads.add(awaitInBackground(journal.append(Collections.singletonList("TRR 1")), failures));
+		assertTrue(journal.forceStarted.await(10, TimeUnit.SECONDS));
+
+		// these all land while the first force is still running
+		for (int i = 2; i <= writers; i++) {
+			threads.add(awaitInBackground(journal.append(Collections.singletonList("TRR " + i)), failures));
+		}
+		journal.releaseForce.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertTrue(failures.toString(), failures.isEmpty());
+		assertEquals(2, journal.getForceCount()); // the held one, then one for the other seven
+	}
+
+	@Test
+	public void testEntriesComeBackInOrder() throws BankDAOException {
+
+		journal.releaseForce.countDown();
+		journal.awaitDurable(journal.append(Collections.singletonList("PRF 1 a b CST")));
+		List<String> second = new ArrayList<>();
+		second.add("ACC 2 OPN SNG 5 1");
+		second.add("HWM ACC 9");
+		journal.awaitDurable(journal.append(second));
+
+		List<List<String>> replay = new WriteAheadJournal(DATA_FILENAME, Long.MAX_VALUE).open(0, 0);
+		assertEquals(2, replay.size());
+		assertEquals(Collections.singletonList("PRF 1 a b CST"), replay.get(0));
+		assertEquals(second, replay.get(1));
+	}
+}